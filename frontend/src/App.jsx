@@ -1,62 +1,62 @@
-import React from 'react';
-import { BrowserRouter as Router, Routes, Route } from 'react-router-dom';
-import { ThemeProvider, createTheme } from '@mui/material/styles';
-import CssBaseline from '@mui/material/CssBaseline';
-import Container from '@mui/material/Container';
-import AppBar from '@mui/material/AppBar';
-import Toolbar from '@mui/material/Toolbar';
-import Typography from '@mui/material/Typography';
-import Box from '@mui/material/Box';
-
-import Dashboard from './components/Dashboard';
-import WorkflowList from './components/WorkflowList';
-import WorkflowEditor from './components/WorkflowEditor';
-import ExecutionHistory from './components/ExecutionHistory';
-import AIPlayground from './components/AIPlayground';
-
-const theme = createTheme({
-  palette: {
-    primary: {
-      main: '#1976d2',
-    },
-    secondary: {
-      main: '#dc004e',
-    },
-    background: {
-      default: '#f5f5f5',
-    },
-  },
-});
-
-function App() {
-  return (
-    <ThemeProvider theme={theme}>
-      <CssBaseline />
-      <Router>
-        <Box sx={{ display: 'flex', flexDirection: 'column', minHeight: '100vh' }}>
-          <AppBar position="static">
-            <Toolbar>
-              <Typography variant="h6" component="div" sx={{ flexGrow: 1 }}>
-                AI Business Automation Suite
-              </Typography>
-            </Toolbar>
-          </AppBar>
-          
-          <Container maxWidth="xl" sx={{ mt: 4, mb: 4, flex: 1 }}>
-            <Routes>
-              <Route path="/" element={<Dashboard />} />
-              <Route path="/workflows" element={<WorkflowList />} />
-              <Route path="/workflows/new" element={<WorkflowEditor />} />
-              <Route path="/workflows/:id" element={<WorkflowEditor />} />
-              <Route path="/executions" element={<ExecutionHistory />} />
-              <Route path="/ai-playground" element={<AIPlayground />} />
-            </Routes>
-          </Container>
-        </Box>
-      </Router>
-    </ThemeProvider>
-  );
-}
-
-export default App;
-
+import React from 'react';
+import { BrowserRouter as Router, Routes, Route } from 'react-router-dom';
+import { ThemeProvider, createTheme } from '@mui/material/styles';
+import CssBaseline from '@mui/material/CssBaseline';
+import Container from '@mui/material/Container';
+import AppBar from '@mui/material/AppBar';
+import Toolbar from '@mui/material/Toolbar';
+import Typography from '@mui/material/Typography';
+import Box from '@mui/material/Box';
+
+import Dashboard from './components/Dashboard';
+import WorkflowList from './components/WorkflowList';
+import WorkflowEditor from './components/WorkflowEditor';
+import ExecutionHistory from './components/ExecutionHistory';
+import AIPlayground from './components/AIPlayground';
+
+const theme = createTheme({
+  palette: {
+    primary: {
+      main: '#1976d2',
+    },
+    secondary: {
+      main: '#dc004e',
+    },
+    background: {
+      default: '#f5f5f5',
+    },
+  },
+});
+
+function App() {
+  return (
+    <ThemeProvider theme={theme}>
+      <CssBaseline />
+      <Router>
+        <Box sx={{ display: 'flex', flexDirection: 'column', minHeight: '100vh' }}>
+          <AppBar position="static">
+            <Toolbar>
+              <Typography variant="h6" component="div" sx={{ flexGrow: 1 }}>
+                AI Business Automation Suite
+              </Typography>
+            </Toolbar>
+          </AppBar>
+          
+          <Container maxWidth="xl" sx={{ mt: 4, mb: 4, flex: 1 }}>
+            <Routes>
+              <Route path="/" element={<Dashboard />} />
+              <Route path="/workflows" element={<WorkflowList />} />
+              <Route path="/workflows/new" element={<WorkflowEditor />} />
+              <Route path="/workflows/:id" element={<WorkflowEditor />} />
+              <Route path="/executions" element={<ExecutionHistory />} />
+              <Route path="/ai-playground" element={<AIPlayground />} />
+            </Routes>
+          </Container>
+        </Box>
+      </Router>
+    </ThemeProvider>
+  );
+}
+
+export default App;
+
@@ -1,132 +1,225 @@
-import React, { useState, useEffect } from 'react';
-import {
-  Box,
-  Typography,
-  Table,
-  TableBody,
-  TableCell,
-  TableContainer,
-  TableHead,
-  TableRow,
-  Paper,
-  Chip,
-  Select,
-  MenuItem,
-  FormControl,
-  InputLabel,
-} from '@mui/material';
-import { workflowService } from '../services/api';
-
-export default function ExecutionHistory() {
-  const [workflows, setWorkflows] = useState([]);
-  const [selectedWorkflow, setSelectedWorkflow] = useState('');
-  const [executions, setExecutions] = useState([]);
-
-  useEffect(() => {
-    loadWorkflows();
-  }, []);
-
-  useEffect(() => {
-    if (selectedWorkflow) {
-      loadExecutions();
-    }
-  }, [selectedWorkflow]);
-
-  const loadWorkflows = async () => {
-    try {
-      const response = await workflowService.getAll();
-      setWorkflows(response.data);
-      if (response.data.length > 0) {
-        setSelectedWorkflow(response.data[0].id.toString());
-      }
-    } catch (error) {
-      console.error('Failed to load workflows:', error);
-    }
-  };
-
-  const loadExecutions = async () => {
-    try {
-      const response = await workflowService.getExecutions(selectedWorkflow);
-      setExecutions(response.data);
-    } catch (error) {
-      console.error('Failed to load executions:', error);
-    }
-  };
-
-  const getStatusColor = (status) => {
-    const colors = {
-      COMPLETED: 'success',
-      RUNNING: 'info',
-      FAILED: 'error',
-      CANCELLED: 'default',
-    };
-    return colors[status] || 'default';
-  };
-
-  return (
-    <Box>
-      <Typography variant="h4" gutterBottom>
-        Execution History
-      </Typography>
-
-      <FormControl sx={{ minWidth: 200, mb: 3 }}>
-        <InputLabel>Select Workflow</InputLabel>
-        <Select
-          value={selectedWorkflow}
-          label="Select Workflow"
-          onChange={(e) => setSelectedWorkflow(e.target.value)}
-        >
-          {workflows.map((workflow) => (
-            <MenuItem key={workflow.id} value={workflow.id.toString()}>
-              {workflow.name}
-            </MenuItem>
-          ))}
-        </Select>
-      </FormControl>
-
-      <TableContainer component={Paper}>
-        <Table>
-          <TableHead>
-            <TableRow>
-              <TableCell>Execution ID</TableCell>
-              <TableCell>Status</TableCell>
-              <TableCell>Started At</TableCell>
-              <TableCell>Completed At</TableCell>
-              <TableCell>Execution Time</TableCell>
-            </TableRow>
-          </TableHead>
-          <TableBody>
-            {executions.map((execution) => (
-              <TableRow key={execution.id}>
-                <TableCell>{execution.id}</TableCell>
-                <TableCell>
-                  <Chip
-                    label={execution.status}
-                    color={getStatusColor(execution.status)}
-                    size="small"
-                  />
-                </TableCell>
-                <TableCell>
-                  {execution.startedAt
-                    ? new Date(execution.startedAt).toLocaleString()
-                    : '-'}
-                </TableCell>
-                <TableCell>
-                  {execution.completedAt
-                    ? new Date(execution.completedAt).toLocaleString()
-                    : '-'}
-                </TableCell>
-                <TableCell>
-                  {execution.executionTimeMs
-                    ? `${execution.executionTimeMs} ms`
-                    : '-'}
-                </TableCell>
-              </TableRow>
-            ))}
-          </TableBody>
-        </Table>
-      </TableContainer>
-    </Box>
-  );
-}
-
+import React, { Fragment, useState, useEffect } from 'react';
+import {
+  Box,
+  Typography,
+  Table,
+  TableBody,
+  TableCell,
+  TableContainer,
+  TableHead,
+  TableRow,
+  Paper,
+  Chip,
+  Select,
+  MenuItem,
+  FormControl,
+  InputLabel,
+  Button,
+  Collapse,
+} from '@mui/material';
+import { workflowService } from '../services/api';
+
+export default function ExecutionHistory() {
+  const [workflows, setWorkflows] = useState([]);
+  const [selectedWorkflow, setSelectedWorkflow] = useState('');
+  const [executions, setExecutions] = useState([]);
+  const [statusFilter, setStatusFilter] = useState('');
+  const [nextCursor, setNextCursor] = useState(null);
+  const [expanded, setExpanded] = useState(null);
+  const [payloads, setPayloads] = useState({});
+
+  const PAGE_SIZE = 50;
+
+  useEffect(() => {
+    loadWorkflows();
+  }, []);
+
+  useEffect(() => {
+    if (selectedWorkflow) {
+      loadExecutions();
+    }
+  }, [selectedWorkflow, statusFilter]);
+
+  const loadWorkflows = async () => {
+    try {
+      const response = await workflowService.getAll();
+      setWorkflows(response.data);
+      if (response.data.length > 0) {
+        setSelectedWorkflow(response.data[0].id.toString());
+      }
+    } catch (error) {
+      console.error('Failed to load workflows:', error);
+    }
+  };
+
+  const loadExecutions = async (before) => {
+    try {
+      const params = { limit: PAGE_SIZE };
+      if (statusFilter) params.status = statusFilter;
+      if (before) params.before = before;
+      const response = await workflowService.getExecutions(selectedWorkflow, params);
+      setExecutions((current) =>
+        before ? [...current, ...response.data.items] : response.data.items
+      );
+      setNextCursor(response.data.nextCursor);
+    } catch (error) {
+      console.error('Failed to load executions:', error);
+    }
+  };
+
+  const toggleExecution = async (executionId) => {
+    if (expanded === executionId) {
+      setExpanded(null);
+      return;
+    }
+    setExpanded(executionId);
+    if (!payloads[executionId]) {
+      try {
+        const response = await workflowService.getExecution(executionId);
+        setPayloads((current) => ({ ...current, [executionId]: response.data }));
+      } catch (error) {
+        console.error('Failed to load execution:', error);
+      }
+    }
+  };
+
+  const formatPayload = (payload) => {
+    if (!payload) return '-';
+    try {
+      return JSON.stringify(JSON.parse(payload), null, 2);
+    } catch {
+      return payload;
+    }
+  };
+
+  const getStatusColor = (status) => {
+    const colors = {
+      COMPLETED: 'success',
+      RUNNING: 'info',
+      FAILED: 'error',
+      CANCELLED: 'default',
+    };
+    return colors[status] || 'default';
+  };
+
+  return (
+    <Box>
+      <Typography variant="h4" gutterBottom>
+        Execution History
+      </Typography>
+
+      <FormControl sx={{ minWidth: 200, mb: 3 }}>
+        <InputLabel>Select Workflow</InputLabel>
+        <Select
+          value={selectedWorkflow}
+          label="Select Workflow"
+          onChange={(e) => setSelectedWorkflow(e.target.value)}
+        >
+          {workflows.map((workflow) => (
+            <MenuItem key={workflow.id} value={workflow.id.toString()}>
+              {workflow.name}
+            </MenuItem>
+          ))}
+        </Select>
+      </FormControl>
+
+      <FormControl sx={{ minWidth: 160, mb: 3, ml: 2 }}>
+        <InputLabel>Status</InputLabel>
+        <Select
+          value={statusFilter}
+          label="Status"
+          onChange={(e) => setStatusFilter(e.target.value)}
+        >
+          <MenuItem value="">All</MenuItem>
+          {['QUEUED', 'RUNNING', 'COMPLETED', 'FAILED', 'CANCELLED'].map((status) => (
+            <MenuItem key={status} value={status}>
+              {status}
+            </MenuItem>
+          ))}
+        </Select>
+      </FormControl>
+
+      <TableContainer component={Paper}>
+        <Table>
+          <TableHead>
+            <TableRow>
+              <TableCell>Execution ID</TableCell>
+              <TableCell>Status</TableCell>
+              <TableCell>Started At</TableCell>
+              <TableCell>Completed At</TableCell>
+              <TableCell>Execution Time</TableCell>
+            </TableRow>
+          </TableHead>
+          <TableBody>
+            {executions.map((execution) => (
+              <Fragment key={execution.id}>
+              <TableRow
+                hover
+                sx={{ cursor: 'pointer' }}
+                onClick={() => toggleExecution(execution.id)}
+              >
+                <TableCell>{execution.id}</TableCell>
+                <TableCell>
+                  <Chip
+                    label={execution.status}
+                    color={getStatusColor(execution.status)}
+                    size="small"
+                  />
+                </TableCell>
+                <TableCell>
+                  {execution.startedAt
+                    ? new Date(execution.startedAt).toLocaleString()
+                    : '-'}
+                </TableCell>
+                <TableCell>
+                  {execution.completedAt
+                    ? new Date(execution.completedAt).toLocaleString()
+                    : '-'}
+                </TableCell>
+                <TableCell>
+                  {execution.executionTimeMs
+                    ? `${execution.executionTimeMs} ms`
+                    : '-'}
+                </TableCell>
+              </TableRow>
+              <TableRow>
+                <TableCell colSpan={5} sx={{ py: 0, borderBottom: 'none' }}>
+                  <Collapse in={expanded === execution.id} unmountOnExit>
+                    <Box sx={{ py: 2 }}>
+                      {execution.errorMessage && (
+                        <Typography color="error" gutterBottom>
+                          {execution.errorMessage}
+                        </Typography>
+                      )}
+                      {payloads[execution.id] ? (
+                        <Box
+                          component="pre"
+                          sx={{ m: 0, fontSize: 12, whiteSpace: 'pre-wrap' }}
+                        >
+                          {`Input:\n${formatPayload(payloads[execution.id].inputData)}\n\n` +
+                            `Output:\n${formatPayload(payloads[execution.id].outputData)}`}
+                        </Box>
+                      ) : (
+                        <Typography variant="body2">Loading...</Typography>
+                      )}
+                    </Box>
+                  </Collapse>
+                </TableCell>
+              </TableRow>
+              </Fragment>
+            ))}
+          </TableBody>
+        </Table>
+      </TableContainer>
+
+      {nextCursor && (
+        <Box sx={{ mt: 2, textAlign: 'center' }}>
+          <Button variant="outlined" onClick={() => loadExecutions(nextCursor)}>
+            Load more
+          </Button>
+        </Box>
+      )}
+    </Box>
+  );
+}
+
@@ -1,30 +1,75 @@
-import axios from 'axios';
-
-const API_BASE_URL = '/api';
-
-const api = axios.create({
-  baseURL: API_BASE_URL,
-  headers: {
-    'Content-Type': 'application/json',
-  },
-});
-
-export const workflowService = {
-  getAll: () => api.get('/workflows'),
-  getById: (id) => api.get(`/workflows/${id}`),
-  create: (workflow) => api.post('/workflows', workflow),
-  update: (id, workflow) => api.put(`/workflows/${id}`, workflow),
-  delete: (id) => api.delete(`/workflows/${id}`),
-  execute: (id, inputData) => api.post(`/workflows/${id}/execute`, inputData),
-  getExecutions: (id) => api.get(`/workflows/${id}/executions`),
-};
-
-export const aiService = {
-  process: (prompt, context) => api.post('/ai/process', { prompt, context }),
-  analyze: (data, analysisType) => api.post('/ai/analyze', { data, analysisType }),
-  generateDecision: (scenario, parameters) => 
-    api.post('/ai/decision', { scenario, parameters }),
-};
-
-export default api;
-
+import axios from 'axios';
+
+const API_BASE_URL = '/api';
+
+const api = axios.create({
+  baseURL: API_BASE_URL,
+  headers: {
+    'Content-Type': 'application/json',
+  },
+});
+
+export const workflowService = {
+  getAll: () => api.get('/workflows'),
+  getById: (id) => api.get(`/workflows/${id}`),
+  create: (workflow) => api.post('/workflows', workflow),
+  update: (id, workflow) => api.put(`/workflows/${id}`, workflow),
+  delete: (id) => api.delete(`/workflows/${id}`),
+  execute: (id, inputData) => api.post(`/workflows/${id}/execute`, inputData),
+  getExecutions: (id, params = {}) => api.get(`/workflows/${id}/executions`, { params }),
+  getExecution: (executionId) => api.get(`/workflows/executions/${executionId}`),
+  executionEvents: (executionId) => new EventSource(`${API_BASE_URL}/workflows/executions/${executionId}/events`),
+};
+
+export const statsService = {
+  getDashboard: () => api.get('/stats'),
+};
+
+// Reads a server-sent event stream from a fetch response and calls onEvent(name, data) per event
+async function readEventStream(response, onEvent) {
+  const reader = response.body.getReader();
+  const decoder = new TextDecoder();
+  let buffer = '';
+  for (;;) {
+    const { done, value } = await reader.read();
+    if (done) break;
+    buffer += decoder.decode(value, { stream: true });
+    let boundary;
+    while ((boundary = buffer.indexOf('\n\n')) >= 0) {
+      const block = buffer.slice(0, boundary);
+      buffer = buffer.slice(boundary + 2);
+      let name = 'message';
+      const data = [];
+      block.split('\n').forEach(line => {
+        if (line.startsWith('event:')) name = line.slice(6).trim();
+        else if (line.startsWith('data:')) data.push(line.slice(5));
+      });
+      if (data.length) onEvent(name, JSON.parse(data.join('\n')));
+    }
+  }
+}
+
+export const aiService = {
+  process: (prompt, context) => api.post('/ai/process', { prompt, context }),
+  processStream: async (prompt, context, onDelta) => {
+    const response = await fetch(`${API_BASE_URL}/ai/process/stream`, {
+      method: 'POST',
+      headers: { 'Content-Type': 'application/json', Accept: 'text/event-stream' },
+      body: JSON.stringify({ prompt, context }),
+    });
+    if (!response.ok) throw new Error(`Request failed with status ${response.status}`);
+    await readEventStream(response, (name, data) => {
+      if (name === 'delta') onDelta(data.content);
+      if (name === 'error') throw new Error(data.error);
+    });
+  },
+  analyze: (data, analysisType) => api.post('/ai/analyze', { data, analysisType }),
+  analyzeBatch: (items, analysisType, options = {}) =>
+    api.post('/ai/analyze/batch', { items, analysisType, ...options }, { responseType: 'text' })
+      .then(response => response.data.split('\n').filter(Boolean).map(line => JSON.parse(line))),
+  generateDecision: (scenario, parameters) => 
+    api.post('/ai/decision', { scenario, parameters }),
+};
+
+export default api;
+
@@ -0,0 +1,96 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side overhead of one completion call, excluding the network: writing the request,
+ * fingerprinting it for the cache, and extracting the content from the response bytes.
+ * <p>
+ * The {@code tree*} benchmarks are the former approach, kept as a baseline: a request map
+ * serialized with sorted keys, and a response decoded to a String and read into a tree. Run with
+ * {@code -prof gc} to compare allocation per call ({@code gc.alloc.rate.norm}) as well as latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AiClientBenchmark {
+    
+    @Param({"200", "4000"})
+    public int promptChars;
+    
+    @Param({"1000", "32000"})
+    public int completionChars;
+    
+    private AiConfig config;
+    private ObjectMapper objectMapper;
+    private ObjectWriter sortedWriter;
+    private AiRequestWriter requestWriter;
+    private AiResponseReader responseReader;
+    private String prompt;
+    private byte[] response;
+    
+    @Setup
+    public void setUp() {
+        config = new AiConfig();
+        objectMapper = new ObjectMapper();
+        sortedWriter = objectMapper.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+        requestWriter = new AiRequestWriter(config.getOpenai(), objectMapper);
+        responseReader = new AiResponseReader(objectMapper.getFactory());
+        
+        prompt = "Review the invoice below and flag anything unusual. ".repeat(Math.max(1, promptChars / 52));
+        String content = "{\\\"summary\\\":\\\"Looks fine\\\",\\\"riskLevel\\\":\\\"LOW\\\"} ".repeat(Math.max(1, completionChars / 50));
+        response = ("{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion\",\"created\":1700000000,\"model\":\"gpt-3.5-turbo\"," +
+                "\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\"" + content + "\"}," +
+                "\"logprobs\":null,\"finish_reason\":\"stop\"}]," +
+                "\"usage\":{\"prompt_tokens\":120,\"completion_tokens\":40,\"total_tokens\":160}," +
+                "\"system_fingerprint\":\"fp_1\"}").getBytes(StandardCharsets.UTF_8);
+    }
+    
+    @Benchmark
+    public byte[] writeRequest() {
+        return requestWriter.write(requestWriter.template(), prompt, false);
+    }
+    
+    @Benchmark
+    public byte[] treeWriteRequest() throws Exception {
+        Map<String, Object> request = new HashMap<>();
+        request.put("model", config.getOpenai().getModel());
+        request.put("messages", List.of(
+                Map.of("role", "system", "content", AiRequestWriter.SYSTEM_PROMPT),
+                Map.of("role", "user", "content", prompt)));
+        request.put("max_tokens", config.getOpenai().getMaxTokens());
+        request.put("temperature", config.getOpenai().getTemperature());
+        return sortedWriter.writeValueAsBytes(request);
+    }
+    
+    @Benchmark
+    public String fingerprintRequest() {
+        return AiService.fingerprint(requestWriter.write(requestWriter.template(), prompt, false));
+    }
+    
+    @Benchmark
+    public String readResponse() {
+        return responseReader.read(response).content();
+    }
+    
+    @Benchmark
+    public String treeReadResponse() throws Exception {
+        JsonNode tree = objectMapper.readTree(new String(response, StandardCharsets.UTF_8));
+        tree.path("usage").path("total_tokens").asInt(-1);
+        return tree.get("choices").get(0).get("message").get("content").asText();
+    }
+}
@@ -0,0 +1,85 @@
+package com.aisuite.service;
+
+import com.aisuite.model.WorkflowStep;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluating CONDITIONAL steps through the engine, with conditions served from the compiled
+ * cache, against compiling the same expression on every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConditionBenchmark {
+    
+    private static final String EXPRESSION =
+            "amount > 1000 && lower(currency) == 'eur' && step_1.riskLevel != 'HIGH'";
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private WorkflowEngine engine;
+    private WorkflowStep legacyStep;
+    private WorkflowStep expressionStep;
+    private WorkflowStep jsonPathStep;
+    private Map<String, Object> context;
+    
+    @Setup
+    public void setUp() {
+        engine = new WorkflowEngine(null, null, null, null, null, null, null, null, new ConditionCompiler(objectMapper),
+                null, objectMapper, null, null, null, null, null);
+        
+        legacyStep = step(1L, "{\"condition\":\"success\"}");
+        expressionStep = step(2L, "{\"condition\":\"amount > 1000 && lower(currency) == 'eur' && approved\"}");
+        jsonPathStep = step(3L, "{\"condition\":\"" + EXPRESSION + "\"}");
+        
+        context = new HashMap<>();
+        context.put("amount", 1250.0);
+        context.put("currency", "EUR");
+        context.put("approved", true);
+        context.put("step_1", "{\"summary\":\"ok\",\"riskLevel\":\"LOW\",\"keyFindings\":[\"a\",\"b\"]}");
+    }
+    
+    @Benchmark
+    public boolean legacySuccessCondition() {
+        return engine.evaluateCondition(legacyStep, context);
+    }
+    
+    @Benchmark
+    public boolean cachedExpression() {
+        return engine.evaluateCondition(expressionStep, context);
+    }
+    
+    @Benchmark
+    public boolean cachedExpressionWithJsonPath() {
+        return engine.evaluateCondition(jsonPathStep, context);
+    }
+    
+    @Benchmark
+    public boolean compileOnEveryCall() {
+        return ConditionExpression.compile(EXPRESSION).test(context, this::readTree);
+    }
+    
+    private static WorkflowStep step(Long id, String configuration) {
+        WorkflowStep step = new WorkflowStep();
+        step.setId(id);
+        step.setType(WorkflowStep.StepType.CONDITIONAL);
+        step.setConfiguration(configuration);
+        return step;
+    }
+    
+    private JsonNode readTree(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
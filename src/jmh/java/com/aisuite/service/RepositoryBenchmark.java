@@ -0,0 +1,91 @@
+package com.aisuite.service;
+
+import com.aisuite.AiBusinessAutomationApplication;
+import com.aisuite.model.Workflow;
+import com.aisuite.model.WorkflowExecution;
+import com.aisuite.model.WorkflowStep;
+import com.aisuite.repository.WorkflowExecutionRepository;
+import com.aisuite.repository.WorkflowRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Save paths against the in-memory H2 database with the application's JPA configuration:
+ * one execution record, and a workflow with its steps.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepositoryBenchmark {
+    
+    @Param({"1", "10"})
+    public int stepsPerWorkflow;
+    
+    private ConfigurableApplicationContext context;
+    private WorkflowRepository workflowRepository;
+    private WorkflowExecutionRepository executionRepository;
+    private Workflow workflow;
+    private String outputData;
+    
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(AiBusinessAutomationApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .run();
+        workflowRepository = context.getBean(WorkflowRepository.class);
+        executionRepository = context.getBean(WorkflowExecutionRepository.class);
+        workflow = workflowRepository.save(newWorkflow());
+        outputData = "{\"step_1\":\"" + "x".repeat(2000) + "\"}";
+    }
+    
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+    
+    @Benchmark
+    public WorkflowExecution saveExecution() {
+        WorkflowExecution execution = new WorkflowExecution();
+        execution.setWorkflow(workflow);
+        execution.setStatus(WorkflowExecution.ExecutionStatus.COMPLETED);
+        execution.setStartedAt(LocalDateTime.now());
+        execution.setCompletedAt(LocalDateTime.now());
+        execution.setInputData("{\"customer\":\"ACME\"}");
+        execution.setOutputData(outputData);
+        return executionRepository.save(execution);
+    }
+    
+    @Benchmark
+    public Workflow saveWorkflowWithSteps() {
+        return workflowRepository.save(newWorkflow());
+    }
+    
+    private Workflow newWorkflow() {
+        Workflow newWorkflow = new Workflow();
+        newWorkflow.setName("benchmark");
+        newWorkflow.setStatus(Workflow.WorkflowStatus.ACTIVE);
+        List<WorkflowStep> steps = new ArrayList<>();
+        for (int i = 0; i < stepsPerWorkflow; i++) {
+            WorkflowStep step = new WorkflowStep();
+            step.setName("step " + i);
+            step.setStepOrder(i + 1);
+            step.setType(WorkflowStep.StepType.AI_PROCESSING);
+            step.setAiPrompt("Summarize the input");
+            step.setWorkflow(newWorkflow);
+            steps.add(step);
+        }
+        newWorkflow.setSteps(steps);
+        return newWorkflow;
+    }
+}
@@ -0,0 +1,50 @@
+package com.aisuite.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing the execution context into {@code outputData}, which the engine does at the end
+ * of every run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    
+    @Param({"100", "1000", "10000"})
+    public int contextEntries;
+    
+    private WorkflowEngine engine;
+    private Map<String, Object> context;
+    
+    @Setup
+    public void setUp() {
+        engine = new WorkflowEngine(null, null, null, null, null, null, null, null, null, null, new ObjectMapper(), null, null, null, null, null);
+        
+        context = new HashMap<>();
+        for (int i = 0; i < contextEntries; i++) {
+            if (i % 10 == 0) {
+                context.put("step_" + i, Map.of(
+                        "summary", "Result of step " + i,
+                        "scores", List.of(0.1 * i, 0.2 * i, 0.3 * i),
+                        "approved", i % 20 == 0));
+            } else {
+                context.put("field_" + i, "value " + i + " with some free text from the input document");
+            }
+        }
+    }
+    
+    @Benchmark
+    public String convertContextToJson() {
+        return engine.convertToJson(context);
+    }
+}
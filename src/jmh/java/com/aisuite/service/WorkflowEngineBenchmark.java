@@ -0,0 +1,129 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.aisuite.model.Workflow;
+import com.aisuite.model.WorkflowExecution;
+import com.aisuite.model.WorkflowStep;
+import com.aisuite.repository.StepExecutionRepository;
+import com.aisuite.repository.WorkflowExecutionRepository;
+import com.aisuite.repository.WorkflowRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Cost of dispatching a workflow through {@link WorkflowEngine} with an AI service that answers
+ * immediately, so that only graph building, scheduling and context handling are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorkflowEngineBenchmark {
+    
+    public enum Shape {
+        // Every step depends on the previous one
+        CHAIN,
+        // All steps share one stepOrder and run in parallel
+        FAN_OUT
+    }
+    
+    @Param({"10", "50"})
+    public int steps;
+    
+    @Param({"CHAIN", "FAN_OUT"})
+    public Shape shape;
+    
+    private ExecutorService stepExecutor;
+    private WorkflowEngine engine;
+    private Map<String, Object> input;
+    
+    @Setup
+    public void setUp() {
+        stepExecutor = Executors.newFixedThreadPool(8);
+        
+        Workflow workflow = new Workflow();
+        workflow.setId(1L);
+        workflow.setName("benchmark");
+        workflow.setUpdatedAt(LocalDateTime.now());
+        List<WorkflowStep> workflowSteps = new ArrayList<>();
+        for (int i = 0; i < steps; i++) {
+            WorkflowStep step = new WorkflowStep();
+            step.setId((long) i + 1);
+            step.setName("step " + i);
+            step.setStepOrder(shape == Shape.CHAIN ? i + 1 : 1);
+            step.setType(WorkflowStep.StepType.AI_PROCESSING);
+            step.setAiPrompt("Summarize step " + i);
+            workflowSteps.add(step);
+        }
+        workflow.setSteps(workflowSteps);
+        
+        WorkflowRepository workflowRepository = mock(WorkflowRepository.class);
+        when(workflowRepository.findWithStepsById(1L)).thenReturn(Optional.of(workflow));
+        when(workflowRepository.findUpdatedAtById(1L)).thenReturn(Optional.of(workflow.getUpdatedAt()));
+        WorkflowExecutionRepository executionRepository = mock(WorkflowExecutionRepository.class);
+        when(executionRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(executionRepository.releaseLease(any(), any())).thenReturn(1);
+        
+        engine = new WorkflowEngine(workflowRepository,
+                new WorkflowPlanCache(workflowRepository, mock(EntityManager.class)), executionRepository,
+                new StepExecutionWriter(mock(StepExecutionRepository.class), new SimpleMeterRegistry()),
+                mock(ExecutionStatsService.class), new InstantAiService(),
+                null, new ExecutionEventPublisher(), new ConditionCompiler(new ObjectMapper()),
+                null, new ObjectMapper(), stepExecutor, ObservationRegistry.NOOP,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), new ClusterNode(new AiConfig()), new AiConfig());
+        input = Map.of("customer", "ACME", "amount", 1250.0, "currency", "EUR");
+    }
+    
+    @TearDown
+    public void tearDown() {
+        stepExecutor.shutdownNow();
+    }
+    
+    @Benchmark
+    public WorkflowExecution executeWorkflow() {
+        return engine.executeWorkflow(1L, input);
+    }
+    
+    /**
+     * Answers every prompt without any I/O.
+     */
+    static class InstantAiService extends AiService {
+        
+        InstantAiService() {
+            this(new AiConfig());
+        }
+        
+        private InstantAiService(AiConfig config) {
+            super(config, new ObjectMapper(),
+                    new AiResponseCache(config, new SimpleMeterRegistry()),
+                    new AiRequestCoalescer(new SimpleMeterRegistry()),
+                    new AiRateLimiter(config, new SimpleMeterRegistry()),
+                    new SimpleMeterRegistry(), ObservationRegistry.NOOP);
+        }
+        
+        @Override
+        public String processWithAI(String prompt, Map<String, Object> context, TokenUsage usage) {
+            return "{\"summary\":\"done\"}";
+        }
+    }
+}
@@ -1,17 +1,17 @@
-package com.aisuite;
-
-import org.springframework.boot.SpringApplication;
-import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.scheduling.annotation.EnableAsync;
-import org.springframework.scheduling.annotation.EnableScheduling;
-
-@SpringBootApplication
-@EnableAsync
-@EnableScheduling
-public class AiBusinessAutomationApplication {
-
-    public static void main(String[] args) {
-        SpringApplication.run(AiBusinessAutomationApplication.class, args);
-    }
-}
-
+package com.aisuite;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@SpringBootApplication
+@EnableAsync
+@EnableScheduling
+public class AiBusinessAutomationApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(AiBusinessAutomationApplication.class, args);
+    }
+}
+
@@ -1,31 +1,216 @@
-package com.aisuite.config;
-
-import lombok.Data;
-import org.springframework.boot.context.properties.ConfigurationProperties;
-import org.springframework.context.annotation.Configuration;
-
-@Configuration
-@ConfigurationProperties(prefix = "ai")
-@Data
-public class AiConfig {
-    
-    private OpenAI openai = new OpenAI();
-    private Automation automation = new Automation();
-    
-    @Data
-    public static class OpenAI {
-        private String apiKey;
-        private String baseUrl = "https://api.openai.com/v1";
-        private String model = "gpt-3.5-turbo";
-        private Integer maxTokens = 1000;
-        private Double temperature = 0.7;
-    }
-    
-    @Data
-    public static class Automation {
-        private Integer maxRetries = 3;
-        private Integer timeoutSeconds = 30;
-        private Boolean enableLogging = true;
-    }
-}
-
+package com.aisuite.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "ai")
+@Data
+public class AiConfig {
+    
+    private OpenAI openai = new OpenAI();
+    private Automation automation = new Automation();
+    private Http http = new Http();
+    private Routing routing = new Routing();
+    private Cache cache = new Cache();
+    private Queue queue = new Queue();
+    private Batch batch = new Batch();
+    private Transform transform = new Transform();
+    private Payload payload = new Payload();
+    private Retention retention = new Retention();
+    private Triggers triggers = new Triggers();
+    private Cluster cluster = new Cluster();
+    
+    @Data
+    public static class OpenAI {
+        private String apiKey;
+        private String baseUrl = "https://api.openai.com/v1";
+        private String model = "gpt-3.5-turbo";
+        private Integer maxTokens = 1000;
+        private Double temperature = 0.7;
+        // Requests with temperature 0 are always cacheable; this opts the others in too
+        private Boolean cacheResponses = false;
+    }
+    
+    @Data
+    public static class Automation {
+        private Integer maxRetries = 3;
+        private Integer timeoutSeconds = 30;
+        private Boolean enableLogging = true;
+        private Integer maxInFlightRequests = 1000;
+        private Boolean coalesceRequests = true;
+        private Integer stepParallelism = 8;
+        private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+        // Provider quotas; zero or less disables the corresponding bucket
+        private Integer requestsPerMinute = 0;
+        private Integer tokensPerMinute = 0;
+        // Halve concurrency on 429/5xx and grow it back additively, between these bounds
+        private Boolean adaptiveConcurrency = true;
+        private Integer minConcurrency = 1;
+        private Long retryBaseDelayMs = 500L;
+        private Long retryMaxDelayMs = 30000L;
+        // Finished step records are buffered and inserted in batches at this interval
+        private Long stepFlushIntervalMs = 250L;
+    }
+    
+    @Data
+    public static class Http {
+        // Pooled connections per provider host; null uses automation.max-in-flight-requests
+        private Integer maxConnections;
+        // Requests waiting for a pooled connection; -1 does not limit them
+        private Integer pendingAcquireMaxCount = -1;
+        private Long pendingAcquireTimeoutMs = 30000L;
+        // Closed below the provider's keep-alive timeout so a reused connection is never one it just dropped
+        private Long maxIdleTimeMs = 30000L;
+        // Recycled periodically so DNS and load balancer changes are picked up
+        private Long maxLifeTimeMs = 300000L;
+        private Long evictIntervalMs = 15000L;
+        private Integer connectTimeoutMs = 5000;
+        private Long tlsHandshakeTimeoutMs = 10000L;
+        // Longest silence while a response is read, including before its first byte
+        private Long responseTimeoutMs = 60000L;
+        private Long writeTimeoutMs = 10000L;
+        // Negotiates HTTP/2 through ALPN on https base URLs, falling back to HTTP/1.1
+        private Boolean http2 = true;
+        // Plain-text HTTP/2 with prior knowledge, for http base URLs such as a local gateway
+        private Boolean h2c = false;
+        private Boolean compression = true;
+    }
+    
+    @Data
+    public static class Routing {
+        // Endpoints used besides ai.openai; fields left unset fall back to ai.openai's
+        private List<Endpoint> endpoints = new ArrayList<>();
+        // Recent successful calls per endpoint that its latency percentiles are computed over
+        private Integer latencyWindow = 100;
+        // Weight of the latest call in each endpoint's moving error rate
+        private Double errorRateAlpha = 0.1;
+        // Added to an endpoint's p95 per unit of error rate when ranking, e.g. 10% errors count as 100 ms
+        private Long errorPenaltyMs = 1000L;
+        // Share of calls sent to a random healthy endpoint so the others' latency stays current
+        private Double exploreRatio = 0.05;
+        // Sends a duplicate to the next endpoint once a call has run past this percentile of its endpoint's latency
+        private Boolean hedging = true;
+        private Double hedgePercentile = 0.95;
+        private Long hedgeMinDelayMs = 100L;
+        // Hedges as a share of calls, so a provider that slows down is not sent twice the load
+        private Double hedgeBudget = 0.1;
+        // Consecutive failures that open an endpoint's circuit, and how long it stays open before a trial call
+        private Integer circuitFailureThreshold = 5;
+        private Long circuitOpenMs = 30000L;
+    }
+    
+    @Data
+    public static class Endpoint {
+        private String name;
+        private String baseUrl;
+        private String apiKey;
+        private String model;
+    }
+    
+    @Data
+    public static class Queue {
+        private Integer maxConcurrentExecutions = 16;
+        private Integer maxConcurrentPerWorkflow = 4;
+        private Integer maxQueueDepth = 1000;
+        private Long pollIntervalMs = 200L;
+        private Integer retryAfterSeconds = 5;
+    }
+    
+    @Data
+    public static class Batch {
+        private Integer concurrency = 8;
+        // Largest concurrency a request may ask for
+        private Integer maxConcurrency = 64;
+        private Integer maxItems = 10000;
+        // Items per packed completion request; 1 sends every item on its own
+        private Integer packSize = 1;
+        private Integer maxPackSize = 50;
+        // Only inputs up to this many characters are packed together
+        private Integer packMaxChars = 500;
+    }
+    
+    @Data
+    public static class Transform {
+        // Worker threads for transformation chunks; 0 uses one per available core
+        private Integer parallelism = 0;
+        private Integer chunkSize = 5000;
+        // Rows kept in the step result when no output file is configured
+        private Integer maxResultRows = 1000;
+        // Step configurations may only read and write files below this directory
+        private String dataDirectory = "data";
+        
+        public int effectiveParallelism() {
+            return parallelism != null && parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        }
+    }
+    
+    @Data
+    public static class Payload {
+        // Smaller payloads are stored as-is
+        private Integer compressThresholdBytes = 1024;
+        // Larger payloads move to the blob directory, leaving only their hash in the row
+        private Integer offloadThresholdBytes = 64 * 1024;
+        private Integer compressionLevel = 6;
+        private String directory = "data/payloads";
+    }
+    
+    @Data
+    public static class Retention {
+        private Boolean enabled = true;
+        private String cron = "0 15 3 * * *";
+        // Policy for workflows without their own; a null limit does not apply
+        private Integer keepRuns;
+        private Integer keepDays = 90;
+        private Boolean keepFailures = false;
+        // Executions archived and deleted per transaction
+        private Integer batchSize = 1000;
+        private Integer maxBatchesPerRun = 500;
+        private String archiveDirectory = "data/archive";
+        // One node runs retention at a time; a crashed run's claim lapses after this long
+        private Long leaseMinutes = 60L;
+    }
+    
+    public enum ExecutionMode {
+        PLATFORM, VIRTUAL
+    }
+    
+    @Data
+    public static class Cache {
+        private Boolean enabled = true;
+        private Long ttlSeconds = 86400L;
+        private Integer maxEntries = 10000;
+        private Long maxBytes = 64L * 1024 * 1024;
+        // Optional directory for the on-disk tier; memory only when unset
+        private String diskDirectory;
+    }
+    
+    @Data
+    public static class Triggers {
+        // Fires cron and interval triggers on this instance; events are accepted either way
+        private Boolean enabled = true;
+        // How often schedules changed by other instances are picked up
+        private Long syncIntervalMs = 30000L;
+        // A trigger later than this is a misfire and follows its misfire policy
+        private Long misfireThresholdMs = 60000L;
+        // Most missed runs a CATCH_UP trigger starts at once
+        private Integer maxCatchUp = 10;
+        // Threads that fire due triggers; firing only queues the run
+        private Integer fireThreads = 2;
+    }
+    
+    @Data
+    public static class Cluster {
+        // Name of this instance among those sharing the database; host name and process id when unset
+        private String nodeId;
+        // A RUNNING execution whose node has not renewed its lease for this long is queued again
+        private Long leaseMs = 30000L;
+        private Long heartbeatIntervalMs = 5000L;
+        // Starts an execution gets before losing its node once more marks it FAILED instead of queueing it
+        private Integer maxAttempts = 3;
+    }
+}
@@ -0,0 +1,137 @@
+package com.aisuite.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Thread model for workflow runs, steps and request handling, selected by
+ * {@code ai.automation.execution-mode}. VIRTUAL needs Java 21; on older runtimes it falls back
+ * to the PLATFORM thread pools.
+ */
+@Configuration
+@Slf4j
+public class ExecutionConfig {
+    
+    private final boolean virtualThreads;
+    
+    public ExecutionConfig(AiConfig aiConfig) {
+        this.virtualThreads = useVirtualThreads(aiConfig.getAutomation().getExecutionMode());
+    }
+    
+    static boolean useVirtualThreads(AiConfig.ExecutionMode mode) {
+        if (mode != AiConfig.ExecutionMode.VIRTUAL) {
+            return false;
+        }
+        if (Runtime.version().feature() < 21) {
+            log.warn("Virtual threads need Java 21 (running {}), using platform thread pools",
+                    Runtime.version().feature());
+            return false;
+        }
+        return true;
+    }
+    
+    /**
+     * Executor behind {@code @Async}. Declared explicitly because defining {@link #stepExecutor}
+     * would otherwise make Boot back off from creating it.
+     */
+    @Bean(name = {"applicationTaskExecutor", "taskExecutor"})
+    public AsyncTaskExecutor applicationTaskExecutor(ThreadPoolTaskExecutorBuilder builder) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("workflow-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+        return builder.build();
+    }
+    
+    /**
+     * Executor on which queued executions run. Platform threads are sized to
+     * {@code ai.queue.max-concurrent-executions}, so every execution the queue counts as running
+     * has a thread; the short queue only takes runs handed over while a finishing one winds down.
+     */
+    @Bean
+    public AsyncTaskExecutor executionExecutor(AiConfig aiConfig) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("execution-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+        int limit = aiConfig.getQueue().getMaxConcurrentExecutions();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(limit);
+        executor.setMaxPoolSize(limit);
+        executor.setQueueCapacity(limit);
+        executor.setThreadNamePrefix("execution-");
+        return executor;
+    }
+    
+    /**
+     * Executor on which due cron and interval triggers fire. Firing only moves the due time on
+     * and queues the run, so a few threads of its own keep trigger lag independent of how busy
+     * the application executor is.
+     */
+    @Bean
+    public AsyncTaskExecutor triggerExecutor(AiConfig aiConfig) {
+        int threads = aiConfig.getTriggers().getFireThreads();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("trigger-");
+        return executor;
+    }
+    
+    /**
+     * Executor on which independent workflow steps run concurrently. Platform threads are bounded
+     * by {@code ai.automation.step-parallelism}; virtual threads are cheap enough to give every
+     * step its own, leaving the AI client's in-flight limit as the bound.
+     */
+    @Bean
+    public AsyncTaskExecutor stepExecutor(AiConfig aiConfig) {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("step-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+        int parallelism = aiConfig.getAutomation().getStepParallelism();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setThreadNamePrefix("step-");
+        return executor;
+    }
+    
+    /**
+     * Executor for the chunks of DATA_TRANSFORMATION steps. The work is CPU bound, so it always
+     * uses a pool of platform threads, one per core unless {@code ai.transform.parallelism} says
+     * otherwise.
+     */
+    @Bean
+    public AsyncTaskExecutor transformExecutor(AiConfig aiConfig) {
+        int parallelism = aiConfig.getTransform().effectiveParallelism();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setThreadNamePrefix("transform-");
+        return executor;
+    }
+    
+    /**
+     * Serves each Tomcat request on its own virtual thread, so a request waiting on a blocking
+     * AI call does not tie up a worker from the fixed connector pool.
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> {
+            if (virtualThreads) {
+                protocolHandler.setExecutor(new VirtualThreadTaskExecutor("tomcat-"));
+            }
+        };
+    }
+}
@@ -0,0 +1,20 @@
+package com.aisuite.config;
+
+import com.aisuite.service.ClusterNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.actuate.autoconfigure.metrics.MeterRegistryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+    
+    /**
+     * Tags every meter with the engine node that reports it, so the nodes sharing one queue can
+     * be told apart and summed up.
+     */
+    @Bean
+    public MeterRegistryCustomizer<MeterRegistry> nodeTag(ClusterNode clusterNode) {
+        return registry -> registry.config().commonTags("node", clusterNode.getId());
+    }
+}
@@ -1,63 +1,123 @@
-package com.aisuite.controller;
-
-import com.aisuite.service.AiService;
-import lombok.RequiredArgsConstructor;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.*;
-
-import java.util.HashMap;
-import java.util.Map;
-
-@RestController
-@RequestMapping("/ai")
-@RequiredArgsConstructor
-@CrossOrigin(origins = "*")
-public class AiController {
-    
-    private final AiService aiService;
-    
-    @PostMapping("/process")
-    public ResponseEntity<Map<String, Object>> processWithAI(
-            @RequestBody Map<String, Object> request) {
-        String prompt = (String) request.get("prompt");
-        @SuppressWarnings("unchecked")
-        Map<String, Object> context = (Map<String, Object>) request.getOrDefault("context", new HashMap<>());
-        
-        String result = aiService.processWithAI(prompt, context);
-        
-        Map<String, Object> response = new HashMap<>();
-        response.put("result", result);
-        response.put("success", true);
-        
-        return ResponseEntity.ok(response);
-    }
-    
-    @PostMapping("/analyze")
-    public ResponseEntity<Map<String, Object>> analyzeData(
-            @RequestBody Map<String, Object> request) {
-        String data = (String) request.get("data");
-        String analysisType = (String) request.getOrDefault("analysisType", "general");
-        
-        Map<String, Object> result = aiService.analyzeDataWithAI(data, analysisType);
-        result.put("success", true);
-        
-        return ResponseEntity.ok(result);
-    }
-    
-    @PostMapping("/decision")
-    public ResponseEntity<Map<String, Object>> generateDecision(
-            @RequestBody Map<String, Object> request) {
-        String scenario = (String) request.get("scenario");
-        @SuppressWarnings("unchecked")
-        Map<String, Object> parameters = (Map<String, Object>) request.getOrDefault("parameters", new HashMap<>());
-        
-        String decision = aiService.generateDecision(scenario, parameters);
-        
-        Map<String, Object> response = new HashMap<>();
-        response.put("decision", decision);
-        response.put("success", true);
-        
-        return ResponseEntity.ok(response);
-    }
-}
-
+package com.aisuite.controller;
+
+import com.aisuite.service.AiBatchService;
+import com.aisuite.service.AiService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/ai")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class AiController {
+    
+    private final AiService aiService;
+    private final AiBatchService aiBatchService;
+    
+    @PostMapping("/process")
+    public Mono<ResponseEntity<Map<String, Object>>> processWithAI(
+            @RequestBody Map<String, Object> request) {
+        String prompt = (String) request.get("prompt");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> context = (Map<String, Object>) request.getOrDefault("context", new HashMap<>());
+        
+        return aiService.processWithAIAsync(prompt, context)
+                .map(result -> {
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("result", result);
+                    response.put("success", true);
+                    return ResponseEntity.ok(response);
+                });
+    }
+    
+    /**
+     * Streams the completion as server-sent events: one {@code delta} event per chunk of
+     * content, then {@code done}, or {@code error} if the request fails midway.
+     */
+    @PostMapping(value = "/process/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Map<String, Object>>> streamWithAI(@RequestBody Map<String, Object> request) {
+        String prompt = (String) request.get("prompt");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> context = (Map<String, Object>) request.getOrDefault("context", new HashMap<>());
+        
+        return toEvents(aiService.streamWithAI(prompt, context));
+    }
+    
+    /**
+     * {@code GET} variant of {@link #streamWithAI} for browser {@code EventSource} clients.
+     */
+    @GetMapping(value = "/process/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Map<String, Object>>> streamWithAI(@RequestParam String prompt) {
+        return toEvents(aiService.streamWithAI(prompt, new HashMap<>()));
+    }
+    
+    private Flux<ServerSentEvent<Map<String, Object>>> toEvents(Flux<String> deltas) {
+        return deltas
+                .map(delta -> event("delta", Map.of("content", delta)))
+                .concatWith(Mono.just(event("done", Map.of("success", true))))
+                .onErrorResume(e -> Mono.just(event("error", Map.of("success", false, "error", String.valueOf(e.getMessage())))));
+    }
+    
+    private static ServerSentEvent<Map<String, Object>> event(String name, Map<String, Object> data) {
+        return ServerSentEvent.<Map<String, Object>>builder(data).event(name).build();
+    }
+    
+    @PostMapping("/analyze")
+    public Mono<ResponseEntity<Map<String, Object>>> analyzeData(
+            @RequestBody Map<String, Object> request) {
+        String data = (String) request.get("data");
+        String analysisType = (String) request.getOrDefault("analysisType", "general");
+        
+        return aiService.analyzeDataWithAIAsync(data, analysisType)
+                .map(result -> {
+                    result.put("success", true);
+                    return ResponseEntity.ok(result);
+                });
+    }
+    
+    /**
+     * Analyzes every entry of {@code items} and streams one JSON line per item as it completes,
+     * followed by a summary line.
+     */
+    @PostMapping(value = "/analyze/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Map<String, Object>> analyzeBatch(@RequestBody Map<String, Object> request) {
+        if (!(request.get("items") instanceof List<?> items)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "items must be a list");
+        }
+        String analysisType = (String) request.getOrDefault("analysisType", "general");
+        Integer concurrency = request.get("concurrency") instanceof Number n ? n.intValue() : null;
+        Integer packSize = request.get("packSize") instanceof Number n ? n.intValue() : null;
+        
+        List<String> inputs = items.stream().map(String::valueOf).toList();
+        return aiBatchService.analyzeBatch(inputs, analysisType, concurrency, packSize)
+                .onErrorMap(IllegalArgumentException.class,
+                        e -> new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage()));
+    }
+    
+    @PostMapping("/decision")
+    public Mono<ResponseEntity<Map<String, Object>>> generateDecision(
+            @RequestBody Map<String, Object> request) {
+        String scenario = (String) request.get("scenario");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> parameters = (Map<String, Object>) request.getOrDefault("parameters", new HashMap<>());
+        
+        return aiService.generateDecisionAsync(scenario, parameters)
+                .map(decision -> {
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("decision", decision);
+                    response.put("success", true);
+                    return ResponseEntity.ok(response);
+                });
+    }
+}
@@ -0,0 +1,28 @@
+package com.aisuite.controller;
+
+import com.aisuite.service.WorkflowTriggerService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/events")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class EventController {
+    
+    private final WorkflowTriggerService triggerService;
+    
+    /**
+     * Webhook for external systems: queues a run of every ACTIVE workflow with an EVENT trigger
+     * for {@code eventType}, passing the body as the event payload.
+     */
+    @PostMapping("/{eventType}")
+    public ResponseEntity<Map<String, Object>> publishEvent(
+            @PathVariable String eventType,
+            @RequestBody(required = false) Map<String, Object> payload) {
+        return ResponseEntity.accepted().body(triggerService.publishEvent(eventType, payload != null ? payload : Map.of()));
+    }
+}
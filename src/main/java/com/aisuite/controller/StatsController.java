@@ -0,0 +1,37 @@
+package com.aisuite.controller;
+
+import com.aisuite.service.DashboardStats;
+import com.aisuite.service.ExecutionQueueService;
+import com.aisuite.service.ExecutionStatsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/stats")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class StatsController {
+    
+    private final ExecutionStatsService executionStatsService;
+    private final ExecutionQueueService executionQueueService;
+    
+    /**
+     * Dashboard totals, timings and usage, read from running totals so the cost does not grow
+     * with execution history.
+     */
+    @GetMapping
+    public DashboardStats getStats() {
+        return executionStatsService.dashboard();
+    }
+    
+    /**
+     * Engine nodes sharing the execution queue, with their last heartbeat and workload.
+     */
+    @GetMapping("/nodes")
+    public List<Map<String, Object>> getNodes() {
+        return executionQueueService.nodes();
+    }
+}
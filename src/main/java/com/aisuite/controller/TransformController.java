@@ -0,0 +1,88 @@
+package com.aisuite.controller;
+
+import com.aisuite.service.DataTransformService;
+import com.aisuite.service.TransformResult;
+import com.aisuite.service.TransformSpec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/transform")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+@Slf4j
+public class TransformController {
+    
+    private final DataTransformService dataTransformService;
+    private final ObjectMapper objectMapper;
+    
+    /**
+     * Runs a transform pipeline over the request body, which is read as a stream so uploads of
+     * any size work. {@code config} is the step's {@code transform} object as JSON. The response
+     * is newline-delimited JSON: one line per output row (none when the pipeline aggregates or
+     * writes a file), then a summary line with {@code summary: true} and the run statistics.
+     */
+    @PostMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void transform(@RequestParam String config,
+                          @RequestParam(required = false) String format,
+                          HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+        TransformSpec spec;
+        try {
+            spec = objectMapper.readValue(config, TransformSpec.class);
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid transform config: " + e.getMessage());
+        }
+        if (spec.getSource().getFile() != null || spec.getSource().getContextKey() != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The request body is the transform source");
+        }
+        
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        Writer writer = response.getWriter();
+        DataTransformService.RowSink rows = dataTransformService.jsonLinesSink(writer);
+        try {
+            TransformResult result = dataTransformService.transform(spec, request.getInputStream(),
+                    format != null ? format : formatOf(request.getContentType()), rows::accept);
+            @SuppressWarnings("unchecked")
+            Map<String, Object> summary = objectMapper.convertValue(result, Map.class);
+            summary.put("summary", true);
+            rows.accept(List.of(summary));
+        } catch (IllegalArgumentException e) {
+            if (!response.isCommitted()) {
+                response.resetBuffer();
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+            }
+            // Rows have already been sent; report the failure as the last line
+            log.warn("Transform failed mid-stream: {}", e.getMessage());
+            rows.accept(List.of(Map.of("summary", true, "success", false, "error", e.getMessage())));
+        }
+        writer.flush();
+    }
+    
+    private static String formatOf(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        if (contentType.startsWith("text/csv")) {
+            return "csv";
+        }
+        if (contentType.startsWith("text/tab-separated-values")) {
+            return "tsv";
+        }
+        return "jsonl";
+    }
+}
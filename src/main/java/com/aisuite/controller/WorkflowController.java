@@ -1,68 +1,195 @@
-package com.aisuite.controller;
-
-import com.aisuite.model.Workflow;
-import com.aisuite.model.WorkflowExecution;
-import com.aisuite.service.WorkflowEngine;
-import com.aisuite.service.WorkflowService;
-import lombok.RequiredArgsConstructor;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.*;
-
-import java.util.List;
-import java.util.Map;
-
-@RestController
-@RequestMapping("/workflows")
-@RequiredArgsConstructor
-@CrossOrigin(origins = "*")
-public class WorkflowController {
-    
-    private final WorkflowService workflowService;
-    private final WorkflowEngine workflowEngine;
-    
-    @GetMapping
-    public ResponseEntity<List<Workflow>> getAllWorkflows() {
-        return ResponseEntity.ok(workflowService.getAllWorkflows());
-    }
-    
-    @GetMapping("/{id}")
-    public ResponseEntity<Workflow> getWorkflow(@PathVariable Long id) {
-        return workflowService.getWorkflowById(id)
-                .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
-    }
-    
-    @PostMapping
-    public ResponseEntity<Workflow> createWorkflow(@RequestBody Workflow workflow) {
-        return ResponseEntity.status(HttpStatus.CREATED)
-                .body(workflowService.createWorkflow(workflow));
-    }
-    
-    @PutMapping("/{id}")
-    public ResponseEntity<Workflow> updateWorkflow(
-            @PathVariable Long id, 
-            @RequestBody Workflow workflow) {
-        return ResponseEntity.ok(workflowService.updateWorkflow(id, workflow));
-    }
-    
-    @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteWorkflow(@PathVariable Long id) {
-        workflowService.deleteWorkflow(id);
-        return ResponseEntity.noContent().build();
-    }
-    
-    @PostMapping("/{id}/execute")
-    public ResponseEntity<WorkflowExecution> executeWorkflow(
-            @PathVariable Long id,
-            @RequestBody Map<String, Object> inputData) {
-        WorkflowExecution execution = workflowEngine.executeWorkflow(id, inputData);
-        return ResponseEntity.ok(execution);
-    }
-    
-    @GetMapping("/{id}/executions")
-    public ResponseEntity<List<WorkflowExecution>> getWorkflowExecutions(@PathVariable Long id) {
-        return ResponseEntity.ok(workflowService.getWorkflowExecutions(id));
-    }
-}
-
+package com.aisuite.controller;
+
+import com.aisuite.model.ExecutionDailyStats;
+import com.aisuite.model.StepExecution;
+import com.aisuite.model.Workflow;
+import com.aisuite.model.WorkflowExecution;
+import com.aisuite.model.WorkflowTrigger;
+import com.aisuite.service.ExecutionEventPublisher;
+import com.aisuite.service.ExecutionQueueService;
+import com.aisuite.service.InvalidTriggerException;
+import com.aisuite.service.QueueFullException;
+import com.aisuite.service.WorkflowService;
+import com.aisuite.service.WorkflowTriggerService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import reactor.core.publisher.Flux;
+
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/workflows")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class WorkflowController {
+    
+    private final WorkflowService workflowService;
+    private final ExecutionQueueService executionQueueService;
+    private final ExecutionEventPublisher executionEvents;
+    private final WorkflowTriggerService triggerService;
+    
+    @GetMapping
+    public ResponseEntity<List<Workflow>> getAllWorkflows() {
+        return ResponseEntity.ok(workflowService.getAllWorkflows());
+    }
+    
+    @GetMapping("/{id}")
+    public ResponseEntity<Workflow> getWorkflow(@PathVariable Long id) {
+        return workflowService.getWorkflowById(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    @PostMapping
+    public ResponseEntity<Workflow> createWorkflow(@RequestBody Workflow workflow) {
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(workflowService.createWorkflow(workflow));
+    }
+    
+    @PutMapping("/{id}")
+    public ResponseEntity<Workflow> updateWorkflow(
+            @PathVariable Long id, 
+            @RequestBody Workflow workflow) {
+        return ResponseEntity.ok(workflowService.updateWorkflow(id, workflow));
+    }
+    
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteWorkflow(@PathVariable Long id) {
+        workflowService.deleteWorkflow(id);
+        return ResponseEntity.noContent().build();
+    }
+    
+    @PostMapping("/{id}/execute")
+    public ResponseEntity<Map<String, Object>> executeWorkflow(
+            @PathVariable Long id,
+            @RequestBody Map<String, Object> inputData) {
+        WorkflowExecution execution = executionQueueService.submit(id, inputData);
+        URI location = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/workflows/executions/{executionId}")
+                .buildAndExpand(execution.getId())
+                .toUri();
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("executionId", execution.getId());
+        response.put("workflowId", id);
+        response.put("status", execution.getStatus());
+        
+        return ResponseEntity.accepted().location(location).body(response);
+    }
+    
+    @GetMapping("/executions/{executionId}")
+    public ResponseEntity<WorkflowExecution> getExecution(@PathVariable Long executionId) {
+        return workflowService.getExecutionById(executionId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * Live events for an execution: {@code step} status changes, {@code output} deltas from AI
+     * steps and a final {@code execution} event, after which the stream ends. Finished
+     * executions only get the final event.
+     */
+    @GetMapping(value = "/executions/{executionId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Map<String, Object>>> streamExecutionEvents(@PathVariable Long executionId) {
+        // Subscribe before reading the status so a run finishing in between is not missed
+        Flux<ExecutionEventPublisher.Event> events = executionEvents.subscribe(executionId);
+        WorkflowExecution execution = workflowService.getExecutionById(executionId)
+                .orElse(null);
+        if (execution == null) {
+            executionEvents.close(executionId, null);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Execution not found: " + executionId);
+        }
+        if (execution.getStatus() == WorkflowExecution.ExecutionStatus.COMPLETED
+                || execution.getStatus() == WorkflowExecution.ExecutionStatus.FAILED
+                || execution.getStatus() == WorkflowExecution.ExecutionStatus.CANCELLED) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("executionId", executionId);
+            data.put("status", execution.getStatus());
+            executionEvents.close(executionId, new ExecutionEventPublisher.Event("execution", data));
+        }
+        return events.map(event -> ServerSentEvent.<Map<String, Object>>builder(event.data())
+                .event(event.type())
+                .build());
+    }
+    
+    @GetMapping("/executions/{executionId}/steps")
+    public ResponseEntity<List<StepExecution>> getStepExecutions(@PathVariable Long executionId) {
+        return ResponseEntity.ok(workflowService.getStepExecutions(executionId));
+    }
+    
+    @GetMapping("/steps/{stepId}/history")
+    public ResponseEntity<List<StepExecution>> getStepHistory(
+            @PathVariable Long stepId,
+            @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(workflowService.getStepHistory(stepId, limit));
+    }
+    
+    @GetMapping("/{id}/executions")
+    public ResponseEntity<Map<String, Object>> getWorkflowExecutions(
+            @PathVariable Long id,
+            @RequestParam(required = false) WorkflowExecution.ExecutionStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long before,
+            @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(workflowService.getWorkflowExecutions(id, status, from, to, before, limit));
+    }
+    
+    @GetMapping("/{id}/stats/daily")
+    public ResponseEntity<List<ExecutionDailyStats>> getDailyStats(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "30") int days) {
+        return ResponseEntity.ok(workflowService.getDailyStats(id, days));
+    }
+    
+    @GetMapping("/{id}/triggers")
+    public ResponseEntity<List<WorkflowTrigger>> getTriggers(@PathVariable Long id) {
+        return ResponseEntity.ok(triggerService.getTriggers(id));
+    }
+    
+    @PostMapping("/{id}/triggers")
+    public ResponseEntity<WorkflowTrigger> createTrigger(
+            @PathVariable Long id,
+            @RequestBody WorkflowTrigger trigger) {
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(triggerService.createTrigger(id, trigger));
+    }
+    
+    @DeleteMapping("/triggers/{triggerId}")
+    public ResponseEntity<Void> deleteTrigger(@PathVariable Long triggerId) {
+        triggerService.deleteTrigger(triggerId);
+        return ResponseEntity.noContent().build();
+    }
+    
+    @ExceptionHandler(InvalidTriggerException.class)
+    public ResponseEntity<Map<String, Object>> handleInvalidTrigger(InvalidTriggerException e) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("error", e.getMessage());
+        response.put("success", false);
+        
+        return ResponseEntity.badRequest().body(response);
+    }
+    
+    @ExceptionHandler(QueueFullException.class)
+    public ResponseEntity<Map<String, Object>> handleQueueFull(QueueFullException e) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("error", e.getMessage());
+        response.put("success", false);
+        
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(response);
+    }
+}
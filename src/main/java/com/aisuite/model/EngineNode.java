@@ -0,0 +1,36 @@
+package com.aisuite.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * An engine instance working off the shared execution queue, as of its last heartbeat. Nodes
+ * whose heartbeat is older than {@code ai.cluster.lease-ms} are considered gone.
+ */
+@Entity
+@Table(name = "engine_nodes")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EngineNode {
+    
+    @Id
+    @Column(name = "node_id", length = 100)
+    private String nodeId;
+    
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+    
+    @Column(name = "heartbeat_at", nullable = false)
+    private LocalDateTime heartbeatAt;
+    
+    @Column(name = "running_executions")
+    private Integer runningExecutions;
+    
+    @Column(name = "executions_started")
+    private Long executionsStarted;
+}
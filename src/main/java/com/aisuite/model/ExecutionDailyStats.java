@@ -0,0 +1,54 @@
+package com.aisuite.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Roll-up of one workflow's executions on one day, written once the day is over and all of its
+ * executions have finished. It outlives the raw rows, which retention may archive afterwards.
+ */
+@Entity
+@Table(name = "execution_daily_stats", uniqueConstraints =
+        @UniqueConstraint(name = "uk_daily_stats_workflow_day", columnNames = {"workflow_id", "execution_day"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExecutionDailyStats {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "workflow_id", nullable = false)
+    private Long workflowId;
+    
+    @Column(name = "execution_day", nullable = false)
+    private LocalDate day;
+    
+    private long executions;
+    
+    private long completed;
+    
+    private long failed;
+    
+    private long cancelled;
+    
+    @Column(name = "failure_rate")
+    private double failureRate;
+    
+    @Column(name = "avg_duration_ms")
+    private Long avgDurationMs;
+    
+    @Column(name = "p50_duration_ms")
+    private Long p50DurationMs;
+    
+    @Column(name = "p95_duration_ms")
+    private Long p95DurationMs;
+    
+    @Column(name = "max_duration_ms")
+    private Long maxDurationMs;
+}
@@ -0,0 +1,38 @@
+package com.aisuite.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * One bucket of a workflow's execution time histogram. Buckets are logarithmic, so a handful of
+ * rows per workflow gives percentiles within a few percent at any history size.
+ */
+@Entity
+@Table(name = "execution_duration_buckets")
+@IdClass(ExecutionDurationBucket.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExecutionDurationBucket {
+    
+    @Id
+    @Column(name = "workflow_id")
+    private Long workflowId;
+    
+    @Id
+    private Integer bucket;
+    
+    private long executions;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long workflowId;
+        private Integer bucket;
+    }
+}
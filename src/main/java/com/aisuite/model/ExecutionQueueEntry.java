@@ -0,0 +1,36 @@
+package com.aisuite.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A queued workflow execution waiting for a worker. The row is deleted when a worker claims it,
+ * at which point the execution itself moves to RUNNING.
+ */
+@Entity
+@Table(name = "execution_queue")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExecutionQueueEntry {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "execution_id", nullable = false, unique = true)
+    private Long executionId;
+    
+    @Column(name = "workflow_id", nullable = false)
+    private Long workflowId;
+    
+    @Column(name = "enqueued_at", nullable = false)
+    private LocalDateTime enqueuedAt;
+    
+    @Column(nullable = false)
+    private Integer attempts;
+}
@@ -0,0 +1,17 @@
+package com.aisuite.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * An execution without its input and output payloads, for history listings.
+ */
+public record ExecutionSummary(
+        Long id,
+        Long workflowId,
+        WorkflowExecution.ExecutionStatus status,
+        LocalDateTime queuedAt,
+        LocalDateTime startedAt,
+        LocalDateTime completedAt,
+        Long executionTimeMs,
+        String errorMessage) {
+}
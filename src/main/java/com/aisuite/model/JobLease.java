@@ -0,0 +1,31 @@
+package com.aisuite.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Claim on a background job that must run on one node at a time, such as retention. A node
+ * takes the row over once {@code expiresAt} has passed, so a crashed holder does not block the
+ * job for longer than its lease.
+ */
+@Entity
+@Table(name = "job_leases")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobLease {
+    
+    @Id
+    @Column(name = "name", length = 100)
+    private String name;
+    
+    @Column(name = "holder", length = 100, nullable = false)
+    private String holder;
+    
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
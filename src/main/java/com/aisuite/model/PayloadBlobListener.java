@@ -0,0 +1,25 @@
+package com.aisuite.model;
+
+import com.aisuite.service.PayloadStore;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Records the payload blobs an execution refers to in indexed columns, so retention can find
+ * the remaining references to a blob without reading every payload. The store remembers the
+ * key of each payload it hashed, so unchanged payloads and the converter's write reuse it.
+ * Hibernate obtains the instance from Spring, which injects the store.
+ */
+@RequiredArgsConstructor
+public class PayloadBlobListener {
+    
+    private final PayloadStore payloadStore;
+    
+    @PrePersist
+    @PreUpdate
+    void recordBlobs(WorkflowExecution execution) {
+        execution.setInputBlob(payloadStore.blobKeyFor(execution.getInputData()));
+        execution.setOutputBlob(payloadStore.blobKeyFor(execution.getOutputData()));
+    }
+}
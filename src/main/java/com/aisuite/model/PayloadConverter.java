@@ -0,0 +1,27 @@
+package com.aisuite.model;
+
+import com.aisuite.service.PayloadStore;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Compresses or offloads execution payloads on write and restores them on read, so entities
+ * keep exposing plain JSON. Hibernate obtains the instance from Spring, which injects the store.
+ */
+@Converter
+@RequiredArgsConstructor
+public class PayloadConverter implements AttributeConverter<String, byte[]> {
+    
+    private final PayloadStore payloadStore;
+    
+    @Override
+    public byte[] convertToDatabaseColumn(String payload) {
+        return payloadStore.encode(payload);
+    }
+    
+    @Override
+    public String convertToEntityAttribute(byte[] stored) {
+        return payloadStore.decode(stored);
+    }
+}
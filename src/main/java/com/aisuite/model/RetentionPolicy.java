@@ -0,0 +1,31 @@
+package com.aisuite.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * How long a workflow's finished executions stay in the database before they are archived.
+ * An execution is archived once it falls outside either limit; a null limit does not apply.
+ * Keeping no runs but keeping failures retains only the failed ones.
+ */
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RetentionPolicy {
+    
+    // Number of newest executions to keep
+    @Column(name = "retention_keep_runs")
+    private Integer keepRuns;
+    
+    // Executions started within this many days are kept
+    @Column(name = "retention_keep_days")
+    private Integer keepDays;
+    
+    // Failed executions are kept regardless of the limits
+    @Column(name = "retention_keep_failures")
+    private Boolean keepFailures;
+}
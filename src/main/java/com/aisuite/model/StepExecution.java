@@ -0,0 +1,67 @@
+package com.aisuite.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * What happened to one step in one execution. The step definition in {@link WorkflowStep} is
+ * never written during a run; every run records its own step state here instead.
+ */
+@Entity
+@Table(name = "step_executions", indexes = {
+        @Index(name = "idx_step_executions_execution", columnList = "execution_id"),
+        @Index(name = "idx_step_executions_step_started", columnList = "step_id, started_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StepExecution {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "execution_id", nullable = false)
+    private Long executionId;
+    
+    @Column(name = "step_id")
+    private Long stepId;
+    
+    @Column(name = "step_name")
+    private String stepName;
+    
+    @Column(name = "step_order")
+    private Integer stepOrder;
+    
+    @Enumerated(EnumType.STRING)
+    private WorkflowStep.StepStatus status;
+    
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+    
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+    
+    @Column(name = "duration_ms")
+    private Long durationMs;
+    
+    @Column(columnDefinition = "TEXT")
+    private String result;
+    
+    // Provider completions made by the step; cached answers are not counted
+    @Column(name = "ai_calls")
+    private Integer aiCalls;
+    
+    @Column(name = "prompt_tokens")
+    private Long promptTokens;
+    
+    @Column(name = "completion_tokens")
+    private Long completionTokens;
+    
+    @Column(name = "total_tokens")
+    private Long totalTokens;
+}
@@ -1,58 +1,63 @@
-package com.aisuite.model;
-
-import jakarta.persistence.*;
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-import java.time.LocalDateTime;
-import java.util.List;
-
-@Entity
-@Table(name = "workflows")
-@Data
-@NoArgsConstructor
-@AllArgsConstructor
-public class Workflow {
-    
-    @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Long id;
-    
-    @Column(nullable = false)
-    private String name;
-    
-    @Column(length = 1000)
-    private String description;
-    
-    @Enumerated(EnumType.STRING)
-    private WorkflowStatus status;
-    
-    @OneToMany(mappedBy = "workflow", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
-    private List<WorkflowStep> steps;
-    
-    @Column(name = "created_at")
-    private LocalDateTime createdAt;
-    
-    @Column(name = "updated_at")
-    private LocalDateTime updatedAt;
-    
-    @Column(name = "last_executed_at")
-    private LocalDateTime lastExecutedAt;
-    
-    @PrePersist
-    protected void onCreate() {
-        createdAt = LocalDateTime.now();
-        updatedAt = LocalDateTime.now();
-    }
-    
-    @PreUpdate
-    protected void onUpdate() {
-        updatedAt = LocalDateTime.now();
-    }
-    
-    public enum WorkflowStatus {
-        DRAFT, ACTIVE, PAUSED, COMPLETED, FAILED
-    }
-}
-
+package com.aisuite.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Entity
+@Table(name = "workflows")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Workflow {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false)
+    private String name;
+    
+    @Column(length = 1000)
+    private String description;
+    
+    @Enumerated(EnumType.STRING)
+    private WorkflowStatus status;
+    
+    @OneToMany(mappedBy = "workflow", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
+    @OrderBy("stepOrder ASC, id ASC")
+    private List<WorkflowStep> steps;
+    
+    // Falls back to the ai.retention defaults when unset
+    @Embedded
+    private RetentionPolicy retention;
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    @Column(name = "last_executed_at")
+    private LocalDateTime lastExecutedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+    
+    public enum WorkflowStatus {
+        DRAFT, ACTIVE, PAUSED, COMPLETED, FAILED
+    }
+}
+
@@ -1,51 +1,95 @@
-package com.aisuite.model;
-
-import jakarta.persistence.*;
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-import java.time.LocalDateTime;
-import java.util.Map;
-
-@Entity
-@Table(name = "workflow_executions")
-@Data
-@NoArgsConstructor
-@AllArgsConstructor
-public class WorkflowExecution {
-    
-    @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Long id;
-    
-    @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "workflow_id", nullable = false)
-    private Workflow workflow;
-    
-    @Enumerated(EnumType.STRING)
-    private ExecutionStatus status;
-    
-    @Column(name = "started_at")
-    private LocalDateTime startedAt;
-    
-    @Column(name = "completed_at")
-    private LocalDateTime completedAt;
-    
-    @Column(columnDefinition = "TEXT")
-    private String inputData;
-    
-    @Column(columnDefinition = "TEXT")
-    private String outputData;
-    
-    @Column(length = 1000)
-    private String errorMessage;
-    
-    @Column(name = "execution_time_ms")
-    private Long executionTimeMs;
-    
-    public enum ExecutionStatus {
-        RUNNING, COMPLETED, FAILED, CANCELLED
-    }
-}
-
+package com.aisuite.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Entity
+@Table(name = "workflow_executions", indexes = {
+        // Keyset pages of one workflow's history, newest first
+        @Index(name = "idx_executions_workflow_id", columnList = "workflow_id, id"),
+        @Index(name = "idx_executions_workflow_started", columnList = "workflow_id, started_at"),
+        @Index(name = "idx_executions_status", columnList = "status"),
+        // Expired leases of RUNNING executions, looked up on every heartbeat
+        @Index(name = "idx_executions_status_lease", columnList = "status, lease_expires_at"),
+        // Remaining references to a payload blob, checked before retention deletes it
+        @Index(name = "idx_executions_input_blob", columnList = "input_blob"),
+        @Index(name = "idx_executions_output_blob", columnList = "output_blob")
+})
+@EntityListeners(PayloadBlobListener.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkflowExecution {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "workflow_id", nullable = false)
+    private Workflow workflow;
+    
+    @Enumerated(EnumType.STRING)
+    private ExecutionStatus status;
+    
+    @Column(name = "queued_at")
+    private LocalDateTime queuedAt;
+    
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+    
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+    
+    @Convert(converter = PayloadConverter.class)
+    @Column(columnDefinition = "BLOB")
+    private String inputData;
+    
+    @Convert(converter = PayloadConverter.class)
+    @Column(columnDefinition = "BLOB")
+    private String outputData;
+    
+    // Keys of the blobs the payloads were offloaded to, if any
+    @JsonIgnore
+    @Column(name = "input_blob", length = 64)
+    private String inputBlob;
+    
+    @JsonIgnore
+    @Column(name = "output_blob", length = 64)
+    private String outputBlob;
+    
+    @Column(length = 1000)
+    private String errorMessage;
+    
+    @Column(name = "execution_time_ms")
+    private Long executionTimeMs;
+    
+    // Instance running the execution, which renews the lease while it does
+    @Column(name = "node_id", length = 100)
+    private String nodeId;
+    
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+    
+    // Times a node has started the execution, counting starts on nodes that then lost it
+    private Integer attempts;
+    
+    // Reads the id from the lazy reference without loading the workflow
+    @JsonProperty("workflowId")
+    public Long getWorkflowId() {
+        return workflow != null ? workflow.getId() : null;
+    }
+    
+    public enum ExecutionStatus {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED
+    }
+}
+
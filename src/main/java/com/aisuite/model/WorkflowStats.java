@@ -0,0 +1,53 @@
+package com.aisuite.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Running totals of one workflow's finished executions. Each finished execution adds to the row
+ * with a single relative update, so the totals never require reading the execution history and
+ * survive retention archiving it.
+ */
+@Entity
+@Table(name = "workflow_stats")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkflowStats {
+    
+    @Id
+    @Column(name = "workflow_id")
+    private Long workflowId;
+    
+    private long completed;
+    
+    private long failed;
+    
+    private long cancelled;
+    
+    // Sum over executions with a recorded duration, for the mean
+    @Column(name = "duration_count")
+    private long durationCount;
+    
+    @Column(name = "duration_sum_ms")
+    private long durationSumMs;
+    
+    @Column(name = "ai_calls")
+    private long aiCalls;
+    
+    @Column(name = "prompt_tokens")
+    private long promptTokens;
+    
+    @Column(name = "completion_tokens")
+    private long completionTokens;
+    
+    @Column(name = "total_tokens")
+    private long totalTokens;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
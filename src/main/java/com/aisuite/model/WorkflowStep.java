@@ -1,52 +1,54 @@
-package com.aisuite.model;
-
-import jakarta.persistence.*;
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-@Entity
-@Table(name = "workflow_steps")
-@Data
-@NoArgsConstructor
-@AllArgsConstructor
-public class WorkflowStep {
-    
-    @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
-    private Long id;
-    
-    @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "workflow_id", nullable = false)
-    private Workflow workflow;
-    
-    @Column(nullable = false)
-    private String name;
-    
-    @Column(nullable = false)
-    private Integer stepOrder;
-    
-    @Enumerated(EnumType.STRING)
-    private StepType type;
-    
-    @Column(columnDefinition = "TEXT")
-    private String configuration;
-    
-    @Enumerated(EnumType.STRING)
-    private StepStatus status;
-    
-    @Column(columnDefinition = "TEXT")
-    private String aiPrompt;
-    
-    @Column(columnDefinition = "TEXT")
-    private String result;
-    
-    public enum StepType {
-        AI_PROCESSING, DATA_TRANSFORMATION, NOTIFICATION, CONDITIONAL, MANUAL_REVIEW
-    }
-    
-    public enum StepStatus {
-        PENDING, IN_PROGRESS, COMPLETED, FAILED, SKIPPED
-    }
-}
-
+package com.aisuite.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "workflow_steps")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkflowStep {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "workflow_id", nullable = false)
+    private Workflow workflow;
+    
+    @Column(nullable = false)
+    private String name;
+    
+    @Column(nullable = false)
+    private Integer stepOrder;
+    
+    // Comma-separated stepOrder values this step waits for. When empty the step waits for the
+    // previous stepOrder, so steps sharing a stepOrder form a stage that runs in parallel.
+    @Column(name = "depends_on")
+    private String dependsOn;
+    
+    @Enumerated(EnumType.STRING)
+    private StepType type;
+    
+    @Column(columnDefinition = "TEXT")
+    private String configuration;
+    
+    @Column(columnDefinition = "TEXT")
+    private String aiPrompt;
+    
+    public enum StepType {
+        AI_PROCESSING, DATA_TRANSFORMATION, NOTIFICATION, CONDITIONAL, MANUAL_REVIEW
+    }
+    
+    // State of a step within one run, recorded in StepExecution
+    public enum StepStatus {
+        PENDING, IN_PROGRESS, COMPLETED, FAILED, SKIPPED
+    }
+}
+
@@ -0,0 +1,83 @@
+package com.aisuite.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Starts a workflow without a manual execute call: on a cron schedule, at a fixed interval, or
+ * whenever an event of {@code eventType} is posted. Time-based triggers carry the next time they
+ * are due, which is also what instances compare-and-set to decide which of them fires it.
+ */
+@Entity
+@Table(name = "workflow_triggers", indexes = {
+        @Index(name = "idx_triggers_workflow_id", columnList = "workflow_id"),
+        @Index(name = "idx_triggers_event_type", columnList = "event_type")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkflowTrigger {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "workflow_id", nullable = false)
+    private Long workflowId;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private TriggerType type;
+    
+    // Spring cron syntax with seconds, in the server's time zone, e.g. "0 0 * * * *"
+    @Column(name = "cron_expression")
+    private String cronExpression;
+    
+    @Column(name = "interval_seconds")
+    private Long intervalSeconds;
+    
+    @Column(name = "event_type")
+    private String eventType;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "misfire_policy")
+    private MisfirePolicy misfirePolicy;
+    
+    // JSON object passed as the input of scheduled runs
+    @Column(name = "input_data", length = 4000)
+    private String inputData;
+    
+    @Column(nullable = false)
+    private Boolean enabled;
+    
+    @Column(name = "next_fire_at")
+    private LocalDateTime nextFireAt;
+    
+    @Column(name = "last_fired_at")
+    private LocalDateTime lastFiredAt;
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+    
+    public enum TriggerType {
+        CRON, INTERVAL, EVENT
+    }
+    
+    /**
+     * What a time-based trigger does when it is found more than {@code ai.triggers.misfire-threshold-ms}
+     * overdue, such as after every instance was down: run once now, skip to the next due time,
+     * or run each missed time up to {@code ai.triggers.max-catch-up}.
+     */
+    public enum MisfirePolicy {
+        FIRE_ONCE, SKIP, CATCH_UP
+    }
+}
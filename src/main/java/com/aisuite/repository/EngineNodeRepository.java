@@ -0,0 +1,21 @@
+package com.aisuite.repository;
+
+import com.aisuite.model.EngineNode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface EngineNodeRepository extends JpaRepository<EngineNode, String> {
+    List<EngineNode> findAllByOrderByNodeIdAsc();
+    long countByHeartbeatAtAfter(LocalDateTime since);
+    
+    @Modifying
+    @Query("delete from EngineNode n where n.heartbeatAt < :before")
+    int deleteByHeartbeatAtBefore(@Param("before") LocalDateTime before);
+}
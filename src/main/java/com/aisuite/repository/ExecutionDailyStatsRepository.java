@@ -0,0 +1,13 @@
+package com.aisuite.repository;
+
+import com.aisuite.model.ExecutionDailyStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface ExecutionDailyStatsRepository extends JpaRepository<ExecutionDailyStats, Long> {
+    List<ExecutionDailyStats> findByWorkflowIdAndDayGreaterThanEqualOrderByDayAsc(Long workflowId, LocalDate from);
+}
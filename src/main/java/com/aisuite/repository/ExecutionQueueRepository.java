@@ -0,0 +1,32 @@
+package com.aisuite.repository;
+
+import com.aisuite.model.ExecutionQueueEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ExecutionQueueRepository extends JpaRepository<ExecutionQueueEntry, Long> {
+    boolean existsByExecutionId(Long executionId);
+    
+    /**
+     * Locks up to {@code limit} entries from the head of the queue for the current transaction.
+     * Entries another node has locked are skipped rather than waited for, so nodes polling at the
+     * same time each get a different batch.
+     */
+    @Query(value = "select * from execution_queue order by id limit :limit for update skip locked",
+            nativeQuery = true)
+    List<ExecutionQueueEntry> lockHead(@Param("limit") int limit);
+    
+    /**
+     * Removes entries this transaction has locked, once they are claimed.
+     */
+    @Modifying
+    @Query("delete from ExecutionQueueEntry e where e.id in :ids")
+    int claim(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,18 @@
+package com.aisuite.repository;
+
+import com.aisuite.model.StepExecution;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface StepExecutionRepository extends JpaRepository<StepExecution, Long>, StepExecutionRepositoryCustom {
+    List<StepExecution> findByExecutionIdOrderByStepOrderAscStepIdAsc(Long executionId);
+    
+    /**
+     * Most recent runs of a step, newest first, for latency and token history.
+     */
+    List<StepExecution> findByStepIdOrderByStartedAtDesc(Long stepId, Pageable pageable);
+}
@@ -0,0 +1,13 @@
+package com.aisuite.repository;
+
+import com.aisuite.model.StepExecution;
+
+import java.util.Collection;
+
+public interface StepExecutionRepositoryCustom {
+    
+    /**
+     * Inserts the records with JDBC batch statements. Ids are not read back.
+     */
+    void insertAll(Collection<StepExecution> stepExecutions);
+}
@@ -0,0 +1,59 @@
+package com.aisuite.repository;
+
+import com.aisuite.model.StepExecution;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Writes step executions with plain JDBC batches. A run produces one row per step, and going
+ * through the persistence context would add an identity round trip for each of them. Each call
+ * is one transaction, so a batch that fails writes none of its rows.
+ */
+@RequiredArgsConstructor
+class StepExecutionRepositoryImpl implements StepExecutionRepositoryCustom {
+    
+    private static final int BATCH_SIZE = 100;
+    
+    private static final String INSERT = "insert into step_executions (execution_id, step_id, step_name, step_order, " +
+            "status, started_at, completed_at, duration_ms, result, ai_calls, prompt_tokens, completion_tokens, total_tokens) " +
+            "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    @Override
+    @Transactional
+    public void insertAll(Collection<StepExecution> stepExecutions) {
+        if (stepExecutions.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT, stepExecutions, BATCH_SIZE, StepExecutionRepositoryImpl::bind);
+    }
+    
+    private static void bind(PreparedStatement statement, StepExecution step) throws SQLException {
+        statement.setLong(1, step.getExecutionId());
+        statement.setObject(2, step.getStepId(), Types.BIGINT);
+        statement.setString(3, step.getStepName());
+        statement.setObject(4, step.getStepOrder(), Types.INTEGER);
+        statement.setString(5, step.getStatus() != null ? step.getStatus().name() : null);
+        statement.setTimestamp(6, timestamp(step.getStartedAt()));
+        statement.setTimestamp(7, timestamp(step.getCompletedAt()));
+        statement.setObject(8, step.getDurationMs(), Types.BIGINT);
+        statement.setString(9, step.getResult());
+        statement.setObject(10, step.getAiCalls(), Types.INTEGER);
+        statement.setObject(11, step.getPromptTokens(), Types.BIGINT);
+        statement.setObject(12, step.getCompletionTokens(), Types.BIGINT);
+        statement.setObject(13, step.getTotalTokens(), Types.BIGINT);
+    }
+    
+    private static Timestamp timestamp(LocalDateTime time) {
+        return time != null ? Timestamp.valueOf(time) : null;
+    }
+}
@@ -1,14 +1,62 @@
-package com.aisuite.repository;
-
-import com.aisuite.model.WorkflowExecution;
-import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.stereotype.Repository;
-
-import java.util.List;
-
-@Repository
-public interface WorkflowExecutionRepository extends JpaRepository<WorkflowExecution, Long> {
-    List<WorkflowExecution> findByWorkflowId(Long workflowId);
-    List<WorkflowExecution> findByStatus(WorkflowExecution.ExecutionStatus status);
-}
-
+package com.aisuite.repository;
+
+import com.aisuite.model.WorkflowExecution;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface WorkflowExecutionRepository extends JpaRepository<WorkflowExecution, Long>, WorkflowExecutionRepositoryCustom {
+    List<WorkflowExecution> findByStatus(WorkflowExecution.ExecutionStatus status);
+    
+    /**
+     * Moves a claimed execution from QUEUED to RUNNING under a lease held by {@code nodeId},
+     * counting the attempt. Returns 0 when the execution is no longer QUEUED, for instance
+     * because it already finished on a node that lost its lease.
+     */
+    @Modifying
+    @Query("update WorkflowExecution e set e.status = com.aisuite.model.WorkflowExecution$ExecutionStatus.RUNNING, " +
+            "e.nodeId = :nodeId, e.leaseExpiresAt = :leaseExpiresAt, e.attempts = coalesce(e.attempts, 0) + 1 " +
+            "where e.id = :id and e.status = com.aisuite.model.WorkflowExecution$ExecutionStatus.QUEUED")
+    int lease(@Param("id") Long id, @Param("nodeId") String nodeId, @Param("leaseExpiresAt") LocalDateTime leaseExpiresAt);
+    
+    /**
+     * Extends the leases of every execution {@code nodeId} is running, in one statement.
+     */
+    @Modifying
+    @Query("update WorkflowExecution e set e.leaseExpiresAt = :leaseExpiresAt where e.nodeId = :nodeId " +
+            "and e.status = com.aisuite.model.WorkflowExecution$ExecutionStatus.RUNNING and e.leaseExpiresAt is not null")
+    int renewLeases(@Param("nodeId") String nodeId, @Param("leaseExpiresAt") LocalDateTime leaseExpiresAt);
+    
+    /**
+     * Gives up the lease of an execution that {@code nodeId} is about to finish, which also locks
+     * its row until the final status commits. Returns 0 when the node no longer holds it because
+     * the lease expired and the execution was queued again.
+     */
+    @Modifying
+    @Query("update WorkflowExecution e set e.leaseExpiresAt = null where e.id = :id and e.nodeId = :nodeId " +
+            "and e.status = com.aisuite.model.WorkflowExecution$ExecutionStatus.RUNNING")
+    int releaseLease(@Param("id") Long id, @Param("nodeId") String nodeId);
+    
+    @Query("select e.id from WorkflowExecution e " +
+            "where e.status = com.aisuite.model.WorkflowExecution$ExecutionStatus.RUNNING and e.leaseExpiresAt < :now " +
+            "order by e.id")
+    List<Long> findExpiredLeases(@Param("now") LocalDateTime now, Pageable pageable);
+    
+    /**
+     * Puts a RUNNING execution whose lease expired back to QUEUED. Returns 1 for the node that
+     * takes it over and 0 for any other that found it expired at the same time.
+     */
+    @Modifying
+    @Query("update WorkflowExecution e set e.status = com.aisuite.model.WorkflowExecution$ExecutionStatus.QUEUED, " +
+            "e.nodeId = null, e.leaseExpiresAt = null " +
+            "where e.id = :id and e.status = com.aisuite.model.WorkflowExecution$ExecutionStatus.RUNNING " +
+            "and e.leaseExpiresAt < :now")
+    int releaseExpiredLease(@Param("id") Long id, @Param("now") LocalDateTime now);
+}
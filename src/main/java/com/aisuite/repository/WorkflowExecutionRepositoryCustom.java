@@ -0,0 +1,20 @@
+package com.aisuite.repository;
+
+import com.aisuite.model.ExecutionSummary;
+import com.aisuite.model.WorkflowExecution;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface WorkflowExecutionRepositoryCustom {
+    
+    /**
+     * One page of execution summaries, newest first, using keyset pagination: pass the last id
+     * of the previous page as {@code beforeId}. Null filters are left out of the query.
+     *
+     * @param from inclusive lower bound on {@code startedAt}
+     * @param to exclusive upper bound on {@code startedAt}
+     */
+    List<ExecutionSummary> findSummaries(Long workflowId, WorkflowExecution.ExecutionStatus status,
+                                         LocalDateTime from, LocalDateTime to, Long beforeId, int limit);
+}
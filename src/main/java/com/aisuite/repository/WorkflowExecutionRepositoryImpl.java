@@ -0,0 +1,58 @@
+package com.aisuite.repository;
+
+import com.aisuite.model.ExecutionSummary;
+import com.aisuite.model.WorkflowExecution;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the history query from the filters that are actually set, so that every predicate can
+ * use an index. A catch-all {@code (:x is null or ...)} query would defeat them.
+ */
+@RequiredArgsConstructor
+class WorkflowExecutionRepositoryImpl implements WorkflowExecutionRepositoryCustom {
+    
+    private final EntityManager entityManager;
+    
+    @Override
+    public List<ExecutionSummary> findSummaries(Long workflowId, WorkflowExecution.ExecutionStatus status,
+                                                LocalDateTime from, LocalDateTime to, Long beforeId, int limit) {
+        List<String> predicates = new ArrayList<>();
+        Map<String, Object> parameters = new HashMap<>();
+        if (workflowId != null) {
+            predicates.add("e.workflow.id = :workflowId");
+            parameters.put("workflowId", workflowId);
+        }
+        if (status != null) {
+            predicates.add("e.status = :status");
+            parameters.put("status", status);
+        }
+        if (from != null) {
+            predicates.add("e.startedAt >= :from");
+            parameters.put("from", from);
+        }
+        if (to != null) {
+            predicates.add("e.startedAt < :to");
+            parameters.put("to", to);
+        }
+        if (beforeId != null) {
+            predicates.add("e.id < :beforeId");
+            parameters.put("beforeId", beforeId);
+        }
+        
+        String jpql = "select new com.aisuite.model.ExecutionSummary(e.id, e.workflow.id, e.status, e.queuedAt, " +
+                "e.startedAt, e.completedAt, e.executionTimeMs, e.errorMessage) from WorkflowExecution e" +
+                (predicates.isEmpty() ? "" : " where " + String.join(" and ", predicates)) +
+                " order by e.id desc";
+        TypedQuery<ExecutionSummary> query = entityManager.createQuery(jpql, ExecutionSummary.class);
+        parameters.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+}
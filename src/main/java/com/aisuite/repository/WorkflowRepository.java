@@ -1,15 +1,45 @@
-package com.aisuite.repository;
-
-import com.aisuite.model.Workflow;
-import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.stereotype.Repository;
-
-import java.util.List;
-import java.util.Optional;
-
-@Repository
-public interface WorkflowRepository extends JpaRepository<Workflow, Long> {
-    List<Workflow> findByStatus(Workflow.WorkflowStatus status);
-    Optional<Workflow> findByName(String name);
-}
-
+package com.aisuite.repository;
+
+import com.aisuite.model.Workflow;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface WorkflowRepository extends JpaRepository<Workflow, Long> {
+    List<Workflow> findByStatus(Workflow.WorkflowStatus status);
+    Optional<Workflow> findByName(String name);
+    
+    /**
+     * Loads the workflow and its steps in one query.
+     */
+    @EntityGraph(attributePaths = "steps")
+    Optional<Workflow> findWithStepsById(Long id);
+    
+    @EntityGraph(attributePaths = "steps")
+    @Query("select w from Workflow w order by w.id")
+    List<Workflow> findAllWithSteps();
+    
+    @Query("select w.status from Workflow w where w.id = :id")
+    Optional<Workflow.WorkflowStatus> findStatusById(@Param("id") Long id);
+    
+    @Query("select w.updatedAt from Workflow w where w.id = :id")
+    Optional<LocalDateTime> findUpdatedAtById(@Param("id") Long id);
+    
+    /**
+     * Records a run without loading the workflow. Bypasses {@code @PreUpdate}, so
+     * {@code updatedAt} only changes when the definition does.
+     */
+    @Transactional
+    @Modifying
+    @Query("update Workflow w set w.lastExecutedAt = :executedAt where w.id = :id")
+    int updateLastExecutedAt(@Param("id") Long id, @Param("executedAt") LocalDateTime executedAt);
+}
@@ -0,0 +1,45 @@
+package com.aisuite.repository;
+
+import com.aisuite.model.WorkflowTrigger;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface WorkflowTriggerRepository extends JpaRepository<WorkflowTrigger, Long> {
+    List<WorkflowTrigger> findByWorkflowIdOrderByIdAsc(Long workflowId);
+    
+    /**
+     * Enabled triggers for {@code eventType} whose workflow is ACTIVE.
+     */
+    @Query("select t from WorkflowTrigger t join Workflow w on w.id = t.workflowId " +
+            "where t.type = com.aisuite.model.WorkflowTrigger$TriggerType.EVENT and t.eventType = :eventType " +
+            "and t.enabled = true and w.status = com.aisuite.model.Workflow$WorkflowStatus.ACTIVE order by t.id")
+    List<WorkflowTrigger> findSubscribers(@Param("eventType") String eventType);
+    
+    @Modifying
+    void deleteByWorkflowId(Long workflowId);
+    
+    /**
+     * The schedule of every enabled time-based trigger, as {@code [id, nextFireAt]} pairs.
+     */
+    @Query("select t.id, t.nextFireAt from WorkflowTrigger t " +
+            "where t.enabled = true and t.type <> com.aisuite.model.WorkflowTrigger$TriggerType.EVENT " +
+            "and t.nextFireAt is not null")
+    List<Object[]> findSchedules();
+    
+    /**
+     * Moves the trigger from {@code due} to {@code next} if it is still due then. Returns 1 for
+     * the instance that fires it and 0 for any other that found it due at the same time.
+     */
+    @Modifying
+    @Query("update WorkflowTrigger t set t.nextFireAt = :next, t.lastFiredAt = :firedAt " +
+            "where t.id = :id and t.nextFireAt = :due")
+    int advance(@Param("id") Long id, @Param("due") LocalDateTime due,
+                @Param("next") LocalDateTime next, @Param("firedAt") LocalDateTime firedAt);
+}
@@ -0,0 +1,226 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Runs the same AI operation over many inputs with a bounded concurrency window. Small inputs can
+ * be packed several to a completion request; the structured response is split back into
+ * per-item results, falling back to one request per item when it cannot be.
+ * <p>
+ * Results are emitted as they complete, one map per item with its {@code index}, followed by a
+ * final map flagged {@code summary} carrying totals and throughput.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AiBatchService {
+    
+    private final AiConfig aiConfig;
+    private final AiService aiService;
+    private final ObjectMapper objectMapper;
+    
+    public Flux<Map<String, Object>> analyzeBatch(List<String> inputs, String analysisType,
+                                                  Integer concurrency, Integer packSize) {
+        return run(inputs, concurrency, packSize,
+                input -> aiService.analyzeDataWithAIAsync(input, analysisType).map(result -> result),
+                group -> packedAnalysis(group, analysisType));
+    }
+    
+    /**
+     * Applies {@code instruction} to every item, e.g. for batch AI_PROCESSING steps.
+     */
+    public Flux<Map<String, Object>> processBatch(String instruction, List<?> items, Map<String, Object> context,
+                                                  Integer concurrency, Integer packSize) {
+        List<String> inputs = items.stream().map(this::toText).toList();
+        return run(inputs, concurrency, packSize,
+                input -> aiService.processWithAIAsync(instruction + "\n\nInput:\n" + input, context).map(result -> result),
+                group -> packedProcessing(group, instruction, context));
+    }
+    
+    private Flux<Map<String, Object>> run(List<String> inputs, Integer concurrency, Integer packSize,
+                                          Function<String, Mono<Object>> single,
+                                          Function<List<String>, Mono<List<Object>>> packed) {
+        AiConfig.Batch settings = aiConfig.getBatch();
+        if (inputs.size() > settings.getMaxItems()) {
+            return Flux.error(new IllegalArgumentException(
+                    "Batch of " + inputs.size() + " items exceeds the limit of " + settings.getMaxItems()));
+        }
+        if (concurrency != null && concurrency > settings.getMaxConcurrency()) {
+            return Flux.error(new IllegalArgumentException(
+                    "Concurrency " + concurrency + " exceeds the limit of " + settings.getMaxConcurrency()));
+        }
+        if (packSize != null && packSize > settings.getMaxPackSize()) {
+            return Flux.error(new IllegalArgumentException(
+                    "Pack size " + packSize + " exceeds the limit of " + settings.getMaxPackSize()));
+        }
+        int window = concurrency != null && concurrency > 0 ? concurrency : settings.getConcurrency();
+        int pack = packSize != null && packSize > 0 ? packSize : settings.getPackSize();
+        
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            AtomicInteger succeeded = new AtomicInteger();
+            AtomicInteger failed = new AtomicInteger();
+            Flux<Map<String, Object>> items = Flux.fromIterable(groups(inputs, pack, settings.getPackMaxChars()))
+                    .flatMap(group -> runGroup(inputs, group, single, packed), window)
+                    .doOnNext(item -> (Boolean.TRUE.equals(item.get("success")) ? succeeded : failed).incrementAndGet());
+            return items.concatWith(Mono.fromSupplier(() -> summary(inputs.size(), succeeded.get(), failed.get(), start)));
+        });
+    }
+    
+    private Flux<Map<String, Object>> runGroup(List<String> inputs, List<Integer> group,
+                                               Function<String, Mono<Object>> single,
+                                               Function<List<String>, Mono<List<Object>>> packed) {
+        if (group.size() == 1) {
+            return runSingle(inputs, group.get(0), single).flux();
+        }
+        long start = System.nanoTime();
+        List<String> groupInputs = group.stream().map(inputs::get).toList();
+        return packed.apply(groupInputs)
+                .flatMapMany(results -> {
+                    long latencyMs = elapsedMs(start);
+                    List<Map<String, Object>> items = new ArrayList<>();
+                    for (int i = 0; i < group.size(); i++) {
+                        items.add(itemResult(group.get(i), results.get(i), null, latencyMs, group.size()));
+                    }
+                    return Flux.fromIterable(items);
+                })
+                .onErrorResume(e -> {
+                    log.warn("Packed request for {} items failed, sending them one by one: {}", group.size(), e.getMessage());
+                    // One by one within the pack's slot, so the fallback keeps to the batch concurrency
+                    return Flux.fromIterable(group).concatMap(index -> runSingle(inputs, index, single));
+                });
+    }
+    
+    private Mono<Map<String, Object>> runSingle(List<String> inputs, int index, Function<String, Mono<Object>> single) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return single.apply(inputs.get(index))
+                    .map(result -> itemResult(index, result, null, elapsedMs(start), 1))
+                    .onErrorResume(e -> Mono.just(itemResult(index, null, e.getMessage(), elapsedMs(start), 1)));
+        });
+    }
+    
+    private Mono<List<Object>> packedAnalysis(List<String> group, String analysisType) {
+        StringBuilder prompt = new StringBuilder(String.format(
+                "Analyze each of the following %d %s data items independently and provide structured insights.\n" +
+                "Respond only with a JSON array of exactly %d objects in the same order as the items, " +
+                "each with: summary, keyFindings, recommendations, and riskLevel.\n",
+                group.size(), analysisType, group.size()));
+        appendItems(prompt, group);
+        return aiService.processWithAIAsync(prompt.toString(), Map.of("analysisType", analysisType))
+                .map(response -> split(response, group.size(), node -> aiService.toAnalysis(node)));
+    }
+    
+    private Mono<List<Object>> packedProcessing(List<String> group, String instruction, Map<String, Object> context) {
+        StringBuilder prompt = new StringBuilder(String.format(
+                "Apply the following instruction to each of the %d items below independently.\n" +
+                "Instruction: %s\n\n" +
+                "Respond only with a JSON array of exactly %d elements, where element i is the result for item i.\n",
+                group.size(), instruction, group.size()));
+        appendItems(prompt, group);
+        return aiService.processWithAIAsync(prompt.toString(), context)
+                .map(response -> split(response, group.size(), node -> node.isTextual() ? node.asText() : node.toString()));
+    }
+    
+    private static void appendItems(StringBuilder prompt, List<String> group) {
+        for (int i = 0; i < group.size(); i++) {
+            prompt.append("\nItem ").append(i).append(":\n").append(group.get(i)).append('\n');
+        }
+    }
+    
+    private List<Object> split(String response, int expected, Function<JsonNode, Object> mapper) {
+        JsonNode array;
+        try {
+            array = objectMapper.readTree(response);
+        } catch (Exception e) {
+            throw new IllegalStateException("Packed response is not JSON: " + e.getMessage(), e);
+        }
+        if (!array.isArray() || array.size() != expected) {
+            throw new IllegalStateException("Expected a JSON array of " + expected + " results");
+        }
+        List<Object> results = new ArrayList<>(expected);
+        array.forEach(node -> results.add(mapper.apply(node)));
+        return results;
+    }
+    
+    /**
+     * Splits item indexes into request groups: consecutive small inputs share a group of up to
+     * {@code packSize}, larger inputs always go alone.
+     */
+    static List<List<Integer>> groups(List<String> inputs, int packSize, int packMaxChars) {
+        List<List<Integer>> groups = new ArrayList<>();
+        List<Integer> current = new ArrayList<>();
+        for (int i = 0; i < inputs.size(); i++) {
+            String input = inputs.get(i);
+            if (packSize <= 1 || input == null || input.length() > packMaxChars) {
+                groups.add(List.of(i));
+                continue;
+            }
+            current.add(i);
+            if (current.size() == packSize) {
+                groups.add(current);
+                current = new ArrayList<>();
+            }
+        }
+        if (!current.isEmpty()) {
+            groups.add(current);
+        }
+        return groups;
+    }
+    
+    private static Map<String, Object> itemResult(int index, Object result, String error, long latencyMs, int packedWith) {
+        Map<String, Object> item = new HashMap<>();
+        item.put("index", index);
+        item.put("success", error == null);
+        item.put("latencyMs", latencyMs);
+        item.put("packedWith", packedWith);
+        if (error == null) {
+            item.put("result", result);
+        } else {
+            item.put("error", error);
+        }
+        return item;
+    }
+    
+    private static Map<String, Object> summary(int items, int succeeded, int failed, long start) {
+        long totalMs = elapsedMs(start);
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("summary", true);
+        summary.put("items", items);
+        summary.put("succeeded", succeeded);
+        summary.put("failed", failed);
+        summary.put("totalMs", totalMs);
+        summary.put("itemsPerSecond", totalMs == 0 ? items : items * 1000.0 / totalMs);
+        log.info("Batch of {} items completed in {} ms ({} failed)", items, totalMs, failed);
+        return summary;
+    }
+    
+    private String toText(Object item) {
+        if (item instanceof String text) {
+            return text;
+        }
+        try {
+            return objectMapper.writeValueAsString(item);
+        } catch (Exception e) {
+            return String.valueOf(item);
+        }
+    }
+    
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,228 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One base URL and model that completions can be sent to, with the health the router ranks it
+ * by: latency percentiles over its recent successful calls, a moving average of its error rate,
+ * and a circuit breaker that opens after consecutive failures.
+ * <p>
+ * An open circuit keeps the endpoint out of rotation for {@code circuit-open-ms}. After that one
+ * trial call is let through (half open), which closes the circuit if it succeeds and reopens it
+ * if it fails. A trial that was claimed but never finished is given up after another
+ * {@code circuit-open-ms}.
+ */
+final class AiEndpoint {
+    
+    enum Circuit {
+        CLOSED, OPEN, HALF_OPEN
+    }
+    
+    private final String name;
+    private final String model;
+    private final WebClient webClient;
+    // Only set when the endpoint overrides the model, otherwise the caller's body is sent as-is
+    private final AiRequestWriter requestWriter;
+    private final AiConfig.Routing routing;
+    private final Counter successes;
+    private final Counter failures;
+    private final Counter rejected;
+    private final Counter abandoned;
+    
+    private final long[] latencies;
+    private int latencyCount;
+    private int latencyNext;
+    private long[] sorted;
+    private double errorRate;
+    private int consecutiveFailures;
+    private Circuit circuit = Circuit.CLOSED;
+    // When the circuit last opened, or when the current trial was claimed
+    private long openedAtNanos;
+    
+    AiEndpoint(String name, String baseUrl, String apiKey, String model, AiConfig aiConfig, ObjectMapper objectMapper,
+               MeterRegistry meterRegistry, ObservationRegistry observationRegistry) {
+        this.name = name;
+        this.model = model != null ? model : aiConfig.getOpenai().getModel();
+        this.routing = aiConfig.getRouting();
+        this.requestWriter = model != null && !model.equals(aiConfig.getOpenai().getModel())
+                ? new AiRequestWriter(aiConfig.getOpenai(), model, objectMapper)
+                : null;
+        this.latencies = new long[Math.max(1, routing.getLatencyWindow())];
+        this.webClient = WebClient.builder()
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(
+                        AiHttpClient.create(aiConfig, "ai-" + name, baseUrl, meterRegistry)))
+                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
+                // Each attempt, retries and hedges included, becomes an http.client.requests child of the ai.request
+                .observationRegistry(observationRegistry)
+                .build();
+        
+        this.successes = outcomeCounter("success", meterRegistry);
+        this.failures = outcomeCounter("failure", meterRegistry);
+        this.rejected = outcomeCounter("rejected", meterRegistry);
+        this.abandoned = outcomeCounter("abandoned", meterRegistry);
+        Gauge.builder("ai.endpoint.latency.p95", this, endpoint -> endpoint.percentileNanos(0.95) / 1e9)
+                .description("95th percentile latency of the endpoint's recent successful calls")
+                .baseUnit("seconds")
+                .tag("endpoint", name)
+                .register(meterRegistry);
+        Gauge.builder("ai.endpoint.error.rate", this, AiEndpoint::errorRate)
+                .description("Moving average of the endpoint's failed calls")
+                .tag("endpoint", name)
+                .register(meterRegistry);
+        Gauge.builder("ai.endpoint.circuit.open", this, endpoint -> endpoint.circuit() == Circuit.CLOSED ? 0 : 1)
+                .description("1 while the endpoint's circuit breaker keeps it out of rotation")
+                .tag("endpoint", name)
+                .register(meterRegistry);
+    }
+    
+    private Counter outcomeCounter(String outcome, MeterRegistry meterRegistry) {
+        return Counter.builder("ai.endpoint.requests")
+                .description("Calls sent to the endpoint; rejected ones got a non-retryable error, abandoned ones lost a hedge or timed out")
+                .tags("endpoint", name, "outcome", outcome)
+                .register(meterRegistry);
+    }
+    
+    String name() {
+        return name;
+    }
+    
+    String model() {
+        return model;
+    }
+    
+    WebClient webClient() {
+        return webClient;
+    }
+    
+    /**
+     * The body to send for a prompt: {@code body} itself unless this endpoint has a model of its own.
+     */
+    byte[] body(String prompt, byte[] body, boolean stream) {
+        return requestWriter == null ? body : requestWriter.write(requestWriter.template(), prompt, stream);
+    }
+    
+    /**
+     * Whether calls may be routed here: the circuit is closed, or its open interval is over, in
+     * which case this claims the trial call. The check and the claim are one step, so concurrent
+     * callers get a single trial between them.
+     */
+    synchronized boolean tryAcquire(long nowNanos) {
+        if (circuit == Circuit.CLOSED) {
+            return true;
+        }
+        if (nowNanos - openedAtNanos < TimeUnit.MILLISECONDS.toNanos(routing.getCircuitOpenMs())) {
+            return false;
+        }
+        circuit = Circuit.HALF_OPEN;
+        openedAtNanos = nowNanos;
+        return true;
+    }
+    
+    /**
+     * Ranking score, lower is better: the recent p95 latency plus a penalty for the error rate.
+     * Endpoints without latency samples yet score by their error rate alone, so they are tried early.
+     */
+    synchronized double score() {
+        return percentileNanos(0.95) + errorRate * TimeUnit.MILLISECONDS.toNanos(routing.getErrorPenaltyMs());
+    }
+    
+    synchronized void succeeded(long latencyNanos) {
+        addLatency(latencyNanos);
+        succeeded();
+    }
+    
+    /**
+     * A success without a latency sample, such as a stream whose duration depends on its length.
+     */
+    synchronized void succeeded() {
+        successes.increment();
+        errorRate = (1 - routing.getErrorRateAlpha()) * errorRate;
+        consecutiveFailures = 0;
+        circuit = Circuit.CLOSED;
+    }
+    
+    /**
+     * The endpoint answered with an error that retrying would not fix, such as a bad request.
+     * It is up, so this counts towards neither its error rate nor its circuit.
+     */
+    synchronized void rejected() {
+        rejected.increment();
+        consecutiveFailures = 0;
+        circuit = Circuit.CLOSED;
+    }
+    
+    synchronized void failed(long nowNanos) {
+        failures.increment();
+        errorRate = (1 - routing.getErrorRateAlpha()) * errorRate + routing.getErrorRateAlpha();
+        consecutiveFailures++;
+        if (circuit == Circuit.HALF_OPEN || consecutiveFailures >= routing.getCircuitFailureThreshold()) {
+            circuit = Circuit.OPEN;
+            openedAtNanos = nowNanos;
+        }
+    }
+    
+    /**
+     * A call cancelled before it finished. Its elapsed time is a lower bound of its latency,
+     * which is kept when it is beyond the current p95, so an endpoint whose calls keep losing
+     * to hedges is seen to be slow. Shorter ones say nothing about the latency and are dropped.
+     */
+    synchronized void abandoned(long elapsedNanos) {
+        abandoned.increment();
+        if (elapsedNanos > percentileNanos(0.95)) {
+            addLatency(elapsedNanos);
+        }
+        if (circuit == Circuit.HALF_OPEN) {
+            // The trial did not finish, so the endpoint gets another open interval before the next one
+            circuit = Circuit.OPEN;
+            openedAtNanos = System.nanoTime();
+        }
+    }
+    
+    synchronized Circuit circuit() {
+        return circuit;
+    }
+    
+    synchronized double errorRate() {
+        return errorRate;
+    }
+    
+    synchronized int latencySamples() {
+        return latencyCount;
+    }
+    
+    /**
+     * The given percentile of the recent latency samples, or 0 without any.
+     */
+    synchronized long percentileNanos(double percentile) {
+        if (latencyCount == 0) {
+            return 0;
+        }
+        if (sorted == null) {
+            sorted = Arrays.copyOf(latencies, latencyCount);
+            Arrays.sort(sorted);
+        }
+        int index = (int) Math.ceil(percentile * latencyCount) - 1;
+        return sorted[Math.max(0, Math.min(latencyCount - 1, index))];
+    }
+    
+    private void addLatency(long latencyNanos) {
+        latencies[latencyNext] = latencyNanos;
+        latencyNext = (latencyNext + 1) % latencies.length;
+        latencyCount = Math.min(latencyCount + 1, latencies.length);
+        sorted = null;
+    }
+}
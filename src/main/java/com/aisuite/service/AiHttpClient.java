@@ -0,0 +1,143 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.WriteTimeoutHandler;
+import reactor.netty.http.Http11SslContextSpec;
+import reactor.netty.http.Http2SslContextSpec;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.Http2AllocationStrategy;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Builds the Reactor Netty client of each AI endpoint from {@code ai.http}. Connections
+ * are pooled and kept alive, so under steady load requests reuse connections instead of
+ * paying for TCP and TLS setup. Idle connections are evicted before the provider drops them
+ * and recycled after {@code max-life-time-ms}.
+ * <p>
+ * The pool is published as {@code ai.http.pool.*} gauges. Connect, TLS handshake and
+ * response timings are published as {@code reactor.netty.http.client.*} meters.
+ */
+final class AiHttpClient {
+    
+    private AiHttpClient() {
+    }
+    
+    /**
+     * @param poolName names the endpoint's connection pool in the {@code ai.http.pool.*} gauges
+     */
+    static HttpClient create(AiConfig aiConfig, String poolName, String baseUrl, MeterRegistry meterRegistry) {
+        AiConfig.Http settings = aiConfig.getHttp();
+        int maxConnections = settings.getMaxConnections() != null
+                ? settings.getMaxConnections()
+                : aiConfig.getAutomation().getMaxInFlightRequests();
+        boolean secure = baseUrl.startsWith("https:");
+        boolean http2 = secure ? settings.getHttp2() : settings.getH2c();
+        ConnectionProvider.Builder pool = ConnectionProvider.builder(poolName);
+        if (http2) {
+            // Without it the HTTP/2 pool opens a connection per pending request instead of
+            // multiplexing them as streams over the established one
+            pool.allocationStrategy(Http2AllocationStrategy.builder()
+                    .minConnections(1)
+                    .maxConnections(maxConnections)
+                    .build());
+        } else {
+            pool.maxConnections(maxConnections);
+        }
+        ConnectionProvider connectionProvider = pool
+                .pendingAcquireMaxCount(settings.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(Duration.ofMillis(settings.getPendingAcquireTimeoutMs()))
+                .maxIdleTime(Duration.ofMillis(settings.getMaxIdleTimeMs()))
+                .maxLifeTime(Duration.ofMillis(settings.getMaxLifeTimeMs()))
+                .evictInBackground(Duration.ofMillis(settings.getEvictIntervalMs()))
+                // Reusing the most recently released connection lets surplus ones go idle and be evicted
+                .lifo()
+                .metrics(true, () -> new PoolMeters(meterRegistry))
+                .build();
+        
+        HttpClient client = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, settings.getConnectTimeoutMs())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(Duration.ofMillis(settings.getResponseTimeoutMs()))
+                .doOnConnected(connection -> connection.addHandlerLast(
+                        new WriteTimeoutHandler(settings.getWriteTimeoutMs(), TimeUnit.MILLISECONDS)))
+                .compress(settings.getCompression())
+                // Every request goes to the same path, so the uri tag stays a single value
+                .metrics(true, uri -> "/chat/completions");
+        
+        if (secure) {
+            Duration handshakeTimeout = Duration.ofMillis(settings.getTlsHandshakeTimeoutMs());
+            if (settings.getHttp2()) {
+                return client.protocol(HttpProtocol.H2, HttpProtocol.HTTP11)
+                        .secure(spec -> spec.sslContext(Http2SslContextSpec.forClient())
+                                .handshakeTimeout(handshakeTimeout));
+            }
+            return client.secure(spec -> spec.sslContext(Http11SslContextSpec.forClient())
+                    .handshakeTimeout(handshakeTimeout));
+        }
+        if (settings.getH2c()) {
+            return client.protocol(HttpProtocol.H2C);
+        }
+        return client;
+    }
+    
+    /**
+     * Registers gauges for each pool Reactor Netty creates (one per remote address) and removes
+     * them when it disposes the pool.
+     */
+    static final class PoolMeters implements ConnectionProvider.MeterRegistrar {
+        
+        private final MeterRegistry meterRegistry;
+        private final Map<String, List<Meter>> meters = new ConcurrentHashMap<>();
+        
+        PoolMeters(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+        
+        @Override
+        public void registerMetrics(String poolName, String id, SocketAddress remoteAddress,
+                                    ConnectionPoolMetrics metrics) {
+            Tags tags = Tags.of("pool", poolName, "remote.address", String.valueOf(remoteAddress));
+            meters.put(id, List.of(
+                    gauge("ai.http.pool.active", "Connections in use", metrics, ConnectionPoolMetrics::acquiredSize, tags),
+                    gauge("ai.http.pool.idle", "Connections kept alive for reuse", metrics,
+                            ConnectionPoolMetrics::idleSize, tags),
+                    gauge("ai.http.pool.total", "Open connections", metrics, ConnectionPoolMetrics::allocatedSize, tags),
+                    gauge("ai.http.pool.pending", "Requests waiting for a connection", metrics,
+                            ConnectionPoolMetrics::pendingAcquireSize, tags),
+                    gauge("ai.http.pool.max.connections", "Pool size limit", metrics,
+                            ConnectionPoolMetrics::maxAllocatedSize, tags)));
+        }
+        
+        @Override
+        public void deRegisterMetrics(String poolName, String id, SocketAddress remoteAddress) {
+            List<Meter> removed = meters.remove(id);
+            if (removed != null) {
+                removed.forEach(meterRegistry::remove);
+            }
+        }
+        
+        private Meter gauge(String name, String description, ConnectionPoolMetrics metrics,
+                            ToDoubleFunction<ConnectionPoolMetrics> value, Tags tags) {
+            return Gauge.builder(name, metrics, value)
+                    .description(description)
+                    .tags(tags)
+                    .strongReference(true)
+                    .register(meterRegistry);
+        }
+    }
+}
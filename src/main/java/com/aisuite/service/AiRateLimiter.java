@@ -0,0 +1,372 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Client-side admission control for the completions provider:
+ * <ul>
+ *   <li>token buckets for requests per minute and tokens per minute, refilled continuously,
+ *   with each request charged its estimated token count up front;</li>
+ *   <li>an AIMD concurrency limit that grows by one per window of successful calls and halves
+ *   on 429 or 5xx responses and timeouts;</li>
+ *   <li>a shared pause when the provider sends {@code Retry-After}, so waiting callers do not
+ *   keep hitting an exhausted quota.</li>
+ * </ul>
+ * Callers are admitted in arrival order and wait without holding a thread.
+ */
+@Component
+@Slf4j
+public class AiRateLimiter {
+    
+    private static final double DECREASE_RATIO = 0.5;
+    
+    private final AiConfig.Automation settings;
+    private final TokenBucket requestBucket;
+    private final TokenBucket tokenBucket;
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private final Counter throttled;
+    private final Counter retries;
+    private final int maxConcurrency;
+    
+    private double limit;
+    private int inFlight;
+    private long pausedUntilNanos;
+    private long lastDecreaseNanos;
+    private boolean drainScheduled;
+    
+    public AiRateLimiter(AiConfig aiConfig, MeterRegistry meterRegistry) {
+        this.settings = aiConfig.getAutomation();
+        this.maxConcurrency = settings.getMaxInFlightRequests();
+        this.limit = maxConcurrency;
+        this.lastDecreaseNanos = System.nanoTime();
+        this.requestBucket = new TokenBucket(settings.getRequestsPerMinute());
+        this.tokenBucket = new TokenBucket(settings.getTokensPerMinute());
+        
+        this.throttled = Counter.builder("ai.limiter.throttled")
+                .description("Times AI request admission was delayed by rate limits or Retry-After")
+                .register(meterRegistry);
+        this.retries = Counter.builder("ai.limiter.retries")
+                .description("AI requests retried after a retryable failure")
+                .register(meterRegistry);
+        Gauge.builder("ai.limiter.concurrency.limit", this, AiRateLimiter::concurrencyLimit)
+                .description("Current adaptive concurrency limit for AI requests")
+                .register(meterRegistry);
+        Gauge.builder("ai.limiter.in.flight", this, AiRateLimiter::inFlight)
+                .description("AI requests admitted and not yet finished")
+                .register(meterRegistry);
+        Gauge.builder("ai.limiter.waiting", this, AiRateLimiter::waiting)
+                .description("AI requests waiting for admission")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Runs {@code call} once admitted. The permit is released when the call completes, fails or
+     * is cancelled; failures feed the concurrency limit.
+     */
+    public <T> Mono<T> execute(int estimatedTokens, Function<Permit, Mono<T>> call) {
+        return acquire(estimatedTokens).flatMap(permit -> call.apply(permit)
+                .doOnSuccess(result -> permit.release(null))
+                .doOnError(permit::release)
+                .doOnCancel(permit::cancel));
+    }
+    
+    public <T> Flux<T> executeMany(int estimatedTokens, Function<Permit, Flux<T>> call) {
+        return acquire(estimatedTokens).flatMapMany(permit -> call.apply(permit)
+                .doOnComplete(() -> permit.release(null))
+                .doOnError(permit::release)
+                .doOnCancel(permit::cancel));
+    }
+    
+    /**
+     * Retries 429, 5xx, connection failures and timeouts with jittered exponential backoff, never
+     * sooner than the provider's {@code Retry-After}. Other failures are passed through unchanged.
+     */
+    public Retry retryPolicy() {
+        return retryPolicy(() -> true);
+    }
+    
+    /**
+     * @param retryAllowed checked on each failure, e.g. to stop retrying a stream that has
+     *                     already emitted output
+     */
+    public Retry retryPolicy(BooleanSupplier retryAllowed) {
+        return Retry.from(signals -> signals.concatMap(signal -> {
+            Throwable failure = signal.failure();
+            if (signal.totalRetries() >= settings.getMaxRetries() || !isRetryable(failure)
+                    || !retryAllowed.getAsBoolean()) {
+                return Mono.error(failure);
+            }
+            Duration delay = backoff(signal.totalRetries(), retryAfter(failure));
+            retries.increment();
+            log.warn("AI request failed ({}), retry {} in {} ms", failure.getMessage(),
+                    signal.totalRetries() + 1, delay.toMillis());
+            return Mono.delay(delay);
+        }));
+    }
+    
+    Duration backoff(long attempt, Duration retryAfter) {
+        long base = settings.getRetryBaseDelayMs();
+        long exponential = Math.min(settings.getRetryMaxDelayMs(), base << Math.min(attempt, 20));
+        // Equal jitter: half fixed, half random, so synchronized callers spread out
+        long jittered = exponential / 2 + ThreadLocalRandom.current().nextLong(exponential / 2 + 1);
+        return retryAfter != null && retryAfter.toMillis() > jittered ? retryAfter : Duration.ofMillis(jittered);
+    }
+    
+    static boolean isRetryable(Throwable failure) {
+        if (failure instanceof WebClientResponseException response) {
+            return response.getStatusCode().value() == 429 || response.getStatusCode().is5xxServerError();
+        }
+        return failure instanceof WebClientRequestException || failure instanceof TimeoutException;
+    }
+    
+    static Duration retryAfter(Throwable failure) {
+        if (!(failure instanceof WebClientResponseException response)) {
+            return null;
+        }
+        HttpHeaders headers = response.getHeaders();
+        try {
+            String millis = headers.getFirst("retry-after-ms");
+            if (millis != null) {
+                return Duration.ofMillis((long) Double.parseDouble(millis.trim()));
+            }
+            String value = headers.getFirst(HttpHeaders.RETRY_AFTER);
+            if (value == null) {
+                return null;
+            }
+            if (value.trim().chars().allMatch(Character::isDigit)) {
+                return Duration.ofSeconds(Long.parseLong(value.trim()));
+            }
+            Duration untilDate = Duration.between(ZonedDateTime.now(),
+                    ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME));
+            return untilDate.isNegative() ? Duration.ZERO : untilDate;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+    
+    private Mono<Permit> acquire(int estimatedTokens) {
+        return Mono.create(sink -> {
+            Waiter waiter = new Waiter(Math.max(1, estimatedTokens), sink);
+            synchronized (this) {
+                waiters.addLast(waiter);
+            }
+            sink.onCancel(() -> {
+                boolean waiting;
+                synchronized (this) {
+                    waiting = waiters.remove(waiter);
+                }
+                if (!waiting && waiter.permit != null) {
+                    waiter.permit.cancel();
+                }
+            });
+            drain();
+        });
+    }
+    
+    private void drain() {
+        List<Waiter> admitted = new ArrayList<>();
+        boolean waited = false;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long delay = 0;
+            while (!waiters.isEmpty()) {
+                if (now < pausedUntilNanos) {
+                    delay = pausedUntilNanos - now;
+                    break;
+                }
+                if (inFlight >= (int) limit) {
+                    // Woken up again by the next release
+                    break;
+                }
+                Waiter head = waiters.peekFirst();
+                delay = Math.max(requestBucket.nanosUntil(1, now), tokenBucket.nanosUntil(head.tokens, now));
+                if (delay > 0) {
+                    break;
+                }
+                requestBucket.take(1);
+                tokenBucket.take(head.tokens);
+                waiters.pollFirst();
+                inFlight++;
+                head.permit = new Permit(head.tokens, now);
+                admitted.add(head);
+            }
+            if (delay > 0 && !drainScheduled) {
+                drainScheduled = true;
+                waited = true;
+                Schedulers.parallel().schedule(() -> {
+                    synchronized (this) {
+                        drainScheduled = false;
+                    }
+                    drain();
+                }, delay, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (waited) {
+            throttled.increment();
+        }
+        admitted.forEach(waiter -> waiter.sink.success(waiter.permit));
+    }
+    
+    private synchronized void onRelease(Permit permit, Throwable failure) {
+        inFlight--;
+        if (failure == null) {
+            // Additive increase: roughly +1 per window of successful calls
+            limit = Math.min(maxConcurrency, limit + 1.0 / limit);
+            return;
+        }
+        if (!isRetryable(failure)) {
+            return;
+        }
+        Duration retryAfter = retryAfter(failure);
+        if (retryAfter != null) {
+            pausedUntilNanos = Math.max(pausedUntilNanos, System.nanoTime() + retryAfter.toNanos());
+        }
+        // Multiplicative decrease, once per overload episode: calls admitted before the last
+        // decrease were sent under the old limit and do not count again
+        if (settings.getAdaptiveConcurrency() && permit.acquiredAtNanos > lastDecreaseNanos) {
+            limit = Math.max(settings.getMinConcurrency(), limit * DECREASE_RATIO);
+            lastDecreaseNanos = System.nanoTime();
+            log.warn("AI provider overloaded ({}), concurrency limit lowered to {}", failure.getMessage(), (int) limit);
+        }
+    }
+    
+    public synchronized double concurrencyLimit() {
+        return limit;
+    }
+    
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+    
+    public synchronized int waiting() {
+        return waiters.size();
+    }
+    
+    /**
+     * Admission of one call. Released exactly once, however many of complete, error and cancel
+     * signals arrive.
+     */
+    public final class Permit {
+        
+        private final int estimatedTokens;
+        private final long acquiredAtNanos;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private final AtomicBoolean usageRecorded = new AtomicBoolean();
+        
+        private Permit(int estimatedTokens, long acquiredAtNanos) {
+            this.estimatedTokens = estimatedTokens;
+            this.acquiredAtNanos = acquiredAtNanos;
+        }
+        
+        /**
+         * Refunds the difference between the estimate charged at admission and the tokens the
+         * provider reports as used.
+         */
+        public void recordUsage(int actualTokens) {
+            if (actualTokens < 0 || !usageRecorded.compareAndSet(false, true)) {
+                return;
+            }
+            synchronized (AiRateLimiter.this) {
+                tokenBucket.refund(estimatedTokens - actualTokens);
+            }
+        }
+        
+        void release(Throwable failure) {
+            if (released.compareAndSet(false, true)) {
+                onRelease(this, failure);
+                drain();
+            }
+        }
+        
+        void cancel() {
+            if (released.compareAndSet(false, true)) {
+                synchronized (AiRateLimiter.this) {
+                    inFlight--;
+                }
+                drain();
+            }
+        }
+    }
+    
+    private static final class Waiter {
+        private final int tokens;
+        private final MonoSink<Permit> sink;
+        private volatile Permit permit;
+        
+        private Waiter(int tokens, MonoSink<Permit> sink) {
+            this.tokens = tokens;
+            this.sink = sink;
+        }
+    }
+    
+    /**
+     * Continuously refilled bucket holding at most one minute of quota. A quota of zero or less
+     * disables it.
+     */
+    private static final class TokenBucket {
+        private final double capacity;
+        private final double perNano;
+        private double available;
+        private long refilledAt;
+        
+        private TokenBucket(Integer perMinute) {
+            this.capacity = perMinute == null ? 0 : perMinute;
+            this.perNano = capacity / TimeUnit.MINUTES.toNanos(1);
+            this.available = capacity;
+            this.refilledAt = System.nanoTime();
+        }
+        
+        private boolean unlimited() {
+            return capacity <= 0;
+        }
+        
+        long nanosUntil(int amount, long now) {
+            if (unlimited()) {
+                return 0;
+            }
+            available = Math.min(capacity, available + (now - refilledAt) * perNano);
+            refilledAt = now;
+            double needed = Math.min(amount, capacity) - available;
+            return needed <= 0 ? 0 : (long) Math.ceil(needed / perNano);
+        }
+        
+        void take(int amount) {
+            if (!unlimited()) {
+                available -= Math.min(amount, capacity);
+            }
+        }
+        
+        void refund(int amount) {
+            if (!unlimited() && amount > 0) {
+                available = Math.min(capacity, available + amount);
+            }
+        }
+    }
+}
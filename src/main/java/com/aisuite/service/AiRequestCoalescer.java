@@ -0,0 +1,63 @@
+package com.aisuite.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight deduplication of identical AI requests. While a call for a request fingerprint
+ * is in flight, further callers with the same fingerprint attach to it instead of going upstream,
+ * and all of them receive its result or error.
+ */
+@Component
+public class AiRequestCoalescer {
+    
+    private final Map<String, Mono<String>> inFlight = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+    
+    public AiRequestCoalescer(MeterRegistry meterRegistry) {
+        this.coalesced = Counter.builder("ai.requests.coalesced")
+                .description("AI requests answered by an identical request already in flight")
+                .register(meterRegistry);
+        Gauge.builder("ai.requests.in.flight.unique", inFlight, Map::size)
+                .description("Distinct AI requests currently in flight")
+                .register(meterRegistry);
+    }
+    
+    public Mono<String> execute(String key, Supplier<Mono<String>> call) {
+        return Mono.defer(() -> {
+            AtomicBoolean leader = new AtomicBoolean();
+            Mono<String> flight = inFlight.computeIfAbsent(key, k -> {
+                leader.set(true);
+                return newFlight(k, call);
+            });
+            if (!leader.get()) {
+                coalesced.increment();
+            }
+            return flight;
+        });
+    }
+    
+    private Mono<String> newFlight(String key, Supplier<Mono<String>> call) {
+        AtomicReference<Mono<String>> self = new AtomicReference<>();
+        // The entry is dropped before the outcome reaches any caller, so a request issued after
+        // this one completed never reuses its result; cache() replays it to those that joined
+        Mono<String> flight = Mono.defer(call)
+                .doOnEach(signal -> inFlight.remove(key, self.get()))
+                .cache();
+        self.set(flight);
+        return flight;
+    }
+    
+    public double coalescedCount() {
+        return coalesced.count();
+    }
+}
@@ -0,0 +1,124 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Writes completion request bodies without building a request map per call. Everything around
+ * the prompt is serialized once per model, max-tokens and temperature setting, and a call only
+ * copies its prompt between those fragments. The bytes are the same as the request map
+ * serialized with sorted keys, so fingerprints and cache keys are stable across the two.
+ */
+final class AiRequestWriter {
+    
+    static final String SYSTEM_PROMPT = "You are an AI assistant specialized in business process automation. " +
+            "Provide clear, actionable responses in JSON format when possible.";
+    
+    private final AiConfig.OpenAI settings;
+    // Overrides the configured model when set, for endpoints that serve a different one
+    private final String model;
+    private final ObjectMapper objectMapper;
+    private volatile Template template;
+    
+    AiRequestWriter(AiConfig.OpenAI settings, ObjectMapper objectMapper) {
+        this(settings, null, objectMapper);
+    }
+    
+    AiRequestWriter(AiConfig.OpenAI settings, String model, ObjectMapper objectMapper) {
+        this.settings = settings;
+        this.model = model;
+        this.objectMapper = objectMapper;
+    }
+    
+    /**
+     * Fragments for the current settings, rebuilt only when one of them has changed. Callers
+     * take one template per request so its body and cacheability agree.
+     */
+    Template template() {
+        Template current = template;
+        String currentModel = model != null ? model : settings.getModel();
+        if (current == null || !current.matches(currentModel, settings)) {
+            current = Template.of(currentModel, settings.getMaxTokens(), settings.getTemperature(), objectMapper);
+            template = current;
+        }
+        return current;
+    }
+    
+    /**
+     * Allocates the body at its exact size. Prompts that need no escaping, which is most of
+     * them, are copied in directly; the others are escaped first.
+     */
+    byte[] write(Template template, String prompt, boolean stream) {
+        byte[] head = template.head();
+        byte[] tail = stream ? template.streamTail() : template.tail();
+        byte[] escaped = needsEscaping(prompt) ? JsonStringEncoder.getInstance().quoteAsUTF8(prompt) : null;
+        int promptLength = escaped != null ? escaped.length : prompt.length();
+        
+        byte[] body = new byte[head.length + promptLength + 2 + tail.length];
+        System.arraycopy(head, 0, body, 0, head.length);
+        int position = head.length;
+        body[position++] = '"';
+        if (escaped != null) {
+            System.arraycopy(escaped, 0, body, position, escaped.length);
+        } else {
+            for (int i = 0; i < promptLength; i++) {
+                body[position + i] = (byte) prompt.charAt(i);
+            }
+        }
+        position += promptLength;
+        body[position++] = '"';
+        System.arraycopy(tail, 0, body, position, tail.length);
+        return body;
+    }
+    
+    /**
+     * Whether the prompt has anything other than printable ASCII that JSON leaves as-is.
+     */
+    private static boolean needsEscaping(String prompt) {
+        for (int i = 0; i < prompt.length(); i++) {
+            char c = prompt.charAt(i);
+            if (c < 0x20 || c > 0x7E || c == '"' || c == '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * The serialized request up to the user prompt's value ({@code head}) and after it, with
+     * and without {@code "stream":true}.
+     */
+    record Template(String model, Integer maxTokens, Double temperature, byte[] head, byte[] tail, byte[] streamTail) {
+        
+        static Template of(String model, Integer maxTokens, Double temperature, ObjectMapper objectMapper) {
+            String head = "{\"max_tokens\":" + json(maxTokens, objectMapper) +
+                    ",\"messages\":[{\"content\":" + json(SYSTEM_PROMPT, objectMapper) + ",\"role\":\"system\"}," +
+                    "{\"content\":";
+            String afterPrompt = ",\"role\":\"user\"}],\"model\":" + json(model, objectMapper);
+            String temperatureField = "\"temperature\":" + json(temperature, objectMapper) + "}";
+            return new Template(model, maxTokens, temperature,
+                    head.getBytes(StandardCharsets.UTF_8),
+                    (afterPrompt + "," + temperatureField).getBytes(StandardCharsets.UTF_8),
+                    (afterPrompt + ",\"stream\":true," + temperatureField).getBytes(StandardCharsets.UTF_8));
+        }
+        
+        boolean matches(String model, AiConfig.OpenAI settings) {
+            return Objects.equals(this.model, model)
+                    && Objects.equals(maxTokens, settings.getMaxTokens())
+                    && Objects.equals(temperature, settings.getTemperature());
+        }
+        
+        private static String json(Object value, ObjectMapper objectMapper) {
+            try {
+                return objectMapper.writeValueAsString(value);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Failed to serialize AI request: " + e.getMessage(), e);
+            }
+        }
+    }
+}
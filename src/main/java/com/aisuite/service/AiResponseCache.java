@@ -0,0 +1,179 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache of AI completions. Keys are hashes of the fully built request body,
+ * so two requests only share an entry when the provider would see exactly the same payload.
+ * <p>
+ * The memory tier is a Caffeine (W-TinyLFU) cache bounded by both entry count and byte budget;
+ * the optional disk tier keeps entries across restarts until their TTL expires.
+ */
+@Component
+@Slf4j
+public class AiResponseCache {
+    
+    private static final String CACHE_NAME = "ai.completions";
+    private static final String FILE_SUFFIX = ".entry";
+    
+    private final AiConfig aiConfig;
+    private final Cache<String, String> memory;
+    private final Path diskDirectory;
+    private final Counter diskHits;
+    private final Counter diskWrites;
+    
+    public AiResponseCache(AiConfig aiConfig, MeterRegistry meterRegistry) {
+        this.aiConfig = aiConfig;
+        AiConfig.Cache settings = aiConfig.getCache();
+        
+        // Caffeine bounds either size or weight, not both. Giving every entry a minimum weight
+        // of maxBytes / maxEntries keeps the byte budget exact and caps the entry count too.
+        long minWeight = Math.max(1, settings.getMaxBytes() / settings.getMaxEntries());
+        this.memory = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(settings.getTtlSeconds()))
+                .maximumWeight(settings.getMaxBytes())
+                .weigher((String key, String value) -> (int) Math.min(Integer.MAX_VALUE,
+                        Math.max(minWeight, 2L * (key.length() + value.length()))))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, memory, CACHE_NAME);
+        
+        this.diskDirectory = StringUtils.hasText(settings.getDiskDirectory())
+                ? Paths.get(settings.getDiskDirectory())
+                : null;
+        this.diskHits = Counter.builder("ai.cache.disk.hits")
+                .description("AI completions served from the on-disk cache tier")
+                .register(meterRegistry);
+        this.diskWrites = Counter.builder("ai.cache.disk.writes")
+                .description("AI completions written to the on-disk cache tier")
+                .register(meterRegistry);
+        
+        if (diskDirectory != null) {
+            Mono.fromRunnable(this::pruneDisk)
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .subscribe();
+        }
+    }
+    
+    /**
+     * Whether a request with the given temperature may be served from cache. Deterministic
+     * requests always are; others only when {@code ai.openai.cache-responses} opts them in.
+     */
+    public boolean isCacheable(Double temperature) {
+        if (!aiConfig.getCache().getEnabled()) {
+            return false;
+        }
+        return (temperature != null && temperature == 0.0)
+                || Boolean.TRUE.equals(aiConfig.getOpenai().getCacheResponses());
+    }
+    
+    /**
+     * Looks the key up in memory first and then on disk. Completes empty on a miss.
+     */
+    public Mono<String> get(String key) {
+        String cached = memory.getIfPresent(key);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        if (diskDirectory == null) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> readDisk(key))
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnNext(value -> {
+                    diskHits.increment();
+                    memory.put(key, value);
+                });
+    }
+    
+    public void put(String key, String value) {
+        memory.put(key, value);
+        if (diskDirectory != null) {
+            Mono.fromRunnable(() -> writeDisk(key, value))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .subscribe();
+        }
+    }
+    
+    public long size() {
+        return memory.estimatedSize();
+    }
+    
+    void cleanUp() {
+        memory.cleanUp();
+    }
+    
+    private String readDisk(String key) {
+        Path file = diskDirectory.resolve(key + FILE_SUFFIX);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            String content = Files.readString(file, StandardCharsets.UTF_8);
+            int newline = content.indexOf('\n');
+            long expiresAt = Long.parseLong(content.substring(0, newline));
+            if (expiresAt < System.currentTimeMillis()) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            return content.substring(newline + 1);
+        } catch (Exception e) {
+            log.warn("Discarding unreadable cache entry {}: {}", file, e.getMessage());
+            deleteQuietly(file);
+            return null;
+        }
+    }
+    
+    private void writeDisk(String key, String value) {
+        try {
+            Files.createDirectories(diskDirectory);
+            long expiresAt = System.currentTimeMillis() + aiConfig.getCache().getTtlSeconds() * 1000;
+            Path temp = Files.createTempFile(diskDirectory, key, ".tmp");
+            Files.writeString(temp, expiresAt + "\n" + value, StandardCharsets.UTF_8);
+            Files.move(temp, diskDirectory.resolve(key + FILE_SUFFIX),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            diskWrites.increment();
+        } catch (IOException e) {
+            log.warn("Failed to write cache entry {}: {}", key, e.getMessage());
+        }
+    }
+    
+    private void pruneDisk() {
+        if (!Files.isDirectory(diskDirectory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(diskDirectory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(FILE_SUFFIX))
+                    .forEach(file -> readDisk(file.getFileName().toString().replace(FILE_SUFFIX, "")));
+        } catch (IOException e) {
+            log.warn("Failed to prune AI cache directory {}: {}", diskDirectory, e.getMessage());
+        }
+    }
+    
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // best effort
+        }
+    }
+}
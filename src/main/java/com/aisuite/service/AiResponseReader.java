@@ -0,0 +1,156 @@
+package com.aisuite.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.core.io.buffer.DataBuffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Pulls the first choice's content and the token usage out of completion responses and stream
+ * chunks with a streaming parser. The response is read straight from its network buffer: it is
+ * neither decoded into a String nor built into a tree, and the rest of the envelope, other
+ * choices and unknown fields are skipped without being materialized.
+ */
+final class AiResponseReader {
+    
+    private final JsonFactory jsonFactory;
+    
+    AiResponseReader(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+    
+    /**
+     * Reads a complete response and releases its buffer.
+     */
+    Completion read(DataBuffer response) {
+        try (InputStream body = response.asInputStream(true)) {
+            return requireContent(read(jsonFactory.createParser(body), "message"));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unexpected completion response: " + e.getMessage(), e);
+        }
+    }
+    
+    Completion read(byte[] response) {
+        try {
+            return requireContent(read(jsonFactory.createParser(response), "message"));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unexpected completion response: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Reads one {@code stream: true} chunk. Its content is empty when the chunk carries no delta,
+     * such as the usage chunk some providers send last.
+     */
+    Completion readChunk(String chunk) {
+        try {
+            Completion completion = read(jsonFactory.createParser(chunk), "delta");
+            return completion.content() != null ? completion : new Completion("", completion.usage());
+        } catch (IOException e) {
+            throw new IllegalStateException("Unexpected completion chunk: " + e.getMessage(), e);
+        }
+    }
+    
+    private static Completion requireContent(Completion completion) {
+        if (completion.content() == null) {
+            throw new IllegalStateException("Unexpected completion response: no content in the first choice");
+        }
+        return completion;
+    }
+    
+    private static Completion read(JsonParser parser, String choiceField) throws IOException {
+        try (parser) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("not a JSON object");
+            }
+            String content = null;
+            Usage usage = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("choices".equals(field) && value == JsonToken.START_ARRAY) {
+                    content = readFirstChoice(parser, choiceField);
+                } else if ("usage".equals(field) && value == JsonToken.START_OBJECT) {
+                    usage = readUsage(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return new Completion(content, usage);
+        }
+    }
+    
+    /**
+     * Reads {@code choices[0].<choiceField>.content} and leaves the parser at the end of the array.
+     */
+    private static String readFirstChoice(JsonParser parser, String choiceField) throws IOException {
+        String content = null;
+        boolean first = true;
+        for (JsonToken choice = parser.nextToken(); choice != JsonToken.END_ARRAY; choice = parser.nextToken()) {
+            if (first && choice == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    if (parser.nextToken() == JsonToken.START_OBJECT && choiceField.equals(field)) {
+                        content = readContent(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+            first = false;
+        }
+        return content;
+    }
+    
+    private static String readContent(JsonParser parser) throws IOException {
+        String content = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("content".equals(field) && value.isScalarValue()) {
+                // A null content, as sent alongside tool calls, reads as empty
+                content = value == JsonToken.VALUE_NULL ? "" : parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return content;
+    }
+    
+    private static Usage readUsage(JsonParser parser) throws IOException {
+        long promptTokens = 0;
+        long completionTokens = 0;
+        long totalTokens = -1;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "prompt_tokens" -> promptTokens = parser.getValueAsLong();
+                case "completion_tokens" -> completionTokens = parser.getValueAsLong();
+                case "total_tokens" -> totalTokens = parser.getValueAsLong(-1);
+                default -> {
+                }
+            }
+            parser.skipChildren();
+        }
+        return new Usage(promptTokens, completionTokens, totalTokens);
+    }
+    
+    /**
+     * The first choice's content, or null when the response has none, and the usage the
+     * provider reported, or null.
+     */
+    record Completion(String content, Usage usage) {
+    }
+    
+    /**
+     * Token counts of one response. {@code totalTokens} is -1 when the provider left it out.
+     */
+    record Usage(long promptTokens, long completionTokens, long totalTokens) {
+    }
+}
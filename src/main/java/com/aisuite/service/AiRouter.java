@@ -0,0 +1,289 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sends completions to the endpoint expected to answer fastest: ai.openai, named
+ * {@code primary}, and those under ai.routing.endpoints, ranked by their recent p95 latency
+ * plus a penalty for their error rate. Endpoints with an open circuit are left out until
+ * their trial is due, unless every circuit is open.
+ * <p>
+ * A completion still running past its endpoint's {@code hedge-percentile} latency is sent
+ * again to the next endpoint in the ranking, within {@code hedge-budget}, and whichever
+ * answers first is used while the other is cancelled. A retryable failure is sent on to the
+ * next endpoint straight away. Streams are not hedged, since both copies would be billed in
+ * full, but fail over when the endpoint fails before its first chunk.
+ */
+final class AiRouter {
+    
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_CHUNK =
+            new ParameterizedTypeReference<>() {};
+    // Context key of the AtomicReference that receives the model of the endpoint a request went to
+    static final String MODEL_KEY = AiRouter.class.getName() + ".model";
+    
+    // Latency samples an endpoint needs before its percentile is trusted to time hedges
+    private static final int MIN_HEDGE_SAMPLES = 10;
+    
+    private final AiConfig.Routing routing;
+    private final List<AiEndpoint> endpoints = new ArrayList<>();
+    private final AiResponseReader responseReader;
+    private final Counter hedges;
+    private final Counter failovers;
+    private final AtomicLong routed = new AtomicLong();
+    private final AtomicLong hedged = new AtomicLong();
+    
+    AiRouter(AiConfig aiConfig, ObjectMapper objectMapper, AiResponseReader responseReader,
+             MeterRegistry meterRegistry, ObservationRegistry observationRegistry) {
+        this.routing = aiConfig.getRouting();
+        this.responseReader = responseReader;
+        AiConfig.OpenAI openai = aiConfig.getOpenai();
+        endpoints.add(new AiEndpoint("primary", openai.getBaseUrl(), openai.getApiKey(), null,
+                aiConfig, objectMapper, meterRegistry, observationRegistry));
+        List<AiConfig.Endpoint> configured = routing.getEndpoints();
+        for (int i = 0; i < configured.size(); i++) {
+            AiConfig.Endpoint endpoint = configured.get(i);
+            if (endpoint.getBaseUrl() == null || endpoint.getBaseUrl().isBlank()) {
+                throw new IllegalStateException("ai.routing.endpoints[" + i + "] has no base-url");
+            }
+            endpoints.add(new AiEndpoint(
+                    endpoint.getName() != null ? endpoint.getName() : "endpoint-" + (i + 1),
+                    endpoint.getBaseUrl(),
+                    endpoint.getApiKey() != null ? endpoint.getApiKey() : openai.getApiKey(),
+                    endpoint.getModel(),
+                    aiConfig, objectMapper, meterRegistry, observationRegistry));
+        }
+        this.hedges = Counter.builder("ai.routing.hedges")
+                .description("Completions sent to a second endpoint because the first was slow")
+                .register(meterRegistry);
+        this.failovers = Counter.builder("ai.routing.failovers")
+                .description("Completions sent to another endpoint because the first failed")
+                .register(meterRegistry);
+    }
+    
+    List<AiEndpoint> endpoints() {
+        return endpoints;
+    }
+    
+    /**
+     * Available endpoints, best first. With probability {@code explore-ratio} a random one is
+     * moved to the front instead, so endpoints that lost the ranking keep being measured. An
+     * endpoint whose circuit is due a trial is only ranked by the caller that claims the trial.
+     */
+    List<AiEndpoint> rank() {
+        long now = System.nanoTime();
+        List<AiEndpoint> ranked = new ArrayList<>(endpoints.size());
+        for (AiEndpoint endpoint : endpoints) {
+            if (endpoint.tryAcquire(now)) {
+                ranked.add(endpoint);
+            }
+        }
+        if (ranked.isEmpty()) {
+            // Every circuit is open: failing fast would not help the caller, so try them all anyway
+            ranked.addAll(endpoints);
+        }
+        // Scores change under concurrent calls, so the sort works on a snapshot of them
+        Map<AiEndpoint, Double> scores = new HashMap<>();
+        ranked.forEach(endpoint -> scores.put(endpoint, endpoint.score()));
+        ranked.sort(Comparator.comparingDouble(scores::get));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (ranked.size() > 1 && random.nextDouble() < routing.getExploreRatio()) {
+            ranked.add(0, ranked.remove(random.nextInt(1, ranked.size())));
+        }
+        return ranked;
+    }
+    
+    /**
+     * Completes {@code body}, the request for {@code prompt} as written for the primary
+     * endpoint, on the best endpoint, hedged or failed over to the next one. When both fail, the
+     * error is the one from the endpoint that failed last.
+     */
+    Mono<AiResponseReader.Completion> complete(String prompt, byte[] body) {
+        return Mono.defer(() -> {
+            List<AiEndpoint> ranked = rank();
+            routed.incrementAndGet();
+            AiEndpoint first = ranked.get(0);
+            if (ranked.size() == 1) {
+                return send(first, prompt, body, null);
+            }
+            AiEndpoint second = ranked.get(1);
+            
+            AtomicReference<Throwable> lastFailure = new AtomicReference<>();
+            // Tells the backup whether the first endpoint failed in a way worth trying elsewhere
+            Sinks.One<Boolean> firstFailed = Sinks.one();
+            Mono<AiResponseReader.Completion> primary = send(first, prompt, body, lastFailure)
+                    .doOnError(e -> firstFailed.tryEmitValue(AiRateLimiter.isRetryable(e)));
+            
+            Mono<String> failover = firstFailed.asMono().filter(retryable -> retryable).map(retryable -> "failover");
+            Duration hedgeDelay = hedgeDelay(first);
+            Mono<String> hedge = hedgeDelay == null ? Mono.never() : Mono.delay(hedgeDelay)
+                    .filter(tick -> tryHedge())
+                    .map(tick -> "hedge")
+                    .switchIfEmpty(failover);
+            Mono<AiResponseReader.Completion> backup = Mono.firstWithSignal(hedge, failover)
+                    .flatMap(reason -> {
+                        ("hedge".equals(reason) ? hedges : failovers).increment();
+                        return send(second, prompt, body, lastFailure);
+                    });
+            
+            return Mono.firstWithValue(primary, backup)
+                    .onErrorMap(e -> lastFailure.get() != null ? lastFailure.get() : e);
+        });
+    }
+    
+    /**
+     * Streams {@code body} from the best endpoint, moving on to the next one when an endpoint
+     * fails with a retryable error before sending anything.
+     */
+    Flux<ServerSentEvent<String>> stream(String prompt, byte[] body) {
+        return Flux.defer(() -> {
+            routed.incrementAndGet();
+            return stream(rank(), 0, prompt, body);
+        });
+    }
+    
+    private Flux<ServerSentEvent<String>> stream(List<AiEndpoint> ranked, int index, String prompt, byte[] body) {
+        AiEndpoint endpoint = ranked.get(index);
+        AtomicBoolean started = new AtomicBoolean();
+        Flux<ServerSentEvent<String>> chunks = Flux.deferContextual(ctx -> {
+            markModel(ctx, endpoint);
+            return endpoint.webClient().post()
+                    .uri("/chat/completions")
+                    .accept(MediaType.TEXT_EVENT_STREAM)
+                    .bodyValue(endpoint.body(prompt, body, true))
+                    .retrieve()
+                    .bodyToFlux(SSE_CHUNK)
+                    .doOnNext(chunk -> {
+                        // A stream's duration depends on its length, so it counts as a success without a latency sample
+                        if (started.compareAndSet(false, true)) {
+                            endpoint.succeeded();
+                            markEndpoint(ctx, endpoint);
+                        }
+                    })
+                    .doOnError(e -> failed(endpoint, e))
+                    .doOnCancel(() -> {
+                        if (!started.get()) {
+                            endpoint.abandoned(0);
+                        }
+                    });
+        });
+        if (index + 1 >= ranked.size()) {
+            return chunks;
+        }
+        return chunks.onErrorResume(e -> !started.get() && AiRateLimiter.isRetryable(e), e -> {
+            failovers.increment();
+            return stream(ranked, index + 1, prompt, body);
+        });
+    }
+    
+    private Mono<AiResponseReader.Completion> send(AiEndpoint endpoint, String prompt, byte[] body,
+                                                   AtomicReference<Throwable> lastFailure) {
+        return Mono.deferContextual(ctx -> {
+            markModel(ctx, endpoint);
+            long startNanos = System.nanoTime();
+            AtomicBoolean finished = new AtomicBoolean();
+            // The response is parsed from the joined network buffer, which the reader releases
+            return endpoint.webClient().post()
+                    .uri("/chat/completions")
+                    .bodyValue(endpoint.body(prompt, body, false))
+                    .retrieve()
+                    .bodyToMono(DataBuffer.class)
+                    .map(responseReader::read)
+                    .doOnNext(completion -> {
+                        finished.set(true);
+                        endpoint.succeeded(System.nanoTime() - startNanos);
+                        markEndpoint(ctx, endpoint);
+                    })
+                    .doOnError(e -> {
+                        finished.set(true);
+                        failed(endpoint, e);
+                        if (lastFailure != null) {
+                            lastFailure.set(e);
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (!finished.get()) {
+                            endpoint.abandoned(System.nanoTime() - startNanos);
+                        }
+                    });
+        });
+    }
+    
+    private static void failed(AiEndpoint endpoint, Throwable failure) {
+        if (AiRateLimiter.isRetryable(failure)) {
+            endpoint.failed(System.nanoTime());
+        } else {
+            endpoint.rejected();
+        }
+    }
+    
+    /**
+     * How long to wait for {@code endpoint} before hedging, or null when its call is not hedged.
+     */
+    private Duration hedgeDelay(AiEndpoint endpoint) {
+        if (!routing.getHedging() || endpoint.latencySamples() < MIN_HEDGE_SAMPLES) {
+            return null;
+        }
+        long percentileNanos = endpoint.percentileNanos(routing.getHedgePercentile());
+        return Duration.ofNanos(Math.max(percentileNanos, Duration.ofMillis(routing.getHedgeMinDelayMs()).toNanos()));
+    }
+    
+    /**
+     * Takes a hedge from the budget, which allows one for every {@code 1 / hedge-budget} routed calls.
+     */
+    private boolean tryHedge() {
+        double allowed = routed.get() * routing.getHedgeBudget();
+        while (true) {
+            long current = hedged.get();
+            if (current + 1 > allowed) {
+                return false;
+            }
+            if (hedged.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Tags the enclosing {@code ai.request} observation with the endpoint that answered and its model.
+     */
+    private static void markEndpoint(ContextView ctx, AiEndpoint endpoint) {
+        ctx.<Observation>getOrEmpty(ObservationThreadLocalAccessor.KEY)
+                .ifPresent(observation -> observation
+                        .lowCardinalityKeyValue("endpoint", endpoint.name())
+                        .lowCardinalityKeyValue("model", endpoint.model()));
+        markModel(ctx, endpoint);
+    }
+    
+    /**
+     * Tells the caller which model the request went to, so it can tag its token and timeout
+     * meters; the answering endpoint sets it last.
+     */
+    private static void markModel(ContextView ctx, AiEndpoint endpoint) {
+        ctx.<AtomicReference<String>>getOrEmpty(MODEL_KEY).ifPresent(model -> model.set(endpoint.model()));
+    }
+}
@@ -1,123 +1,376 @@
-package com.aisuite.service;
-
-import com.aisuite.config.AiConfig;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.publisher.Mono;
-import reactor.util.retry.Retry;
-
-import java.time.Duration;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
-@Service
-@Slf4j
-public class AiService {
-    
-    private final AiConfig aiConfig;
-    private final WebClient webClient;
-    private final ObjectMapper objectMapper;
-    
-    public AiService(AiConfig aiConfig, ObjectMapper objectMapper) {
-        this.aiConfig = aiConfig;
-        this.objectMapper = objectMapper;
-        this.webClient = WebClient.builder()
-                .baseUrl(aiConfig.getOpenai().getBaseUrl())
-                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + aiConfig.getOpenai().getApiKey())
-                .build();
-    }
-    
-    public String processWithAI(String prompt, Map<String, Object> context) {
-        try {
-            log.info("Processing AI request with prompt: {}", prompt);
-            
-            Map<String, Object> requestBody = buildRequest(prompt, context);
-            
-            String response = webClient.post()
-                    .uri("/chat/completions")
-                    .bodyValue(requestBody)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .retryWhen(Retry.fixedDelay(aiConfig.getAutomation().getMaxRetries(), 
-                            Duration.ofSeconds(2)))
-                    .timeout(Duration.ofSeconds(aiConfig.getAutomation().getTimeoutSeconds()))
-                    .block();
-            
-            JsonNode jsonResponse = objectMapper.readTree(response);
-            String aiResponse = jsonResponse.get("choices")
-                    .get(0)
-                    .get("message")
-                    .get("content")
-                    .asText();
-            
-            log.info("AI processing completed successfully");
-            return aiResponse;
-            
-        } catch (Exception e) {
-            log.error("Error processing AI request: {}", e.getMessage(), e);
-            throw new RuntimeException("AI processing failed: " + e.getMessage(), e);
-        }
-    }
-    
-    public Map<String, Object> analyzeDataWithAI(String data, String analysisType) {
-        String prompt = String.format(
-                "Analyze the following %s data and provide structured insights:\n\n%s\n\n" +
-                "Provide a JSON response with: summary, keyFindings, recommendations, and riskLevel",
-                analysisType, data
-        );
-        
-        String aiResponse = processWithAI(prompt, Map.of("analysisType", analysisType));
-        
-        try {
-            JsonNode jsonNode = objectMapper.readTree(aiResponse);
-            Map<String, Object> result = new HashMap<>();
-            result.put("summary", jsonNode.path("summary").asText("Analysis completed"));
-            result.put("keyFindings", jsonNode.path("keyFindings"));
-            result.put("recommendations", jsonNode.path("recommendations"));
-            result.put("riskLevel", jsonNode.path("riskLevel").asText("MEDIUM"));
-            return result;
-        } catch (Exception e) {
-            log.warn("Failed to parse AI response as JSON, returning raw response");
-            Map<String, Object> result = new HashMap<>();
-            result.put("rawResponse", aiResponse);
-            return result;
-        }
-    }
-    
-    public String generateDecision(String scenario, Map<String, Object> parameters) {
-        String prompt = String.format(
-                "Given the following business scenario and parameters, provide a decision:\n\n" +
-                "Scenario: %s\nParameters: %s\n\n" +
-                "Provide a clear decision with reasoning.",
-                scenario, parameters
-        );
-        
-        return processWithAI(prompt, parameters);
-    }
-    
-    private Map<String, Object> buildRequest(String prompt, Map<String, Object> context) {
-        Map<String, Object> request = new HashMap<>();
-        
-        List<Map<String, String>> messages = List.of(
-                Map.of("role", "system", "content", 
-                        "You are an AI assistant specialized in business process automation. " +
-                        "Provide clear, actionable responses in JSON format when possible."),
-                Map.of("role", "user", "content", prompt)
-        );
-        
-        request.put("model", aiConfig.getOpenai().getModel());
-        request.put("messages", messages);
-        request.put("max_tokens", aiConfig.getOpenai().getMaxTokens());
-        request.put("temperature", aiConfig.getOpenai().getTemperature());
-        
-        return request;
-    }
-}
-
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Service
+@Slf4j
+public class AiService {
+    
+    private final AiConfig aiConfig;
+    private final AiRouter router;
+    private final ObjectMapper objectMapper;
+    private final AiRequestWriter requestWriter;
+    private final AiResponseReader responseReader;
+    private final AiResponseCache responseCache;
+    private final AiRequestCoalescer requestCoalescer;
+    private final AiRateLimiter rateLimiter;
+    private final ObservationRegistry observationRegistry;
+    private final MeterRegistry meterRegistry;
+    // Token, timeout and first-token meters by the model of the endpoint that was called
+    private final Map<String, ModelMeters> modelMeters = new ConcurrentHashMap<>();
+    
+    public AiService(AiConfig aiConfig, ObjectMapper objectMapper, AiResponseCache responseCache,
+                     AiRequestCoalescer requestCoalescer, AiRateLimiter rateLimiter,
+                     MeterRegistry meterRegistry, ObservationRegistry observationRegistry) {
+        this.aiConfig = aiConfig;
+        this.objectMapper = objectMapper;
+        this.responseCache = responseCache;
+        this.requestCoalescer = requestCoalescer;
+        this.rateLimiter = rateLimiter;
+        this.observationRegistry = observationRegistry;
+        this.meterRegistry = meterRegistry;
+        meters(aiConfig.getOpenai().getModel());
+        this.requestWriter = new AiRequestWriter(aiConfig.getOpenai(), objectMapper);
+        this.responseReader = new AiResponseReader(objectMapper.getFactory());
+        this.router = new AiRouter(aiConfig, objectMapper, responseReader, meterRegistry, observationRegistry);
+    }
+    
+    /**
+     * Blocking variant of {@link #processWithAIAsync}. Only use it from threads that are
+     * allowed to wait for the full LLM round trip.
+     */
+    public String processWithAI(String prompt, Map<String, Object> context) {
+        return processWithAIAsync(prompt, context).block();
+    }
+    
+    /**
+     * Like {@link #processWithAI(String, Map)}, adding the tokens the completion used to {@code usage}.
+     */
+    public String processWithAI(String prompt, Map<String, Object> context, TokenUsage usage) {
+        return processWithAIAsync(prompt, context).contextWrite(usage::into).block();
+    }
+    
+    /**
+     * Sends the prompt to the completions endpoint without holding a thread while the
+     * provider is working. Errors are surfaced as {@code RuntimeException("AI processing failed: ...")}.
+     */
+    public Mono<String> processWithAIAsync(String prompt, Map<String, Object> context) {
+        return observe("complete", Mono.defer(() -> {
+                    log.info("Processing AI request with prompt: {}", prompt);
+                    
+                    AiRequestWriter.Template template = requestWriter.template();
+                    byte[] requestBody = requestWriter.write(template, prompt, false);
+                    AtomicReference<String> model = new AtomicReference<>(aiConfig.getOpenai().getModel());
+                    
+                    // Every attempt, retries included, goes through the rate limiter and is routed
+                    // afresh, so a retry goes to whichever endpoint is best by then. The timeout is
+                    // per attempt: a timed-out attempt releases its permit as a failure, which lowers
+                    // the concurrency limit, and is retried like any other overload
+                    Mono<String> completion = rateLimiter.execute(estimateTokens(requestBody), permit -> router
+                                    .complete(prompt, requestBody)
+                                    .contextWrite(ctx -> ctx.put(AiRouter.MODEL_KEY, model))
+                                    .timeout(attemptTimeout())
+                                    .doOnError(TimeoutException.class, e -> meters(model.get()).timeouts().increment())
+                                    .doOnNext(response -> permit.recordUsage(totalTokens(response.usage())))
+                                    .transformDeferredContextual((response, ctx) -> response
+                                            .doOnNext(parsed -> recordUsage(ctx, model.get(), parsed.usage()))))
+                            .retryWhen(rateLimiter.retryPolicy())
+                            .map(AiResponseReader.Completion::content)
+                            .doOnNext(aiResponse -> log.info("AI processing completed successfully"));
+                    
+                    String key = fingerprint(requestBody);
+                    if (!responseCache.isCacheable(template.temperature())) {
+                        return coalesce(key, completion);
+                    }
+                    return responseCache.get(key)
+                            .doOnNext(cached -> log.info("AI response served from cache"))
+                            .transformDeferredContextual((cached, ctx) -> cached.doOnNext(hit -> markCached(ctx)))
+                            .switchIfEmpty(coalesce(key,
+                                    completion.doOnNext(aiResponse -> responseCache.put(key, aiResponse))));
+                })
+                .onErrorMap(e -> {
+                    log.error("Error processing AI request: {}", e.getMessage(), e);
+                    return new RuntimeException("AI processing failed: " + e.getMessage(), e);
+                }));
+    }
+    
+    /**
+     * Streams the completion as content deltas while the provider generates it. Chunks are
+     * decoded one server-sent event at a time, so the first delta is emitted as soon as it
+     * arrives. Cached completions are replayed as a single delta, and a streamed completion is
+     * cached once it finishes. The timeout applies to each attempt's gap between chunks.
+     */
+    public Flux<String> streamWithAI(String prompt, Map<String, Object> context) {
+        return observe("stream", Flux.defer(() -> {
+                    log.info("Streaming AI request with prompt: {}", prompt);
+                    long startNanos = System.nanoTime();
+                    
+                    // Keyed like the same completion requested without streaming, so the two share cache entries
+                    AiRequestWriter.Template template = requestWriter.template();
+                    String key = fingerprint(requestWriter.write(template, prompt, false));
+                    boolean cacheable = responseCache.isCacheable(template.temperature());
+                    
+                    byte[] requestBody = requestWriter.write(template, prompt, true);
+                    StringBuilder content = new StringBuilder();
+                    // Once output has been emitted a retry would repeat it, so only failures
+                    // before the first chunk are retried
+                    AtomicBoolean started = new AtomicBoolean();
+                    AtomicBoolean firstDelta = new AtomicBoolean();
+                    AtomicReference<String> model = new AtomicReference<>(aiConfig.getOpenai().getModel());
+                    Flux<String> deltas = rateLimiter.executeMany(estimateTokens(requestBody),
+                                    permit -> router.stream(prompt, requestBody)
+                                            .contextWrite(ctx -> ctx.put(AiRouter.MODEL_KEY, model))
+                                            .timeout(attemptTimeout())
+                                            .doOnError(TimeoutException.class, e -> meters(model.get()).timeouts().increment()))
+                            .doOnNext(chunk -> started.set(true))
+                            .retryWhen(rateLimiter.retryPolicy(() -> !started.get()))
+                            .map(ServerSentEvent::data)
+                            .takeWhile(data -> !"[DONE]".equals(data))
+                            .transformDeferredContextual((chunks, ctx) -> chunks.map(chunk -> extractDelta(chunk, ctx, model.get())))
+                            .filter(delta -> !delta.isEmpty())
+                            .doOnNext(delta -> {
+                                if (firstDelta.compareAndSet(false, true)) {
+                                    meters(model.get()).firstToken().record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+                                }
+                            });
+                    if (!cacheable) {
+                        return deltas;
+                    }
+                    return responseCache.get(key)
+                            .doOnNext(cached -> log.info("AI response served from cache"))
+                            .transformDeferredContextual((cached, ctx) -> cached.doOnNext(hit -> markCached(ctx)))
+                            .flux()
+                            .switchIfEmpty(deltas
+                                    .doOnNext(content::append)
+                                    .doOnComplete(() -> responseCache.put(key, content.toString())));
+                })
+                .onErrorMap(e -> {
+                    log.error("Error streaming AI request: {}", e.getMessage(), e);
+                    return new RuntimeException("AI processing failed: " + e.getMessage(), e);
+                }));
+    }
+    
+    public Map<String, Object> analyzeDataWithAI(String data, String analysisType) {
+        return analyzeDataWithAIAsync(data, analysisType).block();
+    }
+    
+    public Mono<Map<String, Object>> analyzeDataWithAIAsync(String data, String analysisType) {
+        String prompt = String.format(
+                "Analyze the following %s data and provide structured insights:\n\n%s\n\n" +
+                "Provide a JSON response with: summary, keyFindings, recommendations, and riskLevel",
+                analysisType, data
+        );
+        
+        return processWithAIAsync(prompt, Map.of("analysisType", analysisType))
+                .map(this::parseAnalysis);
+    }
+    
+    public String generateDecision(String scenario, Map<String, Object> parameters) {
+        return generateDecisionAsync(scenario, parameters).block();
+    }
+    
+    public Mono<String> generateDecisionAsync(String scenario, Map<String, Object> parameters) {
+        String prompt = String.format(
+                "Given the following business scenario and parameters, provide a decision:\n\n" +
+                "Scenario: %s\nParameters: %s\n\n" +
+                "Provide a clear decision with reasoning.",
+                scenario, parameters
+        );
+        
+        return processWithAIAsync(prompt, parameters);
+    }
+    
+    /**
+     * Times a completion as an {@code ai.request} observation, the child of whatever observation
+     * the subscriber carries in its Reactor context or, failing that, on its thread (such as the
+     * workflow step making the call). Its {@code source} tag tells cached answers from calls to
+     * the provider, its {@code endpoint} and {@code model} tags name the endpoint that answered,
+     * and its error is the cause of the wrapping {@code AI processing failed} error.
+     */
+    private Mono<String> observe(String operation, Mono<String> completion) {
+        return Mono.deferContextual(ctx -> {
+            Observation observation = startObservation(operation, ctx);
+            return completion
+                    .doOnError(e -> observation.error(e.getCause() != null ? e.getCause() : e))
+                    .doOnTerminate(observation::stop)
+                    .doOnCancel(observation::stop)
+                    .contextWrite(context -> context.put(ObservationThreadLocalAccessor.KEY, observation));
+        });
+    }
+    
+    private Flux<String> observe(String operation, Flux<String> deltas) {
+        return Flux.deferContextual(ctx -> {
+            Observation observation = startObservation(operation, ctx);
+            return deltas
+                    .doOnError(e -> observation.error(e.getCause() != null ? e.getCause() : e))
+                    .doOnTerminate(observation::stop)
+                    .doOnCancel(observation::stop)
+                    .contextWrite(context -> context.put(ObservationThreadLocalAccessor.KEY, observation));
+        });
+    }
+    
+    private Observation startObservation(String operation, ContextView ctx) {
+        Observation parent = ctx.getOrDefault(ObservationThreadLocalAccessor.KEY,
+                observationRegistry.getCurrentObservation());
+        return Observation.createNotStarted("ai.request", observationRegistry)
+                .contextualName("ai " + operation)
+                .parentObservation(parent)
+                .lowCardinalityKeyValue("model", aiConfig.getOpenai().getModel())
+                .lowCardinalityKeyValue("operation", operation)
+                .lowCardinalityKeyValue("source", "provider")
+                // Set to the endpoint that answered and its model; cached answers keep the defaults
+                .lowCardinalityKeyValue("endpoint", "none")
+                .start();
+    }
+    
+    private static void markCached(ContextView ctx) {
+        ctx.<Observation>getOrEmpty(ObservationThreadLocalAccessor.KEY)
+                .ifPresent(observation -> observation.lowCardinalityKeyValue("source", "cache"));
+    }
+    
+    private void recordUsage(ContextView ctx, String model, AiResponseReader.Usage usage) {
+        TokenUsage.record(ctx, usage);
+        if (usage != null) {
+            ModelMeters meters = meters(model);
+            meters.promptTokens().increment(usage.promptTokens());
+            meters.completionTokens().increment(usage.completionTokens());
+        }
+    }
+    
+    private ModelMeters meters(String model) {
+        return modelMeters.computeIfAbsent(model, name -> new ModelMeters(
+                Counter.builder("ai.tokens")
+                        .description("Tokens the provider reported using, cached responses excluded")
+                        .tags("model", name, "type", "prompt")
+                        .register(meterRegistry),
+                Counter.builder("ai.tokens")
+                        .description("Tokens the provider reported using, cached responses excluded")
+                        .tags("model", name, "type", "completion")
+                        .register(meterRegistry),
+                Counter.builder("ai.requests.timeouts")
+                        .description("Attempts abandoned after ai.automation.timeout-seconds, retried ones included")
+                        .tag("model", name)
+                        .register(meterRegistry),
+                Timer.builder("ai.stream.first.token")
+                        .description("Time from starting a streamed completion to its first content delta")
+                        .tag("model", name)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry)));
+    }
+    
+    private static int totalTokens(AiResponseReader.Usage usage) {
+        return usage != null ? (int) usage.totalTokens() : -1;
+    }
+    
+    private Duration attemptTimeout() {
+        return Duration.ofSeconds(aiConfig.getAutomation().getTimeoutSeconds());
+    }
+    
+    private Mono<String> coalesce(String key, Mono<String> completion) {
+        if (!aiConfig.getAutomation().getCoalesceRequests()) {
+            return completion;
+        }
+        return requestCoalescer.execute(key, () -> completion);
+    }
+    
+    static String fingerprint(byte[] requestBody) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(requestBody));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    /**
+     * Rough token estimate for rate limiting: about four bytes of request per prompt token,
+     * plus the completion budget.
+     */
+    private int estimateTokens(byte[] requestBody) {
+        return requestBody.length / 4 + aiConfig.getOpenai().getMaxTokens();
+    }
+    
+    /**
+     * Reads the content delta of a stream chunk. Providers that report usage on streams do so
+     * in a chunk of its own, which is recorded here.
+     */
+    private String extractDelta(String chunk, ContextView ctx, String model) {
+        AiResponseReader.Completion delta = responseReader.readChunk(chunk);
+        recordUsage(ctx, model, delta.usage());
+        return delta.content();
+    }
+    
+    /**
+     * Reads the analysis fields from the completion content. Only their values are built into
+     * trees; anything else the model added is skipped.
+     */
+    Map<String, Object> parseAnalysis(String aiResponse) {
+        try (JsonParser parser = objectMapper.createParser(aiResponse)) {
+            JsonToken first = parser.nextToken();
+            if (first != JsonToken.START_OBJECT) {
+                return toAnalysis(first != null ? parser.readValueAsTree() : MissingNode.getInstance());
+            }
+            Map<String, Object> result = new HashMap<>();
+            result.put("summary", "Analysis completed");
+            result.put("keyFindings", MissingNode.getInstance());
+            result.put("recommendations", MissingNode.getInstance());
+            result.put("riskLevel", "MEDIUM");
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "summary", "riskLevel" -> result.put(field,
+                            parser.<JsonNode>readValueAsTree().asText((String) result.get(field)));
+                    case "keyFindings", "recommendations" -> result.put(field, parser.readValueAsTree());
+                    default -> parser.skipChildren();
+                }
+            }
+            return result;
+        } catch (Exception e) {
+            log.warn("Failed to parse AI response as JSON, returning raw response");
+            Map<String, Object> result = new HashMap<>();
+            result.put("rawResponse", aiResponse);
+            return result;
+        }
+    }
+    
+    Map<String, Object> toAnalysis(JsonNode jsonNode) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("summary", jsonNode.path("summary").asText("Analysis completed"));
+        result.put("keyFindings", jsonNode.path("keyFindings"));
+        result.put("recommendations", jsonNode.path("recommendations"));
+        result.put("riskLevel", jsonNode.path("riskLevel").asText("MEDIUM"));
+        return result;
+    }
+    
+    private record ModelMeters(Counter promptTokens, Counter completionTokens, Counter timeouts, Timer firstToken) {
+    }
+}
@@ -0,0 +1,42 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Identifies this engine instance among the instances sharing the database. Executions it
+ * claims carry the id, and so do its metrics as the {@code node} tag. Set
+ * {@code ai.cluster.node-id} to a name that survives restarts, such as a pod name, and a
+ * restarted instance takes back its own interrupted executions at once instead of waiting for
+ * their leases to expire.
+ */
+@Component
+@Slf4j
+public class ClusterNode {
+    
+    private final String id;
+    
+    public ClusterNode(AiConfig aiConfig) {
+        String configured = aiConfig.getCluster().getNodeId();
+        this.id = configured != null && !configured.isBlank()
+                ? configured
+                : hostName() + "-" + ProcessHandle.current().pid();
+        log.info("Engine node id: {}", id);
+    }
+    
+    public String getId() {
+        return id;
+    }
+    
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.aisuite.service;
+
+import com.aisuite.model.WorkflowStep;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Turns the {@code condition} of a CONDITIONAL step's configuration into a reusable
+ * {@link Condition}. Compiled conditions are cached by step id and configuration, so a step is
+ * parsed once per version of its configuration rather than on every evaluation.
+ * <p>
+ * The legacy {@code "success"} condition holds when no context value mentions {@code Error};
+ * anything else is a {@link ConditionExpression}. Steps without a condition always pass.
+ */
+@Component
+@RequiredArgsConstructor
+public class ConditionCompiler {
+    
+    private static final int MAX_CACHED_STEPS = 10_000;
+    private static final int MAX_PARSED_RESULTS = 1_000;
+    
+    private static final Condition ALWAYS = context -> true;
+    
+    private static final Condition SUCCESS = context -> {
+        for (Object value : context.values()) {
+            if (value != null && value.toString().contains("Error")) {
+                return false;
+            }
+        }
+        return true;
+    };
+    
+    @FunctionalInterface
+    public interface Condition {
+        boolean test(Map<String, Object> context);
+    }
+    
+    private record Compiled(String configuration, Condition condition) {
+    }
+    
+    private final ObjectMapper objectMapper;
+    
+    private final Cache<Long, Compiled> cache = Caffeine.newBuilder()
+            .maximumSize(MAX_CACHED_STEPS)
+            .build();
+    
+    // Step results are immutable strings shared by every condition that reads them, so each is
+    // parsed once; weak keys compare by identity and drop entries with their execution context
+    private final Cache<String, JsonNode> parsedResults = Caffeine.newBuilder()
+            .weakKeys()
+            .maximumSize(MAX_PARSED_RESULTS)
+            .build();
+    
+    /**
+     * @throws IllegalArgumentException if the configuration or expression is malformed
+     */
+    public Condition compile(WorkflowStep step) {
+        String configuration = step.getConfiguration();
+        if (step.getId() == null) {
+            return compile(configuration);
+        }
+        Compiled compiled = cache.getIfPresent(step.getId());
+        // Same id with a different configuration means the step was edited
+        if (compiled == null || !compiled.configuration().equals(String.valueOf(configuration))) {
+            compiled = new Compiled(String.valueOf(configuration), compile(configuration));
+            cache.put(step.getId(), compiled);
+        }
+        return compiled.condition();
+    }
+    
+    public void invalidate(Long stepId) {
+        cache.invalidate(stepId);
+    }
+    
+    long cachedSteps() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+    
+    private Condition compile(String configuration) {
+        if (configuration == null || configuration.isBlank()) {
+            return ALWAYS;
+        }
+        JsonNode condition;
+        try {
+            condition = objectMapper.readTree(configuration).path("condition");
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid step configuration: " + e.getMessage(), e);
+        }
+        if (condition.isMissingNode() || condition.isNull()) {
+            return ALWAYS;
+        }
+        if (condition.isBoolean()) {
+            return condition.booleanValue() ? ALWAYS : context -> false;
+        }
+        String source = condition.asText();
+        if ("success".equals(source)) {
+            return SUCCESS;
+        }
+        ConditionExpression expression = ConditionExpression.compile(source);
+        return context -> expression.test(context, this::parseResult);
+    }
+    
+    private JsonNode parseResult(String text) {
+        JsonNode node = parsedResults.get(text, json -> {
+            try {
+                return objectMapper.readTree(json);
+            } catch (Exception e) {
+                return MissingNode.getInstance();
+            }
+        });
+        return node.isMissingNode() ? null : node;
+    }
+}
@@ -0,0 +1,717 @@
+package com.aisuite.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled condition expression over an execution context. The source is parsed once into a tree
+ * of nodes with constant sub-expressions folded and literal regular expressions precompiled;
+ * evaluation only walks that tree.
+ * <p>
+ * Syntax:
+ * <ul>
+ *   <li>literals: numbers, {@code 'text'} or {@code "text"}, {@code true}, {@code false}, {@code null}</li>
+ *   <li>context access: {@code amount}, {@code customer.address.country}, {@code items[0].price},
+ *   {@code step_3.riskLevel}. Step results that hold JSON text are read as JSON, and missing
+ *   keys evaluate to {@code null}</li>
+ *   <li>operators, by increasing precedence: {@code || or}, {@code && and}, {@code == !=},
+ *   {@code < <= > >=}, {@code + -}, {@code * / %}, {@code ! not} and unary {@code -}</li>
+ *   <li>functions: {@code len, lower, upper, trim, contains, startsWith, endsWith, matches,
+ *   number, string, abs, min, max, round, floor, ceil, isEmpty}</li>
+ * </ul>
+ * Numbers compare numerically, including numeric text; {@code +} concatenates when either side is
+ * text. The final value is truthy unless it is {@code null}, {@code false}, zero or empty.
+ */
+final class ConditionExpression {
+    
+    private final String source;
+    private final Node root;
+    
+    private ConditionExpression(String source, Node root) {
+        this.source = source;
+        this.root = root;
+    }
+    
+    /**
+     * @throws IllegalArgumentException if the expression is malformed
+     */
+    static ConditionExpression compile(String source) {
+        return new ConditionExpression(source, new Parser(source).parse());
+    }
+    
+    /**
+     * @param json parses text values on path access; returns null for text that is not JSON
+     */
+    boolean test(Map<String, Object> context, Function<String, JsonNode> json) {
+        return truthy(root.eval(new Scope(context, json)));
+    }
+    
+    /**
+     * Evaluates to the expression's value rather than its truthiness, e.g. for computed fields.
+     */
+    Object evaluate(Map<String, Object> context, Function<String, JsonNode> json) {
+        return root.eval(new Scope(context, json));
+    }
+    
+    @Override
+    public String toString() {
+        return source;
+    }
+    
+    private record Scope(Map<String, Object> variables, Function<String, JsonNode> json) {
+    }
+    
+    @FunctionalInterface
+    private interface Node {
+        Object eval(Scope scope);
+    }
+    
+    private record Literal(Object value) implements Node {
+        @Override
+        public Object eval(Scope scope) {
+            return value;
+        }
+    }
+    
+    // ----- value semantics -----
+    
+    static boolean truthy(Object value) {
+        if (value == null) {
+            return false;
+        }
+        if (value instanceof Boolean bool) {
+            return bool;
+        }
+        if (value instanceof Number number) {
+            return number.doubleValue() != 0;
+        }
+        if (value instanceof CharSequence text) {
+            return !text.isEmpty();
+        }
+        if (value instanceof Collection<?> collection) {
+            return !collection.isEmpty();
+        }
+        if (value instanceof Map<?, ?> map) {
+            return !map.isEmpty();
+        }
+        if (value instanceof JsonNode node) {
+            return !node.isEmpty();
+        }
+        return true;
+    }
+    
+    /**
+     * Converts JSON values to plain Java values; containers stay as nodes for further access.
+     */
+    private static Object unwrap(JsonNode node) {
+        if (node == null || node.isNull() || node.isMissingNode()) {
+            return null;
+        }
+        if (node.isNumber()) {
+            return node.doubleValue();
+        }
+        if (node.isTextual()) {
+            return node.textValue();
+        }
+        if (node.isBoolean()) {
+            return node.booleanValue();
+        }
+        return node;
+    }
+    
+    private static Object member(Object target, Object key, Scope scope) {
+        if (target == null || key == null) {
+            return null;
+        }
+        if (target instanceof String text) {
+            JsonNode json = looksLikeJson(text) ? scope.json().apply(text) : null;
+            return json == null ? null : member(json, key, scope);
+        }
+        if (target instanceof Map<?, ?> map) {
+            return map.get(key instanceof Number number && !map.containsKey(key) ? indexKey(number) : key);
+        }
+        if (target instanceof JsonNode node) {
+            if (node.isArray()) {
+                Integer index = index(key);
+                return index == null ? null : unwrap(node.get(index));
+            }
+            return unwrap(node.get(key.toString()));
+        }
+        if (target instanceof List<?> list) {
+            Integer index = index(key);
+            return index == null || index < 0 || index >= list.size() ? null : list.get(index);
+        }
+        return null;
+    }
+    
+    private static String indexKey(Number number) {
+        return String.valueOf(number.intValue());
+    }
+    
+    private static Integer index(Object key) {
+        if (key instanceof Number number) {
+            return number.intValue();
+        }
+        Double parsed = toNumber(key);
+        return parsed == null ? null : parsed.intValue();
+    }
+    
+    private static boolean looksLikeJson(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c == '{' || c == '[';
+            }
+        }
+        return false;
+    }
+    
+    static Double toNumber(Object value) {
+        if (value instanceof Number number) {
+            return number.doubleValue();
+        }
+        if (value instanceof Boolean bool) {
+            return bool ? 1.0 : 0.0;
+        }
+        if (value instanceof String text && !text.isBlank()) {
+            try {
+                return Double.parseDouble(text.trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+    
+    private static String toText(Object value) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof Double number && number == Math.rint(number) && !Double.isInfinite(number)) {
+            return String.valueOf(number.longValue());
+        }
+        if (value instanceof JsonNode node) {
+            return node.isTextual() ? node.textValue() : node.toString();
+        }
+        return value.toString();
+    }
+    
+    private static boolean equal(Object left, Object right) {
+        if (left == null || right == null) {
+            return left == right;
+        }
+        if (left instanceof Number || right instanceof Number) {
+            Double a = toNumber(left);
+            Double b = toNumber(right);
+            return a != null && a.equals(b);
+        }
+        if (left instanceof Boolean || right instanceof Boolean) {
+            return Objects.equals(left, right);
+        }
+        return Objects.equals(toText(left), toText(right));
+    }
+    
+    /**
+     * @return the comparison result, or null when the values are not comparable
+     */
+    private static Integer compare(Object left, Object right) {
+        if (left == null || right == null) {
+            return null;
+        }
+        Double a = toNumber(left);
+        Double b = toNumber(right);
+        if (a != null && b != null && !(left instanceof String && right instanceof String)) {
+            return Double.compare(a, b);
+        }
+        if (left instanceof String && right instanceof String) {
+            if (a != null && b != null) {
+                return Double.compare(a, b);
+            }
+            return ((String) left).compareTo((String) right);
+        }
+        return null;
+    }
+    
+    private static double numeric(Object value, String operator) {
+        Double number = toNumber(value);
+        if (number == null) {
+            throw new IllegalArgumentException("Operator " + operator + " needs numbers, got: " + value);
+        }
+        return number;
+    }
+    
+    private static int length(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof CharSequence text) {
+            return text.length();
+        }
+        if (value instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (value instanceof Map<?, ?> map) {
+            return map.size();
+        }
+        if (value instanceof JsonNode node) {
+            return node.size();
+        }
+        return toText(value).length();
+    }
+    
+    // ----- nodes -----
+    
+    private static Node binary(String operator, Node left, Node right) {
+        Node node = switch (operator) {
+            case "||" -> scope -> truthy(left.eval(scope)) || truthy(right.eval(scope));
+            case "&&" -> scope -> truthy(left.eval(scope)) && truthy(right.eval(scope));
+            case "==" -> scope -> equal(left.eval(scope), right.eval(scope));
+            case "!=" -> scope -> !equal(left.eval(scope), right.eval(scope));
+            case "<" -> scope -> {
+                Integer result = compare(left.eval(scope), right.eval(scope));
+                return result != null && result < 0;
+            };
+            case "<=" -> scope -> {
+                Integer result = compare(left.eval(scope), right.eval(scope));
+                return result != null && result <= 0;
+            };
+            case ">" -> scope -> {
+                Integer result = compare(left.eval(scope), right.eval(scope));
+                return result != null && result > 0;
+            };
+            case ">=" -> scope -> {
+                Integer result = compare(left.eval(scope), right.eval(scope));
+                return result != null && result >= 0;
+            };
+            case "+" -> scope -> {
+                Object a = left.eval(scope);
+                Object b = right.eval(scope);
+                if (a instanceof String || b instanceof String) {
+                    return Objects.toString(toText(a), "") + Objects.toString(toText(b), "");
+                }
+                return numeric(a, "+") + numeric(b, "+");
+            };
+            case "-" -> scope -> numeric(left.eval(scope), "-") - numeric(right.eval(scope), "-");
+            case "*" -> scope -> numeric(left.eval(scope), "*") * numeric(right.eval(scope), "*");
+            case "/" -> scope -> numeric(left.eval(scope), "/") / numeric(right.eval(scope), "/");
+            case "%" -> scope -> numeric(left.eval(scope), "%") % numeric(right.eval(scope), "%");
+            default -> throw new IllegalArgumentException("Unknown operator: " + operator);
+        };
+        return fold(node, left, right);
+    }
+    
+    /**
+     * Evaluates nodes whose inputs are all literals once, at compile time.
+     */
+    private static Node fold(Node node, Node... inputs) {
+        for (Node input : inputs) {
+            if (!(input instanceof Literal)) {
+                return node;
+            }
+        }
+        return new Literal(node.eval(null));
+    }
+    
+    private static Node function(String name, List<Node> args, int position) {
+        Node node = switch (name) {
+            case "len" -> {
+                arity(name, args, 1, position);
+                Node arg = args.get(0);
+                yield scope -> (double) length(arg.eval(scope));
+            }
+            case "isEmpty" -> {
+                arity(name, args, 1, position);
+                Node arg = args.get(0);
+                yield scope -> !truthy(arg.eval(scope));
+            }
+            case "lower", "upper", "trim" -> {
+                arity(name, args, 1, position);
+                Node arg = args.get(0);
+                yield scope -> {
+                    String text = toText(arg.eval(scope));
+                    if (text == null) {
+                        return null;
+                    }
+                    return switch (name) {
+                        case "lower" -> text.toLowerCase();
+                        case "upper" -> text.toUpperCase();
+                        default -> text.trim();
+                    };
+                };
+            }
+            case "contains", "startsWith", "endsWith" -> {
+                arity(name, args, 2, position);
+                Node target = args.get(0);
+                Node part = args.get(1);
+                yield scope -> {
+                    Object value = target.eval(scope);
+                    Object search = part.eval(scope);
+                    if (value == null || search == null) {
+                        return false;
+                    }
+                    if ("contains".equals(name) && value instanceof Collection<?> collection) {
+                        return collection.stream().anyMatch(element -> equal(element, search));
+                    }
+                    if ("contains".equals(name) && value instanceof JsonNode array && array.isArray()) {
+                        for (JsonNode element : array) {
+                            if (equal(unwrap(element), search)) {
+                                return true;
+                            }
+                        }
+                        return false;
+                    }
+                    String text = toText(value);
+                    String searchText = toText(search);
+                    return switch (name) {
+                        case "contains" -> text.contains(searchText);
+                        case "startsWith" -> text.startsWith(searchText);
+                        default -> text.endsWith(searchText);
+                    };
+                };
+            }
+            case "matches" -> {
+                arity(name, args, 2, position);
+                Node target = args.get(0);
+                Node regex = args.get(1);
+                if (regex instanceof Literal literal) {
+                    Pattern pattern = Pattern.compile(String.valueOf(literal.value()));
+                    yield scope -> {
+                        String text = toText(target.eval(scope));
+                        return text != null && pattern.matcher(text).find();
+                    };
+                }
+                yield scope -> {
+                    String text = toText(target.eval(scope));
+                    String expression = toText(regex.eval(scope));
+                    return text != null && expression != null && Pattern.compile(expression).matcher(text).find();
+                };
+            }
+            case "number" -> {
+                arity(name, args, 1, position);
+                Node arg = args.get(0);
+                yield scope -> toNumber(arg.eval(scope));
+            }
+            case "string" -> {
+                arity(name, args, 1, position);
+                Node arg = args.get(0);
+                yield scope -> toText(arg.eval(scope));
+            }
+            case "abs", "round", "floor", "ceil" -> {
+                arity(name, args, 1, position);
+                Node arg = args.get(0);
+                yield scope -> {
+                    double value = numeric(arg.eval(scope), name);
+                    return switch (name) {
+                        case "abs" -> Math.abs(value);
+                        case "round" -> (double) Math.round(value);
+                        case "floor" -> Math.floor(value);
+                        default -> Math.ceil(value);
+                    };
+                };
+            }
+            case "min", "max" -> {
+                if (args.isEmpty()) {
+                    throw new IllegalArgumentException(name + "() needs at least one argument at position " + position);
+                }
+                List<Node> values = List.copyOf(args);
+                boolean min = "min".equals(name);
+                yield scope -> {
+                    double result = min ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+                    for (Node value : values) {
+                        double number = numeric(value.eval(scope), name);
+                        result = min ? Math.min(result, number) : Math.max(result, number);
+                    }
+                    return result;
+                };
+            }
+            default -> throw new IllegalArgumentException("Unknown function " + name + "() at position " + position);
+        };
+        return fold(node, args.toArray(new Node[0]));
+    }
+    
+    private static void arity(String name, List<Node> args, int expected, int position) {
+        if (args.size() != expected) {
+            throw new IllegalArgumentException(name + "() takes " + expected + " argument(s), got "
+                    + args.size() + " at position " + position);
+        }
+    }
+    
+    // ----- parser -----
+    
+    /**
+     * Recursive descent parser, one method per precedence level.
+     */
+    private static final class Parser {
+        
+        private final String source;
+        private int position;
+        
+        private Parser(String source) {
+            this.source = source;
+        }
+        
+        private Node parse() {
+            if (source == null || source.isBlank()) {
+                throw new IllegalArgumentException("Condition expression is empty");
+            }
+            Node node = or();
+            skipWhitespace();
+            if (position < source.length()) {
+                throw error("Unexpected '" + source.charAt(position) + "'");
+            }
+            return node;
+        }
+        
+        private Node or() {
+            Node left = and();
+            while (match("||") || matchWord("or")) {
+                left = binary("||", left, and());
+            }
+            return left;
+        }
+        
+        private Node and() {
+            Node left = equality();
+            while (match("&&") || matchWord("and")) {
+                left = binary("&&", left, equality());
+            }
+            return left;
+        }
+        
+        private Node equality() {
+            Node left = comparison();
+            while (true) {
+                if (match("==")) {
+                    left = binary("==", left, comparison());
+                } else if (match("!=")) {
+                    left = binary("!=", left, comparison());
+                } else {
+                    return left;
+                }
+            }
+        }
+        
+        private Node comparison() {
+            Node left = additive();
+            while (true) {
+                if (match("<=")) {
+                    left = binary("<=", left, additive());
+                } else if (match(">=")) {
+                    left = binary(">=", left, additive());
+                } else if (match("<")) {
+                    left = binary("<", left, additive());
+                } else if (match(">")) {
+                    left = binary(">", left, additive());
+                } else {
+                    return left;
+                }
+            }
+        }
+        
+        private Node additive() {
+            Node left = multiplicative();
+            while (true) {
+                if (match("+")) {
+                    left = binary("+", left, multiplicative());
+                } else if (match("-")) {
+                    left = binary("-", left, multiplicative());
+                } else {
+                    return left;
+                }
+            }
+        }
+        
+        private Node multiplicative() {
+            Node left = unary();
+            while (true) {
+                if (match("*")) {
+                    left = binary("*", left, unary());
+                } else if (match("/")) {
+                    left = binary("/", left, unary());
+                } else if (match("%")) {
+                    left = binary("%", left, unary());
+                } else {
+                    return left;
+                }
+            }
+        }
+        
+        private Node unary() {
+            if (match("!") || matchWord("not")) {
+                Node operand = unary();
+                return fold(scope -> !truthy(operand.eval(scope)), operand);
+            }
+            if (match("-")) {
+                Node operand = unary();
+                return fold(scope -> -numeric(operand.eval(scope), "-"), operand);
+            }
+            return postfix(primary());
+        }
+        
+        private Node postfix(Node target) {
+            while (true) {
+                if (match(".")) {
+                    String name = identifier();
+                    Node object = target;
+                    target = scope -> member(object.eval(scope), name, scope);
+                } else if (match("[")) {
+                    Node key = or();
+                    expect("]");
+                    Node object = target;
+                    target = scope -> member(object.eval(scope), key.eval(scope), scope);
+                } else {
+                    return target;
+                }
+            }
+        }
+        
+        private Node primary() {
+            skipWhitespace();
+            if (position >= source.length()) {
+                throw error("Unexpected end of expression");
+            }
+            char c = source.charAt(position);
+            if (c == '(') {
+                position++;
+                Node inner = or();
+                expect(")");
+                return inner;
+            }
+            if (c == '\'' || c == '"') {
+                return new Literal(string(c));
+            }
+            if (Character.isDigit(c) || (c == '.' && position + 1 < source.length()
+                    && Character.isDigit(source.charAt(position + 1)))) {
+                return new Literal(number());
+            }
+            if (Character.isLetter(c) || c == '_' || c == '$') {
+                int start = position;
+                String name = identifier();
+                switch (name) {
+                    case "true":
+                        return new Literal(Boolean.TRUE);
+                    case "false":
+                        return new Literal(Boolean.FALSE);
+                    case "null":
+                        return new Literal(null);
+                    default:
+                        break;
+                }
+                if (match("(")) {
+                    List<Node> args = new ArrayList<>();
+                    if (!match(")")) {
+                        do {
+                            args.add(or());
+                        } while (match(","));
+                        expect(")");
+                    }
+                    return function(name, args, start);
+                }
+                return scope -> scope.variables().get(name);
+            }
+            throw error("Unexpected '" + c + "'");
+        }
+        
+        private String identifier() {
+            skipWhitespace();
+            int start = position;
+            while (position < source.length()) {
+                char c = source.charAt(position);
+                if (!(Character.isLetterOrDigit(c) || c == '_' || c == '$')) {
+                    break;
+                }
+                position++;
+            }
+            if (start == position) {
+                throw error("Expected a name");
+            }
+            return source.substring(start, position);
+        }
+        
+        private String string(char quote) {
+            StringBuilder text = new StringBuilder();
+            position++;
+            while (position < source.length()) {
+                char c = source.charAt(position++);
+                if (c == quote) {
+                    return text.toString();
+                }
+                if (c == '\\' && position < source.length()) {
+                    char escaped = source.charAt(position++);
+                    text.append(switch (escaped) {
+                        case 'n' -> '\n';
+                        case 't' -> '\t';
+                        default -> escaped;
+                    });
+                } else {
+                    text.append(c);
+                }
+            }
+            throw error("Unterminated string");
+        }
+        
+        private Double number() {
+            int start = position;
+            while (position < source.length()
+                    && (Character.isDigit(source.charAt(position)) || source.charAt(position) == '.')) {
+                position++;
+            }
+            try {
+                return Double.parseDouble(source.substring(start, position));
+            } catch (NumberFormatException e) {
+                position = start;
+                throw error("Invalid number");
+            }
+        }
+        
+        private boolean match(String token) {
+            skipWhitespace();
+            if (!source.startsWith(token, position)) {
+                return false;
+            }
+            // Keep "<" from eating the first half of "<=", "=" never stands alone, etc.
+            if (token.length() == 1 && position + 1 < source.length()) {
+                char next = source.charAt(position + 1);
+                if ((token.equals("<") || token.equals(">") || token.equals("!")) && next == '=') {
+                    return false;
+                }
+            }
+            position += token.length();
+            return true;
+        }
+        
+        private boolean matchWord(String word) {
+            skipWhitespace();
+            int end = position + word.length();
+            if (!source.startsWith(word, position)
+                    || (end < source.length() && (Character.isLetterOrDigit(source.charAt(end)) || source.charAt(end) == '_'))) {
+                return false;
+            }
+            position = end;
+            return true;
+        }
+        
+        private void expect(String token) {
+            if (!match(token)) {
+                throw error("Expected '" + token + "'");
+            }
+        }
+        
+        private void skipWhitespace() {
+            while (position < source.length() && Character.isWhitespace(source.charAt(position))) {
+                position++;
+            }
+        }
+        
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + position + " in condition: " + source);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.aisuite.service;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything the dashboard shows, read from running totals rather than execution history.
+ * Rates are fractions between 0 and 1; execution times are in milliseconds.
+ */
+@Data
+public class DashboardStats {
+
+    private int totalWorkflows;
+    private int activeWorkflows;
+    private long queued;
+    private long running;
+    private long completed;
+    private long failed;
+    private long cancelled;
+    // Finished executions
+    private long totalExecutions;
+    private Double successRate;
+    private Long meanExecutionTimeMs;
+    private Long p50ExecutionTimeMs;
+    private Long p95ExecutionTimeMs;
+    private Long p99ExecutionTimeMs;
+    private long aiCalls;
+    private long promptTokens;
+    private long completionTokens;
+    private long totalTokens;
+    private List<WorkflowSummary> workflows = new ArrayList<>();
+    // Finished days from the daily roll-ups, oldest first
+    private List<DailyTrend> daily = new ArrayList<>();
+
+    @Data
+    public static class WorkflowSummary {
+        private Long workflowId;
+        private String name;
+        private String status;
+        private LocalDateTime lastExecutedAt;
+        private long executions;
+        private long completed;
+        private long failed;
+        private long cancelled;
+        private Double successRate;
+        private Long meanExecutionTimeMs;
+        private Long p50ExecutionTimeMs;
+        private Long p95ExecutionTimeMs;
+        private long aiCalls;
+        private long totalTokens;
+    }
+
+    @Data
+    public static class DailyTrend {
+        private LocalDate day;
+        private long executions;
+        private long completed;
+        private long failed;
+    }
+}
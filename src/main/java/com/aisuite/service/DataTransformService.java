@@ -0,0 +1,711 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Runs DATA_TRANSFORMATION pipelines over CSV or JSON-lines records in bounded memory. The
+ * calling thread reads records and groups them into chunks. Chunks are filtered, mapped,
+ * projected and partially aggregated on the transform executor. Results are written out in input
+ * order, and no more than two chunks per worker are held at once, so inputs larger than the heap
+ * stream through.
+ */
+@Service
+@Slf4j
+public class DataTransformService {
+    
+    private static final Pattern METRIC = Pattern.compile("(count|sum|avg|min|max)\\s*\\((.*)\\)\\s*");
+    
+    private final AiConfig aiConfig;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter lineWriter;
+    private final Executor transformExecutor;
+    
+    public DataTransformService(AiConfig aiConfig, ObjectMapper objectMapper, Executor transformExecutor) {
+        this.aiConfig = aiConfig;
+        this.objectMapper = objectMapper;
+        this.lineWriter = objectMapper.writer();
+        this.transformExecutor = transformExecutor;
+    }
+    
+    /**
+     * Receives output rows in input order, one chunk at a time.
+     */
+    public interface RowSink extends AutoCloseable {
+        void accept(List<Map<String, Object>> rows) throws IOException;
+        
+        @Override
+        default void close() throws IOException {
+        }
+    }
+    
+    /**
+     * Runs a step's pipeline, reading its source from a file or the execution context and
+     * writing to the configured output file, or keeping the first rows in the result.
+     */
+    public TransformResult transform(TransformSpec spec, Map<String, Object> context) throws IOException {
+        TransformSpec.Source source = spec.getSource();
+        if (source.getFile() != null) {
+            Path file = resolve(source.getFile());
+            try (Reader reader = open(file)) {
+                return transform(spec, records(reader, source, format(source, file.toString(), null)), null);
+            }
+        }
+        if (source.getContextKey() == null) {
+            throw new IllegalArgumentException("Transform source needs a file or a contextKey");
+        }
+        Object value = context.get(source.getContextKey());
+        if (value == null) {
+            throw new IllegalArgumentException("No data in context key: " + source.getContextKey());
+        }
+        if (value instanceof Collection<?> collection) {
+            return transform(spec, collection.iterator(), null);
+        }
+        String text = value.toString();
+        return transform(spec, records(new StringReader(text), source, format(source, null, text)), null);
+    }
+    
+    /**
+     * Runs a pipeline over a streamed body such as an HTTP request; rows go to {@code sink}
+     * unless the spec names an output file.
+     *
+     * @param contentFormat format to assume when the spec does not set one
+     */
+    public TransformResult transform(TransformSpec spec, InputStream body, String contentFormat, RowSink sink)
+            throws IOException {
+        Reader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8), 1 << 16);
+        String format = spec.getSource().getFormat() != null ? spec.getSource().getFormat() : contentFormat;
+        return transform(spec, records(reader, spec.getSource(), format == null ? "jsonl" : format), sink);
+    }
+    
+    private TransformResult transform(TransformSpec spec, Iterator<?> records, RowSink responseSink) throws IOException {
+        AiConfig.Transform settings = aiConfig.getTransform();
+        int chunkSize = spec.getChunkSize() != null && spec.getChunkSize() > 0 ? spec.getChunkSize() : settings.getChunkSize();
+        int parallelism = spec.getParallelism() != null && spec.getParallelism() > 0
+                ? Math.min(spec.getParallelism(), settings.effectiveParallelism())
+                : settings.effectiveParallelism();
+        Pipeline pipeline = new Pipeline(spec, this::readJson);
+        TransformResult result = new TransformResult();
+        Aggregation total = pipeline.newAggregation();
+        
+        long start = System.nanoTime();
+        try (RowSink sink = sink(spec, responseSink, result, settings.getMaxResultRows())) {
+            Deque<CompletableFuture<ChunkResult>> pending = new ArrayDeque<>();
+            int maxPending = parallelism * 2;
+            long firstRow = 1;
+            List<Object> chunk = new ArrayList<>(chunkSize);
+            try {
+                while (records.hasNext()) {
+                    chunk.add(records.next());
+                    if (chunk.size() == chunkSize) {
+                        pending.add(submit(pipeline, chunk, firstRow));
+                        firstRow += chunk.size();
+                        chunk = new ArrayList<>(chunkSize);
+                        // Write finished chunks in order; wait for the oldest once enough are queued
+                        while (!pending.isEmpty() && (pending.size() >= maxPending || pending.peekFirst().isDone())) {
+                            complete(pending.pollFirst(), sink, total, result);
+                        }
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    pending.add(submit(pipeline, chunk, firstRow));
+                }
+                while (!pending.isEmpty()) {
+                    complete(pending.pollFirst(), sink, total, result);
+                }
+                if (total != null) {
+                    // An aggregate's output is its groups, known only once every chunk is merged
+                    List<Map<String, Object>> groups = total.groups();
+                    sink.accept(groups);
+                    result.setGroups(groups);
+                    result.setRowsOut(groups.size());
+                }
+            } catch (RuntimeException | IOException e) {
+                pending.forEach(future -> future.cancel(true));
+                throw e;
+            }
+        }
+        
+        result.setElapsedMs((System.nanoTime() - start) / 1_000_000);
+        result.setRowsPerSecond(result.getRowsIn() * 1000.0 / Math.max(1, result.getElapsedMs()));
+        log.info("Transformed {} rows into {} in {} ms ({} rows/s)", result.getRowsIn(), result.getRowsOut(),
+                result.getElapsedMs(), Math.round(result.getRowsPerSecond()));
+        return result;
+    }
+    
+    private CompletableFuture<ChunkResult> submit(Pipeline pipeline, List<Object> chunk, long firstRow) {
+        return CompletableFuture.supplyAsync(() -> pipeline.process(chunk, firstRow), transformExecutor);
+    }
+    
+    private static void complete(CompletableFuture<ChunkResult> future, RowSink sink, Aggregation total,
+                                 TransformResult result) throws IOException {
+        ChunkResult chunk;
+        try {
+            chunk = future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+        if (total != null) {
+            total.merge(chunk.aggregation());
+        } else {
+            sink.accept(chunk.rows());
+            result.setRowsOut(result.getRowsOut() + chunk.rows().size());
+        }
+        result.setRowsIn(result.getRowsIn() + chunk.rowsIn());
+        result.setChunks(result.getChunks() + 1);
+    }
+    
+    /**
+     * Chooses where output rows go. An aggregate only ever writes its groups, to the output file
+     * if there is one; otherwise they are returned in {@link TransformResult#getGroups()}.
+     */
+    private RowSink sink(TransformSpec spec, RowSink responseSink, TransformResult result, int maxRows) throws IOException {
+        boolean toFile = spec.getOutput() != null && spec.getOutput().getFile() != null;
+        if (spec.getAggregate() != null && !toFile) {
+            return rows -> { };
+        }
+        if (toFile) {
+            Path file = resolve(spec.getOutput().getFile());
+            result.setOutputFile(spec.getOutput().getFile());
+            return fileSink(file);
+        }
+        if (responseSink != null) {
+            return responseSink;
+        }
+        return rows -> result.addRows(rows, maxRows);
+    }
+    
+    private RowSink fileSink(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        OutputStream out = Files.newOutputStream(file);
+        if (file.toString().endsWith(".gz")) {
+            out = new GZIPOutputStream(out, 1 << 16);
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        boolean csv = file.toString().endsWith(".csv") || file.toString().endsWith(".csv.gz");
+        return csv ? new CsvSink(writer) : jsonLinesSink(writer);
+    }
+    
+    /**
+     * Writes each row as one line of JSON; also used to stream rows back over HTTP.
+     */
+    public RowSink jsonLinesSink(Writer writer) {
+        return new RowSink() {
+            @Override
+            public void accept(List<Map<String, Object>> rows) throws IOException {
+                for (Map<String, Object> row : rows) {
+                    writer.write(lineWriter.writeValueAsString(row));
+                    writer.write('\n');
+                }
+            }
+            
+            @Override
+            public void close() throws IOException {
+                writer.close();
+            }
+        };
+    }
+    
+    /**
+     * Resolves a file name against the data directory, refusing anything that escapes it.
+     */
+    Path resolve(String file) {
+        Path base = Paths.get(aiConfig.getTransform().getDataDirectory()).toAbsolutePath().normalize();
+        Path path = base.resolve(file).normalize();
+        if (!path.startsWith(base)) {
+            throw new IllegalArgumentException("File is outside the data directory: " + file);
+        }
+        return path;
+    }
+    
+    private static Reader open(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        if (file.toString().endsWith(".gz")) {
+            in = new GZIPInputStream(in, 1 << 16);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+    }
+    
+    private static String format(TransformSpec.Source source, String fileName, String text) {
+        if (source.getFormat() != null) {
+            return source.getFormat();
+        }
+        if (fileName != null) {
+            String name = fileName.endsWith(".gz") ? fileName.substring(0, fileName.length() - 3) : fileName;
+            return name.endsWith(".csv") ? "csv" : "jsonl";
+        }
+        return text != null && text.stripLeading().startsWith("{") ? "jsonl" : "csv";
+    }
+    
+    private Iterator<?> records(Reader reader, TransformSpec.Source source, String format) throws IOException {
+        boolean header = !Boolean.FALSE.equals(source.getHeader());
+        String delimiter = source.getDelimiter();
+        return switch (format.toLowerCase()) {
+            case "csv" -> new CsvRecords(reader, delimiter == null || delimiter.isEmpty() ? ',' : delimiter.charAt(0), header);
+            case "tsv" -> new CsvRecords(reader, '\t', header);
+            case "jsonl", "ndjson", "json" -> new JsonLines(reader);
+            default -> throw new IllegalArgumentException("Unsupported transform format: " + format);
+        };
+    }
+    
+    private JsonNode readJson(String text) {
+        try {
+            return objectMapper.readTree(text);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+    
+    // ----- records -----
+    
+    /**
+     * CSV records as rows keyed by header, read one record at a time. Handles quoted fields
+     * with embedded delimiters, quotes and line breaks.
+     */
+    private static final class CsvRecords implements Iterator<Map<String, Object>> {
+        
+        private final Reader reader;
+        private final char delimiter;
+        private final String[] header;
+        private List<String> next;
+        
+        private CsvRecords(Reader reader, char delimiter, boolean hasHeader) throws IOException {
+            // mark/reset is used to look past a closing quote
+            this.reader = reader.markSupported() ? reader : new BufferedReader(reader, 1 << 16);
+            this.delimiter = delimiter;
+            List<String> first = hasHeader ? read() : null;
+            this.header = first == null ? new String[0] : first.toArray(new String[0]);
+            this.next = read();
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+        
+        @Override
+        public Map<String, Object> next() {
+            List<String> fields = next;
+            try {
+                next = read();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            Map<String, Object> row = new LinkedHashMap<>(header.length * 2);
+            for (int i = 0; i < fields.size(); i++) {
+                row.put(i < header.length ? header[i] : "column" + (i + 1), fields.get(i));
+            }
+            return row;
+        }
+        
+        private List<String> read() throws IOException {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean any = false;
+            int c;
+            while ((c = reader.read()) != -1) {
+                any = true;
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        int following = reader.read();
+                        if (following == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            if (following != -1) {
+                                reader.reset();
+                            }
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.isEmpty()) {
+                    quoted = true;
+                } else if (c == delimiter) {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    if (fields.isEmpty() && field.isEmpty()) {
+                        any = false;
+                        continue;
+                    }
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+            }
+            if (!any) {
+                return null;
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+    
+    /**
+     * Non-blank lines of a JSON-lines input, parsed on the workers.
+     */
+    private static final class JsonLines implements Iterator<String> {
+        
+        private final BufferedReader reader;
+        private String next;
+        
+        private JsonLines(Reader reader) throws IOException {
+            this.reader = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader, 1 << 16);
+            advance();
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+        
+        @Override
+        public String next() {
+            String line = next;
+            try {
+                advance();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return line;
+        }
+        
+        private void advance() throws IOException {
+            do {
+                next = reader.readLine();
+            } while (next != null && next.isBlank());
+        }
+    }
+    
+    private static final class CsvSink implements RowSink {
+        
+        private final Writer writer;
+        private List<String> columns;
+        
+        private CsvSink(Writer writer) {
+            this.writer = writer;
+        }
+        
+        @Override
+        public void accept(List<Map<String, Object>> rows) throws IOException {
+            for (Map<String, Object> row : rows) {
+                if (columns == null) {
+                    columns = new ArrayList<>(row.keySet());
+                    writeLine(new ArrayList<>(columns));
+                }
+                List<Object> values = new ArrayList<>(columns.size());
+                for (String column : columns) {
+                    values.add(row.get(column));
+                }
+                writeLine(values);
+            }
+        }
+        
+        private void writeLine(List<?> values) throws IOException {
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                Object value = values.get(i);
+                String text = value == null ? "" : value.toString();
+                if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0) {
+                    writer.write('"');
+                    writer.write(text.replace("\"", "\"\""));
+                    writer.write('"');
+                } else {
+                    writer.write(text);
+                }
+            }
+            writer.write('\n');
+        }
+        
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+    
+    // ----- pipeline -----
+    
+    private record ChunkResult(long rowsIn, List<Map<String, Object>> rows, Aggregation aggregation) {
+    }
+    
+    @FunctionalInterface
+    private interface RowOperation {
+        /**
+         * @return the row to pass on, or null to drop it
+         */
+        Map<String, Object> apply(Map<String, Object> row);
+    }
+    
+    /**
+     * The operations of a spec compiled once and shared by all chunks; chunk state lives in the
+     * objects each call creates.
+     */
+    private final class Pipeline {
+        
+        private final List<RowOperation> operations = new ArrayList<>();
+        private final List<ConditionExpression> groupBy = new ArrayList<>();
+        private final List<String> groupNames = new ArrayList<>();
+        private final List<Metric> metrics = new ArrayList<>();
+        private final boolean aggregate;
+        private final Function<String, JsonNode> json;
+        
+        private Pipeline(TransformSpec spec, Function<String, JsonNode> json) {
+            this.json = json;
+            for (Map<String, Object> operation : spec.getOperations()) {
+                operations.add(compile(operation));
+            }
+            TransformSpec.Aggregate aggregation = spec.getAggregate();
+            this.aggregate = aggregation != null;
+            if (aggregate) {
+                for (String key : aggregation.getGroupBy()) {
+                    groupNames.add(key);
+                    groupBy.add(ConditionExpression.compile(key));
+                }
+                aggregation.getMetrics().forEach((name, definition) -> metrics.add(Metric.parse(name, definition)));
+            }
+        }
+        
+        @SuppressWarnings("unchecked")
+        private RowOperation compile(Map<String, Object> operation) {
+            if (operation.size() != 1) {
+                throw new IllegalArgumentException("Each transform operation needs exactly one of filter, map or project: " + operation);
+            }
+            Map.Entry<String, Object> entry = operation.entrySet().iterator().next();
+            switch (entry.getKey()) {
+                case "filter": {
+                    ConditionExpression condition = ConditionExpression.compile(String.valueOf(entry.getValue()));
+                    return row -> condition.test(row, json) ? row : null;
+                }
+                case "map": {
+                    if (!(entry.getValue() instanceof Map<?, ?> fields)) {
+                        throw new IllegalArgumentException("map needs an object of field expressions");
+                    }
+                    Map<String, ConditionExpression> expressions = new LinkedHashMap<>();
+                    ((Map<String, Object>) fields).forEach((field, expression) ->
+                            expressions.put(field, ConditionExpression.compile(String.valueOf(expression))));
+                    return row -> {
+                        expressions.forEach((field, expression) -> row.put(field, expression.evaluate(row, json)));
+                        return row;
+                    };
+                }
+                case "project": {
+                    if (!(entry.getValue() instanceof List<?> fields)) {
+                        throw new IllegalArgumentException("project needs a list of field names");
+                    }
+                    List<String> names = fields.stream().map(String::valueOf).toList();
+                    return row -> {
+                        Map<String, Object> projected = new LinkedHashMap<>(names.size() * 2);
+                        for (String name : names) {
+                            projected.put(name, row.get(name));
+                        }
+                        return projected;
+                    };
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown transform operation: " + entry.getKey());
+            }
+        }
+        
+        private Aggregation newAggregation() {
+            return aggregate ? new Aggregation(groupNames, metrics) : null;
+        }
+        
+        @SuppressWarnings("unchecked")
+        private ChunkResult process(List<Object> records, long firstRow) {
+            // An aggregating chunk keeps only its group accumulators, not the rows
+            List<Map<String, Object>> rows = aggregate ? List.of() : new ArrayList<>(records.size());
+            Aggregation aggregation = newAggregation();
+            for (int i = 0; i < records.size(); i++) {
+                Object record = records.get(i);
+                try {
+                    Map<String, Object> row = toRow(record);
+                    for (RowOperation operation : operations) {
+                        row = operation.apply(row);
+                        if (row == null) {
+                            break;
+                        }
+                    }
+                    if (row == null) {
+                        continue;
+                    }
+                    if (aggregation != null) {
+                        List<Object> key = new ArrayList<>(groupBy.size());
+                        for (ConditionExpression expression : groupBy) {
+                            key.add(plain(expression.evaluate(row, json)));
+                        }
+                        aggregation.add(key, row, json);
+                    } else {
+                        rows.add(row);
+                    }
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException("Row " + (firstRow + i) + ": " + e.getMessage(), e);
+                }
+            }
+            return new ChunkResult(records.size(), rows, aggregation);
+        }
+        
+        @SuppressWarnings("unchecked")
+        private Map<String, Object> toRow(Object record) {
+            if (record instanceof String line) {
+                try {
+                    return objectMapper.readValue(line, new TypeReference<LinkedHashMap<String, Object>>() {});
+                } catch (Exception e) {
+                    throw new IllegalArgumentException("Invalid JSON line: " + e.getMessage(), e);
+                }
+            }
+            if (record instanceof Map<?, ?> map) {
+                return new LinkedHashMap<>((Map<String, Object>) map);
+            }
+            return objectMapper.convertValue(record, new TypeReference<LinkedHashMap<String, Object>>() {});
+        }
+    }
+    
+    private static Object plain(Object value) {
+        return value instanceof JsonNode node ? node.toString() : value;
+    }
+    
+    private record Metric(String name, String function, ConditionExpression expression) {
+        
+        private static Metric parse(String name, String definition) {
+            Matcher matcher = METRIC.matcher(definition);
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Metric " + name + " must be count(), sum(x), avg(x), min(x) or max(x): " + definition);
+            }
+            String argument = matcher.group(2).trim();
+            if (argument.isEmpty() && !"count".equals(matcher.group(1))) {
+                throw new IllegalArgumentException("Metric " + name + " needs an expression: " + definition);
+            }
+            return new Metric(name, matcher.group(1), argument.isEmpty() ? null : ConditionExpression.compile(argument));
+        }
+    }
+    
+    /**
+     * Per-group accumulators. Each chunk fills its own instance; they are merged in input order.
+     */
+    private static final class Aggregation {
+        
+        private final List<String> groupNames;
+        private final List<Metric> metrics;
+        private final Map<List<Object>, double[][]> groups = new LinkedHashMap<>();
+        
+        private Aggregation(List<String> groupNames, List<Metric> metrics) {
+            this.groupNames = groupNames;
+            this.metrics = metrics;
+        }
+        
+        // Per metric: count, sum, min, max
+        private double[][] newAccumulators() {
+            double[][] accumulators = new double[metrics.size()][];
+            for (int i = 0; i < accumulators.length; i++) {
+                accumulators[i] = new double[]{0, 0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+            }
+            return accumulators;
+        }
+        
+        private void add(List<Object> key, Map<String, Object> row, Function<String, JsonNode> json) {
+            double[][] accumulators = groups.computeIfAbsent(key, k -> newAccumulators());
+            for (int i = 0; i < metrics.size(); i++) {
+                Metric metric = metrics.get(i);
+                double[] accumulator = accumulators[i];
+                if (metric.expression() == null) {
+                    accumulator[0]++;
+                    continue;
+                }
+                Object value = metric.expression().evaluate(row, json);
+                if ("count".equals(metric.function())) {
+                    if (value != null) {
+                        accumulator[0]++;
+                    }
+                    continue;
+                }
+                Double number = ConditionExpression.toNumber(value);
+                if (number == null) {
+                    continue;
+                }
+                accumulator[0]++;
+                accumulator[1] += number;
+                accumulator[2] = Math.min(accumulator[2], number);
+                accumulator[3] = Math.max(accumulator[3], number);
+            }
+        }
+        
+        private void merge(Aggregation other) {
+            other.groups.forEach((key, theirs) -> {
+                double[][] ours = groups.computeIfAbsent(key, k -> newAccumulators());
+                for (int i = 0; i < ours.length; i++) {
+                    ours[i][0] += theirs[i][0];
+                    ours[i][1] += theirs[i][1];
+                    ours[i][2] = Math.min(ours[i][2], theirs[i][2]);
+                    ours[i][3] = Math.max(ours[i][3], theirs[i][3]);
+                }
+            });
+        }
+        
+        private List<Map<String, Object>> groups() {
+            List<Map<String, Object>> result = new ArrayList<>(groups.size());
+            groups.forEach((key, accumulators) -> {
+                Map<String, Object> group = new LinkedHashMap<>();
+                for (int i = 0; i < groupNames.size(); i++) {
+                    group.put(groupNames.get(i), key.get(i));
+                }
+                for (int i = 0; i < metrics.size(); i++) {
+                    double[] accumulator = accumulators[i];
+                    group.put(metrics.get(i).name(), switch (metrics.get(i).function()) {
+                        case "count" -> (long) accumulator[0];
+                        case "sum" -> accumulator[1];
+                        case "avg" -> accumulator[0] == 0 ? null : accumulator[1] / accumulator[0];
+                        case "min" -> accumulator[0] == 0 ? null : accumulator[2];
+                        default -> accumulator[0] == 0 ? null : accumulator[3];
+                    });
+                }
+                result.add(group);
+            });
+            return result;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.aisuite.service;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Logarithmic buckets for execution times, eight per doubling. Bucket {@code b} holds durations
+ * in {@code (2^((b-1)/8), 2^(b/8)]} ms, so reporting the geometric middle of a bucket is at most
+ * about 4.5% off the true value.
+ */
+final class DurationHistogram {
+    
+    private static final int BUCKETS_PER_DOUBLING = 8;
+    
+    private DurationHistogram() {
+    }
+    
+    static int bucketOf(long durationMs) {
+        if (durationMs <= 1) {
+            return 0;
+        }
+        return (int) Math.ceil(BUCKETS_PER_DOUBLING * Math.log(durationMs) / Math.log(2));
+    }
+    
+    static long estimate(int bucket) {
+        if (bucket == 0) {
+            return 1;
+        }
+        return Math.round(Math.pow(2, (bucket - 0.5) / BUCKETS_PER_DOUBLING));
+    }
+    
+    /**
+     * The duration below which {@code quantile} of the counted executions fall, or null when
+     * there are none.
+     */
+    static Long percentile(SortedMap<Integer, Long> counts, double quantile) {
+        long total = counts.values().stream().mapToLong(Long::longValue).sum();
+        if (total == 0) {
+            return null;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (Map.Entry<Integer, Long> bucket : counts.entrySet()) {
+            seen += bucket.getValue();
+            if (seen >= rank) {
+                return estimate(bucket.getKey());
+            }
+        }
+        return estimate(counts.lastKey());
+    }
+}
@@ -0,0 +1,98 @@
+package com.aisuite.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live event stream per workflow execution: step status changes, partial AI output and the
+ * final execution status. Streams exist only while someone is listening or an execution is
+ * publishing, and late subscribers get the most recent events replayed.
+ */
+@Component
+@Slf4j
+public class ExecutionEventPublisher {
+    
+    private static final int REPLAY_EVENTS = 256;
+    
+    public record Event(String type, Map<String, Object> data) {
+    }
+    
+    private final Map<Long, Sinks.Many<Event>> streams = new ConcurrentHashMap<>();
+    
+    public Flux<Event> subscribe(Long executionId) {
+        return sink(executionId).asFlux();
+    }
+    
+    /**
+     * Whether anyone is currently subscribed, so publishers can skip work nobody will see.
+     */
+    public boolean hasSubscribers(Long executionId) {
+        if (executionId == null) {
+            return false;
+        }
+        Sinks.Many<Event> sink = streams.get(executionId);
+        return sink != null && sink.currentSubscriberCount() > 0;
+    }
+    
+    public void publish(Long executionId, String type, Map<String, Object> data) {
+        if (executionId == null) {
+            return;
+        }
+        Sinks.Many<Event> sink = streams.get(executionId);
+        if (sink == null) {
+            return;
+        }
+        // Parallel steps publish from several threads; the sink needs serialized emission
+        synchronized (sink) {
+            sink.tryEmitNext(new Event(type, data));
+        }
+    }
+    
+    /**
+     * Publishes the final event and closes the stream, after the surrounding transaction has
+     * committed so that subscribers re-reading the execution see its final state.
+     */
+    public void complete(Long executionId, String type, Map<String, Object> data) {
+        if (executionId == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            close(executionId, new Event(type, data));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                close(executionId, new Event(type, data));
+            }
+        });
+    }
+    
+    public void close(Long executionId, Event last) {
+        Sinks.Many<Event> sink = streams.remove(executionId);
+        if (sink == null) {
+            return;
+        }
+        synchronized (sink) {
+            if (last != null) {
+                sink.tryEmitNext(last);
+            }
+            sink.tryEmitComplete();
+        }
+    }
+    
+    int openStreams() {
+        return streams.size();
+    }
+    
+    private Sinks.Many<Event> sink(Long executionId) {
+        return streams.computeIfAbsent(executionId, id -> Sinks.many().replay().limit(REPLAY_EVENTS));
+    }
+}
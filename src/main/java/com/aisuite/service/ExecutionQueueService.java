@@ -0,0 +1,377 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.aisuite.model.EngineNode;
+import com.aisuite.model.ExecutionQueueEntry;
+import com.aisuite.model.WorkflowExecution;
+import com.aisuite.repository.EngineNodeRepository;
+import com.aisuite.repository.ExecutionQueueRepository;
+import com.aisuite.repository.WorkflowExecutionRepository;
+import com.aisuite.repository.WorkflowRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent queue in front of {@link WorkflowEngine}. Submissions are stored as QUEUED executions
+ * plus an {@code execution_queue} row and return immediately; the dispatcher claims rows in FIFO
+ * order within the global and per-workflow concurrency limits of {@code ai.queue}. Its depth and
+ * running executions are published as the {@code execution.queue.depth} and
+ * {@code execution.queue.running} gauges.
+ * <p>
+ * Any number of nodes may share the queue. Each claims rows with {@code SKIP LOCKED}, so nodes
+ * polling together take different rows, and runs what it claimed under a lease that its
+ * heartbeat renews every {@code ai.cluster.heartbeat-interval-ms}. When a node stops
+ * heartbeating, the first node to find its leases expired queues those executions again. A
+ * node that stalls past its lease while still running can therefore have its execution run
+ * a second time elsewhere; only the run holding the lease when it finishes records its result.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExecutionQueueService implements MeterBinder {
+    
+    private final AiConfig aiConfig;
+    private final WorkflowRepository workflowRepository;
+    private final WorkflowPlanCache workflowPlans;
+    private final WorkflowExecutionRepository executionRepository;
+    private final ExecutionQueueRepository queueRepository;
+    private final WorkflowEngine workflowEngine;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    // Runs the executions; dispatching after a submit happens on the application executor instead
+    private final AsyncTaskExecutor executionExecutor;
+    private final AsyncTaskExecutor taskExecutor;
+    private final ClusterNode clusterNode;
+    private final EngineNodeRepository nodeRepository;
+    private final ExecutionStatsService executionStats;
+    private final ExecutionEventPublisher executionEvents;
+    
+    private final AtomicInteger running = new AtomicInteger();
+    private final Map<Long, AtomicInteger> runningByWorkflow = new ConcurrentHashMap<>();
+    private final Set<Long> runningExecutionIds = ConcurrentHashMap.newKeySet();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong liveNodes = new AtomicLong(1);
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private final Object heartbeatLock = new Object();
+    private Counter expiredLeases;
+    
+    /**
+     * Queues a run of the workflow and returns its execution without waiting for it to start.
+     *
+     * @throws QueueFullException when the queue is at its configured depth
+     */
+    @Transactional
+    public WorkflowExecution submit(Long workflowId, Map<String, Object> inputData) {
+        AiConfig.Queue settings = aiConfig.getQueue();
+        long depth = queueRepository.count();
+        if (depth >= settings.getMaxQueueDepth()) {
+            throw new QueueFullException((int) depth, settings.getRetryAfterSeconds());
+        }
+        
+        // Only checks that the workflow exists; usually answered from the plan cache
+        workflowPlans.get(workflowId);
+        
+        WorkflowExecution execution = new WorkflowExecution();
+        execution.setWorkflow(workflowRepository.getReferenceById(workflowId));
+        execution.setStatus(WorkflowExecution.ExecutionStatus.QUEUED);
+        execution.setQueuedAt(LocalDateTime.now());
+        execution.setInputData(convertToJson(inputData));
+        execution = executionRepository.save(execution);
+        
+        enqueue(execution, 0);
+        dispatchAfterCommit();
+        
+        log.info("Queued execution {} for workflow {}", execution.getId(), workflowId);
+        return execution;
+    }
+    
+    public long queueDepth() {
+        return queueRepository.count();
+    }
+    
+    public int runningExecutions() {
+        return running.get();
+    }
+    
+    /**
+     * Every node that has heartbeated recently enough to be kept, alive or not.
+     */
+    public List<Map<String, Object>> nodes() {
+        LocalDateTime aliveSince = LocalDateTime.now().minus(Duration.ofMillis(aiConfig.getCluster().getLeaseMs()));
+        List<Map<String, Object>> nodes = new ArrayList<>();
+        for (EngineNode node : nodeRepository.findAllByOrderByNodeIdAsc()) {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("nodeId", node.getNodeId());
+            entry.put("self", node.getNodeId().equals(clusterNode.getId()));
+            entry.put("alive", node.getHeartbeatAt().isAfter(aliveSince));
+            entry.put("startedAt", node.getStartedAt());
+            entry.put("heartbeatAt", node.getHeartbeatAt());
+            entry.put("runningExecutions", node.getRunningExecutions());
+            entry.put("executionsStarted", node.getExecutionsStarted());
+            nodes.add(entry);
+        }
+        return nodes;
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("execution.queue.depth", this, ExecutionQueueService::queueDepth)
+                .description("Executions waiting in the queue")
+                .register(registry);
+        Gauge.builder("execution.queue.running", this, ExecutionQueueService::runningExecutions)
+                .description("Queued executions currently running")
+                .register(registry);
+        Gauge.builder("execution.cluster.nodes", liveNodes, AtomicLong::get)
+                .description("Engine nodes with a current heartbeat, as of this node's last one")
+                .register(registry);
+        expiredLeases = Counter.builder("execution.leases.expired")
+                .description("Executions queued again after the node running them stopped renewing its lease")
+                .register(registry);
+    }
+    
+    @Scheduled(fixedDelayString = "${ai.queue.poll-interval-ms:200}")
+    public synchronized void dispatch() {
+        AiConfig.Queue settings = aiConfig.getQueue();
+        int capacity = settings.getMaxConcurrentExecutions() - running.get();
+        if (capacity <= 0) {
+            return;
+        }
+        
+        List<ExecutionQueueEntry> claimed = claim(capacity, settings.getMaxConcurrentPerWorkflow());
+        for (ExecutionQueueEntry entry : claimed) {
+            AtomicInteger workflowRunning = runningByWorkflow.computeIfAbsent(entry.getWorkflowId(),
+                    id -> new AtomicInteger());
+            running.incrementAndGet();
+            workflowRunning.incrementAndGet();
+            started.incrementAndGet();
+            start(entry, workflowRunning);
+        }
+    }
+    
+    /**
+     * Executions this node was running when its process stopped never finished; put them back on
+     * the queue. Executions without a node are taken too, unless other nodes are alive that may
+     * be running them outside the queue.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverInterruptedExecutions() {
+        heartbeat();
+        boolean alone = liveNodes.get() <= 1;
+        Integer recovered = transactionTemplate.execute(status -> {
+            int count = 0;
+            for (WorkflowExecution execution : executionRepository.findByStatus(WorkflowExecution.ExecutionStatus.RUNNING)) {
+                boolean own = clusterNode.getId().equals(execution.getNodeId())
+                        && !runningExecutionIds.contains(execution.getId());
+                if (!own && !(execution.getNodeId() == null && alone)) {
+                    continue;
+                }
+                requeue(execution, 1);
+                count++;
+            }
+            return count;
+        });
+        if (recovered != null && recovered > 0) {
+            log.warn("Re-queued {} executions interrupted by a restart", recovered);
+        }
+    }
+    
+    /**
+     * Records that this node is alive, renews the leases of the executions it runs, and queues
+     * again the executions of nodes whose leases expired.
+     */
+    @Scheduled(fixedDelayString = "${ai.cluster.heartbeat-interval-ms:5000}")
+    public void heartbeat() {
+        // The startup heartbeat may overlap the first scheduled one
+        synchronized (heartbeatLock) {
+            Duration lease = Duration.ofMillis(aiConfig.getCluster().getLeaseMs());
+            LocalDateTime now = LocalDateTime.now();
+            transactionTemplate.executeWithoutResult(status -> {
+                EngineNode node = nodeRepository.findById(clusterNode.getId())
+                        .orElseGet(() -> new EngineNode(clusterNode.getId(), startedAt, now, 0, 0L));
+                node.setHeartbeatAt(now);
+                node.setRunningExecutions(running.get());
+                node.setExecutionsStarted(started.get());
+                nodeRepository.save(node);
+                executionRepository.renewLeases(clusterNode.getId(), now.plus(lease));
+                // Keeps the node list to recent nodes without racing a node that is merely late
+                nodeRepository.deleteByHeartbeatAtBefore(now.minus(lease.multipliedBy(10)));
+            });
+            liveNodes.set(nodeRepository.countByHeartbeatAtAfter(now.minus(lease)));
+            reassignExpiredLeases(now);
+        }
+    }
+    
+    /**
+     * Claims up to {@code capacity} queued executions, leased to this node, in FIFO order within
+     * the per-workflow limit.
+     */
+    private List<ExecutionQueueEntry> claim(int capacity, int maxPerWorkflow) {
+        LocalDateTime leaseExpiresAt = LocalDateTime.now().plus(Duration.ofMillis(aiConfig.getCluster().getLeaseMs()));
+        return transactionTemplate.execute(status -> {
+            // Look past the head of the queue so one saturated workflow does not block the others
+            List<ExecutionQueueEntry> candidates = queueRepository.lockHead(Math.max(capacity * 4, 32));
+            List<ExecutionQueueEntry> claimed = new ArrayList<>();
+            List<Long> removed = new ArrayList<>();
+            Map<Long, Integer> claimedByWorkflow = new HashMap<>();
+            for (ExecutionQueueEntry entry : candidates) {
+                if (claimed.size() >= capacity) {
+                    break;
+                }
+                AtomicInteger workflowRunning = runningByWorkflow.get(entry.getWorkflowId());
+                int workflowClaimed = claimedByWorkflow.getOrDefault(entry.getWorkflowId(), 0);
+                if ((workflowRunning != null ? workflowRunning.get() : 0) + workflowClaimed >= maxPerWorkflow) {
+                    continue;
+                }
+                removed.add(entry.getId());
+                // An entry whose execution is no longer QUEUED is stale and only removed
+                if (executionRepository.lease(entry.getExecutionId(), clusterNode.getId(), leaseExpiresAt) == 1) {
+                    claimed.add(entry);
+                    claimedByWorkflow.merge(entry.getWorkflowId(), 1, Integer::sum);
+                }
+            }
+            if (!removed.isEmpty()) {
+                queueRepository.claim(removed);
+            }
+            return claimed;
+        });
+    }
+    
+    private void reassignExpiredLeases(LocalDateTime now) {
+        int reassigned = 0;
+        for (Long executionId : executionRepository.findExpiredLeases(now, PageRequest.of(0, 100))) {
+            Boolean released = transactionTemplate.execute(status -> {
+                if (executionRepository.releaseExpiredLease(executionId, now) == 0) {
+                    return false;
+                }
+                executionRepository.findById(executionId).ifPresent(this::reassign);
+                return true;
+            });
+            if (Boolean.TRUE.equals(released)) {
+                reassigned++;
+            }
+        }
+        if (reassigned > 0) {
+            if (expiredLeases != null) {
+                expiredLeases.increment(reassigned);
+            }
+            log.warn("Took over {} executions whose node stopped renewing their leases", reassigned);
+            dispatch();
+        }
+    }
+    
+    /**
+     * Queues an execution taken over from a dead node again, unless it has already been started
+     * {@code ai.cluster.max-attempts} times: an execution that keeps taking its node down is
+     * failed rather than passed around the cluster.
+     */
+    private void reassign(WorkflowExecution execution) {
+        int attempts = execution.getAttempts() != null ? execution.getAttempts() : 0;
+        if (attempts < aiConfig.getCluster().getMaxAttempts()) {
+            enqueue(execution, attempts);
+            return;
+        }
+        log.warn("Execution {} lost its node on each of its {} attempts, failing it", execution.getId(), attempts);
+        execution.setStatus(WorkflowExecution.ExecutionStatus.FAILED);
+        execution.setErrorMessage("Node stopped renewing the lease on each of " + attempts + " attempts");
+        execution.setCompletedAt(LocalDateTime.now());
+        WorkflowExecution failed = executionRepository.save(execution);
+        executionStats.record(failed, List.of());
+        
+        Map<String, Object> data = new HashMap<>();
+        data.put("executionId", failed.getId());
+        data.put("status", failed.getStatus());
+        data.put("errorMessage", failed.getErrorMessage());
+        executionEvents.complete(failed.getId(), "execution", data);
+    }
+    
+    private void start(ExecutionQueueEntry entry, AtomicInteger workflowRunning) {
+        runningExecutionIds.add(entry.getExecutionId());
+        try {
+            executionExecutor.execute(() -> {
+                try {
+                    workflowEngine.runExecution(entry.getExecutionId());
+                } catch (Exception e) {
+                    log.error("Execution {} failed: {}", entry.getExecutionId(), e.getMessage(), e);
+                } finally {
+                    runningExecutionIds.remove(entry.getExecutionId());
+                    running.decrementAndGet();
+                    workflowRunning.decrementAndGet();
+                    dispatch();
+                }
+            });
+        } catch (RuntimeException e) {
+            runningExecutionIds.remove(entry.getExecutionId());
+            running.decrementAndGet();
+            workflowRunning.decrementAndGet();
+            log.error("Failed to start execution {}, re-queueing: {}", entry.getExecutionId(), e.getMessage());
+            transactionTemplate.executeWithoutResult(status ->
+                    executionRepository.findById(entry.getExecutionId())
+                            .ifPresent(execution -> requeue(execution, entry.getAttempts() + 1)));
+        }
+    }
+    
+    private void requeue(WorkflowExecution execution, int attempts) {
+        execution.setStatus(WorkflowExecution.ExecutionStatus.QUEUED);
+        execution.setNodeId(null);
+        execution.setLeaseExpiresAt(null);
+        if (!queueRepository.existsByExecutionId(execution.getId())) {
+            enqueue(execution, attempts);
+        }
+    }
+    
+    private void enqueue(WorkflowExecution execution, int attempts) {
+        ExecutionQueueEntry entry = new ExecutionQueueEntry();
+        entry.setExecutionId(execution.getId());
+        entry.setWorkflowId(execution.getWorkflowId());
+        entry.setEnqueuedAt(LocalDateTime.now());
+        entry.setAttempts(attempts);
+        queueRepository.save(entry);
+    }
+    
+    private void dispatchAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                taskExecutor.execute(ExecutionQueueService.this::dispatch);
+            }
+        });
+    }
+    
+    private String convertToJson(Object obj) {
+        try {
+            return objectMapper.writeValueAsString(obj);
+        } catch (Exception e) {
+            log.error("Failed to convert to JSON: {}", e.getMessage());
+            return obj.toString();
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.aisuite.model.ExecutionDailyStats;
+import com.aisuite.model.JobLease;
+import com.aisuite.model.RetentionPolicy;
+import com.aisuite.model.Workflow;
+import com.aisuite.repository.ExecutionDailyStatsRepository;
+import com.aisuite.repository.WorkflowRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps {@code workflow_executions} bounded. Each run first rolls finished days up into
+ * {@link ExecutionDailyStats}, then archives executions that fall outside their workflow's
+ * {@link RetentionPolicy}. Archiving writes them, with their step records, to a gzipped JSON-lines
+ * file and then deletes them, one bounded batch per transaction. Only executions from days that
+ * have been rolled up are archived, so the daily figures always cover the full history. Nodes
+ * sharing the database take turns through a {@link JobLease}, so only one of them runs it at a
+ * time.
+ */
+@Service
+@Slf4j
+public class ExecutionRetentionService {
+    
+    private static final String JOB = "retention";
+    
+    private static final String DAY = "cast(coalesce(e.started_at, e.queued_at) as date)";
+    
+    private static final String ROLL_UP = "select e.workflow_id, " + DAY + " as execution_day, count(*) as executions, " +
+            "sum(case when e.status = 'COMPLETED' then 1 else 0 end) as completed, " +
+            "sum(case when e.status = 'FAILED' then 1 else 0 end) as failed, " +
+            "sum(case when e.status = 'CANCELLED' then 1 else 0 end) as cancelled, " +
+            "avg(e.execution_time_ms) as avg_ms, max(e.execution_time_ms) as max_ms, " +
+            "percentile_cont(0.5) within group (order by e.execution_time_ms) as p50_ms, " +
+            "percentile_cont(0.95) within group (order by e.execution_time_ms) as p95_ms " +
+            "from workflow_executions e " +
+            "where coalesce(e.started_at, e.queued_at) < :today " +
+            "and not exists (select 1 from execution_daily_stats s " +
+            "where s.workflow_id = e.workflow_id and s.execution_day = " + DAY + ") " +
+            "group by e.workflow_id, " + DAY + " " +
+            // A day with executions still in flight is rolled up on a later run
+            "having sum(case when e.status in ('QUEUED', 'RUNNING') then 1 else 0 end) = 0";
+    
+    private static final String EXECUTION_COLUMNS = "e.id, e.workflow_id, e.status, e.queued_at, e.started_at, " +
+            "e.completed_at, e.execution_time_ms, e.error_message, e.input_data, e.output_data";
+    
+    private static final String STEP_COLUMNS = "execution_id, step_id, step_name, step_order, status, started_at, " +
+            "completed_at, duration_ms, result, ai_calls, prompt_tokens, completion_tokens, total_tokens";
+    
+    private final AiConfig.Retention settings;
+    private final WorkflowRepository workflowRepository;
+    private final ExecutionDailyStatsRepository dailyStatsRepository;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PayloadStore payloadStore;
+    private final ObjectMapper objectMapper;
+    private final ClusterNode clusterNode;
+    private final Counter archivedExecutions;
+    
+    public ExecutionRetentionService(AiConfig aiConfig,
+                                     WorkflowRepository workflowRepository,
+                                     ExecutionDailyStatsRepository dailyStatsRepository,
+                                     NamedParameterJdbcTemplate jdbcTemplate,
+                                     TransactionTemplate transactionTemplate,
+                                     PayloadStore payloadStore,
+                                     ObjectMapper objectMapper,
+                                     ClusterNode clusterNode,
+                                     MeterRegistry meterRegistry) {
+        this.settings = aiConfig.getRetention();
+        this.workflowRepository = workflowRepository;
+        this.dailyStatsRepository = dailyStatsRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.payloadStore = payloadStore;
+        this.objectMapper = objectMapper;
+        this.clusterNode = clusterNode;
+        this.archivedExecutions = Counter.builder("execution.retention.archived")
+                .description("Executions archived and removed from the database")
+                .register(meterRegistry);
+    }
+    
+    @Scheduled(cron = "${ai.retention.cron:0 15 3 * * *}")
+    public void scheduledRun() {
+        if (Boolean.TRUE.equals(settings.getEnabled())) {
+            run();
+        }
+    }
+    
+    /**
+     * @return the report, marked {@code skipped} when another node holds the retention lease
+     */
+    public synchronized RetentionReport run() {
+        RetentionReport report = new RetentionReport();
+        if (!acquireLease()) {
+            log.info("Retention is running on another node; skipping this run");
+            report.setSkipped(true);
+            return report;
+        }
+        try {
+            return run(report);
+        } finally {
+            releaseLease();
+        }
+    }
+    
+    private RetentionReport run(RetentionReport report) {
+        long started = System.nanoTime();
+        Instant startedAt = Instant.now();
+        report.setDaysRolledUp(rollUp(LocalDate.now()));
+        
+        Set<String> releasedBlobs = new HashSet<>();
+        int batches = 0;
+        for (Workflow workflow : workflowRepository.findAll()) {
+            batches += archive(workflow.getId(), effectivePolicy(workflow.getRetention()),
+                    settings.getMaxBatchesPerRun() - batches, report, releasedBlobs);
+            if (batches >= settings.getMaxBatchesPerRun()) {
+                log.info("Retention stopped after {} batches; the rest is archived on the next run", batches);
+                break;
+            }
+        }
+        report.setBlobsDeleted(deleteUnreferencedBlobs(releasedBlobs, startedAt));
+        
+        report.setElapsedMs((System.nanoTime() - started) / 1_000_000);
+        report.setRowsPerSecond(report.getExecutionsArchived() * 1000.0 / Math.max(1, report.getElapsedMs()));
+        log.info("Retention rolled up {} days and archived {} executions ({} step records, {} files) in {} ms ({} executions/s)",
+                report.getDaysRolledUp(), report.getExecutionsArchived(), report.getStepRecordsArchived(),
+                report.getArchiveFiles(), report.getElapsedMs(), Math.round(report.getRowsPerSecond()));
+        return report;
+    }
+    
+    private boolean acquireLease() {
+        LocalDateTime now = LocalDateTime.now();
+        MapSqlParameterSource params = new MapSqlParameterSource("name", JOB)
+                .addValue("holder", clusterNode.getId())
+                .addValue("now", Timestamp.valueOf(now))
+                .addValue("until", Timestamp.valueOf(now.plus(Duration.ofMinutes(settings.getLeaseMinutes()))));
+        if (jdbcTemplate.update("update job_leases set holder = :holder, expires_at = :until " +
+                "where name = :name and (expires_at < :now or holder = :holder)", params) == 1) {
+            return true;
+        }
+        try {
+            // The first run against this database creates the row
+            return jdbcTemplate.update("insert into job_leases (name, holder, expires_at) " +
+                    "values (:name, :holder, :until)", params) == 1;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+    
+    private void releaseLease() {
+        jdbcTemplate.update("update job_leases set expires_at = :now where name = :name and holder = :holder",
+                new MapSqlParameterSource("name", JOB)
+                        .addValue("holder", clusterNode.getId())
+                        .addValue("now", Timestamp.valueOf(LocalDateTime.now())));
+    }
+    
+    /**
+     * Writes the daily stats of every finished day before {@code today} that has none yet.
+     */
+    int rollUp(LocalDate today) {
+        List<ExecutionDailyStats> days = jdbcTemplate.query(ROLL_UP,
+                new MapSqlParameterSource("today", Timestamp.valueOf(today.atStartOfDay())),
+                (rs, rowNum) -> {
+                    ExecutionDailyStats stats = new ExecutionDailyStats();
+                    stats.setWorkflowId(rs.getLong("workflow_id"));
+                    stats.setDay(rs.getObject("execution_day", LocalDate.class));
+                    stats.setExecutions(rs.getLong("executions"));
+                    stats.setCompleted(rs.getLong("completed"));
+                    stats.setFailed(rs.getLong("failed"));
+                    stats.setCancelled(rs.getLong("cancelled"));
+                    stats.setFailureRate((double) stats.getFailed() / stats.getExecutions());
+                    stats.setAvgDurationMs(roundedLong(rs, "avg_ms"));
+                    stats.setMaxDurationMs(roundedLong(rs, "max_ms"));
+                    stats.setP50DurationMs(roundedLong(rs, "p50_ms"));
+                    stats.setP95DurationMs(roundedLong(rs, "p95_ms"));
+                    return stats;
+                });
+        dailyStatsRepository.saveAll(days);
+        return days.size();
+    }
+    
+    private RetentionPolicy effectivePolicy(RetentionPolicy policy) {
+        if (policy != null) {
+            return policy;
+        }
+        return new RetentionPolicy(settings.getKeepRuns(), settings.getKeepDays(), settings.getKeepFailures());
+    }
+    
+    /**
+     * Archives one workflow's expired executions in batches of increasing id.
+     *
+     * @return the number of batches used
+     */
+    private int archive(Long workflowId, RetentionPolicy policy, int batchBudget,
+                        RetentionReport report, Set<String> releasedBlobs) {
+        MapSqlParameterSource params = new MapSqlParameterSource("workflowId", workflowId)
+                .addValue("limit", settings.getBatchSize());
+        List<String> expired = new ArrayList<>();
+        if (policy.getKeepRuns() != null) {
+            Long oldestKept = oldestKeptId(workflowId, policy.getKeepRuns());
+            if (oldestKept != null) {
+                expired.add("e.id < :oldestKept");
+                params.addValue("oldestKept", oldestKept);
+            }
+        }
+        if (policy.getKeepDays() != null) {
+            expired.add("e.started_at < :cutoff");
+            params.addValue("cutoff", Timestamp.valueOf(LocalDate.now().minusDays(policy.getKeepDays()).atStartOfDay()));
+        }
+        if (expired.isEmpty()) {
+            return 0;
+        }
+        
+        String sql = "select " + EXECUTION_COLUMNS + " from workflow_executions e " +
+                "where e.workflow_id = :workflowId and e.id > :after " +
+                "and e.status in ('COMPLETED', 'FAILED', 'CANCELLED') " +
+                "and (" + String.join(" or ", expired) + ") " +
+                (Boolean.TRUE.equals(policy.getKeepFailures()) ? "and e.status <> 'FAILED' " : "") +
+                "and exists (select 1 from execution_daily_stats s where s.workflow_id = e.workflow_id " +
+                "and s.execution_day = " + DAY + ") " +
+                "order by e.id limit :limit";
+        
+        long after = 0;
+        int batches = 0;
+        while (batches < batchBudget) {
+            List<Map<String, Object>> executions = jdbcTemplate.query(sql,
+                    params.addValue("after", after), this::executionRow);
+            if (executions.isEmpty()) {
+                break;
+            }
+            archiveBatch(workflowId, executions, report, releasedBlobs);
+            batches++;
+            after = (Long) executions.get(executions.size() - 1).get("id");
+            if (executions.size() < settings.getBatchSize()) {
+                break;
+            }
+        }
+        return batches;
+    }
+    
+    private Long oldestKeptId(Long workflowId, int keepRuns) {
+        if (keepRuns <= 0) {
+            return Long.MAX_VALUE;
+        }
+        List<Long> ids = jdbcTemplate.queryForList("select id from workflow_executions where workflow_id = :workflowId " +
+                        "order by id desc offset :skip rows fetch next 1 rows only",
+                new MapSqlParameterSource("workflowId", workflowId).addValue("skip", keepRuns - 1), Long.class);
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+    
+    private void archiveBatch(Long workflowId, List<Map<String, Object>> executions,
+                              RetentionReport report, Set<String> releasedBlobs) {
+        List<Long> ids = executions.stream().map(row -> (Long) row.get("id")).toList();
+        Map<Long, List<Map<String, Object>>> steps = stepRecords(ids);
+        
+        // The file is complete on disk before any row goes; a crash in between only repeats the batch
+        Path file = Paths.get(settings.getArchiveDirectory(), LocalDate.now().toString(),
+                "workflow-" + workflowId + "-executions-" + ids.get(0) + "-" + ids.get(ids.size() - 1) + ".jsonl.gz");
+        writeArchive(file, executions, steps);
+        
+        int stepRecords = transactionTemplate.execute(status -> {
+            MapSqlParameterSource params = new MapSqlParameterSource("ids", ids);
+            int deletedSteps = jdbcTemplate.update("delete from step_executions where execution_id in (:ids)", params);
+            jdbcTemplate.update("delete from workflow_executions where id in (:ids)", params);
+            return deletedSteps;
+        });
+        
+        for (Map<String, Object> execution : executions) {
+            addBlobKey(releasedBlobs, (byte[]) execution.get("input_data"));
+            addBlobKey(releasedBlobs, (byte[]) execution.get("output_data"));
+        }
+        report.setExecutionsArchived(report.getExecutionsArchived() + ids.size());
+        report.setStepRecordsArchived(report.getStepRecordsArchived() + stepRecords);
+        report.setArchiveFiles(report.getArchiveFiles() + 1);
+        archivedExecutions.increment(ids.size());
+    }
+    
+    private Map<Long, List<Map<String, Object>>> stepRecords(List<Long> executionIds) {
+        Map<Long, List<Map<String, Object>>> steps = new LinkedHashMap<>();
+        jdbcTemplate.query("select " + STEP_COLUMNS + " from step_executions where execution_id in (:ids) " +
+                        "order by execution_id, step_order, step_id",
+                new MapSqlParameterSource("ids", executionIds),
+                rs -> {
+                    Map<String, Object> step = new LinkedHashMap<>();
+                    step.put("stepId", rs.getObject("step_id"));
+                    step.put("stepName", rs.getString("step_name"));
+                    step.put("stepOrder", rs.getObject("step_order"));
+                    step.put("status", rs.getString("status"));
+                    step.put("startedAt", rs.getObject("started_at", LocalDateTime.class));
+                    step.put("completedAt", rs.getObject("completed_at", LocalDateTime.class));
+                    step.put("durationMs", rs.getObject("duration_ms"));
+                    step.put("result", rs.getString("result"));
+                    step.put("aiCalls", rs.getObject("ai_calls"));
+                    step.put("promptTokens", rs.getObject("prompt_tokens"));
+                    step.put("completionTokens", rs.getObject("completion_tokens"));
+                    step.put("totalTokens", rs.getObject("total_tokens"));
+                    steps.computeIfAbsent(rs.getLong("execution_id"), id -> new ArrayList<>()).add(step);
+                });
+        return steps;
+    }
+    
+    private void writeArchive(Path file, List<Map<String, Object>> executions,
+                              Map<Long, List<Map<String, Object>>> steps) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), 64 * 1024);
+                 JsonGenerator generator = objectMapper.createGenerator(out)) {
+                generator.setRootValueSeparator(null);
+                for (Map<String, Object> row : executions) {
+                    writeLine(generator, row, steps.getOrDefault((Long) row.get("id"), List.of()));
+                    generator.writeRaw('\n');
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write retention archive " + file, e);
+        }
+    }
+    
+    private void writeLine(JsonGenerator generator, Map<String, Object> row,
+                           List<Map<String, Object>> steps) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectField("id", row.get("id"));
+        generator.writeObjectField("workflowId", row.get("workflow_id"));
+        generator.writeObjectField("status", row.get("status"));
+        generator.writeObjectField("queuedAt", row.get("queued_at"));
+        generator.writeObjectField("startedAt", row.get("started_at"));
+        generator.writeObjectField("completedAt", row.get("completed_at"));
+        generator.writeObjectField("executionTimeMs", row.get("execution_time_ms"));
+        generator.writeObjectField("errorMessage", row.get("error_message"));
+        writePayload(generator, "inputData", (byte[]) row.get("input_data"));
+        writePayload(generator, "outputData", (byte[]) row.get("output_data"));
+        generator.writeObjectField("steps", steps);
+        generator.writeEndObject();
+    }
+    
+    /**
+     * Payloads are JSON documents written by the engine, so they are nested into the line as they
+     * are instead of being parsed and written again.
+     */
+    private void writePayload(JsonGenerator generator, String field, byte[] stored) throws IOException {
+        String json = payloadStore.decode(stored);
+        generator.writeFieldName(field);
+        if (json == null) {
+            generator.writeNull();
+        } else if (json.startsWith("{") || json.startsWith("[")) {
+            generator.writeRawValue(json);
+        } else {
+            generator.writeString(json);
+        }
+    }
+    
+    private Map<String, Object> executionRow(ResultSet rs, int rowNum) throws SQLException {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", rs.getLong("id"));
+        row.put("workflow_id", rs.getLong("workflow_id"));
+        row.put("status", rs.getString("status"));
+        row.put("queued_at", rs.getObject("queued_at", LocalDateTime.class));
+        row.put("started_at", rs.getObject("started_at", LocalDateTime.class));
+        row.put("completed_at", rs.getObject("completed_at", LocalDateTime.class));
+        row.put("execution_time_ms", rs.getObject("execution_time_ms"));
+        row.put("error_message", rs.getString("error_message"));
+        row.put("input_data", rs.getBytes("input_data"));
+        row.put("output_data", rs.getBytes("output_data"));
+        return row;
+    }
+    
+    private void addBlobKey(Set<String> keys, byte[] stored) {
+        String key = payloadStore.blobKey(stored);
+        if (key != null) {
+            keys.add(key);
+        }
+    }
+    
+    /**
+     * Removes blobs that only archived executions referred to. Identical payloads share a blob,
+     * so every candidate is first looked up in the indexed blob columns of the remaining rows.
+     */
+    private int deleteUnreferencedBlobs(Set<String> candidates, Instant since) {
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+        List<String> keys = new ArrayList<>(candidates);
+        for (int from = 0; from < keys.size(); from += settings.getBatchSize()) {
+            MapSqlParameterSource params = new MapSqlParameterSource("keys",
+                    keys.subList(from, Math.min(keys.size(), from + settings.getBatchSize())));
+            candidates.removeAll(jdbcTemplate.queryForList(
+                    "select input_blob from workflow_executions where input_blob in (:keys) " +
+                            "union select output_blob from workflow_executions where output_blob in (:keys)",
+                    params, String.class));
+        }
+        return payloadStore.deleteBlobs(candidates, since);
+    }
+    
+    private static Long roundedLong(ResultSet rs, String column) throws SQLException {
+        Number value = (Number) rs.getObject(column);
+        return value != null ? Math.round(value.doubleValue()) : null;
+    }
+}
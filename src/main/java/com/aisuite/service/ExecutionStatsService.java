@@ -0,0 +1,216 @@
+package com.aisuite.service;
+
+import com.aisuite.model.StepExecution;
+import com.aisuite.model.Workflow;
+import com.aisuite.model.WorkflowExecution;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Maintains the dashboard's running totals as executions finish and reads them back. Every
+ * finished execution adds to its workflow's {@code workflow_stats} row and to one bucket of its
+ * duration histogram; reading the dashboard touches one row per workflow and histogram bucket,
+ * however long the execution history is.
+ */
+@Service
+@RequiredArgsConstructor
+public class ExecutionStatsService {
+    
+    private static final int TREND_DAYS = 7;
+    
+    private static final String UPDATE_STATS = "update workflow_stats set completed = completed + ?, " +
+            "failed = failed + ?, cancelled = cancelled + ?, duration_count = duration_count + ?, " +
+            "duration_sum_ms = duration_sum_ms + ?, ai_calls = ai_calls + ?, prompt_tokens = prompt_tokens + ?, " +
+            "completion_tokens = completion_tokens + ?, total_tokens = total_tokens + ?, updated_at = ? " +
+            "where workflow_id = ?";
+    
+    private static final String INSERT_STATS = "insert into workflow_stats (completed, failed, cancelled, " +
+            "duration_count, duration_sum_ms, ai_calls, prompt_tokens, completion_tokens, total_tokens, updated_at, " +
+            "workflow_id) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    
+    private static final String UPDATE_BUCKET = "update execution_duration_buckets set executions = executions + 1 " +
+            "where workflow_id = ? and bucket = ?";
+    
+    private static final String INSERT_BUCKET = "insert into execution_duration_buckets (workflow_id, bucket, executions) " +
+            "values (?, ?, 1)";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    /**
+     * Adds a finished execution and its step records to the totals. Call it in the transaction
+     * that saves the execution's final status, so the totals never count a run whose row did not
+     * commit, and the other way round.
+     */
+    public void record(WorkflowExecution execution, Collection<StepExecution> steps) {
+        WorkflowExecution.ExecutionStatus status = execution.getStatus();
+        if (status != WorkflowExecution.ExecutionStatus.COMPLETED
+                && status != WorkflowExecution.ExecutionStatus.FAILED
+                && status != WorkflowExecution.ExecutionStatus.CANCELLED) {
+            return;
+        }
+        Long workflowId = execution.getWorkflowId();
+        Long durationMs = durationOf(execution);
+        long aiCalls = 0;
+        long promptTokens = 0;
+        long completionTokens = 0;
+        long totalTokens = 0;
+        for (StepExecution step : steps) {
+            aiCalls += valueOf(step.getAiCalls());
+            promptTokens += valueOf(step.getPromptTokens());
+            completionTokens += valueOf(step.getCompletionTokens());
+            totalTokens += valueOf(step.getTotalTokens());
+        }
+        
+        Object[] increments = {
+                status == WorkflowExecution.ExecutionStatus.COMPLETED ? 1 : 0,
+                status == WorkflowExecution.ExecutionStatus.FAILED ? 1 : 0,
+                status == WorkflowExecution.ExecutionStatus.CANCELLED ? 1 : 0,
+                durationMs != null ? 1 : 0,
+                durationMs != null ? durationMs : 0,
+                aiCalls, promptTokens, completionTokens, totalTokens,
+                Timestamp.valueOf(LocalDateTime.now()),
+                workflowId
+        };
+        increment(UPDATE_STATS, INSERT_STATS, increments);
+        if (durationMs != null) {
+            increment(UPDATE_BUCKET, INSERT_BUCKET, workflowId, DurationHistogram.bucketOf(durationMs));
+        }
+    }
+    
+    /**
+     * Applies a relative update, creating the row on first use. Both statements take the same
+     * arguments; a concurrent writer creating the row first turns the insert into an update.
+     */
+    private void increment(String update, String insert, Object... args) {
+        if (jdbcTemplate.update(update, args) > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(insert, args);
+        } catch (DuplicateKeyException e) {
+            jdbcTemplate.update(update, args);
+        }
+    }
+    
+    public DashboardStats dashboard() {
+        DashboardStats stats = new DashboardStats();
+        Map<Long, DashboardStats.WorkflowSummary> workflows = new HashMap<>();
+        jdbcTemplate.query("select id, name, status, last_executed_at from workflows order by id", rs -> {
+            DashboardStats.WorkflowSummary summary = new DashboardStats.WorkflowSummary();
+            summary.setWorkflowId(rs.getLong("id"));
+            summary.setName(rs.getString("name"));
+            summary.setStatus(rs.getString("status"));
+            summary.setLastExecutedAt(rs.getObject("last_executed_at", LocalDateTime.class));
+            workflows.put(summary.getWorkflowId(), summary);
+            stats.getWorkflows().add(summary);
+        });
+        stats.setTotalWorkflows(workflows.size());
+        stats.setActiveWorkflows((int) stats.getWorkflows().stream()
+                .filter(workflow -> Workflow.WorkflowStatus.ACTIVE.name().equals(workflow.getStatus()))
+                .count());
+        
+        long[] durations = new long[2];
+        jdbcTemplate.query("select * from workflow_stats", rs -> {
+            DashboardStats.WorkflowSummary summary = workflows.get(rs.getLong("workflow_id"));
+            long durationCount = rs.getLong("duration_count");
+            long durationSum = rs.getLong("duration_sum_ms");
+            stats.setCompleted(stats.getCompleted() + rs.getLong("completed"));
+            stats.setFailed(stats.getFailed() + rs.getLong("failed"));
+            stats.setCancelled(stats.getCancelled() + rs.getLong("cancelled"));
+            stats.setAiCalls(stats.getAiCalls() + rs.getLong("ai_calls"));
+            stats.setPromptTokens(stats.getPromptTokens() + rs.getLong("prompt_tokens"));
+            stats.setCompletionTokens(stats.getCompletionTokens() + rs.getLong("completion_tokens"));
+            stats.setTotalTokens(stats.getTotalTokens() + rs.getLong("total_tokens"));
+            durations[0] += durationCount;
+            durations[1] += durationSum;
+            if (summary == null) {
+                // The workflow was deleted after it ran; its runs still count overall
+                return;
+            }
+            summary.setCompleted(rs.getLong("completed"));
+            summary.setFailed(rs.getLong("failed"));
+            summary.setCancelled(rs.getLong("cancelled"));
+            summary.setExecutions(summary.getCompleted() + summary.getFailed() + summary.getCancelled());
+            summary.setSuccessRate(rate(summary.getCompleted(), summary.getExecutions()));
+            summary.setMeanExecutionTimeMs(durationCount > 0 ? durationSum / durationCount : null);
+            summary.setAiCalls(rs.getLong("ai_calls"));
+            summary.setTotalTokens(rs.getLong("total_tokens"));
+        });
+        stats.setTotalExecutions(stats.getCompleted() + stats.getFailed() + stats.getCancelled());
+        stats.setSuccessRate(rate(stats.getCompleted(), stats.getTotalExecutions()));
+        stats.setMeanExecutionTimeMs(durations[0] > 0 ? durations[1] / durations[0] : null);
+        
+        Map<Long, SortedMap<Integer, Long>> histograms = new HashMap<>();
+        SortedMap<Integer, Long> overall = new TreeMap<>();
+        jdbcTemplate.query("select workflow_id, bucket, executions from execution_duration_buckets", rs -> {
+            int bucket = rs.getInt("bucket");
+            long executions = rs.getLong("executions");
+            histograms.computeIfAbsent(rs.getLong("workflow_id"), id -> new TreeMap<>()).put(bucket, executions);
+            overall.merge(bucket, executions, Long::sum);
+        });
+        histograms.forEach((workflowId, histogram) -> {
+            DashboardStats.WorkflowSummary summary = workflows.get(workflowId);
+            if (summary != null) {
+                summary.setP50ExecutionTimeMs(DurationHistogram.percentile(histogram, 0.5));
+                summary.setP95ExecutionTimeMs(DurationHistogram.percentile(histogram, 0.95));
+            }
+        });
+        stats.setP50ExecutionTimeMs(DurationHistogram.percentile(overall, 0.5));
+        stats.setP95ExecutionTimeMs(DurationHistogram.percentile(overall, 0.95));
+        stats.setP99ExecutionTimeMs(DurationHistogram.percentile(overall, 0.99));
+        
+        // Only in-flight executions, which the status index bounds by concurrency rather than history
+        jdbcTemplate.query("select status, count(*) as executions from workflow_executions " +
+                "where status in ('QUEUED', 'RUNNING') group by status", rs -> {
+            if (WorkflowExecution.ExecutionStatus.QUEUED.name().equals(rs.getString("status"))) {
+                stats.setQueued(rs.getLong("executions"));
+            } else {
+                stats.setRunning(rs.getLong("executions"));
+            }
+        });
+        
+        jdbcTemplate.query("select execution_day, sum(executions) as executions, sum(completed) as completed, " +
+                        "sum(failed) as failed from execution_daily_stats where execution_day >= ? " +
+                        "group by execution_day order by execution_day",
+                rs -> {
+                    DashboardStats.DailyTrend day = new DashboardStats.DailyTrend();
+                    day.setDay(rs.getObject("execution_day", LocalDate.class));
+                    day.setExecutions(rs.getLong("executions"));
+                    day.setCompleted(rs.getLong("completed"));
+                    day.setFailed(rs.getLong("failed"));
+                    stats.getDaily().add(day);
+                },
+                LocalDate.now().minusDays(TREND_DAYS));
+        return stats;
+    }
+    
+    private static Long durationOf(WorkflowExecution execution) {
+        if (execution.getExecutionTimeMs() != null) {
+            return execution.getExecutionTimeMs();
+        }
+        if (execution.getStartedAt() != null && execution.getCompletedAt() != null) {
+            return Duration.between(execution.getStartedAt(), execution.getCompletedAt()).toMillis();
+        }
+        return null;
+    }
+    
+    private static Double rate(long part, long total) {
+        return total > 0 ? (double) part / total : null;
+    }
+    
+    private static long valueOf(Number value) {
+        return value != null ? value.longValue() : 0;
+    }
+}
@@ -0,0 +1,11 @@
+package com.aisuite.service;
+
+/**
+ * Thrown when a trigger definition is incomplete or malformed, such as an invalid cron expression.
+ */
+public class InvalidTriggerException extends RuntimeException {
+    
+    public InvalidTriggerException(String message) {
+        super(message);
+    }
+}
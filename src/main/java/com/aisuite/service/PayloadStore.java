@@ -0,0 +1,332 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Storage format of execution payloads. Every stored value starts with a one-byte tag:
+ * <ul>
+ *   <li>{@code RAW} - UTF-8 JSON, for payloads below the compression threshold or ones that
+ *   do not shrink;</li>
+ *   <li>{@code DEFLATE} - deflate-compressed UTF-8 JSON;</li>
+ *   <li>{@code BLOB} - the hex SHA-256 of a payload above the offload threshold. The compressed
+ *   payload lives in the blob directory under that name, so identical payloads share one file.</li>
+ * </ul>
+ * A blob is written when its row is, inside the row's transaction, and an existing blob is
+ * never replaced. If that transaction rolls back, a blob it created is deleted again unless
+ * another writer has reused it meanwhile.
+ */
+@Component
+@Slf4j
+public class PayloadStore {
+    
+    static final byte RAW = 0;
+    static final byte DEFLATE = 1;
+    static final byte BLOB = 2;
+    
+    // Tag plus hex SHA-256, the stored size of every offloaded payload
+    public static final int BLOB_REFERENCE_BYTES = 65;
+    
+    private final AiConfig.Payload settings;
+    private final Path directory;
+    private final DistributionSummary payloadBytes;
+    private final DistributionSummary storedBytes;
+    private final Counter blobWrites;
+    private final Counter blobReuses;
+    // Keys of offloaded payloads by instance, so each one is hashed once however often it is saved
+    private final Cache<String, String> blobKeys = Caffeine.newBuilder().weakKeys().maximumSize(1_000).build();
+    // Blobs created by transactions that have not completed yet
+    private final Map<String, PendingBlob> pendingBlobs = new ConcurrentHashMap<>();
+    
+    public PayloadStore(AiConfig aiConfig, MeterRegistry meterRegistry) {
+        this.settings = aiConfig.getPayload();
+        this.directory = Paths.get(settings.getDirectory());
+        this.payloadBytes = DistributionSummary.builder("execution.payload.bytes")
+                .description("Size of execution payloads before compression")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.storedBytes = DistributionSummary.builder("execution.payload.stored.bytes")
+                .description("Size of execution payloads as written to the database row")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.blobWrites = Counter.builder("execution.payload.blob.writes")
+                .description("Payloads written to the blob directory")
+                .register(meterRegistry);
+        this.blobReuses = Counter.builder("execution.payload.blob.reuses")
+                .description("Offloaded payloads that matched an existing blob")
+                .register(meterRegistry);
+    }
+    
+    public byte[] encode(String payload) {
+        if (payload == null) {
+            return null;
+        }
+        byte[] raw = payload.getBytes(StandardCharsets.UTF_8);
+        payloadBytes.record(raw.length);
+        
+        byte[] stored;
+        if (raw.length >= settings.getOffloadThresholdBytes()) {
+            stored = tagged(BLOB, writeBlob(payload, raw).getBytes(StandardCharsets.US_ASCII));
+        } else if (raw.length >= settings.getCompressThresholdBytes()) {
+            byte[] compressed = deflate(raw);
+            stored = compressed.length < raw.length ? tagged(DEFLATE, compressed) : tagged(RAW, raw);
+        } else {
+            stored = tagged(RAW, raw);
+        }
+        storedBytes.record(stored.length);
+        return stored;
+    }
+    
+    public String decode(byte[] stored) {
+        if (stored == null) {
+            return null;
+        }
+        if (stored.length == 0) {
+            return "";
+        }
+        byte[] body = Arrays.copyOfRange(stored, 1, stored.length);
+        return switch (stored[0]) {
+            case RAW -> new String(body, StandardCharsets.UTF_8);
+            case DEFLATE -> new String(inflate(body), StandardCharsets.UTF_8);
+            case BLOB -> new String(inflate(readBlob(new String(body, StandardCharsets.US_ASCII))),
+                    StandardCharsets.UTF_8);
+            default -> throw new IllegalStateException("Unknown payload encoding: " + stored[0]);
+        };
+    }
+    
+    /**
+     * The blob {@link #encode} puts {@code payload} in, or null when it stays in the row.
+     */
+    public String blobKeyFor(String payload) {
+        // A UTF-8 char takes at most three bytes, so most payloads are ruled out without encoding
+        if (payload == null || payload.length() * 3L < settings.getOffloadThresholdBytes()) {
+            return null;
+        }
+        String key = blobKeys.getIfPresent(payload);
+        if (key != null) {
+            return key;
+        }
+        byte[] raw = payload.getBytes(StandardCharsets.UTF_8);
+        if (raw.length < settings.getOffloadThresholdBytes()) {
+            return null;
+        }
+        key = sha256(raw);
+        blobKeys.put(payload, key);
+        return key;
+    }
+    
+    /**
+     * The blob a stored value refers to, or null when the payload is kept in the row.
+     */
+    public String blobKey(byte[] stored) {
+        if (stored == null || stored.length == 0 || stored[0] != BLOB) {
+            return null;
+        }
+        return new String(stored, 1, stored.length - 1, StandardCharsets.US_ASCII);
+    }
+    
+    /**
+     * Deletes the given blobs unless they were written or reused at or after {@code since},
+     * which protects blobs a new execution picked up while the caller checked references.
+     *
+     * @return the number of files deleted
+     */
+    public int deleteBlobs(Collection<String> keys, Instant since) {
+        int deleted = 0;
+        for (String key : keys) {
+            Path file = blobPath(key);
+            try {
+                if (Files.exists(file) && Files.getLastModifiedTime(file).toInstant().isBefore(since)
+                        && Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            } catch (IOException e) {
+                log.warn("Failed to delete payload blob {}: {}", key, e.getMessage());
+            }
+        }
+        return deleted;
+    }
+    
+    Path blobPath(String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key);
+    }
+    
+    private String writeBlob(String payload, byte[] raw) {
+        String key = blobKeys.get(payload, p -> sha256(raw));
+        Path file = blobPath(key);
+        byte[] compressed = Files.exists(file) ? null : deflate(raw);
+        // Per key, so a rolled back writer cannot delete a blob while another one takes it up
+        pendingBlobs.compute(key, (k, pending) -> {
+            if (Files.exists(file) || !create(key, file, compressed != null ? compressed : deflate(raw))) {
+                blobReuses.increment();
+                if (pending != null && pending.writer == Thread.currentThread()) {
+                    // Written earlier in this transaction, which decides its fate alone
+                    return pending;
+                }
+                // Tells a concurrent sweep that the blob just gained a reference
+                touch(file);
+                if (pending != null) {
+                    pending.reused = true;
+                }
+                return pending;
+            }
+            blobWrites.increment();
+            return deleteOnRollback(key, file);
+        });
+        return key;
+    }
+    
+    /**
+     * Links a fully written temporary file in under the blob's name, which never replaces an
+     * existing file.
+     *
+     * @return false when another process stored the same content first
+     */
+    private boolean create(String key, Path file, byte[] compressed) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), key, ".tmp");
+            try {
+                Files.write(temp, compressed);
+                Files.createLink(file, temp);
+                return true;
+            } catch (FileAlreadyExistsException e) {
+                return false;
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write payload blob " + key, e);
+        }
+    }
+    
+    private PendingBlob deleteOnRollback(String key, Path file) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        PendingBlob pending = new PendingBlob(lastModified(file));
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                pendingBlobs.compute(key, (k, current) -> {
+                    // A reuse by another writer, or a later timestamp from another process, keeps it
+                    if (status != STATUS_COMMITTED && !pending.reused
+                            && pending.written.equals(lastModified(file))) {
+                        try {
+                            if (Files.deleteIfExists(file)) {
+                                log.debug("Deleted payload blob {} of a rolled back write", key);
+                            }
+                        } catch (IOException e) {
+                            log.warn("Failed to delete payload blob {} after a rollback: {}", key, e.getMessage());
+                        }
+                    }
+                    return current == pending ? null : current;
+                });
+            }
+        });
+        return pending;
+    }
+    
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+    
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+        } catch (IOException ignored) {
+            // a missing timestamp update only delays the blob's cleanup
+        }
+    }
+    
+    private byte[] readBlob(String key) {
+        try {
+            return Files.readAllBytes(blobPath(key));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read payload blob " + key, e);
+        }
+    }
+    
+    private byte[] deflate(byte[] raw) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+        Deflater deflater = new Deflater(settings.getCompressionLevel());
+        try (DeflaterOutputStream stream = new DeflaterOutputStream(out, deflater, 8192)) {
+            stream.write(raw);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+    
+    private static byte[] inflate(byte[] compressed) {
+        try (InputStream stream = new InflaterInputStream(new ByteArrayInputStream(compressed))) {
+            return stream.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt compressed payload", e);
+        }
+    }
+    
+    private static byte[] tagged(byte tag, byte[] body) {
+        byte[] stored = new byte[body.length + 1];
+        stored[0] = tag;
+        System.arraycopy(body, 0, stored, 1, body.length);
+        return stored;
+    }
+    
+    private static String sha256(byte[] raw) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(raw));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    private static final class PendingBlob {
+        
+        private final Thread writer = Thread.currentThread();
+        private final FileTime written;
+        // Set when another writer refers to the blob before the creating transaction completes
+        private volatile boolean reused;
+        
+        private PendingBlob(FileTime written) {
+            this.written = written;
+        }
+    }
+}
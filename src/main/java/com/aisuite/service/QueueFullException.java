@@ -0,0 +1,17 @@
+package com.aisuite.service;
+
+import lombok.Getter;
+
+/**
+ * Thrown when the execution queue is at {@code ai.queue.max-queue-depth} and cannot accept more work.
+ */
+@Getter
+public class QueueFullException extends RuntimeException {
+    
+    private final int retryAfterSeconds;
+    
+    public QueueFullException(int queueDepth, int retryAfterSeconds) {
+        super("Execution queue is full (" + queueDepth + " queued)");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
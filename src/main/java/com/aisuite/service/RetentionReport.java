@@ -0,0 +1,21 @@
+package com.aisuite.service;
+
+import lombok.Data;
+
+/**
+ * Outcome of a retention run.
+ */
+@Data
+public class RetentionReport {
+    
+    // Another node held the retention lease, so nothing was done
+    private boolean skipped;
+    private int daysRolledUp;
+    private long executionsArchived;
+    private long stepRecordsArchived;
+    private int archiveFiles;
+    private int blobsDeleted;
+    private long elapsedMs;
+    // Executions archived per second over the whole run
+    private double rowsPerSecond;
+}
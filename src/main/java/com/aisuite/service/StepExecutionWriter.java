@@ -0,0 +1,98 @@
+package com.aisuite.service;
+
+import com.aisuite.model.StepExecution;
+import com.aisuite.repository.StepExecutionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Write-behind buffer for step records. Steps hand over their record once it reaches a final
+ * status, and the buffer is inserted in one JDBC batch per flush. Step progress therefore costs
+ * no connection while AI calls are in flight. A run flushes before it records its own final
+ * status, so a finished execution has all of its step rows unless writing them failed.
+ * <p>
+ * When a batch fails, its records are written one at a time so one bad row does not take the
+ * others with it. A record that still fails is queued for the next flushes and dropped after
+ * {@link #MAX_ATTEMPTS} attempts; both are counted.
+ */
+@Component
+@Slf4j
+public class StepExecutionWriter {
+    
+    static final int MAX_ATTEMPTS = 3;
+    
+    private final StepExecutionRepository stepExecutionRepository;
+    private final Queue<PendingRecord> pending = new ConcurrentLinkedQueue<>();
+    private final Counter retried;
+    private final Counter dropped;
+    
+    public StepExecutionWriter(StepExecutionRepository stepExecutionRepository, MeterRegistry meterRegistry) {
+        this.stepExecutionRepository = stepExecutionRepository;
+        this.retried = Counter.builder("execution.step.records.failed")
+                .description("Step records that could not be written, by whether they were queued again or dropped")
+                .tag("outcome", "retried")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("execution.step.records.failed")
+                .description("Step records that could not be written, by whether they were queued again or dropped")
+                .tag("outcome", "dropped")
+                .register(meterRegistry);
+    }
+    
+    /**
+     * Queues a finished step record; it must not be changed afterwards.
+     */
+    public void record(StepExecution stepExecution) {
+        pending.add(new PendingRecord(stepExecution, 0));
+    }
+    
+    @Scheduled(fixedDelayString = "${ai.automation.step-flush-interval-ms:250}")
+    public synchronized void flush() {
+        List<PendingRecord> batch = new ArrayList<>();
+        PendingRecord next;
+        while ((next = pending.poll()) != null) {
+            batch.add(next);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            // One transaction, so a failed batch has written none of its rows
+            stepExecutionRepository.insertAll(batch.stream().map(PendingRecord::step).toList());
+        } catch (RuntimeException e) {
+            log.warn("Failed to write {} step records as a batch, writing them one at a time: {}",
+                    batch.size(), e.getMessage());
+            batch.forEach(this::writeOne);
+        }
+    }
+    
+    int pending() {
+        return pending.size();
+    }
+    
+    private void writeOne(PendingRecord record) {
+        try {
+            stepExecutionRepository.insertAll(List.of(record.step()));
+        } catch (RuntimeException e) {
+            StepExecution step = record.step();
+            if (record.attempts() + 1 < MAX_ATTEMPTS) {
+                retried.increment();
+                pending.add(new PendingRecord(step, record.attempts() + 1));
+                return;
+            }
+            dropped.increment();
+            log.error("Dropped the record of step {} in execution {} after {} failed writes: {}",
+                    step.getStepId(), step.getExecutionId(), MAX_ATTEMPTS, e.getMessage(), e);
+        }
+    }
+    
+    private record PendingRecord(StepExecution step, int attempts) {
+    }
+}
@@ -0,0 +1,77 @@
+package com.aisuite.service;
+
+import com.aisuite.model.WorkflowStep;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Dependency graph of a workflow's steps. Steps are kept in (stepOrder, id) order, which is
+ * also a valid topological order because a step may only depend on lower stepOrder values.
+ */
+final class StepGraph {
+    
+    private static final Comparator<WorkflowStep> STEP_ORDER = Comparator
+            .comparing(WorkflowStep::getStepOrder)
+            .thenComparing(WorkflowStep::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+    
+    private final List<WorkflowStep> steps;
+    private final Map<WorkflowStep, List<WorkflowStep>> dependencies;
+    
+    private StepGraph(List<WorkflowStep> steps, Map<WorkflowStep, List<WorkflowStep>> dependencies) {
+        this.steps = steps;
+        this.dependencies = dependencies;
+    }
+    
+    static StepGraph of(Collection<WorkflowStep> workflowSteps) {
+        List<WorkflowStep> steps = workflowSteps.stream()
+                .sorted(STEP_ORDER)
+                .collect(Collectors.toUnmodifiableList());
+        TreeMap<Integer, List<WorkflowStep>> stages = steps.stream()
+                .collect(Collectors.groupingBy(WorkflowStep::getStepOrder, TreeMap::new, Collectors.toList()));
+        
+        Map<WorkflowStep, List<WorkflowStep>> dependencies = new IdentityHashMap<>();
+        for (WorkflowStep step : steps) {
+            List<WorkflowStep> stepDependencies = new ArrayList<>();
+            for (Integer order : dependencyOrders(step, stages)) {
+                if (order >= step.getStepOrder()) {
+                    throw new IllegalArgumentException("Step " + step.getName() +
+                            " can only depend on earlier steps, not step order " + order);
+                }
+                List<WorkflowStep> stage = stages.get(order);
+                if (stage == null) {
+                    throw new IllegalArgumentException("Step " + step.getName() +
+                            " depends on unknown step order " + order);
+                }
+                stepDependencies.addAll(stage);
+            }
+            dependencies.put(step, List.copyOf(stepDependencies));
+        }
+        return new StepGraph(steps, dependencies);
+    }
+    
+    private static Collection<Integer> dependencyOrders(WorkflowStep step, TreeMap<Integer, List<WorkflowStep>> stages) {
+        String dependsOn = step.getDependsOn();
+        if (dependsOn == null || dependsOn.isBlank()) {
+            Integer previousStage = stages.lowerKey(step.getStepOrder());
+            return previousStage == null ? List.of() : List.of(previousStage);
+        }
+        try {
+            return Arrays.stream(dependsOn.split(","))
+                    .map(String::trim)
+                    .filter(order -> !order.isEmpty())
+                    .map(Integer::valueOf)
+                    .collect(Collectors.toCollection(TreeSet::new));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid dependsOn for step " + step.getName() + ": " + dependsOn);
+        }
+    }
+    
+    List<WorkflowStep> steps() {
+        return steps;
+    }
+    
+    List<WorkflowStep> dependenciesOf(WorkflowStep step) {
+        return dependencies.get(step);
+    }
+}
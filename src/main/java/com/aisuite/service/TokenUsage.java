@@ -0,0 +1,72 @@
+package com.aisuite.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sums the token usage the provider reports for the completions made on behalf of one caller,
+ * such as a workflow step. It travels in the Reactor context, so batched, retried and concurrent
+ * calls all add to the same counters:
+ * <pre>{@code aiService.processWithAIAsync(prompt, context).contextWrite(usage::into)}</pre>
+ * Cached and coalesced responses cost no tokens and are not counted.
+ */
+public final class TokenUsage {
+    
+    private static final Class<TokenUsage> CONTEXT_KEY = TokenUsage.class;
+    
+    private final AtomicLong promptTokens = new AtomicLong();
+    private final AtomicLong completionTokens = new AtomicLong();
+    private final AtomicLong totalTokens = new AtomicLong();
+    private final AtomicLong completions = new AtomicLong();
+    
+    public Context into(Context context) {
+        return context.put(CONTEXT_KEY, this);
+    }
+    
+    /**
+     * Adds a provider {@code usage} object to the counter in {@code context}, if there is one.
+     */
+    static void record(ContextView context, JsonNode usage) {
+        if (usage == null || !usage.isObject()) {
+            return;
+        }
+        record(context, new AiResponseReader.Usage(usage.path("prompt_tokens").asLong(),
+                usage.path("completion_tokens").asLong(), usage.path("total_tokens").asLong()));
+    }
+    
+    static void record(ContextView context, AiResponseReader.Usage usage) {
+        if (usage == null) {
+            return;
+        }
+        context.<TokenUsage>getOrEmpty(CONTEXT_KEY).ifPresent(counter -> counter.add(usage));
+    }
+    
+    private void add(AiResponseReader.Usage usage) {
+        promptTokens.addAndGet(usage.promptTokens());
+        completionTokens.addAndGet(usage.completionTokens());
+        totalTokens.addAndGet(Math.max(0, usage.totalTokens()));
+        completions.incrementAndGet();
+    }
+    
+    public long promptTokens() {
+        return promptTokens.get();
+    }
+    
+    public long completionTokens() {
+        return completionTokens.get();
+    }
+    
+    public long totalTokens() {
+        return totalTokens.get();
+    }
+    
+    /**
+     * Number of provider responses that reported usage.
+     */
+    public long completions() {
+        return completions.get();
+    }
+}
@@ -0,0 +1,41 @@
+package com.aisuite.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a transformation run: throughput figures, aggregate groups and, when no output file
+ * was configured, the first rows of the output.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransformResult {
+    
+    private long rowsIn;
+    private long rowsOut;
+    private int chunks;
+    private long elapsedMs;
+    private double rowsPerSecond;
+    private String outputFile;
+    private List<Map<String, Object>> groups;
+    private List<Map<String, Object>> rows;
+    // Set when more rows were produced than kept in rows
+    private Boolean truncated;
+    
+    void addRows(List<Map<String, Object>> produced, int maxRows) {
+        if (rows == null) {
+            rows = new ArrayList<>();
+        }
+        int room = maxRows - rows.size();
+        if (produced.size() > room) {
+            truncated = true;
+        }
+        if (room > 0) {
+            rows.addAll(produced.size() > room ? produced.subList(0, room) : produced);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.aisuite.service;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code transform} block of a DATA_TRANSFORMATION step configuration, e.g.
+ * <pre>{@code
+ * {"transform": {
+ *   "source": {"file": "invoices.csv.gz", "format": "csv"},
+ *   "operations": [
+ *     {"filter": "number(amount) > 100"},
+ *     {"map": {"net": "amount / 1.19", "customer": "upper(customer)"}},
+ *     {"project": ["customer", "country", "net"]}
+ *   ],
+ *   "aggregate": {"groupBy": ["country"], "metrics": {"total": "sum(net)", "invoices": "count()"}},
+ *   "output": {"file": "out/invoices.jsonl"}
+ * }}
+ * }</pre>
+ * Filter and map use the same expressions as CONDITIONAL steps, evaluated per row.
+ */
+@Data
+public class TransformSpec {
+    
+    private Source source = new Source();
+    private List<Map<String, Object>> operations = new ArrayList<>();
+    private Aggregate aggregate;
+    private Output output;
+    private Integer chunkSize;
+    private Integer parallelism;
+    
+    @Data
+    public static class Source {
+        // Path below ai.transform.data-directory; ".gz" files are decompressed while reading
+        private String file;
+        // Context entry holding CSV/JSON-lines text or a list of records
+        private String contextKey;
+        // csv or jsonl; derived from the file name when not set
+        private String format;
+        private String delimiter = ",";
+        private Boolean header = true;
+    }
+    
+    @Data
+    public static class Aggregate {
+        private List<String> groupBy = new ArrayList<>();
+        // name -> count(), sum(expr), avg(expr), min(expr) or max(expr)
+        private Map<String, String> metrics = new LinkedHashMap<>();
+    }
+    
+    @Data
+    public static class Output {
+        // Path below ai.transform.data-directory; rows are written as JSON lines, or CSV for ".csv"
+        private String file;
+    }
+}
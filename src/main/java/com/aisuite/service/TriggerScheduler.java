@@ -0,0 +1,188 @@
+package com.aisuite.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Wakes up when time-based triggers are due, with one thread however many there are. Due
+ * times are kept in a priority queue; the thread sleeps until the earliest one and hands each
+ * due trigger to the executor, which fires it and schedules it again. Rescheduling or
+ * cancelling only updates the map of current due times, and the outdated queue entry is
+ * dropped when it comes up, so every change is O(log n).
+ */
+@Slf4j
+final class TriggerScheduler implements AutoCloseable {
+    
+    private record Entry(LocalDateTime dueAt, long triggerId) {
+    }
+    
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>(Comparator.comparing(Entry::dueAt));
+    private final Map<Long, LocalDateTime> scheduled = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Executor executor;
+    private final BiConsumer<Long, LocalDateTime> onDue;
+    private final Thread thread;
+    private volatile boolean closed;
+    
+    /**
+     * @param onDue called on {@code executor} with the trigger and the due time it was scheduled for
+     */
+    TriggerScheduler(String name, Executor executor, BiConsumer<Long, LocalDateTime> onDue) {
+        this.executor = executor;
+        this.onDue = onDue;
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+    }
+    
+    void start() {
+        if (!thread.isAlive() && !closed) {
+            thread.start();
+        }
+    }
+    
+    /**
+     * Schedules the trigger for {@code dueAt}, replacing its previous due time.
+     */
+    void schedule(long triggerId, LocalDateTime dueAt) {
+        lock.lock();
+        try {
+            scheduled.put(triggerId, dueAt);
+            Entry entry = new Entry(dueAt, triggerId);
+            queue.add(entry);
+            // Only a new earliest entry changes how long the thread has to sleep
+            if (queue.peek() == entry) {
+                changed.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    void cancel(long triggerId) {
+        lock.lock();
+        try {
+            scheduled.remove(triggerId);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Makes the schedule match {@code schedules}: changed due times are updated and triggers
+     * not among them are cancelled.
+     */
+    void replaceAll(Map<Long, LocalDateTime> schedules) {
+        lock.lock();
+        try {
+            Set<Long> removed = new HashSet<>(scheduled.keySet());
+            removed.removeAll(schedules.keySet());
+            removed.forEach(scheduled::remove);
+            schedules.forEach((triggerId, dueAt) -> {
+                if (!dueAt.equals(scheduled.get(triggerId))) {
+                    schedule(triggerId, dueAt);
+                }
+            });
+            // Outdated entries are otherwise only dropped as they come up
+            if (queue.size() > 2 * scheduled.size() + 1024) {
+                queue.removeIf(entry -> !entry.dueAt().equals(scheduled.get(entry.triggerId())));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    LocalDateTime dueAt(long triggerId) {
+        lock.lock();
+        try {
+            return scheduled.get(triggerId);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    int size() {
+        lock.lock();
+        try {
+            return scheduled.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+    }
+    
+    private void run() {
+        while (!closed) {
+            List<Entry> due;
+            try {
+                due = awaitDue();
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (Entry entry : due) {
+                try {
+                    executor.execute(() -> onDue.accept(entry.triggerId(), entry.dueAt()));
+                } catch (RejectedExecutionException e) {
+                    log.warn("Trigger {} could not be fired: {}", entry.triggerId(), e.getMessage());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Waits until at least one trigger is due and takes every due one off the schedule.
+     */
+    private List<Entry> awaitDue() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                Entry head = queue.peek();
+                if (head == null) {
+                    changed.await();
+                    continue;
+                }
+                if (!head.dueAt().equals(scheduled.get(head.triggerId()))) {
+                    queue.poll();
+                    continue;
+                }
+                long waitNanos = Duration.between(LocalDateTime.now(), head.dueAt()).toNanos();
+                if (waitNanos > 0) {
+                    changed.awaitNanos(waitNanos);
+                    continue;
+                }
+                List<Entry> due = new ArrayList<>();
+                LocalDateTime now = LocalDateTime.now();
+                while ((head = queue.peek()) != null && !head.dueAt().isAfter(now)) {
+                    queue.poll();
+                    if (head.dueAt().equals(scheduled.get(head.triggerId()))) {
+                        scheduled.remove(head.triggerId());
+                        due.add(head);
+                    }
+                }
+                return due;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
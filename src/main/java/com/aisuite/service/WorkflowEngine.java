@@ -1,180 +1,544 @@
-package com.aisuite.service;
-
-import com.aisuite.model.Workflow;
-import com.aisuite.model.WorkflowExecution;
-import com.aisuite.model.WorkflowStep;
-import com.aisuite.repository.WorkflowExecutionRepository;
-import com.aisuite.repository.WorkflowRepository;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
-import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-
-import java.time.LocalDateTime;
-import java.util.*;
-import java.util.stream.Collectors;
-
-@Service
-@RequiredArgsConstructor
-@Slf4j
-public class WorkflowEngine {
-    
-    private final WorkflowRepository workflowRepository;
-    private final WorkflowExecutionRepository executionRepository;
-    private final AiService aiService;
-    private final ObjectMapper objectMapper;
-    
-    @Async
-    @Transactional
-    public WorkflowExecution executeWorkflow(Long workflowId, Map<String, Object> inputData) {
-        log.info("Starting workflow execution for workflow ID: {}", workflowId);
-        
-        Workflow workflow = workflowRepository.findById(workflowId)
-                .orElseThrow(() -> new RuntimeException("Workflow not found: " + workflowId));
-        
-        WorkflowExecution execution = new WorkflowExecution();
-        execution.setWorkflow(workflow);
-        execution.setStatus(WorkflowExecution.ExecutionStatus.RUNNING);
-        execution.setStartedAt(LocalDateTime.now());
-        execution.setInputData(convertToJson(inputData));
-        execution = executionRepository.save(execution);
-        
-        try {
-            Map<String, Object> context = new HashMap<>(inputData);
-            List<WorkflowStep> steps = workflow.getSteps().stream()
-                    .sorted(Comparator.comparing(WorkflowStep::getStepOrder))
-                    .collect(Collectors.toList());
-            
-            for (WorkflowStep step : steps) {
-                log.info("Executing step: {} (Order: {})", step.getName(), step.getStepOrder());
-                step.setStatus(WorkflowStep.StepStatus.IN_PROGRESS);
-                
-                try {
-                    String result = executeStep(step, context);
-                    step.setResult(result);
-                    step.setStatus(WorkflowStep.StepStatus.COMPLETED);
-                    
-                    // Update context with step result
-                    context.put("step_" + step.getId(), result);
-                    
-                    // Handle conditional steps
-                    if (step.getType() == WorkflowStep.StepType.CONDITIONAL) {
-                        boolean shouldContinue = evaluateCondition(step, result);
-                        if (!shouldContinue) {
-                            step.setStatus(WorkflowStep.StepStatus.SKIPPED);
-                            break;
-                        }
-                    }
-                    
-                } catch (Exception e) {
-                    log.error("Step execution failed: {}", e.getMessage(), e);
-                    step.setStatus(WorkflowStep.StepStatus.FAILED);
-                    step.setResult("Error: " + e.getMessage());
-                    
-                    if (step.getType() != WorkflowStep.StepType.MANUAL_REVIEW) {
-                        execution.setStatus(WorkflowExecution.ExecutionStatus.FAILED);
-                        execution.setErrorMessage("Step failed: " + step.getName() + " - " + e.getMessage());
-                        break;
-                    }
-                }
-            }
-            
-            workflow.setLastExecutedAt(LocalDateTime.now());
-            workflowRepository.save(workflow);
-            
-            execution.setStatus(WorkflowExecution.ExecutionStatus.COMPLETED);
-            execution.setOutputData(convertToJson(context));
-            execution.setCompletedAt(LocalDateTime.now());
-            
-            long executionTime = java.time.Duration.between(
-                    execution.getStartedAt(), 
-                    execution.getCompletedAt()
-            ).toMillis();
-            execution.setExecutionTimeMs(executionTime);
-            
-            log.info("Workflow execution completed in {} ms", executionTime);
-            
-        } catch (Exception e) {
-            log.error("Workflow execution failed: {}", e.getMessage(), e);
-            execution.setStatus(WorkflowExecution.ExecutionStatus.FAILED);
-            execution.setErrorMessage(e.getMessage());
-            execution.setCompletedAt(LocalDateTime.now());
-        }
-        
-        return executionRepository.save(execution);
-    }
-    
-    private String executeStep(WorkflowStep step, Map<String, Object> context) throws Exception {
-        switch (step.getType()) {
-            case AI_PROCESSING:
-                String prompt = step.getAiPrompt() != null 
-                        ? step.getAiPrompt() 
-                        : "Process the following business data: " + context;
-                return aiService.processWithAI(prompt, context);
-                
-            case DATA_TRANSFORMATION:
-                return transformData(step, context);
-                
-            case NOTIFICATION:
-                return sendNotification(step, context);
-                
-            case CONDITIONAL:
-                return evaluateCondition(step, context) ? "Condition met" : "Condition not met";
-                
-            case MANUAL_REVIEW:
-                return "Pending manual review";
-                
-            default:
-                throw new IllegalArgumentException("Unknown step type: " + step.getType());
-        }
-    }
-    
-    private String transformData(WorkflowStep step, Map<String, Object> context) {
-        // Simple data transformation logic
-        String config = step.getConfiguration();
-        if (config != null && config.contains("transform")) {
-            // Apply transformations based on configuration
-            return "Data transformed successfully";
-        }
-        return "Data transformation completed";
-    }
-    
-    private String sendNotification(WorkflowStep step, Map<String, Object> context) {
-        // Notification logic would be implemented here
-        log.info("Sending notification for step: {}", step.getName());
-        return "Notification sent";
-    }
-    
-    private boolean evaluateCondition(WorkflowStep step, Object result) {
-        try {
-            String config = step.getConfiguration();
-            if (config == null) return true;
-            
-            // Simple condition evaluation
-            // In a production system, this would use a proper expression evaluator
-            Map<String, Object> configMap = objectMapper.readValue(config, Map.class);
-            String condition = (String) configMap.get("condition");
-            
-            if (condition != null && condition.equals("success")) {
-                return result != null && !result.toString().contains("Error");
-            }
-            
-            return true;
-        } catch (Exception e) {
-            log.warn("Failed to evaluate condition: {}", e.getMessage());
-            return true;
-        }
-    }
-    
-    private String convertToJson(Object obj) {
-        try {
-            return objectMapper.writeValueAsString(obj);
-        } catch (Exception e) {
-            log.error("Failed to convert to JSON: {}", e.getMessage());
-            return obj.toString();
-        }
-    }
-}
-
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.aisuite.model.StepExecution;
+import com.aisuite.model.WorkflowExecution;
+import com.aisuite.model.WorkflowStep;
+import com.aisuite.repository.WorkflowExecutionRepository;
+import com.aisuite.repository.WorkflowRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.util.context.Context;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WorkflowEngine {
+    
+    private static final String CONDITION_MET = "Condition met";
+    private static final String CONDITION_NOT_MET = "Condition not met";
+    
+    private final WorkflowRepository workflowRepository;
+    private final WorkflowPlanCache workflowPlans;
+    private final WorkflowExecutionRepository executionRepository;
+    private final StepExecutionWriter stepExecutionWriter;
+    private final ExecutionStatsService executionStats;
+    private final AiService aiService;
+    private final AiBatchService aiBatchService;
+    private final ExecutionEventPublisher executionEvents;
+    private final ConditionCompiler conditionCompiler;
+    private final DataTransformService dataTransformService;
+    private final ObjectMapper objectMapper;
+    private final Executor stepExecutor;
+    private final ObservationRegistry observationRegistry;
+    private final TransactionTemplate transactionTemplate;
+    private final ClusterNode clusterNode;
+    private final AiConfig aiConfig;
+    
+    /**
+     * Creates an execution and runs it on the calling thread. Queued runs go through
+     * {@link ExecutionQueueService} and {@link #runExecution} instead.
+     * <p>
+     * Runs are deliberately not transactional. Each state change commits on its own, and step
+     * records go through {@link StepExecutionWriter}, so no connection is held while steps wait
+     * on the AI provider. Only the final status commits together with the dashboard totals.
+     * <p>
+     * The run holds a lease like a queued one, renewed by this node's heartbeat, so another node
+     * queues it again if this one dies.
+     */
+    public WorkflowExecution executeWorkflow(Long workflowId, Map<String, Object> inputData) {
+        log.info("Starting workflow execution for workflow ID: {}", workflowId);
+        
+        // Fails fast for unknown workflows; the definition itself is usually cached
+        WorkflowPlan plan = workflowPlans.get(workflowId);
+        
+        WorkflowExecution execution = new WorkflowExecution();
+        execution.setWorkflow(workflowRepository.getReferenceById(workflowId));
+        execution.setStatus(WorkflowExecution.ExecutionStatus.RUNNING);
+        execution.setStartedAt(LocalDateTime.now());
+        execution.setInputData(convertToJson(inputData));
+        execution.setNodeId(clusterNode.getId());
+        execution.setLeaseExpiresAt(LocalDateTime.now().plus(java.time.Duration.ofMillis(aiConfig.getCluster().getLeaseMs())));
+        execution.setAttempts(1);
+        execution = executionRepository.save(execution);
+        
+        return run(execution, plan, inputData);
+    }
+    
+    /**
+     * Runs an execution that was previously queued and claimed.
+     */
+    public WorkflowExecution runExecution(Long executionId) {
+        WorkflowExecution execution = executionRepository.findById(executionId)
+                .orElseThrow(() -> new RuntimeException("Execution not found: " + executionId));
+        log.info("Starting queued execution {} for workflow ID: {}", executionId, execution.getWorkflowId());
+        
+        execution.setStatus(WorkflowExecution.ExecutionStatus.RUNNING);
+        execution.setStartedAt(LocalDateTime.now());
+        
+        Map<String, Object> inputData;
+        try {
+            inputData = parseJson(execution.getInputData());
+        } catch (Exception e) {
+            return fail(execution, "Invalid input data: " + e.getMessage());
+        }
+        WorkflowPlan plan;
+        try {
+            plan = workflowPlans.get(execution.getWorkflowId());
+        } catch (RuntimeException e) {
+            return fail(execution, e.getMessage());
+        }
+        execution = executionRepository.save(execution);
+        return run(execution, plan, inputData);
+    }
+    
+    private WorkflowExecution fail(WorkflowExecution execution, String message) {
+        execution.setStatus(WorkflowExecution.ExecutionStatus.FAILED);
+        execution.setErrorMessage(message);
+        execution.setCompletedAt(LocalDateTime.now());
+        return complete(execution, List.of());
+    }
+    
+    /**
+     * Runs the steps as a {@code workflow.execution} observation, tagged with the workflow and
+     * the final status, that is the parent of each step's {@code workflow.step} observation.
+     */
+    private WorkflowExecution run(WorkflowExecution execution, WorkflowPlan plan, Map<String, Object> inputData) {
+        Long workflowId = plan.workflowId();
+        Map<WorkflowStep, StepExecution> stepRuns = new IdentityHashMap<>();
+        Observation observation = Observation.createNotStarted("workflow.execution", observationRegistry)
+                .contextualName("workflow execution")
+                .lowCardinalityKeyValue("workflow", String.valueOf(workflowId))
+                .highCardinalityKeyValue("execution.id", String.valueOf(execution.getId()))
+                .start();
+        try (Observation.Scope scope = observation.openScope()) {
+            Map<String, Object> context = newContext(inputData);
+            StepGraph graph = plan.graph();
+            Map<WorkflowStep, String> failures = Collections.synchronizedMap(new IdentityHashMap<>());
+            for (WorkflowStep step : graph.steps()) {
+                stepRuns.put(step, newStepExecution(execution.getId(), step));
+            }
+            
+            runSteps(observation, workflowId, graph, stepRuns, context, failures);
+            stepExecutionWriter.flush();
+            
+            // Report the first failed step in step order so concurrent failures give a stable result
+            WorkflowStep failedStep = graph.steps().stream()
+                    .filter(failures::containsKey)
+                    .findFirst()
+                    .orElse(null);
+            if (failedStep != null) {
+                execution.setStatus(WorkflowExecution.ExecutionStatus.FAILED);
+                execution.setErrorMessage("Step failed: " + failedStep.getName() + " - " + failures.get(failedStep));
+            }
+            
+            workflowRepository.updateLastExecutedAt(workflowId, LocalDateTime.now());
+            
+            if (failedStep == null) {
+                execution.setStatus(WorkflowExecution.ExecutionStatus.COMPLETED);
+            }
+            execution.setOutputData(convertToJson(context));
+            execution.setCompletedAt(LocalDateTime.now());
+            
+            long executionTime = java.time.Duration.between(
+                    execution.getStartedAt(), 
+                    execution.getCompletedAt()
+            ).toMillis();
+            execution.setExecutionTimeMs(executionTime);
+            
+            log.info("Workflow execution completed in {} ms", executionTime);
+            
+        } catch (Exception e) {
+            log.error("Workflow execution failed: {}", e.getMessage(), e);
+            observation.error(e);
+            execution.setStatus(WorkflowExecution.ExecutionStatus.FAILED);
+            execution.setErrorMessage(e.getMessage());
+            execution.setCompletedAt(LocalDateTime.now());
+        }
+        observation.lowCardinalityKeyValue("status", execution.getStatus().name());
+        observation.stop();
+        
+        return complete(execution, stepRuns.values());
+    }
+    
+    /**
+     * Saves the final status and adds the run to the dashboard totals in one transaction, then
+     * publishes it. A run whose lease expired meanwhile discards its result: the execution was
+     * queued again and belongs to whichever node runs it next.
+     */
+    private WorkflowExecution complete(WorkflowExecution execution, Collection<StepExecution> steps) {
+        WorkflowExecution saved = transactionTemplate.execute(status -> {
+            if (executionRepository.releaseLease(execution.getId(), clusterNode.getId()) == 0) {
+                return null;
+            }
+            execution.setLeaseExpiresAt(null);
+            WorkflowExecution finished = executionRepository.save(execution);
+            executionStats.record(finished, steps);
+            return finished;
+        });
+        if (saved == null) {
+            log.warn("Discarded the result of execution {}: its lease expired and it was queued again",
+                    execution.getId());
+            return executionRepository.findById(execution.getId()).orElse(execution);
+        }
+        publishCompletion(saved);
+        return saved;
+    }
+    
+    private void publishCompletion(WorkflowExecution execution) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("executionId", execution.getId());
+        data.put("status", execution.getStatus());
+        if (execution.getErrorMessage() != null) {
+            data.put("errorMessage", execution.getErrorMessage());
+        }
+        executionEvents.complete(execution.getId(), "execution", data);
+    }
+    
+    private void publishStep(StepExecution stepRun) {
+        if (!executionEvents.hasSubscribers(stepRun.getExecutionId())) {
+            return;
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put("stepId", stepRun.getStepId());
+        data.put("stepName", stepRun.getStepName());
+        data.put("status", stepRun.getStatus());
+        if (stepRun.getResult() != null) {
+            data.put("result", stepRun.getResult());
+        }
+        executionEvents.publish(stepRun.getExecutionId(), "step", data);
+    }
+    
+    /**
+     * Publishes a step's final state and queues its record for writing.
+     */
+    private void completeStep(StepExecution stepRun) {
+        publishStep(stepRun);
+        stepExecutionWriter.record(stepRun);
+    }
+    
+    private static StepExecution newStepExecution(Long executionId, WorkflowStep step) {
+        StepExecution stepRun = new StepExecution();
+        stepRun.setExecutionId(executionId);
+        stepRun.setStepId(step.getId());
+        stepRun.setStepName(step.getName());
+        stepRun.setStepOrder(step.getStepOrder());
+        stepRun.setStatus(WorkflowStep.StepStatus.PENDING);
+        return stepRun;
+    }
+    
+    /**
+     * Runs every step once all of its dependencies have finished, so independent steps run
+     * concurrently on the step executor. A step is skipped when any dependency failed or was
+     * halted by a condition; steps on unrelated branches still run. Step state is recorded in
+     * {@code stepRuns}; the shared step definitions are only read.
+     */
+    private void runSteps(Observation execution, Long workflowId, StepGraph graph,
+                          Map<WorkflowStep, StepExecution> stepRuns, Map<String, Object> context,
+                          Map<WorkflowStep, String> failures) {
+        Map<WorkflowStep, CompletableFuture<Boolean>> scheduled = new IdentityHashMap<>();
+        for (WorkflowStep step : graph.steps()) {
+            List<CompletableFuture<Boolean>> dependencies = graph.dependenciesOf(step).stream()
+                    .map(scheduled::get)
+                    .collect(Collectors.toList());
+            CompletableFuture<Boolean> run = CompletableFuture
+                    .allOf(dependencies.toArray(new CompletableFuture[0]))
+                    .thenApplyAsync(ignored -> {
+                        boolean ready = dependencies.stream().allMatch(CompletableFuture::join);
+                        StepExecution stepRun = stepRuns.get(step);
+                        if (!ready) {
+                            stepRun.setStatus(WorkflowStep.StepStatus.SKIPPED);
+                            completeStep(stepRun);
+                            return false;
+                        }
+                        return observeStep(execution, workflowId, step, stepRun, context, failures);
+                    }, stepExecutor);
+            scheduled.put(step, run);
+        }
+        CompletableFuture.allOf(scheduled.values().toArray(new CompletableFuture[0])).join();
+    }
+    
+    /**
+     * Runs a step as a {@code workflow.step} observation tagged with the workflow, step type and
+     * final status. It is current on the step's thread while the step runs, so the AI calls the
+     * step makes are recorded as its children.
+     */
+    private boolean observeStep(Observation execution, Long workflowId, WorkflowStep step, StepExecution stepRun,
+                                Map<String, Object> context, Map<WorkflowStep, String> failures) {
+        Observation observation = Observation.createNotStarted("workflow.step", observationRegistry)
+                .contextualName("workflow step")
+                .parentObservation(execution)
+                .lowCardinalityKeyValue("workflow", String.valueOf(workflowId))
+                .lowCardinalityKeyValue("step.type", String.valueOf(step.getType()))
+                .highCardinalityKeyValue("step.name", String.valueOf(step.getName()))
+                .start();
+        try (Observation.Scope scope = observation.openScope()) {
+            return runStep(observation, step, stepRun, context, failures);
+        } finally {
+            observation.lowCardinalityKeyValue("status", stepRun.getStatus().name());
+            observation.stop();
+        }
+    }
+    
+    /**
+     * @return whether steps depending on this one may run
+     */
+    private boolean runStep(Observation observation, WorkflowStep step, StepExecution stepRun,
+                            Map<String, Object> context, Map<WorkflowStep, String> failures) {
+        log.info("Executing step: {} (Order: {})", step.getName(), step.getStepOrder());
+        stepRun.setStatus(WorkflowStep.StepStatus.IN_PROGRESS);
+        stepRun.setStartedAt(LocalDateTime.now());
+        publishStep(stepRun);
+        long start = System.nanoTime();
+        TokenUsage usage = new TokenUsage();
+        
+        try {
+            String result = executeStep(stepRun.getExecutionId(), step, context, usage);
+            finish(stepRun, start, usage, WorkflowStep.StepStatus.COMPLETED, result);
+            
+            // Update context with step result
+            if (result != null) {
+                context.put("step_" + step.getId(), result);
+            }
+            
+            // Handle conditional steps
+            if (step.getType() == WorkflowStep.StepType.CONDITIONAL) {
+                boolean shouldContinue = CONDITION_MET.equals(result);
+                if (!shouldContinue) {
+                    stepRun.setStatus(WorkflowStep.StepStatus.SKIPPED);
+                    completeStep(stepRun);
+                    return false;
+                }
+            }
+            completeStep(stepRun);
+            return true;
+            
+        } catch (Exception e) {
+            log.error("Step execution failed: {}", e.getMessage(), e);
+            observation.error(e);
+            finish(stepRun, start, usage, WorkflowStep.StepStatus.FAILED, "Error: " + e.getMessage());
+            completeStep(stepRun);
+            
+            if (step.getType() != WorkflowStep.StepType.MANUAL_REVIEW) {
+                failures.put(step, String.valueOf(e.getMessage()));
+                return false;
+            }
+            return true;
+        }
+    }
+    
+    private static void finish(StepExecution stepRun, long startNanos, TokenUsage usage,
+                               WorkflowStep.StepStatus status, String result) {
+        stepRun.setStatus(status);
+        stepRun.setResult(result);
+        stepRun.setCompletedAt(LocalDateTime.now());
+        stepRun.setDurationMs((System.nanoTime() - startNanos) / 1_000_000);
+        if (usage.completions() > 0) {
+            stepRun.setAiCalls((int) usage.completions());
+            stepRun.setPromptTokens(usage.promptTokens());
+            stepRun.setCompletionTokens(usage.completionTokens());
+            stepRun.setTotalTokens(usage.totalTokens());
+        }
+    }
+    
+    /**
+     * Shared across concurrently running steps. ConcurrentHashMap rejects null values, so null
+     * inputs are left out rather than stored.
+     */
+    private Map<String, Object> newContext(Map<String, Object> inputData) {
+        Map<String, Object> context = new ConcurrentHashMap<>();
+        inputData.forEach((key, value) -> {
+            if (key != null && value != null) {
+                context.put(key, value);
+            }
+        });
+        return context;
+    }
+    
+    private String executeStep(Long executionId, WorkflowStep step, Map<String, Object> context,
+                               TokenUsage usage) throws Exception {
+        switch (step.getType()) {
+            case AI_PROCESSING:
+                String prompt = step.getAiPrompt() != null 
+                        ? step.getAiPrompt() 
+                        : "Process the following business data: " + context;
+                Map<String, Object> batch = batchSettings(step);
+                if (batch != null) {
+                    return processBatch(step, prompt, batch, context, usage);
+                }
+                if (executionEvents.hasSubscribers(executionId)) {
+                    return streamStep(executionId, step, prompt, context, usage);
+                }
+                return aiService.processWithAI(prompt, context, usage);
+                
+            case DATA_TRANSFORMATION:
+                return transformData(step, context);
+                
+            case NOTIFICATION:
+                return sendNotification(step, context);
+                
+            case CONDITIONAL:
+                return evaluateCondition(step, context) ? CONDITION_MET : CONDITION_NOT_MET;
+                
+            case MANUAL_REVIEW:
+                return "Pending manual review";
+                
+            default:
+                throw new IllegalArgumentException("Unknown step type: " + step.getType());
+        }
+    }
+    
+    /**
+     * Streams the completion so that listeners on the execution see partial output as it is
+     * generated, and returns the assembled text as the step result.
+     */
+    private String streamStep(Long executionId, WorkflowStep step, String prompt, Map<String, Object> context,
+                              TokenUsage usage) {
+        return aiService.streamWithAI(prompt, context)
+                .doOnNext(delta -> {
+                    Map<String, Object> data = new HashMap<>();
+                    data.put("stepId", step.getId());
+                    data.put("stepName", step.getName());
+                    data.put("delta", delta);
+                    executionEvents.publish(executionId, "output", data);
+                })
+                .collect(Collectors.joining())
+                .contextWrite(usage::into)
+                .contextWrite(this::withCurrentObservation)
+                .block();
+    }
+    
+    /**
+     * Hands the running step's observation to AI calls through the Reactor context, since
+     * batched calls subscribe on other threads than the step's.
+     */
+    private Context withCurrentObservation(Context context) {
+        Observation current = observationRegistry.getCurrentObservation();
+        return current != null ? context.put(ObservationThreadLocalAccessor.KEY, current) : context;
+    }
+    
+    /**
+     * Returns the {@code batch} block of an AI_PROCESSING step configuration, e.g.
+     * {@code {"batch": {"itemsKey": "invoices", "concurrency": 8, "packSize": 5}}}, or null.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> batchSettings(WorkflowStep step) {
+        String config = step.getConfiguration();
+        if (config == null || config.isBlank()) {
+            return null;
+        }
+        try {
+            Object batch = parseJson(config).get("batch");
+            return batch instanceof Map ? (Map<String, Object>) batch : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+    
+    private String processBatch(WorkflowStep step, String instruction, Map<String, Object> batch,
+                                Map<String, Object> context, TokenUsage usage) {
+        Object itemsKey = batch.get("itemsKey");
+        Object items = itemsKey == null ? null : context.get(itemsKey.toString());
+        if (!(items instanceof List<?> list)) {
+            throw new IllegalArgumentException("Batch step " + step.getName() + " needs a list in context key: " + itemsKey);
+        }
+        List<Map<String, Object>> results = aiBatchService
+                .processBatch(instruction, list, context, intSetting(batch, "concurrency"), intSetting(batch, "packSize"))
+                .collectList()
+                .contextWrite(usage::into)
+                .contextWrite(this::withCurrentObservation)
+                .block();
+        
+        Object[] ordered = new Object[list.size()];
+        Map<String, Object> output = new HashMap<>();
+        for (Map<String, Object> result : results) {
+            if (result.containsKey("summary")) {
+                output.put("summary", result);
+            } else {
+                ordered[(Integer) result.get("index")] = result;
+            }
+        }
+        output.put("items", Arrays.asList(ordered));
+        return convertToJson(output);
+    }
+    
+    private static Integer intSetting(Map<String, Object> settings, String key) {
+        Object value = settings.get(key);
+        return value instanceof Number number ? number.intValue() : null;
+    }
+    
+    private String transformData(WorkflowStep step, Map<String, Object> context) throws Exception {
+        TransformSpec spec = transformSpec(step);
+        if (spec != null) {
+            return convertToJson(dataTransformService.transform(spec, context));
+        }
+        // Steps without a transform pipeline keep their historical results
+        String config = step.getConfiguration();
+        if (config != null && config.contains("transform")) {
+            return "Data transformed successfully";
+        }
+        return "Data transformation completed";
+    }
+    
+    /**
+     * The step's {@code {"transform": {...}}} pipeline, or null when the configuration has none.
+     */
+    private TransformSpec transformSpec(WorkflowStep step) {
+        String config = step.getConfiguration();
+        if (config == null || config.isBlank()) {
+            return null;
+        }
+        Object transform;
+        try {
+            transform = parseJson(config).get("transform");
+        } catch (Exception e) {
+            return null;
+        }
+        return transform instanceof Map ? objectMapper.convertValue(transform, TransformSpec.class) : null;
+    }
+    
+    private String sendNotification(WorkflowStep step, Map<String, Object> context) {
+        // Notification logic would be implemented here
+        log.info("Sending notification for step: {}", step.getName());
+        return "Notification sent";
+    }
+    
+    /**
+     * Evaluates the step's condition against the execution context. The condition is compiled
+     * once per step configuration; a malformed one fails the step.
+     */
+    boolean evaluateCondition(WorkflowStep step, Map<String, Object> context) {
+        return conditionCompiler.compile(step).test(context);
+    }
+    
+    private Map<String, Object> parseJson(String json) throws Exception {
+        if (json == null || json.isBlank()) {
+            return new HashMap<>();
+        }
+        return objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {});
+    }
+    
+    String convertToJson(Object obj) {
+        try {
+            return objectMapper.writeValueAsString(obj);
+        } catch (Exception e) {
+            log.error("Failed to convert to JSON: {}", e.getMessage());
+            return obj.toString();
+        }
+    }
+}
+
@@ -0,0 +1,55 @@
+package com.aisuite.service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Run-ready form of a workflow definition: its steps sorted and resolved into a {@link StepGraph}.
+ * Plans are shared by all runs of a workflow and cached by {@link WorkflowPlanCache}.
+ */
+final class WorkflowPlan {
+    
+    private final Long workflowId;
+    private final String name;
+    private final LocalDateTime updatedAt;
+    private final StepGraph graph;
+    // Set instead of graph when the step dependencies are invalid; runs fail with it
+    private final String invalidReason;
+    
+    private WorkflowPlan(Long workflowId, String name, LocalDateTime updatedAt, StepGraph graph, String invalidReason) {
+        this.workflowId = workflowId;
+        this.name = name;
+        this.updatedAt = updatedAt;
+        this.graph = graph;
+        this.invalidReason = invalidReason;
+    }
+    
+    static WorkflowPlan of(Long workflowId, String name, LocalDateTime updatedAt, StepGraph graph) {
+        return new WorkflowPlan(workflowId, name, updatedAt, graph, null);
+    }
+    
+    static WorkflowPlan invalid(Long workflowId, String name, LocalDateTime updatedAt, String reason) {
+        return new WorkflowPlan(workflowId, name, updatedAt, null, reason);
+    }
+    
+    Long workflowId() {
+        return workflowId;
+    }
+    
+    String name() {
+        return name;
+    }
+    
+    LocalDateTime updatedAt() {
+        return updatedAt;
+    }
+    
+    /**
+     * @throws IllegalArgumentException when the workflow's step dependencies are invalid
+     */
+    StepGraph graph() {
+        if (graph == null) {
+            throw new IllegalArgumentException(invalidReason);
+        }
+        return graph;
+    }
+}
@@ -0,0 +1,90 @@
+package com.aisuite.service;
+
+import com.aisuite.model.Workflow;
+import com.aisuite.model.WorkflowStep;
+import com.aisuite.repository.WorkflowRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * Caches a {@link WorkflowPlan} per workflow, so repeated runs of a workflow do not read its
+ * definition again. A miss loads the workflow and its steps with a single fetch-join query.
+ * Each plan records the {@code updatedAt} it was built from and is only used while the
+ * workflow's row still has that {@code updatedAt}, which a single-column lookup checks, so a
+ * definition changed by another node or outside {@link WorkflowService} is picked up by the
+ * next run. {@link WorkflowService} also invalidates a plan whenever the workflow is updated or
+ * deleted.
+ */
+@Component
+@Slf4j
+public class WorkflowPlanCache {
+    
+    private final WorkflowRepository workflowRepository;
+    private final EntityManager entityManager;
+    private final Cache<Long, WorkflowPlan> plans = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .build();
+    
+    public WorkflowPlanCache(WorkflowRepository workflowRepository, EntityManager entityManager) {
+        this.workflowRepository = workflowRepository;
+        this.entityManager = entityManager;
+    }
+    
+    /**
+     * @throws RuntimeException when the workflow does not exist
+     */
+    WorkflowPlan get(Long workflowId) {
+        WorkflowPlan plan = plans.getIfPresent(workflowId);
+        if (plan != null && plan.updatedAt() != null
+                && workflowRepository.findUpdatedAtById(workflowId).filter(plan.updatedAt()::equals).isPresent()) {
+            return plan;
+        }
+        // Missing, stale, or the workflow is gone, in which case loading fails
+        plan = load(workflowId);
+        plans.put(workflowId, plan);
+        return plan;
+    }
+    
+    /**
+     * Drops the cached plan now and again once the surrounding transaction completes, so a run
+     * that loads the plan before the change commits cannot leave a stale plan behind.
+     */
+    public void invalidate(Long workflowId) {
+        plans.invalidate(workflowId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    plans.invalidate(workflowId);
+                }
+            });
+        }
+    }
+    
+    long size() {
+        return plans.estimatedSize();
+    }
+    
+    private WorkflowPlan load(Long workflowId) {
+        Workflow workflow = workflowRepository.findWithStepsById(workflowId)
+                .orElseThrow(() -> new RuntimeException("Workflow not found: " + workflowId));
+        // The plan outlives this persistence context and must never be flushed back
+        if (entityManager.contains(workflow)) {
+            entityManager.detach(workflow);
+        }
+        List<WorkflowStep> steps = workflow.getSteps() != null ? workflow.getSteps() : List.of();
+        log.debug("Built plan for workflow {} ({} steps)", workflowId, steps.size());
+        try {
+            return WorkflowPlan.of(workflowId, workflow.getName(), workflow.getUpdatedAt(), StepGraph.of(steps));
+        } catch (IllegalArgumentException e) {
+            return WorkflowPlan.invalid(workflowId, workflow.getName(), workflow.getUpdatedAt(), e.getMessage());
+        }
+    }
+}
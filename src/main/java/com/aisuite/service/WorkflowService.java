@@ -1,61 +1,159 @@
-package com.aisuite.service;
-
-import com.aisuite.model.Workflow;
-import com.aisuite.model.WorkflowExecution;
-import com.aisuite.repository.WorkflowExecutionRepository;
-import com.aisuite.repository.WorkflowRepository;
-import lombok.RequiredArgsConstructor;
-import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-
-import java.util.List;
-import java.util.Optional;
-
-@Service
-@RequiredArgsConstructor
-public class WorkflowService {
-    
-    private final WorkflowRepository workflowRepository;
-    private final WorkflowExecutionRepository executionRepository;
-    
-    public List<Workflow> getAllWorkflows() {
-        return workflowRepository.findAll();
-    }
-    
-    public Optional<Workflow> getWorkflowById(Long id) {
-        return workflowRepository.findById(id);
-    }
-    
-    @Transactional
-    public Workflow createWorkflow(Workflow workflow) {
-        if (workflow.getStatus() == null) {
-            workflow.setStatus(Workflow.WorkflowStatus.DRAFT);
-        }
-        return workflowRepository.save(workflow);
-    }
-    
-    @Transactional
-    public Workflow updateWorkflow(Long id, Workflow workflowDetails) {
-        Workflow workflow = workflowRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Workflow not found: " + id));
-        
-        workflow.setName(workflowDetails.getName());
-        workflow.setDescription(workflowDetails.getDescription());
-        workflow.setStatus(workflowDetails.getStatus());
-        if (workflowDetails.getSteps() != null) {
-            workflow.setSteps(workflowDetails.getSteps());
-        }
-        
-        return workflowRepository.save(workflow);
-    }
-    
-    @Transactional
-    public void deleteWorkflow(Long id) {
-        workflowRepository.deleteById(id);
-    }
-    
-    public List<WorkflowExecution> getWorkflowExecutions(Long workflowId) {
-        return executionRepository.findByWorkflowId(workflowId);
-    }
-}
-
+package com.aisuite.service;
+
+import com.aisuite.model.ExecutionDailyStats;
+import com.aisuite.model.ExecutionSummary;
+import com.aisuite.model.StepExecution;
+import com.aisuite.model.Workflow;
+import com.aisuite.model.WorkflowExecution;
+import com.aisuite.model.WorkflowStep;
+import com.aisuite.repository.ExecutionDailyStatsRepository;
+import com.aisuite.repository.StepExecutionRepository;
+import com.aisuite.repository.WorkflowExecutionRepository;
+import com.aisuite.repository.WorkflowRepository;
+import com.aisuite.repository.WorkflowTriggerRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+@RequiredArgsConstructor
+public class WorkflowService {
+    
+    private final WorkflowRepository workflowRepository;
+    private final WorkflowExecutionRepository executionRepository;
+    private final StepExecutionRepository stepExecutionRepository;
+    private final ExecutionDailyStatsRepository dailyStatsRepository;
+    private final WorkflowTriggerRepository triggerRepository;
+    private final WorkflowPlanCache workflowPlans;
+    
+    public List<Workflow> getAllWorkflows() {
+        return workflowRepository.findAllWithSteps();
+    }
+    
+    public Optional<Workflow> getWorkflowById(Long id) {
+        return workflowRepository.findWithStepsById(id);
+    }
+    
+    @Transactional
+    public Workflow createWorkflow(Workflow workflow) {
+        if (workflow.getStatus() == null) {
+            workflow.setStatus(Workflow.WorkflowStatus.DRAFT);
+        }
+        if (workflow.getSteps() != null) {
+            workflow.getSteps().forEach(step -> step.setWorkflow(workflow));
+        }
+        return workflowRepository.save(workflow);
+    }
+    
+    @Transactional
+    public Workflow updateWorkflow(Long id, Workflow workflowDetails) {
+        Workflow workflow = workflowRepository.findWithStepsById(id)
+                .orElseThrow(() -> new RuntimeException("Workflow not found: " + id));
+        
+        workflow.setName(workflowDetails.getName());
+        workflow.setDescription(workflowDetails.getDescription());
+        workflow.setStatus(workflowDetails.getStatus());
+        workflow.setRetention(workflowDetails.getRetention());
+        if (workflowDetails.getSteps() != null) {
+            replaceSteps(workflow, workflowDetails.getSteps());
+        }
+        // Also when only steps changed: other nodes check their cached plan against updatedAt
+        workflow.setUpdatedAt(LocalDateTime.now());
+        
+        workflowPlans.invalidate(id);
+        return workflowRepository.save(workflow);
+    }
+    
+    @Transactional
+    public void deleteWorkflow(Long id) {
+        // Schedulers drop the deleted triggers when they next come up or on their next sync
+        triggerRepository.deleteByWorkflowId(id);
+        workflowRepository.deleteById(id);
+        workflowPlans.invalidate(id);
+    }
+    
+    /**
+     * Updates steps that keep their id in place, adds new ones and removes the rest, so the
+     * workflow's step collection stays the one Hibernate manages.
+     */
+    private void replaceSteps(Workflow workflow, List<WorkflowStep> updatedSteps) {
+        if (workflow.getSteps() == null) {
+            workflow.setSteps(new ArrayList<>());
+        }
+        Map<Long, WorkflowStep> existing = new HashMap<>();
+        workflow.getSteps().forEach(step -> existing.put(step.getId(), step));
+        
+        List<WorkflowStep> steps = new ArrayList<>();
+        for (WorkflowStep details : updatedSteps) {
+            WorkflowStep step = details.getId() != null ? existing.get(details.getId()) : null;
+            if (step == null) {
+                step = new WorkflowStep();
+            }
+            step.setWorkflow(workflow);
+            step.setName(details.getName());
+            step.setStepOrder(details.getStepOrder());
+            step.setDependsOn(details.getDependsOn());
+            step.setType(details.getType());
+            step.setConfiguration(details.getConfiguration());
+            step.setAiPrompt(details.getAiPrompt());
+            steps.add(step);
+        }
+        workflow.getSteps().clear();
+        workflow.getSteps().addAll(steps);
+    }
+    
+    public Optional<WorkflowExecution> getExecutionById(Long executionId) {
+        return executionRepository.findById(executionId);
+    }
+    
+    /**
+     * One page of a workflow's execution history, newest first, without payloads. The returned
+     * map holds the {@code items} and the {@code nextCursor} to pass as {@code before} for the
+     * following page, or null on the last page.
+     */
+    public Map<String, Object> getWorkflowExecutions(Long workflowId, WorkflowExecution.ExecutionStatus status,
+                                                     LocalDateTime from, LocalDateTime to, Long before, int limit) {
+        int size = Math.max(1, Math.min(limit, 500));
+        List<ExecutionSummary> items = executionRepository.findSummaries(workflowId, status, from, to, before, size + 1);
+        Long nextCursor = null;
+        if (items.size() > size) {
+            items = items.subList(0, size);
+            nextCursor = items.get(size - 1).id();
+        }
+        Map<String, Object> page = new HashMap<>();
+        page.put("items", items);
+        page.put("nextCursor", nextCursor);
+        return page;
+    }
+    
+    public List<StepExecution> getStepExecutions(Long executionId) {
+        return stepExecutionRepository.findByExecutionIdOrderByStepOrderAscStepIdAsc(executionId);
+    }
+    
+    /**
+     * The latest runs of a step, newest first, with their durations and token usage.
+     */
+    public List<StepExecution> getStepHistory(Long stepId, int limit) {
+        int size = Math.max(1, Math.min(limit, 1000));
+        return stepExecutionRepository.findByStepIdOrderByStartedAtDesc(stepId, PageRequest.of(0, size));
+    }
+    
+    /**
+     * Daily roll-ups of a workflow's executions over the last {@code days} days, oldest first.
+     * Days are added once they are over, so the current day is never included.
+     */
+    public List<ExecutionDailyStats> getDailyStats(Long workflowId, int days) {
+        int span = Math.max(1, Math.min(days, 3660));
+        return dailyStatsRepository.findByWorkflowIdAndDayGreaterThanEqualOrderByDayAsc(
+                workflowId, LocalDate.now().minusDays(span));
+    }
+}
@@ -0,0 +1,386 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.aisuite.model.Workflow;
+import com.aisuite.model.WorkflowExecution;
+import com.aisuite.model.WorkflowTrigger;
+import com.aisuite.repository.WorkflowRepository;
+import com.aisuite.repository.WorkflowTriggerRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Starts workflows from their {@link WorkflowTrigger}s. Cron and interval triggers are kept in
+ * a {@link TriggerScheduler} on every instance; when one is due, the instance moves its
+ * {@code next_fire_at} on with a compare-and-set and only the instance whose update matched
+ * queues the run, so several instances never fire the same due time twice. A crash between
+ * that update and queueing the run loses the run rather than repeating it. Each instance
+ * re-reads the schedules every {@code ai.triggers.sync-interval-ms} to pick up triggers
+ * changed elsewhere.
+ * <p>
+ * Events are fanned out to the enabled EVENT triggers of ACTIVE workflows by the instance that
+ * receives them. Runs go through {@link ExecutionQueueService}, so its limits apply, and runs it
+ * rejects as full are counted and dropped.
+ */
+@Service
+@Slf4j
+public class WorkflowTriggerService implements MeterBinder {
+    
+    private final AiConfig.Triggers settings;
+    private final WorkflowTriggerRepository triggerRepository;
+    private final WorkflowRepository workflowRepository;
+    private final ExecutionQueueService queueService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final TriggerScheduler scheduler;
+    private final Timer lag;
+    private final Map<String, Counter> fires = new ConcurrentHashMap<>();
+    private final Map<String, CronExpression> cronExpressions = new ConcurrentHashMap<>();
+    
+    public WorkflowTriggerService(AiConfig aiConfig,
+                                  WorkflowTriggerRepository triggerRepository,
+                                  WorkflowRepository workflowRepository,
+                                  ExecutionQueueService queueService,
+                                  ObjectMapper objectMapper,
+                                  TransactionTemplate transactionTemplate,
+                                  AsyncTaskExecutor triggerExecutor,
+                                  MeterRegistry meterRegistry) {
+        this.settings = aiConfig.getTriggers();
+        this.triggerRepository = triggerRepository;
+        this.workflowRepository = workflowRepository;
+        this.queueService = queueService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.scheduler = new TriggerScheduler("trigger-scheduler", triggerExecutor, this::fireSafely);
+        this.lag = Timer.builder("execution.triggers.lag")
+                .description("Time from a trigger's due time until this instance fired it")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+    
+    @Transactional
+    public WorkflowTrigger createTrigger(Long workflowId, WorkflowTrigger trigger) {
+        if (!workflowRepository.existsById(workflowId)) {
+            throw new RuntimeException("Workflow not found: " + workflowId);
+        }
+        validate(trigger);
+        trigger.setId(null);
+        trigger.setWorkflowId(workflowId);
+        if (trigger.getEnabled() == null) {
+            trigger.setEnabled(true);
+        }
+        if (trigger.getMisfirePolicy() == null) {
+            trigger.setMisfirePolicy(WorkflowTrigger.MisfirePolicy.FIRE_ONCE);
+        }
+        trigger.setLastFiredAt(null);
+        // Whole seconds, so the due time compares equal once it has been through the database
+        trigger.setNextFireAt(trigger.getType() == WorkflowTrigger.TriggerType.EVENT
+                ? null
+                : nextAfter(trigger, LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS)));
+        WorkflowTrigger saved = triggerRepository.save(trigger);
+        scheduleAfterCommit(saved);
+        log.info("Created {} trigger {} for workflow {}", saved.getType(), saved.getId(), workflowId);
+        return saved;
+    }
+    
+    public List<WorkflowTrigger> getTriggers(Long workflowId) {
+        return triggerRepository.findByWorkflowIdOrderByIdAsc(workflowId);
+    }
+    
+    @Transactional
+    public void deleteTrigger(Long triggerId) {
+        triggerRepository.deleteById(triggerId);
+        scheduler.cancel(triggerId);
+    }
+    
+    /**
+     * Queues a run of every workflow subscribed to {@code eventType}, with the event under the
+     * {@code event} key of its input.
+     */
+    public Map<String, Object> publishEvent(String eventType, Map<String, Object> payload) {
+        List<Long> executionIds = new ArrayList<>();
+        int rejected = 0;
+        for (WorkflowTrigger trigger : triggerRepository.findSubscribers(eventType)) {
+            Map<String, Object> input = input(trigger);
+            Map<String, Object> event = new LinkedHashMap<>();
+            event.put("type", eventType);
+            event.put("payload", payload);
+            input.put("event", event);
+            WorkflowExecution execution = submit(trigger, input);
+            if (execution != null) {
+                executionIds.add(execution.getId());
+            } else {
+                rejected++;
+            }
+        }
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("eventType", eventType);
+        result.put("executionIds", executionIds);
+        result.put("rejected", rejected);
+        return result;
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("execution.triggers.scheduled", scheduler, TriggerScheduler::size)
+                .description("Cron and interval triggers this instance is waiting on")
+                .register(registry);
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (Boolean.TRUE.equals(settings.getEnabled())) {
+            sync();
+            scheduler.start();
+        }
+    }
+    
+    @PreDestroy
+    public void stop() {
+        scheduler.close();
+    }
+    
+    /**
+     * Reloads every enabled schedule, including triggers created, changed or fired by other instances.
+     */
+    @Scheduled(fixedDelayString = "${ai.triggers.sync-interval-ms:30000}",
+            initialDelayString = "${ai.triggers.sync-interval-ms:30000}")
+    public void sync() {
+        if (!Boolean.TRUE.equals(settings.getEnabled())) {
+            return;
+        }
+        Map<Long, LocalDateTime> schedules = new HashMap<>();
+        for (Object[] schedule : triggerRepository.findSchedules()) {
+            schedules.put((Long) schedule[0], (LocalDateTime) schedule[1]);
+        }
+        scheduler.replaceAll(schedules);
+    }
+    
+    /**
+     * Fires the trigger for {@code due} if it is still due then, and schedules its next time.
+     *
+     * @return the number of runs queued
+     */
+    int fire(Long triggerId, LocalDateTime due) {
+        WorkflowTrigger trigger = triggerRepository.findById(triggerId).orElse(null);
+        if (trigger == null || !Boolean.TRUE.equals(trigger.getEnabled()) || trigger.getNextFireAt() == null
+                || trigger.getType() == WorkflowTrigger.TriggerType.EVENT) {
+            scheduler.cancel(triggerId);
+            return 0;
+        }
+        if (!trigger.getNextFireAt().equals(due)) {
+            // Fired elsewhere or rescheduled since this due time was read
+            scheduler.schedule(triggerId, trigger.getNextFireAt());
+            return 0;
+        }
+        
+        // The scheduler's clock may wake a moment early; the due time itself is never skipped
+        LocalDateTime now = LocalDateTime.now();
+        if (now.isBefore(due)) {
+            now = due;
+        }
+        List<LocalDateTime> runs = runsDue(trigger, due, now);
+        LocalDateTime next = nextAfter(trigger, now);
+        LocalDateTime firedAt = now;
+        Integer advanced = transactionTemplate.execute(status -> triggerRepository.advance(triggerId, due, next, firedAt));
+        if (advanced == null || advanced == 0) {
+            triggerRepository.findById(triggerId)
+                    .map(WorkflowTrigger::getNextFireAt)
+                    .ifPresent(current -> scheduler.schedule(triggerId, current));
+            return 0;
+        }
+        if (next != null) {
+            scheduler.schedule(triggerId, next);
+        }
+        lag.record(Duration.between(due, LocalDateTime.now()));
+        
+        if (runs.isEmpty()) {
+            count(trigger, "skipped", 1);
+            log.info("Trigger {} misfired by {} and skipped to {}", triggerId, Duration.between(due, now), next);
+            return 0;
+        }
+        if (workflowRepository.findStatusById(trigger.getWorkflowId()).orElse(null) != Workflow.WorkflowStatus.ACTIVE) {
+            count(trigger, "inactive", runs.size());
+            return 0;
+        }
+        int queued = 0;
+        for (LocalDateTime run : runs) {
+            Map<String, Object> input = input(trigger);
+            @SuppressWarnings("unchecked")
+            Map<String, Object> triggerInfo = (Map<String, Object>) input.get("trigger");
+            triggerInfo.put("scheduledFor", run.toString());
+            if (submit(trigger, input) != null) {
+                queued++;
+            }
+        }
+        return queued;
+    }
+    
+    private void fireSafely(Long triggerId, LocalDateTime due) {
+        try {
+            fire(triggerId, due);
+        } catch (RuntimeException e) {
+            // The schedule is reloaded on the next sync, which retries it
+            log.error("Failed to fire trigger {} due at {}: {}", triggerId, due, e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Due times from {@code due} up to {@code now} that should run, following the misfire
+     * policy when the trigger is later than {@code misfire-threshold-ms}.
+     */
+    private List<LocalDateTime> runsDue(WorkflowTrigger trigger, LocalDateTime due, LocalDateTime now) {
+        boolean misfired = Duration.between(due, now).toMillis() > settings.getMisfireThresholdMs();
+        if (misfired && trigger.getMisfirePolicy() == WorkflowTrigger.MisfirePolicy.SKIP) {
+            return List.of();
+        }
+        if (misfired && trigger.getMisfirePolicy() != WorkflowTrigger.MisfirePolicy.CATCH_UP) {
+            return List.of(due);
+        }
+        List<LocalDateTime> runs = new ArrayList<>();
+        for (LocalDateTime run = due; run != null && !run.isAfter(now) && runs.size() < settings.getMaxCatchUp();
+             run = nextAfter(trigger, run)) {
+            runs.add(run);
+        }
+        return runs;
+    }
+    
+    /**
+     * The trigger's first due time after {@code time}, or null when its cron expression has none.
+     */
+    private LocalDateTime nextAfter(WorkflowTrigger trigger, LocalDateTime time) {
+        if (trigger.getType() == WorkflowTrigger.TriggerType.INTERVAL) {
+            long interval = trigger.getIntervalSeconds();
+            LocalDateTime base = trigger.getNextFireAt() != null ? trigger.getNextFireAt() : time;
+            if (base.isAfter(time)) {
+                return base;
+            }
+            // Stays on the grid of the original due times instead of drifting by each firing's lateness
+            long elapsed = Duration.between(base, time).getSeconds();
+            return base.plusSeconds((elapsed / interval + 1) * interval);
+        }
+        return cronExpressions.computeIfAbsent(trigger.getCronExpression(), CronExpression::parse).next(time);
+    }
+    
+    private WorkflowExecution submit(WorkflowTrigger trigger, Map<String, Object> input) {
+        try {
+            WorkflowExecution execution = queueService.submit(trigger.getWorkflowId(), input);
+            count(trigger, "queued", 1);
+            return execution;
+        } catch (QueueFullException e) {
+            count(trigger, "rejected", 1);
+            log.warn("Dropped a run of trigger {} for workflow {}: {}", trigger.getId(), trigger.getWorkflowId(),
+                    e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * The trigger's configured input plus a {@code trigger} entry describing it.
+     */
+    private Map<String, Object> input(WorkflowTrigger trigger) {
+        Map<String, Object> input = new LinkedHashMap<>();
+        if (trigger.getInputData() != null && !trigger.getInputData().isBlank()) {
+            try {
+                input.putAll(objectMapper.readValue(trigger.getInputData(), new TypeReference<Map<String, Object>>() {}));
+            } catch (Exception e) {
+                log.warn("Ignoring unreadable input of trigger {}: {}", trigger.getId(), e.getMessage());
+            }
+        }
+        Map<String, Object> triggerInfo = new LinkedHashMap<>();
+        triggerInfo.put("id", trigger.getId());
+        triggerInfo.put("type", trigger.getType());
+        input.put("trigger", triggerInfo);
+        return input;
+    }
+    
+    private void validate(WorkflowTrigger trigger) {
+        if (trigger.getType() == null) {
+            throw new InvalidTriggerException("Trigger type is required (CRON, INTERVAL or EVENT)");
+        }
+        switch (trigger.getType()) {
+            case CRON -> {
+                if (trigger.getCronExpression() == null || !CronExpression.isValidExpression(trigger.getCronExpression())) {
+                    throw new InvalidTriggerException("Invalid cron expression: " + trigger.getCronExpression());
+                }
+            }
+            case INTERVAL -> {
+                if (trigger.getIntervalSeconds() == null || trigger.getIntervalSeconds() < 1) {
+                    throw new InvalidTriggerException("intervalSeconds must be at least 1");
+                }
+            }
+            case EVENT -> {
+                if (trigger.getEventType() == null || trigger.getEventType().isBlank()) {
+                    throw new InvalidTriggerException("eventType is required for EVENT triggers");
+                }
+            }
+        }
+        if (trigger.getInputData() != null && !trigger.getInputData().isBlank() && !isJsonObject(trigger.getInputData())) {
+            throw new InvalidTriggerException("inputData must be a JSON object");
+        }
+    }
+    
+    private boolean isJsonObject(String json) {
+        try {
+            return objectMapper.readTree(json).isObject();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+    
+    private void scheduleAfterCommit(WorkflowTrigger trigger) {
+        if (trigger.getNextFireAt() == null || !Boolean.TRUE.equals(trigger.getEnabled())) {
+            return;
+        }
+        Runnable schedule = () -> scheduler.schedule(trigger.getId(), trigger.getNextFireAt());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            schedule.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                schedule.run();
+            }
+        });
+    }
+    
+    private void count(WorkflowTrigger trigger, String outcome, int runs) {
+        String type = trigger.getType().name();
+        fires.computeIfAbsent(type + "/" + outcome, key -> Counter.builder("execution.triggers.fires")
+                        .description("Runs due from triggers, by what became of them")
+                        .tags("type", type, "outcome", outcome)
+                        .register(meterRegistry))
+                .increment(runs);
+    }
+}
@@ -1,2 +1,15 @@
--- Sample workflow data (optional - for development/testing)
-
+-- Sample workflow data (optional - for development/testing). Skips rows that already exist,
+-- so running it against a kept database does not duplicate them
+INSERT INTO workflows (name, description, status, created_at, updated_at)
+SELECT 'Invoice Review', 'Summarise incoming invoices and flag risky ones for review', 'ACTIVE', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP
+WHERE NOT EXISTS (SELECT 1 FROM workflows WHERE name = 'Invoice Review');
+
+INSERT INTO workflow_steps (workflow_id, name, step_order, type, configuration, ai_prompt)
+SELECT w.id, 'Summarise invoice', 1, 'AI_PROCESSING', NULL, 'Summarise the invoice and rate its risk as LOW, MEDIUM or HIGH'
+FROM workflows w WHERE w.name = 'Invoice Review'
+AND NOT EXISTS (SELECT 1 FROM workflow_steps s WHERE s.workflow_id = w.id AND s.step_order = 1);
+
+INSERT INTO workflow_steps (workflow_id, name, step_order, type, configuration, ai_prompt)
+SELECT w.id, 'Notify finance', 2, 'NOTIFICATION', NULL, NULL
+FROM workflows w WHERE w.name = 'Invoice Review'
+AND NOT EXISTS (SELECT 1 FROM workflow_steps s WHERE s.workflow_id = w.id AND s.step_order = 2);
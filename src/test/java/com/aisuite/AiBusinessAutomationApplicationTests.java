@@ -1,16 +1,16 @@
-package com.aisuite;
-
-import org.junit.jupiter.api.Test;
-import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.test.context.ActiveProfiles;
-
-@SpringBootTest
-@ActiveProfiles("test")
-class AiBusinessAutomationApplicationTests {
-
-    @Test
-    void contextLoads() {
-        // Test that the application context loads successfully
-    }
-}
-
+package com.aisuite;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class AiBusinessAutomationApplicationTests {
+
+    @Test
+    void contextLoads() {
+        // Test that the application context loads successfully
+    }
+}
+
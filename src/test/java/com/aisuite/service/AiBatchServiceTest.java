@@ -0,0 +1,141 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.assertj.core.api.InstanceOfAssertFactories;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AiBatchServiceTest {
+    
+    private StubCompletionServer stub;
+    private AiConfig config;
+    private AiBatchService batchService;
+    
+    @BeforeEach
+    void startStub() {
+        stub = new StubCompletionServer(Duration.ofMillis(50));
+        
+        config = new AiConfig();
+        config.getOpenai().setBaseUrl(stub.baseUrl());
+        config.getOpenai().setApiKey("test");
+        ObjectMapper objectMapper = new ObjectMapper();
+        AiService aiService = new AiService(config, objectMapper,
+                new AiResponseCache(config, new SimpleMeterRegistry()),
+                new AiRequestCoalescer(new SimpleMeterRegistry()),
+                new AiRateLimiter(config, new SimpleMeterRegistry()),
+                new SimpleMeterRegistry(), ObservationRegistry.NOOP);
+        batchService = new AiBatchService(config, aiService, objectMapper);
+    }
+    
+    @AfterEach
+    void stopStub() {
+        stub.close();
+    }
+    
+    @Test
+    void itemsRunWithinTheConcurrencyWindow() {
+        List<Map<String, Object>> results = batchService
+                .analyzeBatch(inputs(20), "financial", 4, 1)
+                .collectList()
+                .block();
+        
+        assertThat(results).hasSize(21);
+        assertThat(results.subList(0, 20)).allSatisfy(item -> assertThat(item).containsEntry("success", true));
+        assertThat(results.get(20)).containsEntry("summary", true).containsEntry("items", 20).containsEntry("failed", 0);
+        assertThat(stub.requests()).isEqualTo(20);
+        assertThat(stub.peakInFlight()).isLessThanOrEqualTo(4);
+    }
+    
+    @Test
+    void smallInputsArePackedIntoOneRequest() {
+        stub.setContent("[" + String.join(",", Collections.nCopies(5,
+                "{\"summary\":\"fine\",\"keyFindings\":[],\"recommendations\":[],\"riskLevel\":\"LOW\"}")) + "]");
+        
+        List<Map<String, Object>> results = batchService
+                .analyzeBatch(inputs(10), "financial", 4, 5)
+                .collectList()
+                .block();
+        
+        assertThat(stub.requests()).isEqualTo(2);
+        assertThat(results.subList(0, 10)).allSatisfy(item -> {
+            assertThat(item).containsEntry("success", true).containsEntry("packedWith", 5);
+            assertThat(item.get("result")).asInstanceOf(InstanceOfAssertFactories.MAP).containsEntry("riskLevel", "LOW");
+        });
+        assertThat(results.stream().filter(item -> item.containsKey("index")).map(item -> item.get("index")))
+                .containsExactlyInAnyOrderElementsOf(IntStream.range(0, 10).boxed().toList());
+    }
+    
+    @Test
+    void unparseablePackedResponseFallsBackToSingleRequests() {
+        stub.setContent("not a json array");
+        
+        List<Map<String, Object>> results = batchService
+                .processBatch("Summarize", List.of("a", "b", "c"), Map.of(), 4, 3)
+                .collectList()
+                .block();
+        
+        assertThat(stub.requests()).isEqualTo(4);
+        // The pack held one slot of the window, and so do its fallback requests
+        assertThat(stub.peakInFlight()).isEqualTo(1);
+        assertThat(results.subList(0, 3)).allSatisfy(item ->
+                assertThat(item).containsEntry("success", true).containsEntry("result", "not a json array"));
+    }
+    
+    @Test
+    void eachSubscriptionCountsItsOwnItems() {
+        Flux<Map<String, Object>> batch = batchService.analyzeBatch(inputs(3), "general", 2, 1);
+        
+        batch.blockLast();
+        Map<String, Object> summary = batch.blockLast();
+        
+        assertThat(summary).containsEntry("items", 3).containsEntry("succeeded", 3).containsEntry("failed", 0);
+    }
+    
+    @Test
+    void oversizedBatchIsRejected() {
+        config.getBatch().setMaxItems(5);
+        
+        assertThatThrownBy(() -> batchService.analyzeBatch(inputs(6), "general", null, null).blockLast())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("limit of 5");
+    }
+    
+    @Test
+    void concurrencyAndPackSizeAboveTheirLimitsAreRejected() {
+        config.getBatch().setMaxConcurrency(16);
+        config.getBatch().setMaxPackSize(10);
+        
+        assertThatThrownBy(() -> batchService.analyzeBatch(inputs(3), "general", 10_000, null).blockLast())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Concurrency 10000 exceeds the limit of 16");
+        assertThatThrownBy(() -> batchService.analyzeBatch(inputs(3), "general", null, 11).blockLast())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Pack size 11 exceeds the limit of 10");
+        assertThat(stub.requests()).isZero();
+    }
+    
+    @Test
+    void largeInputsAreNeverPacked() {
+        List<List<Integer>> groups = AiBatchService.groups(List.of("a", "x".repeat(600), "b", "c"), 2, 500);
+        
+        assertThat(groups).containsExactly(List.of(1), List.of(0, 2), List.of(3));
+    }
+    
+    private static List<String> inputs(int count) {
+        return IntStream.range(0, count).mapToObj(i -> "revenue line " + i).toList();
+    }
+}
@@ -0,0 +1,152 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.netty.http.HttpProtocol;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AiHttpClientTest {
+    
+    private StubCompletionServer stub;
+    private SimpleMeterRegistry meterRegistry;
+    
+    @AfterEach
+    void stopStub() {
+        stub.close();
+    }
+    
+    @Test
+    void sequentialRequestsReuseOneKeptAliveConnection() {
+        stub = new StubCompletionServer(Duration.ZERO);
+        AiService aiService = aiService(new AiConfig());
+        
+        for (int i = 0; i < 200; i++) {
+            assertThat(aiService.processWithAI("prompt " + i, Map.of())).isEqualTo("ok");
+        }
+        
+        assertThat(stub.requests()).isEqualTo(200);
+        // A request can start before the previous connection is back in the pool, so allow a few spares
+        assertThat(stub.connections()).isLessThanOrEqualTo(4);
+    }
+    
+    @Test
+    void poolBoundsConnectionsAndQueuesTheRest() throws InterruptedException {
+        stub = new StubCompletionServer(Duration.ofMillis(50));
+        AiConfig config = new AiConfig();
+        config.getHttp().setMaxConnections(4);
+        AiService aiService = aiService(config);
+        
+        List<String> results = Flux.range(0, 40)
+                .flatMap(i -> aiService.processWithAIAsync("prompt " + i, Map.of()))
+                .collectList()
+                .block();
+        
+        assertThat(results).hasSize(40).containsOnly("ok");
+        assertThat(stub.peakInFlight()).isEqualTo(4);
+        assertThat(stub.connections()).isEqualTo(4);
+        assertThat(meterRegistry.get("ai.http.pool.max.connections").gauge().value()).isEqualTo(4);
+        assertThat(meterRegistry.get("ai.http.pool.total").gauge().value()).isEqualTo(4);
+        // Connections go back to the pool just after their responses complete
+        assertThat(awaitGauge("ai.http.pool.idle", 4)).isEqualTo(4);
+        assertThat(meterRegistry.get("ai.http.pool.active").gauge().value()).isZero();
+    }
+    
+    @Test
+    void idleConnectionsAreEvicted() throws InterruptedException {
+        stub = new StubCompletionServer(Duration.ZERO);
+        AiConfig config = new AiConfig();
+        config.getHttp().setMaxIdleTimeMs(100L);
+        config.getHttp().setEvictIntervalMs(50L);
+        AiService aiService = aiService(config);
+        
+        aiService.processWithAI("first", Map.of());
+        Thread.sleep(400);
+        
+        assertThat(meterRegistry.get("ai.http.pool.total").gauge().value()).isZero();
+        aiService.processWithAI("second", Map.of());
+        assertThat(stub.connections()).isEqualTo(2);
+    }
+    
+    @Test
+    void responsesAreRequestedAndDecodedAsGzip() {
+        stub = new StubCompletionServer(Duration.ZERO);
+        String content = "a long completion ".repeat(200);
+        stub.setContent(content);
+        AiService aiService = aiService(new AiConfig());
+        
+        assertThat(aiService.processWithAI("prompt", Map.of())).isEqualTo(content);
+        assertThat(String.join("", aiService.streamWithAI("prompt", Map.of()).collectList().block()))
+                .isEqualTo(content);
+        assertThat(stub.gzipAccepted()).isEqualTo(2);
+        
+        AiConfig uncompressed = new AiConfig();
+        uncompressed.getHttp().setCompression(false);
+        aiService(uncompressed).processWithAI("prompt", Map.of());
+        assertThat(stub.gzipAccepted()).isEqualTo(2);
+    }
+    
+    @Test
+    void stalledResponsesFailAtTheResponseTimeout() {
+        stub = new StubCompletionServer(Duration.ofSeconds(3));
+        AiConfig config = new AiConfig();
+        config.getHttp().setResponseTimeoutMs(200L);
+        config.getAutomation().setMaxRetries(0);
+        AiService aiService = aiService(config);
+        
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> aiService.processWithAI("slow", Map.of()))
+                .hasMessageStartingWith("AI processing failed");
+        
+        assertThat((System.nanoTime() - start) / 1_000_000).isLessThan(2_000);
+    }
+    
+    @Test
+    void h2cMultiplexesConcurrentRequestsOverOneConnection() {
+        stub = new StubCompletionServer(Duration.ofMillis(50), HttpProtocol.H2C);
+        AiConfig config = new AiConfig();
+        config.getHttp().setH2c(true);
+        AiService aiService = aiService(config);
+        
+        List<String> results = Flux.range(0, 20)
+                .flatMap(i -> aiService.processWithAIAsync("prompt " + i, Map.of()))
+                .collectList()
+                .block();
+        
+        assertThat(results).hasSize(20).containsOnly("ok");
+        assertThat(stub.peakInFlight()).isGreaterThan(1);
+        assertThat(stub.connections()).isEqualTo(1);
+    }
+    
+    private double awaitGauge(String name, double expected) throws InterruptedException {
+        double value = meterRegistry.get(name).gauge().value();
+        for (int i = 0; i < 50 && value != expected; i++) {
+            Thread.sleep(20);
+            value = meterRegistry.get(name).gauge().value();
+        }
+        return value;
+    }
+    
+    private AiService aiService(AiConfig config) {
+        config.getOpenai().setBaseUrl(stub.baseUrl());
+        config.getOpenai().setApiKey("test");
+        config.getAutomation().setCoalesceRequests(false);
+        config.getAutomation().setAdaptiveConcurrency(false);
+        meterRegistry = new SimpleMeterRegistry();
+        return new AiService(config, new ObjectMapper(),
+                new AiResponseCache(config, new SimpleMeterRegistry()),
+                new AiRequestCoalescer(new SimpleMeterRegistry()),
+                new AiRateLimiter(config, new SimpleMeterRegistry()),
+                meterRegistry, ObservationRegistry.NOOP);
+    }
+}
@@ -0,0 +1,106 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AiRateLimiterTest {
+    
+    private StubCompletionServer stub;
+    private AiConfig config;
+    
+    @BeforeEach
+    void startStub() {
+        stub = new StubCompletionServer(Duration.ofMillis(20));
+        
+        config = new AiConfig();
+        config.getOpenai().setBaseUrl(stub.baseUrl());
+        config.getOpenai().setApiKey("test");
+        config.getAutomation().setRetryBaseDelayMs(20L);
+        config.getAutomation().setRetryMaxDelayMs(200L);
+    }
+    
+    @AfterEach
+    void stopStub() {
+        stub.close();
+    }
+    
+    @Test
+    void requestsBeyondThePerMinuteQuotaWaitForRefill() {
+        config.getAutomation().setRequestsPerMinute(60);
+        AiRateLimiter limiter = new AiRateLimiter(config, new SimpleMeterRegistry());
+        
+        long start = System.nanoTime();
+        Flux.range(0, 60).flatMap(i -> limiter.execute(1, permit -> Mono.just(i))).blockLast();
+        long burstMs = (System.nanoTime() - start) / 1_000_000;
+        limiter.execute(1, permit -> Mono.just(60)).block();
+        long totalMs = (System.nanoTime() - start) / 1_000_000;
+        
+        assertThat(burstMs).isLessThan(500);
+        assertThat(totalMs).isGreaterThanOrEqualTo(800);
+    }
+    
+    @Test
+    void retryAfterIsHonouredAndLowersTheConcurrencyLimit() {
+        AiRateLimiter limiter = new AiRateLimiter(config, new SimpleMeterRegistry());
+        AiService aiService = aiService(limiter);
+        stub.failNext(1, 429, "1");
+        
+        long start = System.nanoTime();
+        String result = aiService.processWithAI("prompt", Map.of());
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        
+        assertThat(result).isEqualTo("ok");
+        assertThat(stub.requests()).isEqualTo(2);
+        assertThat(elapsedMs).isGreaterThanOrEqualTo(950);
+        assertThat(limiter.concurrencyLimit()).isLessThan(config.getAutomation().getMaxInFlightRequests());
+    }
+    
+    @Test
+    void clientErrorsAreNotRetried() {
+        AiService aiService = aiService(new AiRateLimiter(config, new SimpleMeterRegistry()));
+        stub.failNext(1, 400, null);
+        
+        assertThatThrownBy(() -> aiService.processWithAI("prompt", Map.of()))
+                .hasMessageContaining("400");
+        assertThat(stub.requests()).isEqualTo(1);
+    }
+    
+    @Test
+    void concurrencyAdaptsToProviderCapacity() {
+        stub.setLatency(Duration.ofMillis(100));
+        stub.setCapacity(4);
+        config.getAutomation().setMaxRetries(10);
+        AiRateLimiter limiter = new AiRateLimiter(config, new SimpleMeterRegistry());
+        AiService aiService = aiService(limiter);
+        
+        List<String> results = Flux.range(0, 40)
+                .flatMap(i -> aiService.processWithAIAsync("prompt " + i, Map.of()))
+                .collectList()
+                .block();
+        
+        assertThat(results).hasSize(40).containsOnly("ok");
+        assertThat(limiter.concurrencyLimit()).isLessThanOrEqualTo(16);
+        assertThat(limiter.inFlight()).isZero();
+    }
+    
+    private AiService aiService(AiRateLimiter limiter) {
+        return new AiService(config, new ObjectMapper(),
+                new AiResponseCache(config, new SimpleMeterRegistry()),
+                new AiRequestCoalescer(new SimpleMeterRegistry()),
+                limiter, new SimpleMeterRegistry(), ObservationRegistry.NOOP);
+    }
+}
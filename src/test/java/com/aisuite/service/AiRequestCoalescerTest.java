@@ -0,0 +1,56 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AiRequestCoalescerTest {
+    
+    @Test
+    void concurrentIdenticalRequestsShareOneUpstreamCall() {
+        try (StubCompletionServer stub = new StubCompletionServer(Duration.ofMillis(300))) {
+            AiConfig config = new AiConfig();
+            config.getOpenai().setBaseUrl(stub.baseUrl());
+            config.getOpenai().setApiKey("test");
+            AiRequestCoalescer coalescer = new AiRequestCoalescer(new SimpleMeterRegistry());
+            AiService aiService = new AiService(config, new ObjectMapper(),
+                    new AiResponseCache(config, new SimpleMeterRegistry()), coalescer,
+                    new AiRateLimiter(config, new SimpleMeterRegistry()),
+                    new SimpleMeterRegistry(), ObservationRegistry.NOOP);
+            
+            List<String> results = Flux.range(0, 20)
+                    .flatMap(i -> aiService.processWithAIAsync("same prompt", Map.of()))
+                    .collectList()
+                    .block(Duration.ofSeconds(10));
+            
+            assertThat(results).hasSize(20).containsOnly("ok");
+            assertThat(stub.requests()).isEqualTo(1);
+            assertThat(coalescer.coalescedCount()).isEqualTo(19);
+        }
+    }
+    
+    @Test
+    void errorsArePropagatedToEveryCaller() {
+        AiRequestCoalescer coalescer = new AiRequestCoalescer(new SimpleMeterRegistry());
+        Mono<String> failing = Mono.delay(Duration.ofMillis(100))
+                .then(Mono.error(new IllegalStateException("upstream down")));
+        
+        Mono<String> first = coalescer.execute("key", () -> failing);
+        Mono<String> second = coalescer.execute("key", () -> failing);
+        
+        assertThatThrownBy(() -> Flux.merge(first, second).blockLast())
+                .hasMessageContaining("upstream down");
+        assertThat(coalescer.coalescedCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,113 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AiResponseCacheTest {
+    
+    @TempDir
+    Path cacheDir;
+    
+    @Test
+    void deterministicRequestsAreServedFromCache() {
+        try (StubCompletionServer stub = new StubCompletionServer(Duration.ofMillis(10))) {
+            AiConfig config = config(stub);
+            config.getOpenai().setTemperature(0.0);
+            AiService aiService = new AiService(config, new ObjectMapper(),
+                    new AiResponseCache(config, new SimpleMeterRegistry()),
+                    new AiRequestCoalescer(new SimpleMeterRegistry()),
+                    new AiRateLimiter(config, new SimpleMeterRegistry()),
+                    new SimpleMeterRegistry(), ObservationRegistry.NOOP);
+            
+            assertThat(aiService.processWithAI("prompt", Map.of())).isEqualTo("ok");
+            assertThat(aiService.processWithAI("prompt", Map.of())).isEqualTo("ok");
+            assertThat(aiService.processWithAI("other prompt", Map.of())).isEqualTo("ok");
+            
+            assertThat(stub.requests()).isEqualTo(2);
+        }
+    }
+    
+    @Test
+    void onlyProviderCallsCountTowardsTokenUsage() {
+        try (StubCompletionServer stub = new StubCompletionServer(Duration.ofMillis(10))) {
+            AiConfig config = config(stub);
+            config.getOpenai().setTemperature(0.0);
+            AiService aiService = new AiService(config, new ObjectMapper(),
+                    new AiResponseCache(config, new SimpleMeterRegistry()),
+                    new AiRequestCoalescer(new SimpleMeterRegistry()),
+                    new AiRateLimiter(config, new SimpleMeterRegistry()),
+                    new SimpleMeterRegistry(), ObservationRegistry.NOOP);
+            TokenUsage usage = new TokenUsage();
+            
+            aiService.processWithAI("prompt", Map.of(), usage);
+            aiService.processWithAI("prompt", Map.of(), usage);
+            
+            assertThat(usage.completions()).isEqualTo(1);
+            assertThat(usage.promptTokens()).isEqualTo(12);
+            assertThat(usage.completionTokens()).isEqualTo(3);
+            assertThat(usage.totalTokens()).isEqualTo(15);
+        }
+    }
+    
+    @Test
+    void nonDeterministicRequestsRequireOptIn() {
+        try (StubCompletionServer stub = new StubCompletionServer(Duration.ofMillis(10))) {
+            AiConfig config = config(stub);
+            AiService aiService = new AiService(config, new ObjectMapper(),
+                    new AiResponseCache(config, new SimpleMeterRegistry()),
+                    new AiRequestCoalescer(new SimpleMeterRegistry()),
+                    new AiRateLimiter(config, new SimpleMeterRegistry()),
+                    new SimpleMeterRegistry(), ObservationRegistry.NOOP);
+            
+            aiService.processWithAI("prompt", Map.of());
+            aiService.processWithAI("prompt", Map.of());
+            
+            assertThat(stub.requests()).isEqualTo(2);
+        }
+    }
+    
+    @Test
+    void entryCountIsBounded() {
+        AiConfig config = new AiConfig();
+        config.getCache().setMaxEntries(10);
+        AiResponseCache cache = new AiResponseCache(config, new SimpleMeterRegistry());
+        
+        for (int i = 0; i < 100; i++) {
+            cache.put("key-" + i, "value");
+        }
+        cache.cleanUp();
+        
+        assertThat(cache.size()).isLessThanOrEqualTo(10);
+    }
+    
+    @Test
+    void diskTierSurvivesRestart() {
+        AiConfig config = new AiConfig();
+        config.getCache().setDiskDirectory(cacheDir.toString());
+        new AiResponseCache(config, new SimpleMeterRegistry()).put("abc", "cached completion");
+        
+        AiResponseCache restarted = new AiResponseCache(config, new SimpleMeterRegistry());
+        String value = restarted.get("abc")
+                .repeatWhenEmpty(attempts -> attempts.delayElements(Duration.ofMillis(20)).take(50))
+                .block(Duration.ofSeconds(5));
+        
+        assertThat(value).isEqualTo("cached completion");
+    }
+    
+    private static AiConfig config(StubCompletionServer stub) {
+        AiConfig config = new AiConfig();
+        config.getOpenai().setBaseUrl(stub.baseUrl());
+        config.getOpenai().setApiKey("test");
+        return config;
+    }
+}
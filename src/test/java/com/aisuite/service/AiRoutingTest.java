@@ -0,0 +1,177 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AiRoutingTest {
+    
+    private StubCompletionServer primary;
+    private StubCompletionServer secondary;
+    private AiConfig config;
+    private SimpleMeterRegistry meterRegistry;
+    
+    @BeforeEach
+    void startStubs() {
+        primary = new StubCompletionServer(Duration.ofMillis(20));
+        primary.setContent("from primary");
+        secondary = new StubCompletionServer(Duration.ofMillis(20));
+        secondary.setContent("from secondary");
+        
+        config = new AiConfig();
+        config.getOpenai().setBaseUrl(primary.baseUrl());
+        config.getOpenai().setApiKey("test");
+        AiConfig.Endpoint endpoint = new AiConfig.Endpoint();
+        endpoint.setName("secondary");
+        endpoint.setBaseUrl(secondary.baseUrl());
+        config.getRouting().setEndpoints(List.of(endpoint));
+        config.getRouting().setExploreRatio(0.0);
+        config.getAutomation().setMaxRetries(0);
+    }
+    
+    @AfterEach
+    void stopStubs() {
+        primary.close();
+        secondary.close();
+    }
+    
+    @Test
+    void callsGoToTheFasterEndpoint() {
+        primary.setLatency(Duration.ofMillis(300));
+        config.getRouting().setHedging(false);
+        AiService aiService = aiService();
+        
+        for (int i = 0; i < 30; i++) {
+            aiService.processWithAI("prompt " + i, Map.of());
+        }
+        
+        // The first call measures the primary, after which the secondary wins every ranking
+        assertThat(primary.requests()).isEqualTo(1);
+        assertThat(secondary.requests()).isEqualTo(29);
+    }
+    
+    @Test
+    void aStragglingCallIsHedgedAndTheFirstAnswerWins() {
+        secondary.setLatency(Duration.ofMillis(400));
+        // Loads the client classes first, so a cold start does not make the primary look slow
+        aiService().processWithAI("warm-up", Map.of());
+        AiService aiService = aiService();
+        // Measures both endpoints; the primary is faster, so it then stays first in the ranking
+        for (int i = 0; i < 20; i++) {
+            assertThat(aiService.processWithAI("prompt " + i, Map.of())).isNotNull();
+        }
+        assertThat(meterRegistry.get("ai.routing.hedges").counter().count()).isZero();
+        int primaryRequests = primary.requests();
+        
+        primary.setLatency(Duration.ofSeconds(30));
+        
+        assertThat(aiService.processWithAI("straggler", Map.of())).isEqualTo("from secondary");
+        assertThat(primary.requests()).isEqualTo(primaryRequests + 1);
+        assertThat(meterRegistry.get("ai.routing.hedges").counter().count()).isEqualTo(1);
+        // The straggling call was cancelled once the hedge answered
+        assertThat(meterRegistry.get("ai.endpoint.requests").tags("endpoint", "primary", "outcome", "abandoned")
+                .counter().count()).isEqualTo(1);
+    }
+    
+    @Test
+    void failingEndpointIsFailedOverAndItsCircuitOpensUntilATrialSucceeds() throws InterruptedException {
+        primary.failNext(Integer.MAX_VALUE, 503, null);
+        config.getRouting().setHedging(false);
+        config.getRouting().setCircuitOpenMs(300L);
+        // Without an error penalty the unmeasured primary stays first in the ranking until its circuit opens
+        config.getRouting().setErrorPenaltyMs(0L);
+        AiService aiService = aiService();
+        
+        for (int i = 0; i < 10; i++) {
+            assertThat(aiService.processWithAI("prompt " + i, Map.of())).isEqualTo("from secondary");
+        }
+        
+        assertThat(primary.requests()).isEqualTo(config.getRouting().getCircuitFailureThreshold());
+        assertThat(meterRegistry.get("ai.routing.failovers").counter().count()).isEqualTo(5);
+        assertThat(circuitOpen("primary")).isEqualTo(1);
+        
+        primary.failNext(0, 503, null);
+        Thread.sleep(400);
+        
+        assertThat(aiService.processWithAI("trial", Map.of())).isEqualTo("from primary");
+        assertThat(circuitOpen("primary")).isEqualTo(0);
+    }
+    
+    @Test
+    void concurrentCallersGetASingleHalfOpenTrial() {
+        config.getRouting().setCircuitOpenMs(300L);
+        AiEndpoint endpoint = new AiEndpoint("flaky", primary.baseUrl(), "test", null, config, new ObjectMapper(),
+                new SimpleMeterRegistry(), ObservationRegistry.NOOP);
+        long now = System.nanoTime();
+        for (int i = 0; i < config.getRouting().getCircuitFailureThreshold(); i++) {
+            endpoint.failed(now);
+        }
+        long openNanos = Duration.ofMillis(300).toNanos();
+        
+        assertThat(endpoint.tryAcquire(now + openNanos - 1)).isFalse();
+        assertThat(endpoint.tryAcquire(now + openNanos)).isTrue();
+        assertThat(endpoint.circuit()).isEqualTo(AiEndpoint.Circuit.HALF_OPEN);
+        assertThat(endpoint.tryAcquire(now + openNanos)).isFalse();
+        
+        // A cancelled trial reopens the circuit for a full interval from now
+        endpoint.abandoned(0);
+        long reopened = System.nanoTime();
+        assertThat(endpoint.circuit()).isEqualTo(AiEndpoint.Circuit.OPEN);
+        assertThat(endpoint.tryAcquire(reopened)).isFalse();
+        assertThat(endpoint.tryAcquire(reopened + openNanos)).isTrue();
+    }
+    
+    @Test
+    void streamsFailOverBeforeTheirFirstChunk() {
+        primary.failNext(1, 503, null);
+        AiService aiService = aiService();
+        
+        String streamed = String.join("", aiService.streamWithAI("prompt", Map.of()).collectList().block());
+        
+        assertThat(streamed).isEqualTo("from secondary");
+        assertThat(primary.requests()).isEqualTo(1);
+        assertThat(meterRegistry.get("ai.routing.failovers").counter().count()).isEqualTo(1);
+    }
+    
+    @Test
+    void tokensAreCountedForTheModelThatAnswered() {
+        primary.failNext(Integer.MAX_VALUE, 503, null);
+        config.getRouting().setHedging(false);
+        config.getRouting().getEndpoints().get(0).setModel("secondary-model");
+        AiService aiService = aiService();
+        
+        assertThat(aiService.processWithAI("prompt", Map.of())).isEqualTo("from secondary");
+        assertThat(String.join("", aiService.streamWithAI("stream", Map.of()).collectList().block()))
+                .isEqualTo("from secondary");
+        
+        assertThat(meterRegistry.get("ai.tokens").tags("model", "secondary-model", "type", "prompt")
+                .counter().count()).isEqualTo(12);
+        assertThat(meterRegistry.get("ai.tokens").tags("model", config.getOpenai().getModel(), "type", "prompt")
+                .counter().count()).isZero();
+        assertThat(meterRegistry.get("ai.stream.first.token").tag("model", "secondary-model").timer().count())
+                .isEqualTo(1);
+    }
+    
+    private double circuitOpen(String endpoint) {
+        return meterRegistry.get("ai.endpoint.circuit.open").tag("endpoint", endpoint).gauge().value();
+    }
+    
+    private AiService aiService() {
+        meterRegistry = new SimpleMeterRegistry();
+        return new AiService(config, new ObjectMapper(),
+                new AiResponseCache(config, new SimpleMeterRegistry()),
+                new AiRequestCoalescer(new SimpleMeterRegistry()),
+                new AiRateLimiter(config, new SimpleMeterRegistry()),
+                meterRegistry, ObservationRegistry.NOOP);
+    }
+}
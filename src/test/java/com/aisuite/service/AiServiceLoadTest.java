@@ -0,0 +1,82 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Drives {@link AiService} against a local stub completions server with a fixed latency and
+ * compares how many calls can be in flight for a given number of caller threads.
+ */
+class AiServiceLoadTest {
+    
+    private static final int CALLS = 64;
+    private static final int BLOCKING_THREADS = 4;
+    
+    private StubCompletionServer stub;
+    private AiService aiService;
+    
+    @BeforeEach
+    void startStub() {
+        stub = new StubCompletionServer(Duration.ofMillis(200));
+        
+        AiConfig config = new AiConfig();
+        config.getOpenai().setBaseUrl(stub.baseUrl());
+        config.getOpenai().setApiKey("test");
+        aiService = new AiService(config, new ObjectMapper(),
+                new AiResponseCache(config, new SimpleMeterRegistry()),
+                new AiRequestCoalescer(new SimpleMeterRegistry()),
+                new AiRateLimiter(config, new SimpleMeterRegistry()),
+                new SimpleMeterRegistry(), ObservationRegistry.NOOP);
+    }
+    
+    @AfterEach
+    void stopStub() {
+        stub.close();
+    }
+    
+    @Test
+    void blockingCallsAreBoundedByCallerThreads() throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(BLOCKING_THREADS);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < CALLS; i++) {
+                String prompt = "prompt " + i;
+                results.add(callers.submit(() -> aiService.processWithAI(prompt, Map.of())));
+            }
+            for (Future<String> result : results) {
+                assertThat(result.get()).isEqualTo("ok");
+            }
+        } finally {
+            callers.shutdown();
+        }
+        
+        assertThat(stub.peakInFlight()).isLessThanOrEqualTo(BLOCKING_THREADS);
+    }
+    
+    @Test
+    void asyncCallsAreNotBoundedByCallerThreads() {
+        List<String> results = Flux.range(0, CALLS)
+                .flatMap(i -> aiService.processWithAIAsync("prompt " + i, Map.of()), CALLS)
+                .collectList()
+                .block(Duration.ofSeconds(30));
+        
+        assertThat(results).hasSize(CALLS).containsOnly("ok");
+        assertThat(stub.peakInFlight()).isGreaterThan(BLOCKING_THREADS * 4);
+    }
+}
@@ -0,0 +1,77 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AiServiceStreamingTest {
+    
+    private static final String CONTENT = "one two three four five six seven eight nine ten";
+    
+    private StubCompletionServer stub;
+    private AiConfig config;
+    private AiService aiService;
+    
+    @BeforeEach
+    void startStub() {
+        stub = new StubCompletionServer(Duration.ofMillis(50));
+        stub.setContent(CONTENT);
+        stub.setChunkInterval(Duration.ofMillis(50));
+        
+        config = new AiConfig();
+        config.getOpenai().setBaseUrl(stub.baseUrl());
+        config.getOpenai().setApiKey("test");
+        aiService = new AiService(config, new ObjectMapper(),
+                new AiResponseCache(config, new SimpleMeterRegistry()),
+                new AiRequestCoalescer(new SimpleMeterRegistry()),
+                new AiRateLimiter(config, new SimpleMeterRegistry()),
+                new SimpleMeterRegistry(), ObservationRegistry.NOOP);
+    }
+    
+    @AfterEach
+    void stopStub() {
+        stub.close();
+    }
+    
+    @Test
+    void firstDeltaArrivesLongBeforeTheCompletionEnds() {
+        AtomicLong firstDeltaNanos = new AtomicLong();
+        long start = System.nanoTime();
+        
+        List<String> deltas = aiService.streamWithAI("count to ten", Map.of())
+                .doOnNext(delta -> firstDeltaNanos.compareAndSet(0, System.nanoTime()))
+                .collectList()
+                .block();
+        long totalMs = (System.nanoTime() - start) / 1_000_000;
+        long firstMs = (firstDeltaNanos.get() - start) / 1_000_000;
+        
+        assertThat(String.join("", deltas)).isEqualTo(CONTENT);
+        assertThat(deltas).hasSize(10);
+        assertThat(firstMs).isLessThan(totalMs / 2);
+    }
+    
+    @Test
+    void deterministicStreamsAreCachedForLaterCalls() {
+        config.getOpenai().setTemperature(0.0);
+        
+        String first = String.join("", aiService.streamWithAI("count to ten", Map.of()).collectList().block());
+        String streamed = String.join("", aiService.streamWithAI("count to ten", Map.of()).collectList().block());
+        String blocking = aiService.processWithAI("count to ten", Map.of());
+        
+        assertThat(first).isEqualTo(CONTENT);
+        assertThat(streamed).isEqualTo(CONTENT);
+        assertThat(blocking).isEqualTo(CONTENT);
+        assertThat(stub.requests()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,129 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AiWireFormatTest {
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AiConfig config = new AiConfig();
+    private final AiRequestWriter requestWriter = new AiRequestWriter(config.getOpenai(), objectMapper);
+    private final AiResponseReader responseReader = new AiResponseReader(objectMapper.getFactory());
+    
+    @Test
+    void requestBodiesMatchTheSortedRequestMap() throws Exception {
+        for (String prompt : List.of("", "Summarise this", "Quote \"this\"\nand\tthat \\ path", "Zürich → 東京 😀 \u0001")) {
+            AiRequestWriter.Template template = requestWriter.template();
+            
+            assertThat(new String(requestWriter.write(template, prompt, false), StandardCharsets.UTF_8))
+                    .isEqualTo(sortedRequestMap(prompt, false));
+            assertThat(new String(requestWriter.write(template, prompt, true), StandardCharsets.UTF_8))
+                    .isEqualTo(sortedRequestMap(prompt, true));
+        }
+    }
+    
+    @Test
+    void templatesAreReusedUntilTheSettingsChange() throws Exception {
+        AiRequestWriter.Template template = requestWriter.template();
+        assertThat(requestWriter.template()).isSameAs(template);
+        
+        config.getOpenai().setTemperature(0.0);
+        config.getOpenai().setModel("gpt-4o-mini");
+        AiRequestWriter.Template changed = requestWriter.template();
+        
+        assertThat(changed).isNotSameAs(template);
+        assertThat(changed.temperature()).isEqualTo(0.0);
+        assertThat(new String(requestWriter.write(changed, "prompt", false), StandardCharsets.UTF_8))
+                .isEqualTo(sortedRequestMap("prompt", false));
+    }
+    
+    @Test
+    void readsTheFirstChoiceAndUsageFromTheResponseBuffer() {
+        String response = "{\"id\":\"chatcmpl-1\",\"meta\":{\"content\":\"not this\",\"choices\":[1]}," +
+                "\"choices\":[{\"index\":0,\"logprobs\":{\"content\":[{\"token\":\"x\"}]}," +
+                "\"message\":{\"role\":\"assistant\",\"tool_calls\":[],\"content\":\"Line one\\nLine \\\"two\\\" ✓\"}}," +
+                "{\"index\":1,\"message\":{\"content\":\"second choice\"}}]," +
+                "\"usage\":{\"prompt_tokens\":12,\"completion_tokens\":3,\"total_tokens\":15,\"details\":{\"cached\":0}}}";
+        DataBuffer buffer = DefaultDataBufferFactory.sharedInstance.wrap(response.getBytes(StandardCharsets.UTF_8));
+        
+        AiResponseReader.Completion completion = responseReader.read(buffer);
+        
+        assertThat(completion.content()).isEqualTo("Line one\nLine \"two\" ✓");
+        assertThat(completion.usage()).isEqualTo(new AiResponseReader.Usage(12, 3, 15));
+        assertThat(responseReader.read(response.getBytes(StandardCharsets.UTF_8))).isEqualTo(completion);
+    }
+    
+    @Test
+    void responsesWithoutContentAreRejected() {
+        assertThatThrownBy(() -> responseReader.read("{\"choices\":[]}".getBytes(StandardCharsets.UTF_8)))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageStartingWith("Unexpected completion response");
+        assertThatThrownBy(() -> responseReader.read("[1]".getBytes(StandardCharsets.UTF_8)))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(responseReader.read("{\"choices\":[{\"message\":{\"content\":null}}]}".getBytes(StandardCharsets.UTF_8))
+                .usage()).isNull();
+    }
+    
+    @Test
+    void streamChunksReadTheirDeltaOrUsage() {
+        AiResponseReader.Completion delta = responseReader.readChunk(
+                "{\"id\":\"1\",\"choices\":[{\"index\":0,\"delta\":{\"content\":\"Hel\"},\"finish_reason\":null}]}");
+        AiResponseReader.Completion usage = responseReader.readChunk(
+                "{\"id\":\"1\",\"choices\":[],\"usage\":{\"prompt_tokens\":7,\"completion_tokens\":2}}");
+        
+        assertThat(delta).isEqualTo(new AiResponseReader.Completion("Hel", null));
+        assertThat(usage).isEqualTo(new AiResponseReader.Completion("", new AiResponseReader.Usage(7, 2, -1)));
+    }
+    
+    @Test
+    void analysisKeepsOnlyItsFields() {
+        AiService aiService = new AiService(config, objectMapper,
+                new AiResponseCache(config, new SimpleMeterRegistry()),
+                new AiRequestCoalescer(new SimpleMeterRegistry()),
+                new AiRateLimiter(config, new SimpleMeterRegistry()),
+                new SimpleMeterRegistry(), ObservationRegistry.NOOP);
+        
+        Map<String, Object> analysis = aiService.parseAnalysis("{\"notes\":{\"summary\":\"nested\"}," +
+                "\"summary\":\"Stable\",\"keyFindings\":[\"a\",\"b\"],\"riskLevel\":null,\"extra\":[1,2,3]}");
+        Map<String, Object> defaults = aiService.parseAnalysis("{}");
+        
+        assertThat(analysis).containsEntry("summary", "Stable").containsEntry("riskLevel", "MEDIUM");
+        assertThat(((JsonNode) analysis.get("keyFindings")).size()).isEqualTo(2);
+        assertThat(((JsonNode) analysis.get("recommendations")).isMissingNode()).isTrue();
+        assertThat(analysis).hasSize(4);
+        assertThat(defaults).containsEntry("summary", "Analysis completed").containsEntry("riskLevel", "MEDIUM");
+        assertThat(aiService.parseAnalysis("Not JSON at all")).containsOnlyKeys("rawResponse");
+    }
+    
+    /**
+     * The request as it used to be built and serialized, before the pre-serialized fragments.
+     */
+    private String sortedRequestMap(String prompt, boolean stream) throws Exception {
+        Map<String, Object> request = new HashMap<>();
+        request.put("model", config.getOpenai().getModel());
+        request.put("messages", List.of(
+                Map.of("role", "system", "content", AiRequestWriter.SYSTEM_PROMPT),
+                Map.of("role", "user", "content", prompt)));
+        request.put("max_tokens", config.getOpenai().getMaxTokens());
+        request.put("temperature", config.getOpenai().getTemperature());
+        if (stream) {
+            request.put("stream", true);
+        }
+        return objectMapper.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS).writeValueAsString(request);
+    }
+}
@@ -0,0 +1,114 @@
+package com.aisuite.service;
+
+import com.aisuite.model.WorkflowStep;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConditionExpressionTest {
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    private final Map<String, Object> context = new HashMap<>(Map.of(
+            "amount", 1250,
+            "currency", "EUR",
+            "approved", true,
+            "tags", List.of("urgent", "vip"),
+            "customer", Map.of("name", "ACME Corp", "country", "DE"),
+            "step_1", "{\"summary\":\"ok\",\"riskLevel\":\"LOW\",\"score\":0.82,\"items\":[{\"price\":10},{\"price\":32}]}",
+            "step_2", "Plain text answer"));
+    
+    @Test
+    void comparisonsAndBooleanLogic() {
+        assertThat(test("amount > 1000 && approved")).isTrue();
+        assertThat(test("amount >= 1250 and amount <= 1250")).isTrue();
+        assertThat(test("amount < 1000 || !approved")).isFalse();
+        assertThat(test("not (currency == 'USD')")).isTrue();
+        assertThat(test("amount * 2 - 500 == 2000")).isTrue();
+        assertThat(test("amount % 2 == 0 && 7 / 2 == 3.5")).isTrue();
+        assertThat(test("'10' > 9")).isTrue();
+        assertThat(test("missing == null && !missing")).isTrue();
+        assertThat(test("missing > 3")).isFalse();
+    }
+    
+    @Test
+    void pathAccessIntoMapsListsAndJsonStepResults() {
+        assertThat(test("customer.country == 'DE'")).isTrue();
+        assertThat(test("tags[1] == 'vip'")).isTrue();
+        assertThat(test("step_1.riskLevel != 'HIGH' && step_1.score > 0.8")).isTrue();
+        assertThat(test("step_1.items[1].price == 32")).isTrue();
+        assertThat(test("step_1.nothing.deeper == null")).isTrue();
+        assertThat(test("step_2.field == null")).isTrue();
+    }
+    
+    @Test
+    void functions() {
+        assertThat(test("lower(currency) == 'eur' && upper('a') == 'A'")).isTrue();
+        assertThat(test("contains(customer.name, 'ACME') && startsWith(step_2, 'Plain')")).isTrue();
+        assertThat(test("contains(tags, 'urgent') && len(tags) == 2")).isTrue();
+        assertThat(test("matches(customer.name, '^ACME\\\\s')")).isTrue();
+        assertThat(test("max(1, amount, 3) == 1250 && min(4, 2) == 2 && round(2.6) == 3")).isTrue();
+        assertThat(test("number('42') + 1 == 43 && string(5) + 'x' == '5x'")).isTrue();
+        assertThat(test("len(step_1.items) == 2 && isEmpty('')")).isTrue();
+    }
+    
+    @Test
+    void malformedExpressionsAreRejectedAtCompileTime() {
+        assertThatThrownBy(() -> ConditionExpression.compile("amount > "))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Unexpected end");
+        assertThatThrownBy(() -> ConditionExpression.compile("unknown(1)"))
+                .hasMessageContaining("Unknown function");
+        assertThatThrownBy(() -> ConditionExpression.compile("len(1, 2)"))
+                .hasMessageContaining("takes 1 argument");
+        assertThatThrownBy(() -> ConditionExpression.compile("a = b"))
+                .hasMessageContaining("Unexpected '='");
+    }
+    
+    @Test
+    void compiledConditionsAreCachedPerStepVersion() {
+        ConditionCompiler compiler = new ConditionCompiler(objectMapper);
+        WorkflowStep step = new WorkflowStep();
+        step.setId(5L);
+        step.setConfiguration("{\"condition\":\"amount > 1000\"}");
+        
+        ConditionCompiler.Condition first = compiler.compile(step);
+        assertThat(compiler.compile(step)).isSameAs(first);
+        assertThat(first.test(context)).isTrue();
+        
+        step.setConfiguration("{\"condition\":\"amount > 5000\"}");
+        ConditionCompiler.Condition edited = compiler.compile(step);
+        assertThat(edited).isNotSameAs(first);
+        assertThat(edited.test(context)).isFalse();
+        assertThat(compiler.cachedSteps()).isEqualTo(1);
+    }
+    
+    @Test
+    void legacySuccessConditionIsKept() {
+        ConditionCompiler compiler = new ConditionCompiler(objectMapper);
+        WorkflowStep step = new WorkflowStep();
+        step.setConfiguration("{\"condition\":\"success\"}");
+        
+        assertThat(compiler.compile(step).test(context)).isTrue();
+        assertThat(compiler.compile(step).test(Map.of("step_1", "Error: provider down"))).isFalse();
+    }
+    
+    private boolean test(String expression) {
+        return ConditionExpression.compile(expression).test(context, this::readTree);
+    }
+    
+    private JsonNode readTree(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
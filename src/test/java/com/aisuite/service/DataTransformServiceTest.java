@@ -0,0 +1,222 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DataTransformServiceTest {
+    
+    @TempDir
+    Path dataDirectory;
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ExecutorService executor;
+    private DataTransformService service;
+    
+    @BeforeEach
+    void createService() {
+        AiConfig config = new AiConfig();
+        config.getTransform().setDataDirectory(dataDirectory.toString());
+        config.getTransform().setParallelism(4);
+        config.getTransform().setChunkSize(100);
+        executor = Executors.newFixedThreadPool(4);
+        service = new DataTransformService(config, objectMapper, executor);
+    }
+    
+    @AfterEach
+    void stopExecutor() {
+        executor.shutdownNow();
+    }
+    
+    @Test
+    void csvRowsAreFilteredMappedAndProjected() throws Exception {
+        String csv = """
+                customer,country,amount,note
+                "Smith, John",DE,150,"said ""hi""
+                twice"
+                acme,FR,50,
+                globex,DE,300,ok
+                """;
+        TransformSpec spec = spec("""
+                {"source": {"contextKey": "invoices"},
+                 "operations": [
+                   {"filter": "number(amount) > 100"},
+                   {"map": {"customer": "upper(customer)", "net": "number(amount) / 2"}},
+                   {"project": ["customer", "net", "note"]}
+                 ]}""");
+        
+        TransformResult result = service.transform(spec, Map.of("invoices", csv));
+        
+        assertThat(result.getRowsIn()).isEqualTo(3);
+        assertThat(result.getRowsOut()).isEqualTo(2);
+        assertThat(result.getRows()).containsExactly(
+                Map.of("customer", "SMITH, JOHN", "net", 75.0, "note", "said \"hi\"\ntwice"),
+                Map.of("customer", "GLOBEX", "net", 150.0, "note", "ok"));
+        assertThat(result.getRows().get(0).keySet()).containsExactly("customer", "net", "note");
+    }
+    
+    @Test
+    void aggregatesAreMergedAcrossChunks() throws Exception {
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            lines.append("{\"country\":\"").append(i % 2 == 0 ? "DE" : "FR").append("\",\"amount\":").append(i).append("}\n");
+        }
+        TransformSpec spec = spec("""
+                {"source": {"contextKey": "rows", "format": "jsonl"},
+                 "aggregate": {"groupBy": ["country"],
+                               "metrics": {"rows": "count()", "total": "sum(amount)", "largest": "max(amount)", "mean": "avg(amount)"}}}""");
+        
+        TransformResult result = service.transform(spec, Map.of("rows", lines.toString()));
+        
+        assertThat(result.getChunks()).isEqualTo(10);
+        assertThat(result.getRowsOut()).isEqualTo(2);
+        assertThat(result.getRows()).isNull();
+        assertThat(result.getGroups()).containsExactly(
+                Map.of("country", "DE", "rows", 500L, "total", 249500.0, "largest", 998.0, "mean", 499.0),
+                Map.of("country", "FR", "rows", 500L, "total", 250000.0, "largest", 999.0, "mean", 500.0));
+    }
+    
+    @Test
+    void aggregatesWriteOnlyTheirGroups() throws Exception {
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            lines.append("{\"country\":\"").append(i % 2 == 0 ? "DE" : "FR").append("\"}\n");
+        }
+        TransformSpec toFile = spec("""
+                {"source": {"contextKey": "rows", "format": "jsonl"},
+                 "aggregate": {"groupBy": ["country"], "metrics": {"rows": "count()"}},
+                 "output": {"file": "groups.jsonl"}}""");
+        TransformSpec streamed = spec("""
+                {"aggregate": {"groupBy": ["country"], "metrics": {"rows": "count()"}}}""");
+        List<Map<String, Object>> sent = new ArrayList<>();
+        
+        TransformResult written = service.transform(toFile, Map.of("rows", lines.toString()));
+        TransformResult returned = service.transform(streamed,
+                new ByteArrayInputStream(lines.toString().getBytes(StandardCharsets.UTF_8)), "jsonl", sent::addAll);
+        
+        assertThat(written.getRowsOut()).isEqualTo(2);
+        assertThat(Files.readAllLines(dataDirectory.resolve("groups.jsonl")))
+                .containsExactly("{\"country\":\"DE\",\"rows\":500}", "{\"country\":\"FR\",\"rows\":500}");
+        // Streamed requests get the groups in the summary rather than as rows
+        assertThat(sent).isEmpty();
+        assertThat(returned.getRowsOut()).isEqualTo(2);
+        assertThat(returned.getGroups()).hasSize(2);
+    }
+    
+    @Test
+    void fileInputIsWrittenToAnOutputFileInOrder() throws Exception {
+        StringBuilder csv = new StringBuilder("id,value\n");
+        for (int i = 0; i < 1050; i++) {
+            csv.append(i).append(',').append(i * 10).append('\n');
+        }
+        Files.writeString(dataDirectory.resolve("in.csv"), csv);
+        TransformSpec spec = spec("""
+                {"source": {"file": "in.csv"},
+                 "operations": [{"map": {"double": "number(value) * 2"}}],
+                 "output": {"file": "out/result.jsonl"}}""");
+        
+        TransformResult result = service.transform(spec, Map.of());
+        
+        List<String> written = Files.readAllLines(dataDirectory.resolve("out/result.jsonl"));
+        assertThat(result.getRowsOut()).isEqualTo(1050);
+        assertThat(result.getOutputFile()).isEqualTo("out/result.jsonl");
+        assertThat(result.getRows()).isNull();
+        assertThat(written).hasSize(1050);
+        assertThat(written.get(0)).isEqualTo("{\"id\":\"0\",\"value\":\"0\",\"double\":0.0}");
+        assertThat(written.get(1049)).isEqualTo("{\"id\":\"1049\",\"value\":\"10490\",\"double\":20980.0}");
+    }
+    
+    @Test
+    void pathsOutsideTheDataDirectoryAreRejected() {
+        TransformSpec spec = spec("{\"source\": {\"file\": \"../secrets.csv\"}}");
+        
+        assertThatThrownBy(() -> service.transform(spec, Map.of()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("outside the data directory");
+    }
+    
+    @Test
+    void badRowsReportTheirRowNumber() {
+        TransformSpec spec = spec("{\"source\": {\"contextKey\": \"rows\", \"format\": \"jsonl\"}}");
+        String lines = "{\"a\":1}\n".repeat(150) + "not json\n";
+        
+        assertThatThrownBy(() -> service.transform(spec, Map.of("rows", lines)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Row 151:");
+    }
+    
+    @Test
+    void largeInputsAreStreamedRatherThanLoaded() throws Exception {
+        int total = 200_000;
+        GeneratedCsv input = new GeneratedCsv(total);
+        List<Long> generatedWhenChunkArrived = new ArrayList<>();
+        AtomicLong rowsSeen = new AtomicLong();
+        TransformSpec spec = spec("""
+                {"operations": [{"filter": "number(id) % 3 == 0"}], "chunkSize": 1000}""");
+        
+        TransformResult result = service.transform(spec, input, "csv", rows -> {
+            generatedWhenChunkArrived.add(input.generated);
+            rowsSeen.addAndGet(rows.size());
+        });
+        
+        assertThat(result.getRowsIn()).isEqualTo(total);
+        assertThat(result.getRowsOut()).isEqualTo(rowsSeen.get()).isEqualTo(66_667);
+        assertThat(result.getRowsPerSecond()).isPositive();
+        // The first chunk is written while most of the input has not been produced yet
+        assertThat(generatedWhenChunkArrived.get(0)).isLessThan(total / 10);
+    }
+    
+    private TransformSpec spec(String json) {
+        try {
+            return objectMapper.readValue(json, TransformSpec.class);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * A CSV body produced on demand, one row at a time.
+     */
+    private static final class GeneratedCsv extends InputStream {
+        
+        private final int rows;
+        private volatile long generated;
+        private byte[] current = "id,payload\n".getBytes(StandardCharsets.UTF_8);
+        private int position;
+        
+        private GeneratedCsv(int rows) {
+            this.rows = rows;
+        }
+        
+        @Override
+        public int read() {
+            if (position == current.length) {
+                if (generated == rows) {
+                    return -1;
+                }
+                current = (generated + ",row-" + generated + "-xxxxxxxxxxxxxxxxxxxxxxxx\n").getBytes(StandardCharsets.UTF_8);
+                position = 0;
+                generated++;
+            }
+            return current[position++];
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.aisuite.service;
+
+import com.aisuite.AiBusinessAutomationApplication;
+import com.aisuite.config.AiConfig;
+import com.aisuite.model.StepExecution;
+import com.aisuite.model.Workflow;
+import com.aisuite.model.WorkflowExecution;
+import com.aisuite.model.WorkflowStep;
+import com.aisuite.repository.StepExecutionRepository;
+import com.aisuite.repository.WorkflowExecutionRepository;
+import com.aisuite.repository.WorkflowRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Runs several engine nodes, each a full application context, against one file-based H2
+ * database, the way separate instances share a database server.
+ */
+class ExecutionClusterTest {
+    
+    private static final int EXECUTIONS = 60;
+    
+    private StubCompletionServer provider;
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+    
+    @BeforeEach
+    void startProvider() {
+        provider = new StubCompletionServer(Duration.ofMillis(100));
+    }
+    
+    @AfterEach
+    void stopNodes() {
+        nodes.forEach(ConfigurableApplicationContext::close);
+        nodes.clear();
+        provider.close();
+    }
+    
+    @Test
+    void nodesShareTheQueueAndClaimEachExecutionOnce() throws Exception {
+        List<ConfigurableApplicationContext> cluster = startNodes(3);
+        Workflow workflow = workflow(cluster.get(0));
+        ExecutionQueueService queue = cluster.get(0).getBean(ExecutionQueueService.class);
+        WorkflowExecutionRepository executions = cluster.get(0).getBean(WorkflowExecutionRepository.class);
+        
+        for (int i = 0; i < EXECUTIONS; i++) {
+            queue.submit(workflow.getId(), Map.of("run", i));
+        }
+        long completed = 0;
+        for (int i = 0; i < 300 && completed < EXECUTIONS; i++) {
+            Thread.sleep(50);
+            completed = executions.findByStatus(WorkflowExecution.ExecutionStatus.COMPLETED).size();
+        }
+        
+        assertThat(completed).isEqualTo(EXECUTIONS);
+        // Each execution ran once: one step record apiece, and the provider saw one call per run
+        assertThat(cluster.get(0).getBean(StepExecutionRepository.class).findAll())
+                .extracting(StepExecution::getExecutionId)
+                .hasSize(EXECUTIONS)
+                .doesNotHaveDuplicates();
+        assertThat(provider.requests()).isEqualTo(EXECUTIONS);
+        // Every node took a share
+        Set<String> ranOn = executions.findAll().stream()
+                .map(WorkflowExecution::getNodeId)
+                .collect(Collectors.toSet());
+        assertThat(ranOn).containsExactlyInAnyOrder("node-0", "node-1", "node-2");
+    }
+    
+    @Test
+    void executionsOfADeadNodeAreTakenOver() throws Exception {
+        ConfigurableApplicationContext node = startNodes(1).get(0);
+        Workflow workflow = workflow(node);
+        WorkflowExecutionRepository executions = node.getBean(WorkflowExecutionRepository.class);
+        LocalDateTime now = LocalDateTime.now();
+        WorkflowExecution orphaned = executions.save(running(workflow, "crashed-node", now.minusSeconds(5)));
+        WorkflowExecution leased = executions.save(running(workflow, "busy-node", now.plusMinutes(5)));
+        WorkflowExecution exhausted = running(workflow, "crashed-node", now.minusSeconds(5));
+        exhausted.setAttempts(node.getBean(AiConfig.class).getCluster().getMaxAttempts());
+        exhausted = executions.save(exhausted);
+        
+        assertThat(awaitCompleted(node, orphaned.getId())).isTrue();
+        assertThat(executions.findById(orphaned.getId()).orElseThrow().getAttempts()).isEqualTo(2);
+        // It already lost its node as often as allowed, so it is failed rather than queued again
+        WorkflowExecution failed = executions.findById(exhausted.getId()).orElseThrow();
+        assertThat(failed.getStatus()).isEqualTo(WorkflowExecution.ExecutionStatus.FAILED);
+        assertThat(failed.getErrorMessage()).contains("3 attempts");
+        
+        WorkflowExecution takenOver = executions.findById(orphaned.getId()).orElseThrow();
+        assertThat(takenOver.getNodeId()).isEqualTo("node-0");
+        // A lease that has not expired belongs to a node that may still be running it
+        assertThat(executions.findById(leased.getId()).orElseThrow().getStatus())
+                .isEqualTo(WorkflowExecution.ExecutionStatus.RUNNING);
+        assertThat(node.getBean(MeterRegistry.class).get("execution.leases.expired")
+                .tag("node", "node-0").counter().count()).isEqualTo(2);
+        assertThat(node.getBean(ExecutionQueueService.class).nodes())
+                .extracting(entry -> entry.get("nodeId"), entry -> entry.get("alive"))
+                .contains(tuple("node-0", true));
+    }
+    
+    private List<ConfigurableApplicationContext> startNodes(int count) {
+        String database = "jdbc:h2:file:./target/cluster-db/" + UUID.randomUUID();
+        for (int i = 0; i < count; i++) {
+            nodes.add(new SpringApplicationBuilder(AiBusinessAutomationApplication.class)
+                    .profiles("test", "cluster")
+                    .run("--spring.main.web-application-type=none",
+                            "--spring.datasource.url=" + database,
+                            "--ai.payload.directory=target/test-payloads",
+                            "--ai.cluster.node-id=node-" + i,
+                            "--ai.cluster.heartbeat-interval-ms=100",
+                            "--ai.cluster.lease-ms=1000",
+                            "--ai.queue.max-concurrent-executions=2",
+                            "--ai.queue.poll-interval-ms=20",
+                            "--ai.openai.base-url=" + provider.baseUrl(),
+                            "--ai.openai.api-key=test",
+                            "--ai.cache.enabled=false",
+                            "--ai.automation.coalesce-requests=false",
+                            "--ai.triggers.enabled=false"));
+        }
+        return nodes;
+    }
+    
+    private static Workflow workflow(ConfigurableApplicationContext node) {
+        Workflow workflow = new Workflow();
+        workflow.setName("clustered workflow " + System.nanoTime());
+        workflow.setStatus(Workflow.WorkflowStatus.ACTIVE);
+        WorkflowStep step = new WorkflowStep();
+        step.setWorkflow(workflow);
+        step.setName("ai");
+        step.setStepOrder(1);
+        step.setType(WorkflowStep.StepType.AI_PROCESSING);
+        step.setAiPrompt("Summarise {{run}}");
+        workflow.setSteps(new ArrayList<>(List.of(step)));
+        return node.getBean(WorkflowRepository.class).save(workflow);
+    }
+    
+    private static WorkflowExecution running(Workflow workflow, String nodeId, LocalDateTime leaseExpiresAt) {
+        WorkflowExecution execution = new WorkflowExecution();
+        execution.setWorkflow(workflow);
+        execution.setStatus(WorkflowExecution.ExecutionStatus.RUNNING);
+        execution.setStartedAt(LocalDateTime.now());
+        execution.setInputData("{}");
+        execution.setNodeId(nodeId);
+        execution.setLeaseExpiresAt(leaseExpiresAt);
+        execution.setAttempts(1);
+        return execution;
+    }
+    
+    private static boolean awaitCompleted(ConfigurableApplicationContext node, Long executionId) throws InterruptedException {
+        WorkflowExecutionRepository executions = node.getBean(WorkflowExecutionRepository.class);
+        for (int i = 0; i < 100; i++) {
+            if (executions.findById(executionId).orElseThrow().getStatus() == WorkflowExecution.ExecutionStatus.COMPLETED) {
+                return true;
+            }
+            Thread.sleep(100);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,120 @@
+package com.aisuite.service;
+
+import com.aisuite.model.StepExecution;
+import com.aisuite.model.Workflow;
+import com.aisuite.model.WorkflowExecution;
+import com.aisuite.model.WorkflowStep;
+import com.aisuite.repository.StepExecutionRepository;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs many executions at once against a small connection pool. Runs only use a connection to
+ * commit state changes, so they are bounded by AI latency and not by the pool size.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.hikari.maximum-pool-size=" + ExecutionConnectionPoolTest.POOL_SIZE,
+        "ai.automation.step-parallelism=64"
+})
+@ActiveProfiles("test")
+class ExecutionConnectionPoolTest {
+    
+    static final int POOL_SIZE = 3;
+    private static final int EXECUTIONS = 30;
+    private static final long AI_LATENCY_MS = 400;
+    
+    @Autowired
+    private WorkflowEngine workflowEngine;
+    
+    @Autowired
+    private WorkflowService workflowService;
+    
+    @Autowired
+    private StepExecutionRepository stepExecutionRepository;
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    @MockBean
+    private AiService aiService;
+    
+    @Test
+    void concurrentExecutionsAreNotBoundByThePoolSize() throws Exception {
+        when(aiService.processWithAI(anyString(), anyMap(), any())).thenAnswer(invocation -> {
+            Thread.sleep(AI_LATENCY_MS);
+            return "reviewed";
+        });
+        Workflow workflow = workflowService.createWorkflow(workflow());
+        workflowEngine.executeWorkflow(workflow.getId(), Map.of());
+        
+        HikariPoolMXBean pool = dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean();
+        AtomicInteger peakActive = new AtomicInteger();
+        AtomicBoolean sampling = new AtomicBoolean(true);
+        Thread sampler = new Thread(() -> {
+            while (sampling.get()) {
+                peakActive.accumulateAndGet(pool.getActiveConnections(), Math::max);
+                Thread.onSpinWait();
+            }
+        });
+        sampler.start();
+        
+        ExecutorService callers = Executors.newFixedThreadPool(EXECUTIONS);
+        long start = System.nanoTime();
+        List<CompletableFuture<WorkflowExecution>> runs = new ArrayList<>();
+        for (int i = 0; i < EXECUTIONS; i++) {
+            Map<String, Object> input = Map.of("run", i);
+            runs.add(CompletableFuture.supplyAsync(() -> workflowEngine.executeWorkflow(workflow.getId(), input), callers));
+        }
+        List<WorkflowExecution> executions = runs.stream().map(CompletableFuture::join).toList();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        sampling.set(false);
+        sampler.join();
+        callers.shutdown();
+        
+        assertThat(executions).allSatisfy(execution ->
+                assertThat(execution.getStatus()).isEqualTo(WorkflowExecution.ExecutionStatus.COMPLETED));
+        // Holding a connection per run would take EXECUTIONS / POOL_SIZE rounds of both AI calls
+        assertThat(elapsedMs).isLessThan(AI_LATENCY_MS * 2 * 3);
+        assertThat(peakActive.get()).isLessThanOrEqualTo(POOL_SIZE);
+        assertThat(stepExecutionRepository.findByExecutionIdOrderByStepOrderAscStepIdAsc(executions.get(0).getId()))
+                .extracting(StepExecution::getStatus)
+                .containsExactly(WorkflowStep.StepStatus.COMPLETED, WorkflowStep.StepStatus.COMPLETED);
+    }
+    
+    private static Workflow workflow() {
+        Workflow workflow = new Workflow();
+        workflow.setName("pooled " + System.nanoTime());
+        workflow.setStatus(Workflow.WorkflowStatus.ACTIVE);
+        workflow.setSteps(new ArrayList<>());
+        for (int i = 1; i <= 2; i++) {
+            WorkflowStep step = new WorkflowStep();
+            step.setName("review " + i);
+            step.setStepOrder(i);
+            step.setType(WorkflowStep.StepType.AI_PROCESSING);
+            step.setAiPrompt("review " + i);
+            workflow.getSteps().add(step);
+        }
+        return workflow;
+    }
+}
@@ -0,0 +1,207 @@
+package com.aisuite.service;
+
+import com.aisuite.model.ExecutionSummary;
+import com.aisuite.model.Workflow;
+import com.aisuite.model.WorkflowExecution;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.aisuite.service.ExecutionHistoryQueryTest$RecordingStatements")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_CLASS)
+class ExecutionHistoryQueryTest {
+
+    private static final int LARGE_HISTORY = 5_000;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final String PAYLOAD = "{\"text\":\"" + "x".repeat(2_000) + "\"}";
+
+    @Autowired
+    private WorkflowService workflowService;
+
+    @Autowired
+    private PayloadStore payloadStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private AiService aiService;
+
+    private static Long largeWorkflowId;
+    private static Long smallWorkflowId;
+
+    @BeforeEach
+    void seed() {
+        if (largeWorkflowId != null) {
+            return;
+        }
+        largeWorkflowId = createWorkflow("large");
+        smallWorkflowId = createWorkflow("small");
+        insertExecutions(largeWorkflowId, LARGE_HISTORY, null);
+        insertExecutions(smallWorkflowId, 1_000, PAYLOAD);
+    }
+
+    @Test
+    void pagesWalkTheWholeHistoryNewestFirstWithoutGapsOrDuplicates() {
+        Set<Long> seen = new HashSet<>();
+        Long previous = Long.MAX_VALUE;
+        Long cursor = null;
+        int pages = 0;
+        do {
+            Map<String, Object> page = workflowService.getWorkflowExecutions(
+                    smallWorkflowId, null, null, null, cursor, 100);
+            for (ExecutionSummary summary : items(page)) {
+                assertThat(summary.id()).isLessThan(previous);
+                assertThat(summary.workflowId()).isEqualTo(smallWorkflowId);
+                assertThat(seen.add(summary.id())).isTrue();
+                previous = summary.id();
+            }
+            cursor = (Long) page.get("nextCursor");
+            pages++;
+        } while (cursor != null);
+
+        assertThat(seen).hasSize(1_000);
+        assertThat(pages).isEqualTo(10);
+    }
+
+    @Test
+    void filtersByStatusAndStartTime() {
+        // Every fifth seeded execution failed, one per minute
+        List<ExecutionSummary> failed = items(workflowService.getWorkflowExecutions(
+                smallWorkflowId, WorkflowExecution.ExecutionStatus.FAILED, null, null, null, 500));
+        assertThat(failed).hasSize(200)
+                .allMatch(summary -> summary.status() == WorkflowExecution.ExecutionStatus.FAILED);
+
+        List<ExecutionSummary> firstHour = items(workflowService.getWorkflowExecutions(
+                smallWorkflowId, null, START, START.plusHours(1), null, 500));
+        assertThat(firstHour).hasSize(60)
+                .allMatch(summary -> !summary.startedAt().isBefore(START)
+                        && summary.startedAt().isBefore(START.plusHours(1)));
+    }
+
+    @Test
+    void listingLeavesPayloadsForTheExecutionEndpoint() throws Exception {
+        Long newest = items(workflowService.getWorkflowExecutions(
+                smallWorkflowId, null, null, null, null, 1)).get(0).id();
+
+        mockMvc.perform(get("/workflows/{id}/executions", smallWorkflowId).param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(5))
+                .andExpect(jsonPath("$.items[0].id").value(newest))
+                .andExpect(jsonPath("$.items[0].inputData").doesNotExist())
+                .andExpect(jsonPath("$.items[0].outputData").doesNotExist())
+                .andExpect(jsonPath("$.nextCursor").isNumber());
+
+        // The 2 KB payload is deflated in the row and inflated again for the response
+        Long storedBytes = jdbcTemplate.queryForObject(
+                "select octet_length(input_data) from workflow_executions where id = ?", Long.class, newest);
+        assertThat(storedBytes).isLessThan(PAYLOAD.length() / 10);
+        mockMvc.perform(get("/workflows/executions/{id}", newest))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.inputData").value(PAYLOAD));
+    }
+
+    @Test
+    void historyQueriesSeekThroughIndexes() {
+        assertThat(plan("select id from workflow_executions where workflow_id = " + largeWorkflowId
+                + " and id < 1000 order by id desc limit 51"))
+                .contains("IDX_EXECUTIONS_WORKFLOW_ID");
+        assertThat(plan("select id from workflow_executions where workflow_id = " + largeWorkflowId
+                + " and started_at >= timestamp '2024-01-02 00:00:00' order by id desc limit 51"))
+                .contains("IDX_EXECUTIONS_WORKFLOW_STARTED");
+        assertThat(plan("select id from workflow_executions where status = 'FAILED' order by id desc limit 51"))
+                .contains("IDX_EXECUTIONS_STATUS");
+    }
+
+    @Test
+    void deepPagesSeekPastTheCursorInsteadOfSkippingRows() {
+        List<ExecutionSummary> newest = items(workflowService.getWorkflowExecutions(
+                largeWorkflowId, null, null, null, null, 1));
+        Long oldestCursor = newest.get(0).id() - LARGE_HISTORY + 100;
+
+        RecordingStatements.STATEMENTS.clear();
+        List<ExecutionSummary> page = items(workflowService.getWorkflowExecutions(
+                largeWorkflowId, null, null, null, oldestCursor, 50));
+
+        assertThat(page).hasSize(50).allMatch(summary -> summary.id() < oldestCursor);
+        // An offset would read and discard every newer row before the page
+        assertThat(RecordingStatements.STATEMENTS)
+                .filteredOn(sql -> sql.contains("workflow_executions"))
+                .singleElement()
+                .satisfies(sql -> assertThat(sql).containsPattern("\\.id\\s*<\\s*\\?")
+                        .containsPattern("order by \\w+\\.id desc")
+                        .doesNotContainIgnoringCase("offset"));
+    }
+
+    /**
+     * Collects the SQL Hibernate sends, so tests can check the shape of a query.
+     */
+    public static class RecordingStatements implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+
+    private String plan(String sql) {
+        return String.join("\n", jdbcTemplate.queryForList("explain " + sql, String.class));
+    }
+
+    private Long createWorkflow(String name) {
+        Workflow workflow = new Workflow();
+        workflow.setName(name);
+        workflow.setSteps(new ArrayList<>());
+        return workflowService.createWorkflow(workflow).getId();
+    }
+
+    private void insertExecutions(Long workflowId, int count, String payload) {
+        byte[] stored = payloadStore.encode(payload);
+        List<Object[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LocalDateTime startedAt = START.plusMinutes(i);
+            String status = i % 5 == 0 ? "FAILED" : "COMPLETED";
+            rows.add(new Object[]{workflowId, status, Timestamp.valueOf(startedAt),
+                    Timestamp.valueOf(startedAt), Timestamp.valueOf(startedAt.plusSeconds(2)),
+                    2_000L, stored, stored});
+        }
+        jdbcTemplate.batchUpdate("insert into workflow_executions (workflow_id, status, queued_at, started_at, "
+                + "completed_at, execution_time_ms, input_data, output_data) values (?, ?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<ExecutionSummary> items(Map<String, Object> page) {
+        return (List<ExecutionSummary>) page.get("items");
+    }
+}
@@ -0,0 +1,139 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.aisuite.config.ExecutionConfig;
+import com.aisuite.model.Workflow;
+import com.aisuite.model.WorkflowExecution;
+import com.aisuite.model.WorkflowStep;
+import com.aisuite.repository.StepExecutionRepository;
+import com.aisuite.repository.WorkflowExecutionRepository;
+import com.aisuite.repository.WorkflowRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs N concurrent single-step workflows whose AI step calls a slow stub endpoint, once per
+ * execution mode, and checks that every run completes. VIRTUAL is skipped on runtimes older
+ * than Java 21.
+ */
+class ExecutionModeBenchmarkTest {
+    
+    private static final int WORKFLOWS = 64;
+    private static final Duration AI_LATENCY = Duration.ofMillis(200);
+    
+    @Test
+    void platformMode() throws Exception {
+        assertThat(run(AiConfig.ExecutionMode.PLATFORM)).isEqualTo(WORKFLOWS);
+    }
+    
+    @Test
+    void virtualMode() throws Exception {
+        Assumptions.assumeTrue(Runtime.version().feature() >= 21, "virtual threads need Java 21");
+        assertThat(run(AiConfig.ExecutionMode.VIRTUAL)).isEqualTo(WORKFLOWS);
+    }
+    
+    private long run(AiConfig.ExecutionMode mode) throws Exception {
+        try (StubCompletionServer stub = new StubCompletionServer(AI_LATENCY)) {
+            AiConfig aiConfig = new AiConfig();
+            aiConfig.getOpenai().setBaseUrl(stub.baseUrl());
+            aiConfig.getOpenai().setApiKey("test");
+            aiConfig.getAutomation().setExecutionMode(mode);
+            
+            ExecutionConfig executionConfig = new ExecutionConfig(aiConfig);
+            AsyncTaskExecutor workflowExecutor = executionConfig.applicationTaskExecutor(
+                    new ThreadPoolTaskExecutorBuilder().corePoolSize(8));
+            AsyncTaskExecutor stepExecutor = executionConfig.stepExecutor(aiConfig);
+            initialize(workflowExecutor, stepExecutor);
+            
+            AiService aiService = new AiService(aiConfig, new ObjectMapper(),
+                    new AiResponseCache(aiConfig, new SimpleMeterRegistry()),
+                    new AiRequestCoalescer(new SimpleMeterRegistry()),
+                    new AiRateLimiter(aiConfig, new SimpleMeterRegistry()),
+                    new SimpleMeterRegistry(), ObservationRegistry.NOOP);
+            WorkflowRepository workflowRepository = workflowRepository();
+            WorkflowEngine engine = new WorkflowEngine(workflowRepository,
+                    new WorkflowPlanCache(workflowRepository, mock(EntityManager.class)), executionRepository(),
+                    new StepExecutionWriter(mock(StepExecutionRepository.class), new SimpleMeterRegistry()),
+                    mock(ExecutionStatsService.class), aiService, null, new ExecutionEventPublisher(),
+                    new ConditionCompiler(new ObjectMapper()), null, new ObjectMapper(), stepExecutor, ObservationRegistry.NOOP,
+                    new TransactionTemplate(mock(PlatformTransactionManager.class)), new ClusterNode(new AiConfig()), new AiConfig());
+            
+            long completed = runWorkflows(engine, workflowExecutor, WORKFLOWS);
+            
+            destroy(workflowExecutor, stepExecutor);
+            return completed;
+        }
+    }
+    
+    private static long runWorkflows(WorkflowEngine engine, AsyncTaskExecutor executor, int count) {
+        List<CompletableFuture<WorkflowExecution>> runs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> input = Map.of("run", i);
+            runs.add(CompletableFuture.supplyAsync(() -> engine.executeWorkflow(1L, input), executor));
+        }
+        return runs.stream()
+                .map(CompletableFuture::join)
+                .filter(execution -> execution.getStatus() == WorkflowExecution.ExecutionStatus.COMPLETED)
+                .count();
+    }
+    
+    private static WorkflowRepository workflowRepository() {
+        WorkflowStep step = new WorkflowStep();
+        step.setId(1L);
+        step.setName("slow AI call");
+        step.setStepOrder(1);
+        step.setType(WorkflowStep.StepType.AI_PROCESSING);
+        Workflow workflow = new Workflow();
+        workflow.setId(1L);
+        workflow.setSteps(List.of(step));
+        
+        WorkflowRepository repository = mock(WorkflowRepository.class);
+        when(repository.findWithStepsById(1L)).thenReturn(Optional.of(workflow));
+        return repository;
+    }
+    
+    private static WorkflowExecutionRepository executionRepository() {
+        WorkflowExecutionRepository repository = mock(WorkflowExecutionRepository.class);
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(repository.releaseLease(any(), any())).thenReturn(1);
+        return repository;
+    }
+    
+    private static void initialize(Object... executors) throws Exception {
+        for (Object executor : executors) {
+            if (executor instanceof InitializingBean bean) {
+                bean.afterPropertiesSet();
+            }
+        }
+    }
+    
+    private static void destroy(Object... executors) throws Exception {
+        for (Object executor : executors) {
+            if (executor instanceof DisposableBean bean) {
+                bean.destroy();
+            }
+        }
+    }
+}
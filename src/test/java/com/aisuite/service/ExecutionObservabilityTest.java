@@ -0,0 +1,208 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.aisuite.model.Workflow;
+import com.aisuite.model.WorkflowExecution;
+import com.aisuite.model.WorkflowStep;
+import com.aisuite.repository.StepExecutionRepository;
+import com.aisuite.repository.WorkflowExecutionRepository;
+import com.aisuite.repository.WorkflowRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ExecutionObservabilityTest {
+    
+    private final WorkflowRepository workflowRepository = mock(WorkflowRepository.class);
+    private final WorkflowExecutionRepository executionRepository = mock(WorkflowExecutionRepository.class);
+    private final Queue<Observation.Context> stopped = new ConcurrentLinkedQueue<>();
+    private StubCompletionServer stub;
+    private SimpleMeterRegistry meterRegistry;
+    private AiConfig config;
+    private AiService aiService;
+    private ExecutorService stepExecutor;
+    private WorkflowEngine engine;
+    
+    @BeforeEach
+    void setUp() {
+        stub = new StubCompletionServer(Duration.ofMillis(20));
+        config = new AiConfig();
+        config.getOpenai().setBaseUrl(stub.baseUrl());
+        config.getOpenai().setApiKey("test");
+        config.getAutomation().setCoalesceRequests(false);
+        config.getAutomation().setRetryBaseDelayMs(10L);
+        
+        meterRegistry = new SimpleMeterRegistry();
+        ObservationRegistry observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig()
+                .observationHandler(new DefaultMeterObservationHandler(meterRegistry))
+                .observationHandler(new ObservationHandler<>() {
+                    @Override
+                    public void onStop(Observation.Context context) {
+                        stopped.add(context);
+                    }
+                    
+                    @Override
+                    public boolean supportsContext(Observation.Context context) {
+                        return true;
+                    }
+                });
+        
+        aiService = new AiService(config, new ObjectMapper(),
+                new AiResponseCache(config, new SimpleMeterRegistry()),
+                new AiRequestCoalescer(new SimpleMeterRegistry()),
+                new AiRateLimiter(config, meterRegistry),
+                meterRegistry, observationRegistry);
+        stepExecutor = Executors.newFixedThreadPool(4);
+        engine = new WorkflowEngine(workflowRepository, new WorkflowPlanCache(workflowRepository, mock(EntityManager.class)),
+                executionRepository, new StepExecutionWriter(mock(StepExecutionRepository.class), new SimpleMeterRegistry()),
+                mock(ExecutionStatsService.class), aiService, null, new ExecutionEventPublisher(),
+                new ConditionCompiler(new ObjectMapper()), null, new ObjectMapper(), stepExecutor,
+                observationRegistry, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                new ClusterNode(new AiConfig()), new AiConfig());
+        when(executionRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(executionRepository.releaseLease(any(), any())).thenReturn(1);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        stepExecutor.shutdownNow();
+        stub.close();
+    }
+    
+    @Test
+    void executionsStepsAndAiCallsAreTimedAsOneTrace() {
+        workflow(aiStep(1L, 1, "summarise"), aiStep(2L, 2, "classify"));
+        
+        WorkflowExecution execution = engine.executeWorkflow(1L, Map.of());
+        
+        assertThat(execution.getStatus()).isEqualTo(WorkflowExecution.ExecutionStatus.COMPLETED);
+        assertThat(meterRegistry.get("workflow.execution").tags("workflow", "1", "status", "COMPLETED")
+                .timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("workflow.step").tags("workflow", "1", "step.type", "AI_PROCESSING",
+                "status", "COMPLETED").timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("ai.request").tags("operation", "complete", "source", "provider")
+                .timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("ai.tokens").tag("type", "prompt").counter().count()).isEqualTo(24);
+        assertThat(meterRegistry.get("ai.tokens").tag("type", "completion").counter().count()).isEqualTo(6);
+        
+        // HTTP attempt -> AI call -> step -> execution
+        List<Observation.Context> attempts = named("http.client.requests");
+        assertThat(attempts).hasSize(2);
+        for (Observation.Context attempt : attempts) {
+            assertThat(parentName(attempt)).isEqualTo("ai.request");
+        }
+        for (Observation.Context call : named("ai.request")) {
+            assertThat(parentName(call)).isEqualTo("workflow.step");
+        }
+        for (Observation.Context step : named("workflow.step")) {
+            assertThat(parentName(step)).isEqualTo("workflow.execution");
+        }
+    }
+    
+    @Test
+    void failedStepsAndRetriesAreTagged() {
+        stub.failNext(1, 503, null);
+        config.getAutomation().setMaxRetries(0);
+        workflow(aiStep(1L, 1, "summarise"));
+        
+        WorkflowExecution execution = engine.executeWorkflow(1L, Map.of());
+        
+        assertThat(execution.getStatus()).isEqualTo(WorkflowExecution.ExecutionStatus.FAILED);
+        assertThat(meterRegistry.get("workflow.execution").tag("status", "FAILED").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("workflow.step").tag("status", "FAILED").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("ai.request").tag("error", "ServiceUnavailable").timer().count())
+                .isEqualTo(1);
+        
+        stub.failNext(1, 503, null);
+        config.getAutomation().setMaxRetries(2);
+        assertThat(aiService.processWithAI("summarise", Map.of())).isEqualTo("ok");
+        assertThat(meterRegistry.get("ai.limiter.retries").counter().count()).isEqualTo(1);
+    }
+    
+    @Test
+    void streamsRecordTimeToFirstToken() {
+        stub.setContent("one two three");
+        stub.setLatency(Duration.ofMillis(150));
+        stub.setChunkInterval(Duration.ofMillis(100));
+        
+        String content = String.join("", aiService.streamWithAI("count", Map.of()).collectList().block());
+        
+        assertThat(content).isEqualTo("one two three");
+        double firstTokenMs = meterRegistry.get("ai.stream.first.token").timer()
+                .totalTime(TimeUnit.MILLISECONDS);
+        double requestMs = meterRegistry.get("ai.request").tag("operation", "stream").timer()
+                .totalTime(TimeUnit.MILLISECONDS);
+        assertThat(firstTokenMs).isGreaterThanOrEqualTo(150).isLessThan(requestMs - 150);
+    }
+    
+    @Test
+    void timedOutAttemptsAreCountedRetriedAndLowerTheConcurrencyLimit() {
+        config.getAutomation().setTimeoutSeconds(1);
+        config.getAutomation().setMaxRetries(1);
+        stub.setLatency(Duration.ofMillis(1_500));
+        double limit = meterRegistry.get("ai.limiter.concurrency.limit").gauge().value();
+        
+        assertThatThrownBy(() -> aiService.processWithAI("slow", Map.of()))
+                .hasMessageStartingWith("AI processing failed");
+        
+        assertThat(meterRegistry.get("ai.requests.timeouts").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("ai.limiter.retries").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("ai.limiter.concurrency.limit").gauge().value()).isLessThan(limit);
+        assertThat(meterRegistry.get("ai.request").tag("error", "TimeoutException").timer().count()).isEqualTo(1);
+    }
+    
+    private List<Observation.Context> named(String name) {
+        return stopped.stream().filter(context -> name.equals(context.getName())).toList();
+    }
+    
+    private static String parentName(Observation.Context context) {
+        return context.getParentObservation() != null
+                ? context.getParentObservation().getContextView().getName()
+                : null;
+    }
+    
+    private void workflow(WorkflowStep... steps) {
+        Workflow workflow = new Workflow();
+        workflow.setId(1L);
+        workflow.setName("observed");
+        workflow.setSteps(new ArrayList<>(List.of(steps)));
+        when(workflowRepository.findWithStepsById(1L)).thenReturn(Optional.of(workflow));
+    }
+    
+    private static WorkflowStep aiStep(Long id, int order, String prompt) {
+        WorkflowStep step = new WorkflowStep();
+        step.setId(id);
+        step.setName(prompt);
+        step.setStepOrder(order);
+        step.setType(WorkflowStep.StepType.AI_PROCESSING);
+        step.setAiPrompt(prompt);
+        return step;
+    }
+}
@@ -0,0 +1,193 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.aisuite.model.Workflow;
+import com.aisuite.model.WorkflowExecution;
+import com.aisuite.model.WorkflowStep;
+import com.aisuite.repository.WorkflowExecutionRepository;
+import com.aisuite.repository.WorkflowRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ExecutionQueueServiceTest {
+    
+    @Autowired
+    private ExecutionQueueService queueService;
+    
+    @Autowired
+    private WorkflowRepository workflowRepository;
+    
+    @Autowired
+    private WorkflowExecutionRepository executionRepository;
+    
+    @Autowired
+    private AiConfig aiConfig;
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @MockBean
+    private AiService aiService;
+    
+    private Workflow workflow;
+    
+    @BeforeEach
+    void setUp() {
+        when(aiService.processWithAI(anyString(), anyMap(), any())).thenReturn("processed");
+        workflow = createWorkflow();
+    }
+    
+    @Test
+    void everyExecutionCountedAsRunningHasAThread() throws Exception {
+        int limit = aiConfig.getQueue().getMaxConcurrentExecutions();
+        int perWorkflow = aiConfig.getQueue().getMaxConcurrentPerWorkflow();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger inProvider = new AtomicInteger();
+        when(aiService.processWithAI(anyString(), anyMap(), any())).thenAnswer(invocation -> {
+            inProvider.incrementAndGet();
+            release.await(10, TimeUnit.SECONDS);
+            return "processed";
+        });
+        List<Long> executionIds = new ArrayList<>();
+        try {
+            Workflow target = null;
+            for (int i = 0; i < limit; i++) {
+                if (i % perWorkflow == 0) {
+                    target = createWorkflow();
+                }
+                executionIds.add(queueService.submit(target.getId(), Map.of("run", i)).getId());
+            }
+            // Steps share the step pool, so fewer than the limit reach the provider at once
+            for (int i = 0; i < 100 && !allStarted(executionIds); i++) {
+                Thread.sleep(50);
+            }
+            
+            assertThat(inProvider.get()).isGreaterThan(0);
+            assertThat(queueService.runningExecutions()).isEqualTo(limit);
+            // Each of them has been picked up by a thread, rather than waiting in an executor's queue
+            assertThat(executionRepository.findAllById(executionIds))
+                    .extracting(WorkflowExecution::getStartedAt)
+                    .doesNotContainNull();
+        } finally {
+            release.countDown();
+        }
+        for (Long executionId : executionIds) {
+            assertThat(awaitStatus(executionId, WorkflowExecution.ExecutionStatus.COMPLETED))
+                    .isEqualTo(WorkflowExecution.ExecutionStatus.COMPLETED);
+        }
+    }
+    
+    @Test
+    void submittedExecutionsRunInTheBackground() throws Exception {
+        List<Long> executionIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            executionIds.add(queueService.submit(workflow.getId(), Map.of("run", i)).getId());
+        }
+        
+        for (Long executionId : executionIds) {
+            assertThat(awaitStatus(executionId, WorkflowExecution.ExecutionStatus.COMPLETED))
+                    .isEqualTo(WorkflowExecution.ExecutionStatus.COMPLETED);
+        }
+        assertThat(queueService.queueDepth()).isZero();
+    }
+    
+    @Test
+    void executeEndpointAcceptsWithLocation() throws Exception {
+        mockMvc.perform(post("/workflows/{id}/execute", workflow.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"invoice\":42}"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", org.hamcrest.Matchers.containsString("/workflows/executions/")))
+                .andExpect(jsonPath("$.executionId").isNumber());
+    }
+    
+    @Test
+    void fullQueueIsAnsweredWith429() throws Exception {
+        int maxQueueDepth = aiConfig.getQueue().getMaxQueueDepth();
+        aiConfig.getQueue().setMaxQueueDepth(0);
+        try {
+            assertThatThrownBy(() -> queueService.submit(workflow.getId(), Map.of()))
+                    .isInstanceOf(QueueFullException.class);
+            mockMvc.perform(post("/workflows/{id}/execute", workflow.getId())
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{}"))
+                    .andExpect(status().isTooManyRequests())
+                    .andExpect(header().exists("Retry-After"));
+        } finally {
+            aiConfig.getQueue().setMaxQueueDepth(maxQueueDepth);
+        }
+    }
+    
+    @Test
+    void runningExecutionsAreRecoveredAfterRestart() throws Exception {
+        WorkflowExecution interrupted = new WorkflowExecution();
+        interrupted.setWorkflow(workflow);
+        interrupted.setStatus(WorkflowExecution.ExecutionStatus.RUNNING);
+        interrupted.setStartedAt(LocalDateTime.now());
+        interrupted.setInputData("{\"resumed\":true}");
+        interrupted = executionRepository.save(interrupted);
+        
+        queueService.recoverInterruptedExecutions();
+        
+        assertThat(awaitStatus(interrupted.getId(), WorkflowExecution.ExecutionStatus.COMPLETED))
+                .isEqualTo(WorkflowExecution.ExecutionStatus.COMPLETED);
+    }
+    
+    private Workflow createWorkflow() {
+        Workflow workflow = new Workflow();
+        workflow.setName("queued workflow " + System.nanoTime());
+        workflow.setStatus(Workflow.WorkflowStatus.ACTIVE);
+        WorkflowStep step = new WorkflowStep();
+        step.setWorkflow(workflow);
+        step.setName("ai");
+        step.setStepOrder(1);
+        step.setType(WorkflowStep.StepType.AI_PROCESSING);
+        step.setAiPrompt("prompt");
+        workflow.setSteps(new ArrayList<>(List.of(step)));
+        return workflowRepository.save(workflow);
+    }
+    
+    private boolean allStarted(List<Long> executionIds) {
+        return executionRepository.findAllById(executionIds).stream()
+                .allMatch(execution -> execution.getStartedAt() != null);
+    }
+    
+    private WorkflowExecution.ExecutionStatus awaitStatus(Long executionId, WorkflowExecution.ExecutionStatus expected)
+            throws InterruptedException {
+        WorkflowExecution.ExecutionStatus status = null;
+        for (int i = 0; i < 100 && status != expected; i++) {
+            Thread.sleep(100);
+            status = executionRepository.findById(executionId).orElseThrow().getStatus();
+        }
+        return status;
+    }
+}
@@ -0,0 +1,304 @@
+package com.aisuite.service;
+
+import com.aisuite.model.ExecutionDailyStats;
+import com.aisuite.model.RetentionPolicy;
+import com.aisuite.model.StepExecution;
+import com.aisuite.model.Workflow;
+import com.aisuite.model.WorkflowStep;
+import com.aisuite.repository.ExecutionDailyStatsRepository;
+import com.aisuite.repository.StepExecutionRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ExecutionRetentionServiceTest {
+    
+    private static final Path ARCHIVE = createArchiveDirectory();
+    
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("ai.retention.archive-directory", ARCHIVE::toString);
+        // Small enough that the larger test payloads go to the blob store
+        registry.add("ai.payload.offload-threshold-bytes", () -> 200);
+    }
+    
+    @Autowired
+    private ExecutionRetentionService retentionService;
+    
+    @Autowired
+    private WorkflowService workflowService;
+    
+    @Autowired
+    private ExecutionDailyStatsRepository dailyStatsRepository;
+    
+    @Autowired
+    private StepExecutionRepository stepExecutionRepository;
+    
+    @Autowired
+    private PayloadStore payloadStore;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @MockBean
+    private AiService aiService;
+    
+    @Test
+    void rollsUpFinishedDaysOnce() {
+        Long workflowId = createWorkflow(null);
+        LocalDateTime yesterday = LocalDate.now().minusDays(1).atTime(10, 0);
+        for (int i = 1; i <= 20; i++) {
+            insert(workflowId, yesterday.plusMinutes(i), i % 4 == 0 ? "FAILED" : "COMPLETED", i * 100L, "{}");
+        }
+        // A day with a run still in flight is not closed yet, and neither is today
+        LocalDateTime twoDaysAgo = LocalDate.now().minusDays(2).atTime(23, 0);
+        insert(workflowId, twoDaysAgo, "RUNNING", null, "{}");
+        insert(workflowId, twoDaysAgo, "COMPLETED", 500L, "{}");
+        insert(workflowId, LocalDateTime.now(), "COMPLETED", 500L, "{}");
+        
+        retentionService.run();
+        retentionService.run();
+        
+        List<ExecutionDailyStats> stats = workflowService.getDailyStats(workflowId, 30);
+        assertThat(stats).hasSize(1);
+        ExecutionDailyStats day = stats.get(0);
+        assertThat(day.getDay()).isEqualTo(yesterday.toLocalDate());
+        assertThat(day.getExecutions()).isEqualTo(20);
+        assertThat(day.getCompleted()).isEqualTo(15);
+        assertThat(day.getFailed()).isEqualTo(5);
+        assertThat(day.getFailureRate()).isEqualTo(0.25);
+        assertThat(day.getAvgDurationMs()).isEqualTo(1050);
+        assertThat(day.getP50DurationMs()).isEqualTo(1050);
+        assertThat(day.getP95DurationMs()).isEqualTo(1905);
+        assertThat(day.getMaxDurationMs()).isEqualTo(2000);
+    }
+    
+    @Test
+    void keepsTheNewestRunsAndArchivesTheRestWithTheirSteps() throws Exception {
+        Long workflowId = createWorkflow(new RetentionPolicy(5, null, null));
+        List<Long> ids = new ArrayList<>();
+        LocalDateTime started = LocalDate.now().minusDays(3).atTime(8, 0);
+        for (int i = 0; i < 30; i++) {
+            ids.add(insert(workflowId, started.plusMinutes(i), "COMPLETED", 1_000L, "{\"order\":" + i + "}"));
+        }
+        
+        RetentionReport report = retentionService.run();
+        
+        assertThat(remainingIds(workflowId)).containsExactlyElementsOf(ids.subList(25, 30));
+        assertThat(report.getExecutionsArchived()).isGreaterThanOrEqualTo(25);
+        assertThat(stepExecutionRepository.findByExecutionIdOrderByStepOrderAscStepIdAsc(ids.get(0))).isEmpty();
+        assertThat(stepExecutionRepository.findByExecutionIdOrderByStepOrderAscStepIdAsc(ids.get(29))).hasSize(2);
+        
+        List<JsonNode> archived = archivedLines(workflowId);
+        assertThat(archived).hasSize(25);
+        JsonNode first = archived.get(0);
+        assertThat(first.get("id").asLong()).isEqualTo(ids.get(0));
+        assertThat(first.get("status").asText()).isEqualTo("COMPLETED");
+        assertThat(first.get("inputData").get("order").asInt()).isZero();
+        assertThat(first.get("steps")).hasSize(2);
+        assertThat(first.get("steps").get(0).get("stepName").asText()).isEqualTo("step-1");
+        
+        // The roll-up still covers the archived runs
+        assertThat(workflowService.getDailyStats(workflowId, 30).get(0).getExecutions()).isEqualTo(30);
+    }
+    
+    @Test
+    void keepingNoRunsButFailuresLeavesOnlyFailures() {
+        Long workflowId = createWorkflow(new RetentionPolicy(0, null, true));
+        LocalDateTime started = LocalDate.now().minusDays(2).atTime(9, 0);
+        for (int i = 0; i < 10; i++) {
+            insert(workflowId, started.plusMinutes(i), i < 3 ? "FAILED" : "COMPLETED", 1_000L, "{}");
+        }
+        Long today = insert(workflowId, LocalDateTime.now(), "COMPLETED", 1_000L, "{}");
+        
+        retentionService.run();
+        
+        List<String> statuses = jdbcTemplate.queryForList("select status from workflow_executions " +
+                "where workflow_id = ? and id <> ? order by id", String.class, workflowId, today);
+        assertThat(statuses).containsExactly("FAILED", "FAILED", "FAILED");
+        assertThat(remainingIds(workflowId)).contains(today);
+    }
+    
+    @Test
+    void keepsRunsYoungerThanTheAgeLimit() {
+        Long workflowId = createWorkflow(new RetentionPolicy(null, 7, false));
+        Long old = insert(workflowId, LocalDate.now().minusDays(10).atTime(12, 0), "COMPLETED", 1_000L, "{}");
+        Long recent = insert(workflowId, LocalDate.now().minusDays(3).atTime(12, 0), "FAILED", 1_000L, "{}");
+        
+        retentionService.run();
+        
+        assertThat(remainingIds(workflowId)).containsExactly(recent).doesNotContain(old);
+    }
+    
+    @Test
+    void deletesBlobsOnlyOnceNoExecutionRefersToThem() {
+        Long workflowId = createWorkflow(new RetentionPolicy(1, null, null));
+        String shared = "{\"text\":\"" + "shared ".repeat(100) + "\"}";
+        String unique = "{\"text\":\"" + "unique ".repeat(100) + "\"}";
+        LocalDateTime started = LocalDate.now().minusDays(4).atTime(12, 0);
+        insert(workflowId, started, "COMPLETED", 1_000L, unique);
+        insert(workflowId, started.plusMinutes(1), "COMPLETED", 1_000L, shared);
+        Long kept = insert(workflowId, started.plusMinutes(2), "COMPLETED", 1_000L, shared);
+        Path sharedBlob = blobPath(shared);
+        Path uniqueBlob = blobPath(unique);
+        
+        retentionService.run();
+        
+        assertThat(remainingIds(workflowId)).containsExactly(kept);
+        assertThat(Files.exists(sharedBlob)).isTrue();
+        assertThat(Files.exists(uniqueBlob)).isFalse();
+        assertThat(workflowService.getExecutionById(kept).orElseThrow().getInputData()).isEqualTo(shared);
+    }
+    
+    @Test
+    void archivesLargeHistoriesInBoundedBatches() throws Exception {
+        Long workflowId = createWorkflow(new RetentionPolicy(0, null, null));
+        int executions = 20_000;
+        String payload = "{\"customer\":\"ACME\",\"summary\":\"" + "order delayed, refund requested. ".repeat(20) + "\"}";
+        LocalDateTime started = LocalDate.now().minusDays(10).atStartOfDay();
+        List<Object[]> rows = new ArrayList<>();
+        byte[] stored = payloadStore.encode(payload);
+        String blob = payloadStore.blobKeyFor(payload);
+        for (int i = 0; i < executions; i++) {
+            LocalDateTime at = started.plusSeconds(i * 40L);
+            rows.add(new Object[]{workflowId, "COMPLETED", Timestamp.valueOf(at), Timestamp.valueOf(at), 1_500L,
+                    stored, stored, blob, blob});
+        }
+        jdbcTemplate.batchUpdate("insert into workflow_executions (workflow_id, status, started_at, completed_at, " +
+                "execution_time_ms, input_data, output_data, input_blob, output_blob) " +
+                "values (?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+        
+        RetentionReport report = retentionService.run();
+        
+        assertThat(remainingIds(workflowId)).isEmpty();
+        assertThat(report.getExecutionsArchived()).isGreaterThanOrEqualTo(executions);
+        assertThat(archivedLines(workflowId)).hasSize(executions);
+        assertThat(dailyStatsRepository.findByWorkflowIdAndDayGreaterThanEqualOrderByDayAsc(
+                workflowId, started.toLocalDate()))
+                .extracting(ExecutionDailyStats::getExecutions)
+                .containsOnly(2_160L, 560L)
+                .hasSize(10);
+    }
+    
+    @Test
+    void skipsTheRunWhileAnotherNodeHoldsTheLease() {
+        Long workflowId = createWorkflow(new RetentionPolicy(0, null, null));
+        Long id = insert(workflowId, LocalDateTime.now().minusDays(3), "COMPLETED", 100L, "{}");
+        jdbcTemplate.update("merge into job_leases (name, holder, expires_at) key (name) values ('retention', 'other-node', ?)",
+                Timestamp.valueOf(LocalDateTime.now().plusMinutes(5)));
+        
+        assertThat(retentionService.run().isSkipped()).isTrue();
+        assertThat(remainingIds(workflowId)).containsExactly(id);
+        
+        // Once the other node's lease has expired, this node takes over
+        jdbcTemplate.update("update job_leases set expires_at = ? where name = 'retention'",
+                Timestamp.valueOf(LocalDateTime.now().minusSeconds(1)));
+        assertThat(retentionService.run().isSkipped()).isFalse();
+        assertThat(remainingIds(workflowId)).isEmpty();
+    }
+    
+    private Long createWorkflow(RetentionPolicy retention) {
+        WorkflowStep step = new WorkflowStep();
+        step.setName("step-1");
+        step.setStepOrder(1);
+        step.setType(WorkflowStep.StepType.AI_PROCESSING);
+        Workflow workflow = new Workflow();
+        workflow.setName("retention");
+        workflow.setRetention(retention);
+        workflow.setSteps(new ArrayList<>(List.of(step)));
+        return workflowService.createWorkflow(workflow).getId();
+    }
+    
+    /**
+     * Inserts a finished execution with two step records, the way the engine leaves it.
+     */
+    private Long insert(Long workflowId, LocalDateTime startedAt, String status, Long durationMs, String payload) {
+        byte[] stored = payloadStore.encode(payload);
+        String blob = payloadStore.blobKeyFor(payload);
+        jdbcTemplate.update("insert into workflow_executions (workflow_id, status, queued_at, started_at, completed_at, " +
+                        "execution_time_ms, input_data, output_data, input_blob, output_blob) " +
+                        "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                workflowId, status, Timestamp.valueOf(startedAt), Timestamp.valueOf(startedAt),
+                durationMs != null ? Timestamp.valueOf(startedAt.plusNanos(durationMs * 1_000_000)) : null,
+                durationMs, stored, stored, blob, blob);
+        Long id = jdbcTemplate.queryForObject("select max(id) from workflow_executions where workflow_id = ?",
+                Long.class, workflowId);
+        List<StepExecution> steps = new ArrayList<>();
+        for (int order = 1; order <= 2; order++) {
+            StepExecution step = new StepExecution();
+            step.setExecutionId(id);
+            step.setStepName("step-" + order);
+            step.setStepOrder(order);
+            step.setStatus(WorkflowStep.StepStatus.COMPLETED);
+            step.setStartedAt(startedAt);
+            step.setResult("result " + order);
+            steps.add(step);
+        }
+        stepExecutionRepository.insertAll(steps);
+        return id;
+    }
+    
+    private List<Long> remainingIds(Long workflowId) {
+        return jdbcTemplate.queryForList("select id from workflow_executions where workflow_id = ? order by id",
+                Long.class, workflowId);
+    }
+    
+    private Path blobPath(String payload) {
+        return payloadStore.blobPath(payloadStore.blobKey(payloadStore.encode(payload)));
+    }
+    
+    private List<JsonNode> archivedLines(Long workflowId) throws IOException {
+        List<JsonNode> lines = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(ARCHIVE)) {
+            for (Path file : files.filter(file -> file.getFileName().toString()
+                    .startsWith("workflow-" + workflowId + "-")).sorted().toList()) {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                        new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        lines.add(objectMapper.readTree(line));
+                    }
+                }
+            }
+        }
+        lines.sort((a, b) -> Long.compare(a.get("id").asLong(), b.get("id").asLong()));
+        return lines;
+    }
+    
+    private static Path createArchiveDirectory() {
+        try {
+            return Files.createTempDirectory("retention-archive");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.aisuite.service;
+
+import com.aisuite.model.Workflow;
+import com.aisuite.model.WorkflowExecution;
+import com.aisuite.model.WorkflowStep;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.util.context.Context;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ExecutionStatsServiceTest {
+    
+    @Autowired
+    private ExecutionStatsService statsService;
+    
+    @Autowired
+    private WorkflowEngine workflowEngine;
+    
+    @Autowired
+    private WorkflowService workflowService;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @MockBean
+    private AiService aiService;
+    
+    @Test
+    void countsExecutionsAndUsageAsTheyFinish() throws Exception {
+        when(aiService.processWithAI(anyString(), anyMap(), any(TokenUsage.class))).thenAnswer(invocation -> {
+            if (invocation.<Map<String, Object>>getArgument(1).containsKey("fail")) {
+                throw new RuntimeException("provider unavailable");
+            }
+            TokenUsage usage = invocation.getArgument(2);
+            TokenUsage.record(usage.into(Context.empty()), objectMapper.readTree(
+                    "{\"prompt_tokens\":20,\"completion_tokens\":10,\"total_tokens\":30}"));
+            return "done";
+        });
+        Long workflowId = createWorkflow("counted");
+        DashboardStats before = statsService.dashboard();
+        
+        for (int i = 0; i < 3; i++) {
+            assertThat(workflowEngine.executeWorkflow(workflowId, Map.of()).getStatus())
+                    .isEqualTo(WorkflowExecution.ExecutionStatus.COMPLETED);
+        }
+        assertThat(workflowEngine.executeWorkflow(workflowId, Map.of("fail", true)).getStatus())
+                .isEqualTo(WorkflowExecution.ExecutionStatus.FAILED);
+        
+        DashboardStats after = statsService.dashboard();
+        DashboardStats.WorkflowSummary summary = summaryOf(after, workflowId);
+        assertThat(summary.getExecutions()).isEqualTo(4);
+        assertThat(summary.getCompleted()).isEqualTo(3);
+        assertThat(summary.getFailed()).isEqualTo(1);
+        assertThat(summary.getSuccessRate()).isEqualTo(0.75);
+        assertThat(summary.getAiCalls()).isEqualTo(3);
+        assertThat(summary.getTotalTokens()).isEqualTo(90);
+        assertThat(summary.getMeanExecutionTimeMs()).isNotNull();
+        assertThat(summary.getP95ExecutionTimeMs()).isNotNull();
+        assertThat(summary.getLastExecutedAt()).isNotNull();
+        
+        assertThat(after.getTotalExecutions() - before.getTotalExecutions()).isEqualTo(4);
+        assertThat(after.getCompleted() - before.getCompleted()).isEqualTo(3);
+        assertThat(after.getFailed() - before.getFailed()).isEqualTo(1);
+        assertThat(after.getPromptTokens() - before.getPromptTokens()).isEqualTo(60);
+        assertThat(after.getCompletionTokens() - before.getCompletionTokens()).isEqualTo(30);
+        assertThat(after.getTotalWorkflows()).isEqualTo(before.getTotalWorkflows());
+    }
+    
+    @Test
+    void unfinishedExecutionsAreNotCounted() {
+        Long workflowId = createWorkflow("unfinished");
+        WorkflowExecution execution = new WorkflowExecution();
+        execution.setId(-1L);
+        execution.setWorkflow(workflowService.getWorkflowById(workflowId).orElseThrow());
+        execution.setStatus(WorkflowExecution.ExecutionStatus.RUNNING);
+        
+        statsService.record(execution, List.of());
+        
+        assertThat(summaryOf(statsService.dashboard(), workflowId).getExecutions()).isZero();
+    }
+    
+    @Test
+    void dashboardDoesNotScanTheExecutionHistory() {
+        Long workflowId = createWorkflow("history");
+        int executions = 10_000;
+        List<Object[]> rows = new ArrayList<>();
+        LocalDateTime started = LocalDateTime.now().minusDays(1);
+        for (int i = 0; i < executions; i++) {
+            Timestamp at = Timestamp.valueOf(started.plusNanos(i * 1_000_000L));
+            rows.add(new Object[]{workflowId, i % 10 == 0 ? "FAILED" : "COMPLETED", at, at, 800L});
+        }
+        jdbcTemplate.batchUpdate("insert into workflow_executions (workflow_id, status, started_at, completed_at, " +
+                "execution_time_ms) values (?, ?, ?, ?, ?)", rows);
+        
+        jdbcTemplate.execute("set query_statistics true");
+        DashboardStats stats;
+        List<String> executionQueries;
+        try {
+            stats = statsService.dashboard();
+            executionQueries = jdbcTemplate.queryForList("select sql_statement from information_schema.query_statistics " +
+                    "where lower(sql_statement) like '%from workflow_executions%'", String.class);
+        } finally {
+            jdbcTemplate.execute("set query_statistics false");
+        }
+        
+        // The rows were not recorded as they finished, so nothing read them
+        assertThat(summaryOf(stats, workflowId).getExecutions()).isZero();
+        // Only the in-flight count touches the table, and it reads through the status index
+        assertThat(executionQueries).singleElement().satisfies(sql ->
+                assertThat(jdbcTemplate.queryForObject("explain analyze " + sql, String.class))
+                        .containsIgnoringCase("idx_executions_status")
+                        .contains("scanCount: 1 */"));
+    }
+    
+    @Test
+    void histogramPercentilesStayWithinFivePercent() {
+        Random random = new Random(7);
+        long[] durations = new long[50_000];
+        SortedMap<Integer, Long> histogram = new TreeMap<>();
+        for (int i = 0; i < durations.length; i++) {
+            // Log-normal around 2 s, like AI-bound runs with a long tail
+            durations[i] = Math.max(1, Math.round(Math.exp(Math.log(2_000) + random.nextGaussian() * 0.8)));
+            histogram.merge(DurationHistogram.bucketOf(durations[i]), 1L, Long::sum);
+        }
+        Arrays.sort(durations);
+        
+        for (double quantile : new double[]{0.5, 0.9, 0.95, 0.99}) {
+            long exact = durations[(int) Math.ceil(quantile * durations.length) - 1];
+            assertThat((double) DurationHistogram.percentile(histogram, quantile))
+                    .isCloseTo(exact, within(exact * 0.05));
+        }
+        assertThat(histogram).hasSizeLessThan(100);
+        assertThat(DurationHistogram.percentile(new TreeMap<>(), 0.5)).isNull();
+    }
+    
+    private Long createWorkflow(String name) {
+        WorkflowStep step = new WorkflowStep();
+        step.setName("summarise");
+        step.setStepOrder(1);
+        step.setType(WorkflowStep.StepType.AI_PROCESSING);
+        step.setAiPrompt("Summarise the ticket");
+        Workflow workflow = new Workflow();
+        workflow.setName(name);
+        workflow.setStatus(Workflow.WorkflowStatus.ACTIVE);
+        workflow.setSteps(new ArrayList<>(List.of(step)));
+        return workflowService.createWorkflow(workflow).getId();
+    }
+    
+    private static DashboardStats.WorkflowSummary summaryOf(DashboardStats stats, Long workflowId) {
+        return stats.getWorkflows().stream()
+                .filter(workflow -> workflow.getWorkflowId().equals(workflowId))
+                .findFirst()
+                .orElseThrow();
+    }
+}
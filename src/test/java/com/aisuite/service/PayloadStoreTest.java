@@ -0,0 +1,218 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PayloadStoreTest {
+    
+    private static final String[] WORDS = ("the customer order invoice shipment delayed refund request account "
+            + "payment received confirmed summary analysis recommend priority urgent review quarterly revenue "
+            + "growth region product support ticket escalation resolved pending contract renewal discount "
+            + "sentiment positive negative neutral feedback survey response team manager schedule meeting "
+            + "follow-up email draft tone professional friendly concise detailed report insight trend risk").split(" ");
+    
+    @TempDir
+    Path directory;
+    
+    private SimpleMeterRegistry meterRegistry;
+    private PayloadStore store;
+    
+    @BeforeEach
+    void setUp() {
+        AiConfig aiConfig = new AiConfig();
+        aiConfig.getPayload().setDirectory(directory.toString());
+        meterRegistry = new SimpleMeterRegistry();
+        store = new PayloadStore(aiConfig, meterRegistry);
+    }
+    
+    @Test
+    void smallPayloadsStayInTheRowUncompressed() {
+        String payload = "{\"customer\":\"ACME\"}";
+        byte[] stored = store.encode(payload);
+        
+        assertThat(stored[0]).isEqualTo(PayloadStore.RAW);
+        assertThat(stored).hasSize(payload.length() + 1);
+        assertThat(store.decode(stored)).isEqualTo(payload);
+        assertThat(store.encode(null)).isNull();
+        assertThat(store.decode(null)).isNull();
+    }
+    
+    @Test
+    void mediumPayloadsAreCompressedInTheRow() throws Exception {
+        String payload = executionContext(new Random(1), 6, 800);
+        byte[] stored = store.encode(payload);
+        
+        assertThat(stored[0]).isEqualTo(PayloadStore.DEFLATE);
+        assertThat(stored.length).isLessThan(payload.length() / 2);
+        assertThat(store.decode(stored)).isEqualTo(payload);
+        assertThat(store.blobKey(stored)).isNull();
+    }
+    
+    @Test
+    void largePayloadsMoveToOneSharedBlob() throws Exception {
+        String payload = executionContext(new Random(2), 40, 2_000);
+        
+        byte[] first = store.encode(payload);
+        byte[] second = store.encode(payload);
+        
+        assertThat(first[0]).isEqualTo(PayloadStore.BLOB);
+        assertThat(first).hasSize(65).isEqualTo(second);
+        assertThat(store.decode(second)).isEqualTo(payload);
+        assertThat(blobFiles()).isEqualTo(1);
+        assertThat(meterRegistry.counter("execution.payload.blob.writes").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("execution.payload.blob.reuses").count()).isEqualTo(1);
+        assertThat(Files.size(store.blobPath(store.blobKey(first)))).isLessThan(payload.length() / 2);
+    }
+    
+    @Test
+    void blobsOfARolledBackWriteAreDeleted() throws Exception {
+        String rolledBack = executionContext(new Random(5), 40, 2_000);
+        String committed = executionContext(new Random(6), 40, 2_000);
+        
+        Path orphan = store.blobPath(store.blobKey(inTransaction(rolledBack, TransactionSynchronization.STATUS_ROLLED_BACK)));
+        Path kept = store.blobPath(store.blobKey(inTransaction(committed, TransactionSynchronization.STATUS_COMMITTED)));
+        
+        assertThat(orphan).doesNotExist();
+        assertThat(kept).exists();
+    }
+    
+    @Test
+    void anExistingBlobIsReusedRatherThanReplaced() throws Exception {
+        String payload = executionContext(new Random(7), 40, 2_000);
+        Path blob = store.blobPath(store.blobKey(store.encode(payload)));
+        Object fileKey = Files.readAttributes(blob, BasicFileAttributes.class).fileKey();
+        
+        // A fresh copy, as another execution with the same payload would bring
+        store.encode(new String(payload));
+        
+        assertThat(Files.readAttributes(blob, BasicFileAttributes.class).fileKey()).isEqualTo(fileKey);
+        assertThat(meterRegistry.counter("execution.payload.blob.reuses").count()).isEqualTo(1);
+    }
+    
+    @Test
+    void aBlobReusedByAnotherWriterSurvivesTheRollbackOfItsCreator() throws Exception {
+        String payload = executionContext(new Random(8), 40, 2_000);
+        
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            Path blob = store.blobPath(store.blobKey(store.encode(payload)));
+            // Another transaction stores the same payload and commits first
+            CompletableFuture.runAsync(() -> store.encode(new String(payload))).get();
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+            
+            assertThat(blob).exists();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+    
+    @Test
+    void blobKeysMatchWhatEncodingStores() throws Exception {
+        String large = executionContext(new Random(9), 40, 2_000);
+        
+        assertThat(store.blobKeyFor(large)).isEqualTo(store.blobKey(store.encode(large)));
+        assertThat(store.blobKeyFor(new String(large))).isEqualTo(store.blobKeyFor(large));
+        assertThat(store.blobKeyFor(executionContext(new Random(9), 6, 800))).isNull();
+    }
+    
+    @Test
+    void missingBlobsFailLoudly() throws Exception {
+        byte[] stored = store.encode(executionContext(new Random(3), 40, 2_000));
+        Files.delete(store.blobPath(store.blobKey(stored)));
+        
+        assertThatThrownBy(() -> store.decode(stored))
+                .hasMessageContaining(store.blobKey(stored));
+    }
+    
+    @Test
+    void typicalExecutionContextsShrinkSeveralTimes() throws Exception {
+        Random random = new Random(4);
+        int executions = 2_000;
+        String[] payloads = new String[executions];
+        long rawBytes = 0;
+        for (int i = 0; i < executions; i++) {
+            // Most runs have a handful of AI steps, a few accumulate large contexts
+            int steps = i % 50 == 0 ? 60 : 2 + random.nextInt(8);
+            payloads[i] = executionContext(random, steps, 100 + random.nextInt(600));
+            rawBytes += payloads[i].getBytes(StandardCharsets.UTF_8).length;
+        }
+        
+        byte[][] stored = new byte[executions][];
+        for (int i = 0; i < executions; i++) {
+            stored[i] = store.encode(payloads[i]);
+        }
+        for (int i = 0; i < executions; i++) {
+            assertThat(store.decode(stored[i])).hasSameSizeAs(payloads[i]);
+        }
+        
+        long rowBytes = 0;
+        for (byte[] value : stored) {
+            rowBytes += value.length;
+        }
+        long blobBytes = directorySize();
+        
+        assertThat(rowBytes).isLessThan(rawBytes / 3);
+        assertThat(rowBytes + blobBytes).isLessThan(rawBytes / 2);
+    }
+    
+    private byte[] inTransaction(String payload, int outcome) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            byte[] stored = store.encode(payload);
+            TransactionSynchronizationManager.getSynchronizations().forEach(sync -> sync.afterCompletion(outcome));
+            return stored;
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+    
+    /**
+     * An output context like the engine writes: the input plus one prose answer per AI step.
+     */
+    private static String executionContext(Random random, int steps, int wordsPerStep) throws Exception {
+        Map<String, Object> context = new LinkedHashMap<>();
+        context.put("customer", "customer-" + random.nextInt(10_000));
+        context.put("ticket", random.nextInt(1_000_000));
+        for (int step = 1; step <= steps; step++) {
+            StringBuilder text = new StringBuilder();
+            for (int word = 0; word < wordsPerStep; word++) {
+                text.append(WORDS[random.nextInt(WORDS.length)]);
+                text.append(word % 12 == 11 ? ". " : " ");
+            }
+            context.put("step_" + step, text.toString());
+        }
+        return new ObjectMapper().writeValueAsString(context);
+    }
+    
+    private long blobFiles() throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+    
+    private long directorySize() throws Exception {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+}
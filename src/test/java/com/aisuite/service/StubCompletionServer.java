@@ -0,0 +1,219 @@
+package com.aisuite.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.server.HttpServer;
+
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal OpenAI-compatible {@code /chat/completions} server for tests: answers every request
+ * with a fixed completion after a configurable delay, or streams it in chunks for
+ * {@code stream: true} requests, and tracks request concurrency and opened connections.
+ * Responses are gzipped for clients that accept it.
+ */
+class StubCompletionServer implements AutoCloseable {
+    
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final AtomicInteger rejected = new AtomicInteger();
+    // Client sockets seen; HTTP/2 streams share their connection's address
+    private final Set<SocketAddress> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger gzipAccepted = new AtomicInteger();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private final DisposableServer server;
+    
+    private volatile Duration latency;
+    private volatile String content = "ok";
+    private volatile Duration chunkInterval = Duration.ofMillis(20);
+    private volatile int failureStatus = 429;
+    private volatile String retryAfter;
+    private volatile int capacity = Integer.MAX_VALUE;
+    private volatile int slowEvery;
+    private volatile int slowFrom;
+    private volatile Duration slowLatency;
+    
+    StubCompletionServer(Duration latency) {
+        this(latency, HttpProtocol.HTTP11);
+    }
+    
+    StubCompletionServer(Duration latency, HttpProtocol protocol) {
+        this.latency = latency;
+        this.server = HttpServer.create()
+                .port(0)
+                .protocol(protocol)
+                .compress(true)
+                .doOnChannelInit((observer, channel, remoteAddress) -> connections.add(channel.remoteAddress()))
+                .route(routes -> routes.post("/chat/completions", (request, response) ->
+                        request.receive().aggregate().asString()
+                                .defaultIfEmpty("")
+                                .flatMap(body -> {
+                                    Duration delay = latency(requests.incrementAndGet());
+                                    String acceptEncoding = request.requestHeaders().get("Accept-Encoding");
+                                    if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                                        gzipAccepted.incrementAndGet();
+                                    }
+                                    peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                                    Integer failure = failure();
+                                    if (failure != null) {
+                                        rejected.incrementAndGet();
+                                        inFlight.decrementAndGet();
+                                        if (this.retryAfter != null) {
+                                            response.header("Retry-After", this.retryAfter);
+                                        }
+                                        return response.status(failure)
+                                                .header("Content-Type", "application/json")
+                                                .sendString(Mono.just("{\"error\":{\"message\":\"stub failure\"}}"))
+                                                .then();
+                                    }
+                                    boolean stream = body.contains("\"stream\":true");
+                                    // Leaves the in-flight count before the last element is written,
+                                    // so a caller never sees its response while still counted
+                                    AtomicBoolean counted = new AtomicBoolean(true);
+                                    Runnable finished = () -> {
+                                        if (counted.getAndSet(false)) {
+                                            inFlight.decrementAndGet();
+                                        }
+                                    };
+                                    Flux<String> reply = stream
+                                            ? chunks(this.content, delay, this.chunkInterval, finished)
+                                            : Mono.delay(delay).map(tick -> {
+                                                finished.run();
+                                                return completion(this.content);
+                                            }).flux();
+                                    return response
+                                            .header("Content-Type", stream ? "text/event-stream" : "application/json")
+                                            .sendString(reply.doFinally(signal -> finished.run()))
+                                            .then();
+                                })))
+                .bindNow();
+    }
+    
+    /**
+     * Status to answer with instead of a completion, if this request should fail: either one of
+     * the failures queued by {@link #failNext} or the request is above the concurrency capacity.
+     */
+    private Integer failure() {
+        if (failuresLeft.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+            return failureStatus;
+        }
+        return inFlight.get() > capacity ? 429 : null;
+    }
+    
+    /**
+     * Latency of the {@code request}-th request: every {@code slowEvery}-th one since
+     * {@link #setSlowEvery} is a straggler.
+     */
+    private Duration latency(int request) {
+        int every = slowEvery;
+        return every > 0 && (request - slowFrom) % every == 0 ? slowLatency : latency;
+    }
+    
+    /**
+     * Streams the content word by word as {@code stream: true} chunks, the first one after
+     * {@code latency} and the rest {@code interval} apart.
+     */
+    private static Flux<String> chunks(String content, Duration latency, Duration interval, Runnable finished) {
+        Flux<String> words = Flux.fromArray(content.split("(?<= )"));
+        return Mono.delay(latency)
+                .thenMany(words.take(1).concatWith(words.skip(1).delayElements(interval)))
+                .map(word -> "data: {\"choices\":[{\"delta\":{\"content\":" + quote(word) + "}}]}\n\n")
+                .concatWith(Mono.fromSupplier(() -> {
+                    finished.run();
+                    return "data: [DONE]\n\n";
+                }));
+    }
+    
+    static String completion(String content) {
+        return "{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":" + quote(content) + "}}]," +
+                "\"usage\":{\"prompt_tokens\":12,\"completion_tokens\":3,\"total_tokens\":15}}";
+    }
+    
+    private static String quote(String content) {
+        try {
+            return new ObjectMapper().writeValueAsString(content);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+    
+    String baseUrl() {
+        return "http://localhost:" + server.port();
+    }
+    
+    void setLatency(Duration latency) {
+        this.latency = latency;
+    }
+    
+    /**
+     * Answers every {@code every}-th request from now on after {@code slowLatency} instead, like
+     * the tail of a provider's latency distribution.
+     */
+    void setSlowEvery(int every, Duration slowLatency) {
+        this.slowLatency = slowLatency;
+        this.slowFrom = requests.get();
+        this.slowEvery = every;
+    }
+    
+    void setChunkInterval(Duration chunkInterval) {
+        this.chunkInterval = chunkInterval;
+    }
+    
+    /**
+     * Fails the next {@code count} requests with {@code status}, sending {@code retryAfter} as
+     * the {@code Retry-After} header when not null.
+     */
+    void failNext(int count, int status, String retryAfter) {
+        this.failureStatus = status;
+        this.retryAfter = retryAfter;
+        this.failuresLeft.set(count);
+    }
+    
+    /**
+     * Answers 429 to requests beyond {@code capacity} concurrent ones, like a provider quota.
+     */
+    void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+    
+    int rejected() {
+        return rejected.get();
+    }
+    
+    void setContent(String content) {
+        this.content = content;
+    }
+    
+    int requests() {
+        return requests.get();
+    }
+    
+    int peakInFlight() {
+        return peakInFlight.get();
+    }
+    
+    int connections() {
+        return connections.size();
+    }
+    
+    /**
+     * Requests that advertised gzip in {@code Accept-Encoding}.
+     */
+    int gzipAccepted() {
+        return gzipAccepted.get();
+    }
+    
+    @Override
+    public void close() {
+        server.disposeNow();
+    }
+}
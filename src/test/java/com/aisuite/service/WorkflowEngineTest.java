@@ -0,0 +1,270 @@
+package com.aisuite.service;
+
+import com.aisuite.config.AiConfig;
+import com.aisuite.model.StepExecution;
+import com.aisuite.model.Workflow;
+import com.aisuite.model.WorkflowExecution;
+import com.aisuite.model.WorkflowStep;
+import com.aisuite.repository.StepExecutionRepository;
+import com.aisuite.repository.WorkflowExecutionRepository;
+import com.aisuite.repository.WorkflowRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WorkflowEngineTest {
+    
+    private static final long AI_LATENCY_MS = 300;
+    
+    private final WorkflowRepository workflowRepository = mock(WorkflowRepository.class);
+    private final WorkflowExecutionRepository executionRepository = mock(WorkflowExecutionRepository.class);
+    private final StepExecutionRepository stepExecutionRepository = mock(StepExecutionRepository.class);
+    private final List<StepExecution> stepRuns = Collections.synchronizedList(new ArrayList<>());
+    private final AiService aiService = mock(AiService.class);
+    private final ExecutionEventPublisher executionEvents = new ExecutionEventPublisher();
+    private ExecutorService stepExecutor;
+    private WorkflowEngine engine;
+    
+    @BeforeEach
+    void setUp() {
+        stepExecutor = Executors.newFixedThreadPool(8);
+        engine = new WorkflowEngine(workflowRepository, new WorkflowPlanCache(workflowRepository, mock(EntityManager.class)),
+                executionRepository, new StepExecutionWriter(stepExecutionRepository, new SimpleMeterRegistry()),
+                mock(ExecutionStatsService.class), aiService,
+                null, executionEvents, new ConditionCompiler(new ObjectMapper()), null, new ObjectMapper(), stepExecutor,
+                ObservationRegistry.NOOP, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                new ClusterNode(new AiConfig()), new AiConfig());
+        when(executionRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(executionRepository.releaseLease(any(), any())).thenReturn(1);
+        doAnswer(invocation -> stepRuns.addAll(invocation.<Collection<StepExecution>>getArgument(0)))
+                .when(stepExecutionRepository).insertAll(any());
+        when(aiService.processWithAI(anyString(), anyMap(), any())).thenAnswer(invocation -> {
+            Thread.sleep(AI_LATENCY_MS);
+            return "done: " + invocation.getArgument(0);
+        });
+        when(aiService.processWithAI(eq("fail"), anyMap(), any())).thenThrow(new RuntimeException("provider down"));
+    }
+    
+    @AfterEach
+    void tearDown() {
+        stepExecutor.shutdownNow();
+    }
+    
+    @Test
+    void stepsSharingAStepOrderRunConcurrently() {
+        Workflow workflow = workflow(
+                aiStep(1L, 1, "a", null),
+                aiStep(2L, 1, "b", null),
+                aiStep(3L, 1, "c", null),
+                aiStep(4L, 1, "d", null),
+                aiStep(5L, 1, "e", null));
+        
+        long start = System.currentTimeMillis();
+        WorkflowExecution execution = engine.executeWorkflow(workflow.getId(), Map.of("input", "x"));
+        long elapsed = System.currentTimeMillis() - start;
+        
+        assertThat(execution.getStatus()).isEqualTo(WorkflowExecution.ExecutionStatus.COMPLETED);
+        assertThat(execution.getOutputData()).contains("step_1", "step_2", "step_3", "step_4", "step_5");
+        assertThat(elapsed).isLessThan(AI_LATENCY_MS * 3);
+    }
+    
+    @Test
+    void failureSkipsDependentsButNotIndependentBranches() {
+        WorkflowStep failing = aiStep(1L, 1, "fail", null);
+        WorkflowStep independent = aiStep(2L, 1, "ok", null);
+        WorkflowStep dependent = aiStep(3L, 2, "after failure", "1");
+        WorkflowStep sibling = aiStep(4L, 3, "after independent", "1");
+        Workflow workflow = workflow(failing, independent, dependent, sibling);
+        
+        WorkflowExecution execution = engine.executeWorkflow(workflow.getId(), Map.of());
+        
+        assertThat(execution.getStatus()).isEqualTo(WorkflowExecution.ExecutionStatus.FAILED);
+        assertThat(execution.getErrorMessage()).isEqualTo("Step failed: fail - provider down");
+        assertThat(statusOf(failing)).isEqualTo(WorkflowStep.StepStatus.FAILED);
+        assertThat(statusOf(independent)).isEqualTo(WorkflowStep.StepStatus.COMPLETED);
+        assertThat(statusOf(dependent)).isEqualTo(WorkflowStep.StepStatus.SKIPPED);
+        assertThat(statusOf(sibling)).isEqualTo(WorkflowStep.StepStatus.SKIPPED);
+    }
+    
+    @Test
+    void conditionalStepHaltsOnlyItsOwnBranch() {
+        WorkflowStep check = new WorkflowStep();
+        check.setId(1L);
+        check.setName("large amounts only");
+        check.setStepOrder(1);
+        check.setType(WorkflowStep.StepType.CONDITIONAL);
+        check.setConfiguration("{\"condition\": \"amount > 1000 && lower(currency) == 'eur'\"}");
+        WorkflowStep guarded = aiStep(2L, 2, "guarded", "1");
+        WorkflowStep unrelated = aiStep(3L, 1, "unrelated", null);
+        Workflow workflow = workflow(check, guarded, unrelated);
+        
+        WorkflowExecution execution = engine.executeWorkflow(workflow.getId(), Map.of("amount", 500, "currency", "EUR"));
+        
+        assertThat(execution.getStatus()).isEqualTo(WorkflowExecution.ExecutionStatus.COMPLETED);
+        assertThat(statusOf(check)).isEqualTo(WorkflowStep.StepStatus.SKIPPED);
+        assertThat(statusOf(guarded)).isEqualTo(WorkflowStep.StepStatus.SKIPPED);
+        assertThat(statusOf(unrelated)).isEqualTo(WorkflowStep.StepStatus.COMPLETED);
+    }
+    
+    @Test
+    void aiStepOutputIsStreamedToExecutionListeners() {
+        Workflow workflow = workflow(aiStep(1L, 1, "greet", null));
+        WorkflowExecution queued = new WorkflowExecution();
+        queued.setId(7L);
+        queued.setWorkflow(workflow);
+        queued.setStatus(WorkflowExecution.ExecutionStatus.QUEUED);
+        queued.setInputData("{}");
+        when(executionRepository.findById(7L)).thenReturn(Optional.of(queued));
+        when(aiService.streamWithAI(eq("greet"), anyMap())).thenReturn(Flux.just("Hel", "lo"));
+        
+        CompletableFuture<List<ExecutionEventPublisher.Event>> events = executionEvents.subscribe(7L)
+                .collectList()
+                .toFuture();
+        WorkflowExecution execution = engine.runExecution(7L);
+        
+        assertThat(execution.getStatus()).isEqualTo(WorkflowExecution.ExecutionStatus.COMPLETED);
+        assertThat(events.join())
+                .extracting(event -> event.type() + ":" + event.data().getOrDefault("delta", event.data().get("status")))
+                .containsExactly("step:IN_PROGRESS", "output:Hel", "output:lo", "step:COMPLETED", "execution:COMPLETED");
+        assertThat(executionEvents.openStreams()).isZero();
+    }
+    
+    @Test
+    void aRunThatLostItsLeaseDiscardsItsResult() {
+        Workflow workflow = workflow(aiStep(1L, 1, "slow", null));
+        WorkflowExecution claimed = new WorkflowExecution();
+        claimed.setId(8L);
+        claimed.setWorkflow(workflow);
+        claimed.setStatus(WorkflowExecution.ExecutionStatus.QUEUED);
+        claimed.setInputData("{}");
+        // Meanwhile the lease expired and another node took the execution over
+        WorkflowExecution takenOver = new WorkflowExecution();
+        takenOver.setId(8L);
+        takenOver.setStatus(WorkflowExecution.ExecutionStatus.RUNNING);
+        takenOver.setNodeId("other-node");
+        when(executionRepository.findById(8L)).thenReturn(Optional.of(claimed)).thenReturn(Optional.of(takenOver));
+        when(executionRepository.releaseLease(eq(8L), any())).thenReturn(0);
+        
+        WorkflowExecution execution = engine.runExecution(8L);
+        
+        assertThat(execution).isSameAs(takenOver);
+        // Only the save marking the run as started; the result was not written over the new owner's row
+        verify(executionRepository, times(1)).save(any());
+    }
+    
+    @Test
+    void concurrentRunsOfOneWorkflowKeepTheirOwnStepState() {
+        WorkflowStep check = new WorkflowStep();
+        check.setId(1L);
+        check.setName("large amounts only");
+        check.setStepOrder(1);
+        check.setType(WorkflowStep.StepType.CONDITIONAL);
+        check.setConfiguration("{\"condition\": \"amount > 1000\"}");
+        WorkflowStep review = aiStep(2L, 2, "review", "1");
+        workflow(check, review);
+        
+        List<CompletableFuture<WorkflowExecution>> runs = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            Map<String, Object> input = Map.of("amount", i % 2 == 0 ? 5000 : 10);
+            runs.add(CompletableFuture.supplyAsync(() -> engine.executeWorkflow(1L, input)));
+        }
+        runs.forEach(CompletableFuture::join);
+        
+        assertThat(stepRuns).hasSize(12);
+        assertThat(stepRuns).filteredOn(run -> run.getStepId() == 2L)
+                .extracting(StepExecution::getStatus)
+                .containsExactlyInAnyOrder(
+                        WorkflowStep.StepStatus.COMPLETED, WorkflowStep.StepStatus.COMPLETED, WorkflowStep.StepStatus.COMPLETED,
+                        WorkflowStep.StepStatus.SKIPPED, WorkflowStep.StepStatus.SKIPPED, WorkflowStep.StepStatus.SKIPPED);
+        assertThat(stepRuns).filteredOn(run -> run.getStatus() == WorkflowStep.StepStatus.COMPLETED && run.getStepId() == 2L)
+                .allSatisfy(run -> assertThat(run.getDurationMs()).isGreaterThanOrEqualTo(AI_LATENCY_MS));
+    }
+    
+    @Test
+    void stepRecordsOfAFailedBatchAreWrittenOneAtATimeAndRetried() {
+        StepExecutionRepository flaky = mock(StepExecutionRepository.class);
+        List<Long> written = new ArrayList<>();
+        doAnswer(invocation -> {
+            Collection<StepExecution> batch = invocation.getArgument(0);
+            if (batch.size() > 1 || batch.iterator().next().getStepId() == 2L) {
+                throw new IllegalStateException("constraint violated");
+            }
+            batch.forEach(record -> written.add(record.getStepId()));
+            return null;
+        }).when(flaky).insertAll(any());
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        StepExecutionWriter writer = new StepExecutionWriter(flaky, meterRegistry);
+        for (long stepId = 1; stepId <= 3; stepId++) {
+            StepExecution record = new StepExecution();
+            record.setStepId(stepId);
+            writer.record(record);
+        }
+        
+        for (int i = 0; i < StepExecutionWriter.MAX_ATTEMPTS + 1; i++) {
+            writer.flush();
+        }
+        
+        assertThat(written).containsExactly(1L, 3L);
+        assertThat(writer.pending()).isZero();
+        assertThat(meterRegistry.get("execution.step.records.failed").tag("outcome", "retried").counter().count())
+                .isEqualTo(StepExecutionWriter.MAX_ATTEMPTS - 1);
+        assertThat(meterRegistry.get("execution.step.records.failed").tag("outcome", "dropped").counter().count())
+                .isEqualTo(1);
+    }
+    
+    private WorkflowStep.StepStatus statusOf(WorkflowStep step) {
+        return stepRuns.stream()
+                .filter(run -> run.getStepId().equals(step.getId()))
+                .findFirst()
+                .orElseThrow()
+                .getStatus();
+    }
+    
+    private Workflow workflow(WorkflowStep... steps) {
+        Workflow workflow = new Workflow();
+        workflow.setId(1L);
+        workflow.setName("test");
+        workflow.setSteps(new ArrayList<>(List.of(steps)));
+        when(workflowRepository.findWithStepsById(1L)).thenReturn(Optional.of(workflow));
+        return workflow;
+    }
+    
+    private static WorkflowStep aiStep(Long id, int order, String prompt, String dependsOn) {
+        WorkflowStep step = new WorkflowStep();
+        step.setId(id);
+        step.setName(prompt);
+        step.setStepOrder(order);
+        step.setType(WorkflowStep.StepType.AI_PROCESSING);
+        step.setAiPrompt(prompt);
+        step.setDependsOn(dependsOn);
+        return step;
+    }
+}
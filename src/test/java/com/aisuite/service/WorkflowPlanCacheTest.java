@@ -0,0 +1,210 @@
+package com.aisuite.service;
+
+import com.aisuite.model.StepExecution;
+import com.aisuite.model.Workflow;
+import com.aisuite.model.WorkflowExecution;
+import com.aisuite.model.WorkflowStep;
+import com.aisuite.repository.StepExecutionRepository;
+import com.aisuite.repository.WorkflowRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class WorkflowPlanCacheTest {
+    
+    @Autowired
+    private WorkflowEngine workflowEngine;
+    
+    @Autowired
+    private WorkflowService workflowService;
+    
+    @Autowired
+    private WorkflowPlanCache workflowPlans;
+    
+    @Autowired
+    private WorkflowRepository workflowRepository;
+    
+    @Autowired
+    private StepExecutionRepository stepExecutionRepository;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @MockBean
+    private AiService aiService;
+    
+    private Statistics statistics;
+    
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+    
+    @Test
+    void hotWorkflowsStartWithoutReadingTheirDefinition() {
+        Workflow workflow = workflowService.createWorkflow(workflow("hot", 3));
+        workflowEngine.executeWorkflow(workflow.getId(), Map.of());
+        
+        statistics.clear();
+        WorkflowExecution execution = workflowEngine.executeWorkflow(workflow.getId(), Map.of());
+        
+        assertThat(execution.getStatus()).isEqualTo(WorkflowExecution.ExecutionStatus.COMPLETED);
+        assertThat(loads(Workflow.class)).isZero();
+        assertThat(loads(WorkflowStep.class)).isZero();
+        assertThat(stepFetches()).isZero();
+        // The run reuses the plan it started with instead of checking it again
+        assertThat(statistics.getQueryStatistics("select w.updatedAt from Workflow w where w.id = :id")
+                .getExecutionCount()).isEqualTo(1);
+    }
+    
+    @Test
+    void aCachedPlanCostsASingleStatement() {
+        Workflow workflow = workflowService.createWorkflow(workflow("cached", 3));
+        workflowPlans.get(workflow.getId());
+        
+        statistics.clear();
+        WorkflowPlan plan = workflowPlans.get(workflow.getId());
+        
+        assertThat(plan.graph().steps()).hasSize(3);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+    
+    @Test
+    void aPlanIsLoadedWithASingleFetchJoin() {
+        Workflow workflow = workflowService.createWorkflow(workflow("cold", 4));
+        workflowPlans.invalidate(workflow.getId());
+        
+        statistics.clear();
+        workflowEngine.executeWorkflow(workflow.getId(), Map.of());
+        
+        assertThat(loads(Workflow.class)).isEqualTo(1);
+        assertThat(loads(WorkflowStep.class)).isEqualTo(4);
+        assertThat(stepFetches()).isZero();
+        assertThat(statistics.getEntityStatistics(Workflow.class.getName()).getFetchCount()).isZero();
+    }
+    
+    @Test
+    void updatesInvalidateThePlanWithoutRunsTouchingUpdatedAt() {
+        Workflow workflow = workflowService.createWorkflow(workflow("edited", 1));
+        Workflow beforeRun = workflowRepository.findById(workflow.getId()).orElseThrow();
+        workflowEngine.executeWorkflow(workflow.getId(), Map.of());
+        Workflow afterRun = workflowRepository.findById(workflow.getId()).orElseThrow();
+        assertThat(afterRun.getLastExecutedAt()).isNotNull();
+        assertThat(afterRun.getUpdatedAt()).isEqualTo(beforeRun.getUpdatedAt());
+        
+        Workflow changes = workflow("edited", 2);
+        changes.getSteps().get(0).setId(workflow.getSteps().get(0).getId());
+        workflowService.updateWorkflow(workflow.getId(), changes);
+        WorkflowExecution execution = workflowEngine.executeWorkflow(workflow.getId(), Map.of());
+        
+        List<WorkflowStep> steps = workflowService.getWorkflowById(workflow.getId()).orElseThrow().getSteps();
+        assertThat(steps).hasSize(2);
+        assertThat(steps.get(0).getId()).isEqualTo(workflow.getSteps().get(0).getId());
+        assertThat(execution.getOutputData()).contains("step_" + steps.get(1).getId());
+    }
+    
+    @Test
+    void aPlanIsRebuiltWhenTheWorkflowChangedElsewhere() {
+        Workflow workflow = workflowService.createWorkflow(workflow("changed elsewhere", 1));
+        workflowEngine.executeWorkflow(workflow.getId(), Map.of());
+        
+        // As another node would, without invalidating this node's cache
+        Workflow changed = workflowRepository.findWithStepsById(workflow.getId()).orElseThrow();
+        WorkflowStep added = workflow("changed elsewhere", 2).getSteps().get(1);
+        added.setWorkflow(changed);
+        changed.getSteps().add(added);
+        changed.setDescription("edited on another node");
+        workflowRepository.save(changed);
+        
+        statistics.clear();
+        WorkflowExecution execution = workflowEngine.executeWorkflow(workflow.getId(), Map.of());
+        
+        assertThat(loads(Workflow.class)).isEqualTo(1);
+        List<WorkflowStep> steps = workflowService.getWorkflowById(workflow.getId()).orElseThrow().getSteps();
+        assertThat(execution.getOutputData()).contains("step_" + steps.get(1).getId());
+    }
+    
+    @Test
+    void runsRecordStepExecutionsWithoutWritingTheDefinition() {
+        Workflow workflow = workflowService.createWorkflow(workflow("recorded", 3));
+        
+        statistics.clear();
+        WorkflowExecution first = workflowEngine.executeWorkflow(workflow.getId(), Map.of());
+        WorkflowExecution second = workflowEngine.executeWorkflow(workflow.getId(), Map.of());
+        
+        assertThat(statistics.getEntityStatistics(WorkflowStep.class.getName()).getUpdateCount()).isZero();
+        assertThat(statistics.getEntityStatistics(Workflow.class.getName()).getUpdateCount()).isZero();
+        List<StepExecution> steps = stepExecutionRepository.findByExecutionIdOrderByStepOrderAscStepIdAsc(second.getId());
+        assertThat(steps).extracting(StepExecution::getStepOrder).containsExactly(1, 2, 3);
+        assertThat(steps).allSatisfy(step -> {
+            assertThat(step.getStatus()).isEqualTo(WorkflowStep.StepStatus.COMPLETED);
+            assertThat(step.getResult()).isEqualTo("Notification sent");
+            assertThat(step.getStartedAt()).isNotNull();
+            assertThat(step.getDurationMs()).isNotNull();
+        });
+        assertThat(workflowService.getStepHistory(steps.get(0).getStepId(), 10))
+                .extracting(StepExecution::getExecutionId)
+                .containsExactly(second.getId(), first.getId());
+    }
+    
+    @Test
+    void listingWorkflowsDoesNotLoadStepsPerWorkflow() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            workflowService.createWorkflow(workflow("listed " + i, 2));
+        }
+        
+        statistics.clear();
+        mockMvc.perform(get("/workflows"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].steps[0].name").exists());
+        
+        assertThat(loads(Workflow.class)).isGreaterThanOrEqualTo(5);
+        assertThat(stepFetches()).isZero();
+    }
+    
+    private long loads(Class<?> entity) {
+        return statistics.getEntityStatistics(entity.getName()).getLoadCount();
+    }
+    
+    private long stepFetches() {
+        return statistics.getCollectionStatistics(Workflow.class.getName() + ".steps").getFetchCount();
+    }
+    
+    private static Workflow workflow(String name, int steps) {
+        Workflow workflow = new Workflow();
+        workflow.setName(name + " " + System.nanoTime());
+        workflow.setStatus(Workflow.WorkflowStatus.ACTIVE);
+        workflow.setSteps(new ArrayList<>());
+        for (int i = 1; i <= steps; i++) {
+            WorkflowStep step = new WorkflowStep();
+            step.setName("notify " + i);
+            step.setStepOrder(i);
+            step.setType(WorkflowStep.StepType.NOTIFICATION);
+            workflow.getSteps().add(step);
+        }
+        return workflow;
+    }
+}
@@ -0,0 +1,293 @@
+package com.aisuite.service;
+
+import com.aisuite.model.Workflow;
+import com.aisuite.model.WorkflowExecution;
+import com.aisuite.model.WorkflowStep;
+import com.aisuite.model.WorkflowTrigger;
+import com.aisuite.repository.WorkflowExecutionRepository;
+import com.aisuite.repository.WorkflowRepository;
+import com.aisuite.repository.WorkflowTriggerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class WorkflowTriggerServiceTest {
+    
+    @Autowired
+    private WorkflowTriggerService triggerService;
+    
+    @Autowired
+    private WorkflowTriggerRepository triggerRepository;
+    
+    @Autowired
+    private WorkflowRepository workflowRepository;
+    
+    @Autowired
+    private WorkflowExecutionRepository executionRepository;
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @Autowired
+    private AsyncTaskExecutor applicationTaskExecutor;
+    
+    @MockBean
+    private AiService aiService;
+    
+    @BeforeEach
+    void setUp() {
+        when(aiService.processWithAI(anyString(), anyMap(), any())).thenReturn("processed");
+    }
+    
+    @Test
+    void intervalTriggersRunTheirWorkflowUntilDeleted() throws Exception {
+        Workflow workflow = workflow(Workflow.WorkflowStatus.ACTIVE);
+        WorkflowTrigger trigger = new WorkflowTrigger();
+        trigger.setType(WorkflowTrigger.TriggerType.INTERVAL);
+        trigger.setIntervalSeconds(1L);
+        trigger.setInputData("{\"report\":\"hourly\"}");
+        trigger = triggerService.createTrigger(workflow.getId(), trigger);
+        
+        assertThat(awaitExecutions(workflow, 2)).isGreaterThanOrEqualTo(2);
+        triggerService.deleteTrigger(trigger.getId());
+        int runs = executions(workflow).size();
+        Thread.sleep(1500);
+        
+        assertThat(executions(workflow).size()).isEqualTo(runs);
+        assertThat(executions(workflow).get(0).getInputData())
+                .contains("\"report\":\"hourly\"")
+                .contains("\"type\":\"INTERVAL\"");
+    }
+    
+    @Test
+    void triggersFireWhileTheApplicationExecutorIsBusy() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // Takes every thread of the application executor and leaves work queued behind them
+            for (int i = 0; i < 16; i++) {
+                applicationTaskExecutor.execute(() -> {
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            Workflow workflow = workflow(Workflow.WorkflowStatus.ACTIVE);
+            WorkflowTrigger trigger = new WorkflowTrigger();
+            trigger.setType(WorkflowTrigger.TriggerType.INTERVAL);
+            trigger.setIntervalSeconds(1L);
+            trigger = triggerService.createTrigger(workflow.getId(), trigger);
+            
+            assertThat(awaitExecutions(workflow, 1)).isEqualTo(1);
+            triggerService.deleteTrigger(trigger.getId());
+        } finally {
+            release.countDown();
+        }
+    }
+    
+    @Test
+    void misfiredTriggersFollowTheirPolicy() {
+        LocalDateTime due = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).minusHours(1);
+        Map<WorkflowTrigger.MisfirePolicy, Integer> expectedRuns = Map.of(
+                WorkflowTrigger.MisfirePolicy.SKIP, 0,
+                WorkflowTrigger.MisfirePolicy.FIRE_ONCE, 1,
+                // Every ten minutes from an hour ago up to now
+                WorkflowTrigger.MisfirePolicy.CATCH_UP, 7);
+        
+        expectedRuns.forEach((policy, runs) -> {
+            Workflow workflow = workflow(Workflow.WorkflowStatus.ACTIVE);
+            WorkflowTrigger trigger = overdueTrigger(workflow, due, policy);
+            
+            assertThat(triggerService.fire(trigger.getId(), due)).as(policy.name()).isEqualTo(runs);
+            
+            WorkflowTrigger fired = triggerRepository.findById(trigger.getId()).orElseThrow();
+            assertThat(fired.getNextFireAt()).isAfter(LocalDateTime.now()).isEqualTo(due.plusMinutes(70));
+        });
+    }
+    
+    @Test
+    void aDueTriggerFiresOnceHoweverManyInstancesTryIt() throws Exception {
+        Workflow workflow = workflow(Workflow.WorkflowStatus.ACTIVE);
+        LocalDateTime due = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).minusSeconds(1);
+        WorkflowTrigger trigger = overdueTrigger(workflow, due, WorkflowTrigger.MisfirePolicy.FIRE_ONCE);
+        
+        // Each thread stands in for an instance whose scheduler woke up for the same due time
+        ExecutorService instances = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> fired = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            fired.add(instances.submit(() -> {
+                start.await();
+                return triggerService.fire(trigger.getId(), due);
+            }));
+        }
+        start.countDown();
+        int runs = 0;
+        for (Future<Integer> result : fired) {
+            runs += result.get(10, TimeUnit.SECONDS);
+        }
+        instances.shutdown();
+        
+        assertThat(runs).isEqualTo(1);
+        assertThat(executions(workflow)).hasSize(1);
+    }
+    
+    @Test
+    void eventsRunEveryActiveSubscribedWorkflow() throws Exception {
+        String eventType = "invoice.created." + System.nanoTime();
+        Workflow first = workflow(Workflow.WorkflowStatus.ACTIVE);
+        Workflow second = workflow(Workflow.WorkflowStatus.ACTIVE);
+        Workflow paused = workflow(Workflow.WorkflowStatus.PAUSED);
+        Workflow other = workflow(Workflow.WorkflowStatus.ACTIVE);
+        for (Workflow workflow : List.of(first, second, paused)) {
+            triggerService.createTrigger(workflow.getId(), eventTrigger(eventType));
+        }
+        triggerService.createTrigger(other.getId(), eventTrigger("invoice.paid"));
+        
+        mockMvc.perform(post("/events/{eventType}", eventType)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"invoice\":42}"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.executionIds.length()").value(2))
+                .andExpect(jsonPath("$.rejected").value(0));
+        
+        assertThat(executions(first)).hasSize(1);
+        assertThat(executions(first).get(0).getInputData()).contains("\"payload\":{\"invoice\":42}");
+        assertThat(executions(second)).hasSize(1);
+        assertThat(executions(paused)).isEmpty();
+        assertThat(executions(other)).isEmpty();
+    }
+    
+    @Test
+    void invalidTriggersAreRejected() throws Exception {
+        Workflow workflow = workflow(Workflow.WorkflowStatus.ACTIVE);
+        
+        mockMvc.perform(post("/workflows/{id}/triggers", workflow.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"type\":\"CRON\",\"cronExpression\":\"every monday\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid cron expression: every monday"));
+        mockMvc.perform(post("/workflows/{id}/triggers", workflow.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"type\":\"CRON\",\"cronExpression\":\"0 0 9 * * MON-FRI\"}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.nextFireAt").isNotEmpty());
+    }
+    
+    @Test
+    void oneSchedulerThreadWakesTensOfThousandsOfTriggers() throws Exception {
+        int triggers = 50_000;
+        Map<Long, Long> lateNanos = new ConcurrentHashMap<>();
+        AtomicInteger early = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(triggers - 1000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (TriggerScheduler scheduler = new TriggerScheduler("test-scheduler", executor, (id, dueAt) -> {
+            LocalDateTime now = LocalDateTime.now();
+            if (now.isBefore(dueAt)) {
+                early.incrementAndGet();
+            }
+            lateNanos.put(id, Duration.between(dueAt, now).toNanos());
+            done.countDown();
+        })) {
+            LocalDateTime start = LocalDateTime.now().plusNanos(200_000_000);
+            for (long id = 0; id < triggers; id++) {
+                scheduler.schedule(id, start.plusNanos(id % 1000 * 1_000_000));
+            }
+            // Cancelled and rescheduled triggers only fire for their current due time
+            for (long id = 0; id < 1000; id++) {
+                scheduler.cancel(id);
+            }
+            scheduler.schedule(1000, start.plusSeconds(1));
+            scheduler.start();
+            
+            assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(lateNanos).hasSize(triggers - 1000).doesNotContainKey(0L);
+            assertThat(lateNanos.get(1000L)).isGreaterThanOrEqualTo(0);
+            assertThat(early.get()).isZero();
+            assertThat(scheduler.size()).isZero();
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
+    private WorkflowTrigger overdueTrigger(Workflow workflow, LocalDateTime due, WorkflowTrigger.MisfirePolicy policy) {
+        WorkflowTrigger trigger = new WorkflowTrigger();
+        trigger.setWorkflowId(workflow.getId());
+        trigger.setType(WorkflowTrigger.TriggerType.INTERVAL);
+        trigger.setIntervalSeconds(600L);
+        trigger.setMisfirePolicy(policy);
+        trigger.setEnabled(true);
+        trigger.setNextFireAt(due);
+        return triggerRepository.save(trigger);
+    }
+    
+    private static WorkflowTrigger eventTrigger(String eventType) {
+        WorkflowTrigger trigger = new WorkflowTrigger();
+        trigger.setType(WorkflowTrigger.TriggerType.EVENT);
+        trigger.setEventType(eventType);
+        return trigger;
+    }
+    
+    private Workflow workflow(Workflow.WorkflowStatus status) {
+        Workflow workflow = new Workflow();
+        workflow.setName("triggered workflow " + System.nanoTime());
+        workflow.setStatus(status);
+        WorkflowStep step = new WorkflowStep();
+        step.setWorkflow(workflow);
+        step.setName("ai");
+        step.setStepOrder(1);
+        step.setType(WorkflowStep.StepType.AI_PROCESSING);
+        step.setAiPrompt("prompt");
+        workflow.setSteps(new ArrayList<>(List.of(step)));
+        return workflowRepository.save(workflow);
+    }
+    
+    private List<WorkflowExecution> executions(Workflow workflow) {
+        return executionRepository.findAll().stream()
+                .filter(execution -> workflow.getId().equals(execution.getWorkflowId()))
+                .toList();
+    }
+    
+    private int awaitExecutions(Workflow workflow, int expected) throws InterruptedException {
+        int count = 0;
+        for (int i = 0; i < 100 && count < expected; i++) {
+            Thread.sleep(100);
+            count = executions(workflow).size();
+        }
+        return count;
+    }
+}